@@ -3,6 +3,7 @@ package org.treez.javafxd3.d3.democases.geom.mitchell;
 
 import org.treez.javafxd3.d3.geom.Quadtree.RootNode;
 import org.treez.javafxd3.d3.D3;
+import org.treez.javafxd3.d3.core.FrameScheduler.TimerHandle;
 import org.treez.javafxd3.d3.core.Selection;
 import org.treez.javafxd3.d3.demo.AbstractDemoCase;
 import org.treez.javafxd3.d3.demo.DemoCase;
@@ -29,6 +30,8 @@ public class MitchellBestCandidate extends AbstractDemoCase {
 
 	private TimerFunction timerFunction;
 
+	private TimerHandle timerHandle;
+
 	//#end region
 
 	//#region CONSTRUTORS
@@ -63,13 +66,16 @@ public class MitchellBestCandidate extends AbstractDemoCase {
 
 		timerFunction = new MitchellTimerFunction(circleGenerator, svg, this);
 		done = false;
-		d3.timer(timerFunction);
+		timerHandle = d3.scheduleTimer(timerFunction);
 
 	}
 
 	@Override
 	public void stop() {
 		done = true;
+		if (timerHandle != null) {
+			timerHandle.cancel();
+		}
 	}
 
 	private CircleGenerator createBestCircleGenerator(final double maxRadius, final double padding) {
@@ -4,6 +4,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 import org.treez.javafxd3.d3.D3;
+import org.treez.javafxd3.d3.core.FrameScheduler.TimerHandle;
 import org.treez.javafxd3.d3.core.Selection;
 import org.treez.javafxd3.d3.demo.AbstractDemoCase;
 import org.treez.javafxd3.d3.demo.DemoCase;
@@ -36,6 +37,8 @@ public class LorenzSystem extends AbstractDemoCase {
 	private LinearScale colorScale;
 	private TimerFunction timerFunction;
 
+	private TimerHandle timerHandle;
+
 	//#end region
 
 	//#region CONSTRUCTORS
@@ -94,7 +97,7 @@ public class LorenzSystem extends AbstractDemoCase {
 	@Override
 	public void start() {
 		stopped = false;
-		d3.timer(timerFunction);
+		timerHandle = d3.scheduleTimer(timerFunction);
 
 		timer = new Timer();
 		timer.schedule(timerTask, 0, 100);
@@ -103,6 +106,9 @@ public class LorenzSystem extends AbstractDemoCase {
 	@Override
 	public void stop() {
 		stopped = true;
+		if (timerHandle != null) {
+			timerHandle.cancel();
+		}
 		timer.cancel();
 	}
 
@@ -3,7 +3,8 @@ package org.treez.javafxd3.d3.democases.lorenz;
 import org.treez.javafxd3.d3.color.Colors;
 import org.treez.javafxd3.d3.functions.TimerFunction;
 import org.treez.javafxd3.d3.scales.LinearScale;
-import org.treez.javafxd3.d3.wrapper.canvas.Context2d;
+import org.treez.javafxd3.d3.wrapper.canvas.ColorLookupTable;
+import org.treez.javafxd3.d3.wrapper.canvas.Context2dRecorder;
 
 import org.treez.javafxd3.d3.core.JsEngine;
 
@@ -11,11 +12,28 @@ public class LorenzTimerFunction implements TimerFunction {
 	
 	//#region ATTRIBUTES
 
-	private JsEngine engine;
+	/**
+	 * The number of colors of the color lookup table
+	 */
+	private static final int NUMBER_OF_COLORS = 256;
 
 	private LorenzSystem lorenzSystem;
 
-	private Context2d context;
+	private LinearScale colorScale;
+
+	private Colors colors;
+
+	/**
+	 * Records the drawing commands of a frame, so that the frame is drawn with
+	 * a single call
+	 */
+	private Context2dRecorder recorder;
+
+	/**
+	 * The colors of the color scale, precomputed for equidistant z values
+	 * within the domain of the scale
+	 */
+	private ColorLookupTable colorLookupTable;
 
 	private double x = .5;
 	private double y = .5;
@@ -25,20 +43,25 @@ public class LorenzTimerFunction implements TimerFunction {
 
 	private double width;
 	private double height;
-	private LinearScale colorScale;
+
+	/**
+	 * The points of the current polyline
+	 */
+	private double[] xy = new double[2 * (n + 1)];
 	
 	//#end region
 	
 	//#region CONSTRUCTORS
 
 	public LorenzTimerFunction(JsEngine engine, LorenzSystem lorenzSystem) {
-		this.engine = engine;
 		this.lorenzSystem = lorenzSystem;
 
-		this.context = lorenzSystem.getContext();
+		this.recorder = new Context2dRecorder(lorenzSystem.getContext());
 		this.width = lorenzSystem.getWidth();
 		this.height = lorenzSystem.getHeight();
 		this.colorScale = lorenzSystem.getColorScale();
+		this.colors = new Colors(engine);
+		this.colorLookupTable = createColorLookupTable(colorScale);
 	}
 	
 	//#end region
@@ -47,39 +70,74 @@ public class LorenzTimerFunction implements TimerFunction {
 
 	@Override
 	public boolean execute() {
-		context.save();
-		context.setGlobalCompositeOperation("lighten");
-		context.translate(width / 2, height / 2);
-		context.scale(12, 14);
-		context.rotate(30);
+		recorder.save();
+		recorder.setGlobalCompositeOperation("lighten");
+		recorder.translate(width / 2, height / 2);
+		recorder.scale(12, 14);
+		recorder.rotate(30);
 
 		double dTau = 0.003;
 		double rho = 28;
 		double sigma = 10;
 		double beta = 8 / 3;
 
-		Colors colors = new Colors(engine);
+		// consecutive segments with the same color are drawn as one polyline;
+		// segments of the same stroke do not lighten each other where they
+		// overlap
+		String polylineColor = null;
+		int numberOfPoints = 0;
 
 		for (int i = 0; i < n; ++i) {
 
-			String colorRgb = colorScale.apply(z).asString();
-			org.treez.javafxd3.d3.color.RGBColor rgbColor = colors.rgb(colorRgb);
-
-			String colorString = rgbColor.toHexaString();
-
-			context.setStrokeStyle(colorString);
-			context.beginPath();
-			context.moveTo(x, y);
+			String color = lookUpColor(z);
+			boolean isNewColor = !color.equals(polylineColor);
+			if (isNewColor) {
+				drawPolyline(polylineColor, numberOfPoints);
+				polylineColor = color;
+				xy[0] = x;
+				xy[1] = y;
+				numberOfPoints = 1;
+			}
 
 			x += dTau * sigma * (y - x);
 			y += dTau * ((x * (rho - z)) - y);
 			z += dTau * ((x * y) - (beta * z));
-			context.lineTo(x, y);
-			context.stroke();
+
+			xy[2 * numberOfPoints] = x;
+			xy[2 * numberOfPoints + 1] = y;
+			numberOfPoints++;
 		}
-		context.restore();
+		drawPolyline(polylineColor, numberOfPoints);
+
+		recorder.restore();
+		recorder.flush();
 		return lorenzSystem.getStopped();
 	}
+
+	private void drawPolyline(String color, int numberOfPoints) {
+		if (color == null) {
+			return;
+		}
+		recorder.setStrokeStyle(color);
+		recorder.drawPolyline(xy, numberOfPoints);
+	}
+
+	private String lookUpColor(double zValue) {
+		boolean isInDomain = zValue >= colorLookupTable.getMin() && zValue <= colorLookupTable.getMax();
+		if (isInDomain) {
+			return colorLookupTable.colorOf(zValue);
+		}
+		// the color scale extrapolates values outside of its domain
+		String colorRgb = colorScale.apply(zValue).asString();
+		return colors.rgb(colorRgb).toHexaString();
+	}
+
+	private static ColorLookupTable createColorLookupTable(LinearScale colorScale) {
+		double[] domain = colorScale.domain().toDoubleArray();
+		double minZ = domain[0];
+		double maxZ = domain[domain.length - 1];
+		return ColorLookupTable.fromScale(colorScale, minZ, maxZ, NUMBER_OF_COLORS);
+	}
 	
 	//#end region
 
@@ -2,8 +2,11 @@ package org.treez.javafxd3.d3.democases.svg.brush.scatter;
 
 import org.treez.javafxd3.d3.functions.DataFunction;
 
-import javafx.application.Platform;
-
+/**
+ * Is registered with per-frame event coalescing, so it is invoked at most once
+ * per animation frame from a frame callback (and not from within the d3 event
+ * dispatch) and can update the plot directly.
+ */
 public class BrushMoveFunction implements DataFunction<Void> {
 
 	private ScatterPlotMatrixDemo scatterPlotMatrixDemo;
@@ -14,10 +17,8 @@ public class BrushMoveFunction implements DataFunction<Void> {
 
 	@Override
 	public Void apply(Object context, Object d, int index) {
-		Platform.runLater(() -> {
-			Point point = (Point) d;
-			scatterPlotMatrixDemo.brushMove(point);
-		});
+		Point point = (Point) d;
+		scatterPlotMatrixDemo.brushMove(point);
 		return null;
 	}
 }
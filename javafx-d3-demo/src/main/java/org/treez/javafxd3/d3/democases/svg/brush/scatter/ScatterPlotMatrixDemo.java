@@ -1,6 +1,7 @@
 package org.treez.javafxd3.d3.democases.svg.brush.scatter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,8 +10,9 @@ import org.treez.javafxd3.d3.D3;
 import org.treez.javafxd3.d3.arrays.Array;
 import org.treez.javafxd3.d3.arrays.Arrays;
 import org.treez.javafxd3.d3.core.ConversionUtil;
+import org.treez.javafxd3.d3.core.EventCoalescing;
 import org.treez.javafxd3.d3.core.Selection;
-import org.treez.javafxd3.d3.core.Value;
+import org.treez.javafxd3.d3.core.SelectionProgram;
 import org.treez.javafxd3.d3.demo.AbstractDemoCase;
 import org.treez.javafxd3.d3.demo.DemoCase;
 import org.treez.javafxd3.d3.demo.DemoFactory;
@@ -45,6 +47,22 @@ public class ScatterPlotMatrixDemo extends AbstractDemoCase {
 
 	private Map<String, Array<Double>> domainByTrait;
 
+	/**
+	 * The values of the traits, read once from the csv rows, so that the
+	 * circle positions can be computed in Java
+	 */
+	private Map<String, double[]> valuesByTrait;
+
+	/**
+	 * The extents (min, max) of the traits
+	 */
+	private Map<String, double[]> extentByTrait;
+
+	/**
+	 * The fill colors of the csv rows, derived from their species
+	 */
+	private String[] fills;
+
 	private Selection svg;
 
 	private double padding;
@@ -149,7 +167,7 @@ public class ScatterPlotMatrixDemo extends AbstractDemoCase {
 				.x(x) //
 				.y(y) //
 				.on(BrushEvent.BRUSH_START, new BrushStartFunction(this,engine)) //
-				.on(BrushEvent.BRUSH, new BrushMoveFunction(this)) //
+				.on(BrushEvent.BRUSH, new BrushMoveFunction(this), EventCoalescing.perAnimationFrame()) //
 				.on(BrushEvent.BRUSH_END, new BrushEndFunction(this));
 	}
 
@@ -223,9 +241,13 @@ public class ScatterPlotMatrixDemo extends AbstractDemoCase {
 	private Selection plotCsvData(Array<DsvRow> array, Array<String> traits, final int n) {
 		Array<Point> points = points(traits, traits);
 
-		DataFunction<String> transformFunction = new DataFunctionWrapper<>(Point.class, engine, (point) -> {
-			return "translate(" + (n - point.i - 1) * size + "," + point.j * size + ")";
-		});
+		// the points are ordered by i and j
+		String[] transforms = new String[n * n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				transforms[i * n + j] = "translate(" + (n - i - 1) * size + "," + j * size + ")";
+			}
+		}
 
 		DataFunction<Void> plotFunction = new CompleteDataFunctionWrapper<>(engine, new DataFunction<Void>() {
 			@Override
@@ -242,12 +264,14 @@ public class ScatterPlotMatrixDemo extends AbstractDemoCase {
 			}
 		});
 
-		Selection subPlots = svg.selectAll(".cell") //
+		Selection subPlots = new SelectionProgram() //
+				.selectAll(".cell") //
 				.data(points) //
 				.enter() //
 				.append("g") //
 				.attr("class", "cell") //
-				.attr("transform", transformFunction) //
+				.attr("transform", transforms) //
+				.run(svg) //
 				.each(plotFunction);
 		return subPlots;
 	}
@@ -293,6 +317,60 @@ public class ScatterPlotMatrixDemo extends AbstractDemoCase {
 
 			domainByTrait.put(trait, domain);
 		});
+		storeValuesByTraits(array, traits);
+	}
+
+	/**
+	 * Reads the trait values and the fill colors of all rows once
+	 */
+	private void storeValuesByTraits(Array<DsvRow> array, Array<String> traits) {
+		int numberOfRows = array.length();
+		String[] traitNames = traits.toStringArray();
+
+		valuesByTrait = new HashMap<>();
+		extentByTrait = new HashMap<>();
+		for (String trait : traitNames) {
+			valuesByTrait.put(trait, new double[numberOfRows]);
+		}
+
+		fills = new String[numberOfRows];
+		Map<String, String> fillBySpecies = new HashMap<>();
+
+		for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			DsvRow row = array.get(rowIndex, DsvRow.class);
+			for (String trait : traitNames) {
+				valuesByTrait.get(trait)[rowIndex] = row.get(trait).asDouble();
+			}
+			String species = row.get("species").asString();
+			fills[rowIndex] = fillBySpecies.computeIfAbsent(species, (key) -> color.apply(key).asString());
+		}
+
+		for (String trait : traitNames) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (double value : valuesByTrait.get(trait)) {
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+			extentByTrait.put(trait, new double[] { min, max });
+		}
+	}
+
+	/**
+	 * Maps the values of the given trait linearly to the given range; this
+	 * corresponds to a d3 linear scale with the extent of the trait as domain
+	 */
+	private double[] scaleValues(String trait, double rangeStart, double rangeEnd) {
+		double[] values = valuesByTrait.get(trait);
+		double[] extent = extentByTrait.get(trait);
+		double domainLength = extent[1] - extent[0];
+		double factor = domainLength == 0 ? 0 : (rangeEnd - rangeStart) / domainLength;
+
+		double[] scaledValues = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			scaledValues[index] = rangeStart + (values[index] - extent[0]) * factor;
+		}
+		return scaledValues;
 	}
 
 	private Array<String> getTraits(Array<DsvRow> array) {
@@ -335,41 +413,19 @@ public class ScatterPlotMatrixDemo extends AbstractDemoCase {
 				.attr("width", size - padding) //
 				.attr("height", size - padding);
 
-		DataFunction<String> cxDataFunction = new DataFunctionWrapper<>(DsvRow.class, engine, (row) -> {
-			if (row == null) {
-				return null;
-			}
-			Value v = row.get(p.xTrait);
-			String asString = x.apply(v.asDouble()).asString();
-			return asString;
-		});
-
-		DataFunction<String> cyDataFunction = new DataFunctionWrapper<>(DsvRow.class, engine, (row) -> {
-			if (row == null) {
-				return null;
-			}
-			Value v = row.get(p.yTrait);
-			String asString = y.apply(v.asDouble()).asString();
-			return asString;
-		});
-
-		DataFunction<String> fillDataFunction = new DataFunctionWrapper<>(DsvRow.class, engine, (row) -> {
-			if (row == null) {
-				return null;
-			}
-			String species = row.get("species").asString();
-			String fill = color.apply(species).asString();
-			return fill;
-		});
+		//the positions and colors are computed in Java and applied in bulk,
+		//so that no Java function is called per circle
+		double[] cx = scaleValues(p.xTrait, padding / 2, size - padding / 2);
+		double[] cy = scaleValues(p.yTrait, size - padding / 2, padding / 2);
 
 		cell.selectAll("circle") //
 				.data(dsvRows) //
 				.enter() //
 				.append("circle") //
-				.attr("cx", cxDataFunction) //
-				.attr("cy", cyDataFunction) //
+				.attr("cx", cx) //
+				.attr("cy", cy) //
 				.attr("r", 3) //
-				.style("fill", fillDataFunction);
+				.style("fill", fills);
 	}
 
 	// Clear the previously-active brush, if any.
@@ -399,38 +455,33 @@ public class ScatterPlotMatrixDemo extends AbstractDemoCase {
 			return;
 		}
 
+		// the extent of the brush
 		final Array<Double> e = brush.extent();
+		double ex0 = e.get(0, 0);
+		double ey0 = e.get(0, 1);
+		double ex1 = e.get(1, 0);
+		double ey1 = e.get(1, 1);
+
+		// hide the rows whose plot coords are outside the brush extent
+		double[] px = valuesByTrait.get(p.xTrait);
+		double[] py = valuesByTrait.get(p.yTrait);
+		int numberOfRows = px.length;
+		BitSet hiddenRows = new BitSet(numberOfRows);
+		for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			boolean isHidden = ex0 > px[rowIndex] || px[rowIndex] > ex1 || ey0 > py[rowIndex] || py[rowIndex] > ey1;
+			hiddenRows.set(rowIndex, isHidden);
+		}
 
-		DataFunction<Boolean> hideFunction = new DataFunctionWrapper<>(DsvRow.class, engine, (row) -> {
-
-			try {
-
-				// the plot coords			
-				Value x = row.get(p.xTrait);
-				double px = x.asDouble();
-
-				Value y = row.get(p.yTrait);
-				double py = y.asDouble();
-
-				// the extent of the brush
-				double ex0 = e.get(0, 0);
-				double ey0 = e.get(0, 1);
-				double ex1 = e.get(1, 0);
-				double ey1 = e.get(1, 1);
-
-				// hide it (returns true) if the plot is outside the brush
-				// extent
-				boolean b = ex0 > px || px > ex1 || ey0 > py || py > ey1;
-
-				return b;
-			} catch (Exception exception) {
-				throw new IllegalStateException("Could not determine hidden value", exception);
-
-			}
-		});
+		// each cell contains one circle per row
+		int numberOfCells = valuesByTrait.size() * valuesByTrait.size();
+		BitSet hidden = new BitSet(numberOfCells * numberOfRows);
+		for (int cellIndex = 0; cellIndex < numberOfCells; cellIndex++) {
+			int offset = cellIndex * numberOfRows;
+			hiddenRows.stream().forEach((rowIndex) -> hidden.set(offset + rowIndex));
+		}
 
 		Selection circles = svg.selectAll("circle");
-		circles.classed("hidden", hideFunction);
+		circles.classed("hidden", hidden);
 
 		d3.logNumberOfTempVars("after brush move");
 	}
@@ -0,0 +1,117 @@
+package org.treez.javafxd3.d3;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.treez.javafxd3.d3.core.Selection;
+import org.treez.javafxd3.nashorn.NashornJsEngine;
+
+/**
+ * Abstract parent class for test cases that run on a headless NashornJsEngine
+ * instead of a JavaFx browser, see {@link AbstractTestCase}
+ */
+public abstract class AbstractNashornTestCase extends Assert {
+
+	//#region ATTRIBUTES
+
+	protected static double TOLERANCE = 1e-6;
+
+	protected NashornJsEngine engine;
+
+	protected D3 d3;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public AbstractNashornTestCase() {
+		engine = new NashornJsEngine();
+		d3 = engine.getD3();
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	@Test
+	public void doTestWithNashorn() {
+		doTest();
+	}
+
+	/**
+	 * runs the actual test(s)
+	 */
+	public abstract void doTest();
+
+	/**
+	 * Clears the content of the svg element and returns the svg as Selection
+	 *
+	 * @return
+	 */
+	public Selection clearSvg() {
+		Selection svg = getSvg();
+		svg.selectAll("*").remove();
+		return svg;
+	}
+
+	public Selection getSvg() {
+		return d3.select("svg");
+	}
+
+	/**
+	 * Clears the svg element and appends the given number of circles that are
+	 * bound to null data
+	 *
+	 * @param numberOfCircles
+	 * @return the circles
+	 */
+	protected Selection createCircles(int numberOfCircles) {
+		return clearSvg() //
+				.selectAll("circle") //
+				.data(new Object[numberOfCircles]) //
+				.enter() //
+				.append("circle");
+	}
+
+	/**
+	 * Waits for a frame and runs the due timers of the engine
+	 */
+	protected void runFrame() {
+		runTimersAfter(20);
+	}
+
+	/**
+	 * Waits for the given time and runs the due timers of the engine
+	 */
+	protected void runTimersAfter(long milliseconds) {
+		try {
+			Thread.sleep(milliseconds);
+		} catch (InterruptedException exception) {
+			throw new IllegalStateException("Could not wait", exception);
+		}
+		engine.runTimers();
+	}
+
+	/**
+	 * Replaces the clock of the engine (Date.now) with a clock that only
+	 * advances with {@link #advanceClock(long)}, so that timers and
+	 * transitions can be tested without waiting
+	 */
+	protected void useManualClock() {
+		engine.executeScript("(function(){" //
+				+ "  var time = Date.now();" //
+				+ "  Date.now = function(){ return time; };" //
+				+ "  javafxd3_advanceClock = function(milliseconds){ time += milliseconds; };" //
+				+ "})()");
+	}
+
+	/**
+	 * Advances the manual clock by the given time and runs the due timers of
+	 * the engine, see {@link #useManualClock()}
+	 */
+	protected void advanceClock(long milliseconds) {
+		engine.executeScript("javafxd3_advanceClock(" + milliseconds + ")");
+		engine.runTimers();
+	}
+
+	//#end region
+}
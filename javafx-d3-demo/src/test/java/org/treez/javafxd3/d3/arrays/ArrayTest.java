@@ -18,6 +18,8 @@ public class ArrayTest extends AbstractTestCase {
 		test3x2Array();
 		testFromList();
 		testFromDoubles();
+		testFromPrimitiveArrays();
+		testToPrimitiveArrays();
 		testFromJavaScriptObjects();
 		testForEach();
 		
@@ -99,6 +101,67 @@ public class ArrayTest extends AbstractTestCase {
 
 	}
 
+	private void testFromPrimitiveArrays() {
+
+		double[] doubles = new double[] { 3.5, -4.25, Double.NaN, 1e300 };
+		Array<Double> doubleArray = Array.fromDoubles(engine, doubles);
+		assertEquals("length", 4, doubleArray.length());
+		assertEquals("first value", 3.5, doubleArray.get(0, Double.class), TOLERANCE);
+		assertEquals("second value", -4.25, doubleArray.get(1, Double.class), TOLERANCE);
+		assertTrue("third value", Double.isNaN(doubleArray.get(2, Double.class)));
+		assertEquals("fourth value", 1e300, doubleArray.get(3, Double.class), TOLERANCE);
+
+		Array<Double> floatArray = Array.fromFloats(engine, new float[] { 1.5f, 2.0f });
+		assertEquals("length", 2, floatArray.length());
+		assertEquals("first value", 1.5, floatArray.get(0, Double.class), TOLERANCE);
+
+		Array<Integer> intArray = Array.fromInts(engine, new int[] { 7, -8, Integer.MAX_VALUE });
+		assertEquals("length", 3, intArray.length());
+		assertEquals("second value", -8, (int) intArray.get(1, Integer.class));
+		assertEquals("third value", Integer.MAX_VALUE, (int) intArray.get(2, Integer.class));
+
+		Array<Double> emptyArray = Array.fromDoubles(engine, new double[] {});
+		assertEquals("length", 0, emptyArray.length());
+	}
+
+	private void testToPrimitiveArrays() {
+
+		JsObject arrayObj = (JsObject) d3.eval("[1.5, -2, null, 1e300]");
+		Array<Double> array = new Array<>(engine, arrayObj);
+		double[] doubles = array.toDoubleArray();
+		assertEquals("length", 4, doubles.length);
+		assertEquals("first value", 1.5, doubles[0], TOLERANCE);
+		assertEquals("second value", -2, doubles[1], TOLERANCE);
+		assertEquals("third value", 0, doubles[2], TOLERANCE);
+		assertEquals("fourth value", 1e300, doubles[3], TOLERANCE);
+
+		int[] ints = array.toIntArray();
+		assertEquals("length", 4, ints.length);
+		assertEquals("first value", 1, ints[0]);
+		assertEquals("second value", -2, ints[1]);
+
+		JsObject stringArrayObj = (JsObject) d3.eval("['foo', null, '', 'b,a;r']");
+		String[] strings = new Array<String>(engine, stringArrayObj).toStringArray();
+		assertEquals("length", 4, strings.length);
+		assertEquals("first value", "foo", strings[0]);
+		assertNull("second value", strings[1]);
+		assertEquals("third value", "", strings[2]);
+		assertEquals("fourth value", "b,a;r", strings[3]);
+
+		JsObject matrixObj = (JsObject) d3.eval("[[1, 2], [3], []]");
+		double[][] matrix = new Array<Double>(engine, matrixObj).toDoubleMatrix();
+		assertEquals("number of rows", 3, matrix.length);
+		assertEquals("first row length", 2, matrix[0].length);
+		assertEquals("second value", 2, matrix[0][1], TOLERANCE);
+		assertEquals("third value", 3, matrix[1][0], TOLERANCE);
+		assertEquals("last row length", 0, matrix[2].length);
+		assertEquals("cell value", 3, (int) new Array<Integer>(engine, matrixObj).get(1, 0, Integer.class));
+
+		Array<Double> emptyArray = Array.fromDoubles(engine, new double[] {});
+		assertEquals("length", 0, emptyArray.toDoubleArray().length);
+		assertEquals("length", 0, emptyArray.toStringArray().length);
+	}
+
 	private void testFromJavaScriptObjects() {
 		
 		JsObject firstObject = d3.evalForJsObject("[2]");
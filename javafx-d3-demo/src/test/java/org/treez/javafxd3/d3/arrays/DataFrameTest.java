@@ -0,0 +1,92 @@
+package org.treez.javafxd3.d3.arrays;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.Selection;
+import org.treez.javafxd3.d3.core.UpdateSelection;
+
+/**
+ * Tests the class DataFrame and its join with a selection
+ */
+public class DataFrameTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testRowViews();
+		testJoin();
+		testKeyedJoinWithElementsWithoutData();
+		testColumnsOfDifferentLength();
+	}
+
+	private void testRowViews() {
+		DataFrame dataFrame = new DataFrame() //
+				.addColumn("x", new double[] { 1.5, 2.5, 3.5 }) //
+				.addColumn("time", new long[] { 0L, 86400000L, 1456790400000L }) //
+				.addColumn("species", new String[] { "setosa", null, "setosa" });
+		assertEquals(3, dataFrame.getNumberOfRows());
+
+		JsObject rows = dataFrame.createRows(engine);
+		engine.executeScript("var javafxd3_testRows = null;");
+		((JsObject) engine.executeScript("this")).setMember("javafxd3_testRows", rows);
+
+		assertEquals(3, ((Number) engine.executeScript("javafxd3_testRows.length")).intValue());
+		assertEquals(2.5, ((Number) engine.executeScript("javafxd3_testRows[1].x")).doubleValue(), 0);
+		assertEquals(1456790400000.0,
+				((Number) engine.executeScript("javafxd3_testRows[2].time.getTime()")).doubleValue(), 0);
+		assertEquals("setosa", engine.executeScript("javafxd3_testRows[2].species"));
+		assertEquals(null, engine.executeScript("javafxd3_testRows[1].species"));
+		assertEquals("x,time,species", engine.executeScript("d3.keys(javafxd3_testRows[0]).join()"));
+		assertEquals(1, ((Number) engine.executeScript("javafxd3_testRows.columns.species.dictionary.length"))
+				.intValue());
+
+		engine.executeScript("javafxd3_testRows[0].x = 10;");
+		assertEquals(10, ((Number) engine.executeScript("javafxd3_testRows[0].x")).doubleValue(), 0);
+		assertEquals(2.5, ((Number) engine.executeScript("javafxd3_testRows[1].x")).doubleValue(), 0);
+	}
+
+	private void testJoin() {
+		DataFrame dataFrame = new DataFrame() //
+				.addColumn("id", new String[] { "a", "b", "c" }) //
+				.addColumn("x", new double[] { 1, 2, 3 });
+
+		Selection svg = clearSvg();
+		svg.selectAll("circle") //
+				.data(dataFrame) //
+				.enter() //
+				.append("circle") //
+				.attrExpression("cx", "function(d){ return d.x * 10; }");
+		assertEquals("10", svg.select("circle").attr("cx"));
+
+		DataFrame update = new DataFrame() //
+				.addColumn("id", new String[] { "c", "d" }) //
+				.addColumn("x", new double[] { 30, 40 });
+		UpdateSelection updateSelection = svg.selectAll("circle").data(update, "id");
+		assertEquals(1, updateSelection.size());
+		assertEquals(1, updateSelection.enter().append("circle").size());
+		assertEquals(2, updateSelection.exit().size());
+	}
+
+	private void testKeyedJoinWithElementsWithoutData() {
+		createCircles(2);
+		Selection svg = getSvg();
+		DataFrame dataFrame = new DataFrame() //
+				.addColumn("id", new String[] { "a", "b", "c" }) //
+				.addColumn("x", new double[] { 1, 2, 3 });
+
+		UpdateSelection updateSelection = svg.selectAll("circle").data(dataFrame, "id");
+		assertEquals(0, updateSelection.size());
+		assertEquals(3, updateSelection.enter().append("circle").size());
+		assertEquals(2, updateSelection.exit().size());
+	}
+
+	private void testColumnsOfDifferentLength() {
+		DataFrame dataFrame = new DataFrame().addColumn("x", new double[] { 1, 2 });
+		try {
+			dataFrame.addColumn("y", new double[] { 1 });
+			fail("Expected an exception");
+		} catch (IllegalStateException exception) {
+			assertTrue(exception.getMessage().contains("has 1 values but the data frame has 2 rows"));
+		}
+	}
+
+}
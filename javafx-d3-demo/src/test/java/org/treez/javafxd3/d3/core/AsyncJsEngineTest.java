@@ -0,0 +1,181 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.treez.javafxd3.nashorn.NashornJsEngine;
+
+/**
+ * Tests the class AsyncJsEngine. Uses a NashornJsEngine with a single
+ * worker thread as engine thread.
+ */
+public class AsyncJsEngineTest extends Assert {
+
+	@Test
+	public void testOrderAndResults() throws Exception {
+		ExecutorService engineThread = Executors.newSingleThreadExecutor();
+		try {
+			AsyncJsEngine asyncEngine = createAsyncEngine(engineThread, 10);
+
+			asyncEngine.executeScript("var values = [];");
+			List<CompletableFuture<Object>> futures = new ArrayList<>();
+			for (int index = 0; index < 50; index++) {
+				futures.add(asyncEngine.executeScript("values.push(" + index + "); values.length"));
+			}
+			for (int index = 0; index < 50; index++) {
+				assertEquals(index + 1, futures.get(index).get(10, TimeUnit.SECONDS));
+			}
+
+			CompletableFuture<Integer> numberOfRects = asyncEngine.submitToD3(d3 -> {
+				d3.select("#svg").append("rect");
+				return d3.selectAll("rect").size();
+			});
+			assertEquals(1, (int) numberOfRects.get(10, TimeUnit.SECONDS));
+		} finally {
+			engineThread.shutdown();
+		}
+	}
+
+	@Test
+	public void testCoalescingAndBackPressure() throws Exception {
+		ExecutorService engineThread = Executors.newSingleThreadExecutor();
+		try {
+			AsyncJsEngine asyncEngine = createAsyncEngine(engineThread, 2);
+
+			CountDownLatch startedLatch = new CountDownLatch(1);
+			CountDownLatch blockingLatch = new CountDownLatch(1);
+			asyncEngine.run(engine -> {
+				startedLatch.countDown();
+				await(blockingLatch);
+			});
+			assertTrue(startedLatch.await(10, TimeUnit.SECONDS));
+
+			CompletableFuture<Object> firstUpdate = asyncEngine.submit("chart", engine -> "first");
+			CompletableFuture<Object> secondUpdate = asyncEngine.submit("chart", engine -> "second");
+			assertEquals(1, asyncEngine.getNumberOfQueuedOperations());
+
+			CountDownLatch submittedLatch = new CountDownLatch(1);
+			Thread producer = new Thread(() -> {
+				asyncEngine.executeScript("1");
+				asyncEngine.executeScript("2");
+				submittedLatch.countDown();
+			});
+			producer.start();
+			assertFalse(submittedLatch.await(200, TimeUnit.MILLISECONDS));
+
+			blockingLatch.countDown();
+			assertTrue(submittedLatch.await(10, TimeUnit.SECONDS));
+			assertEquals("second", firstUpdate.get(10, TimeUnit.SECONDS));
+			assertEquals("second", secondUpdate.get(10, TimeUnit.SECONDS));
+		} finally {
+			engineThread.shutdown();
+		}
+	}
+
+	@Test
+	public void testCoalescingKeepsSubmissionOrder() throws Exception {
+		ExecutorService engineThread = Executors.newSingleThreadExecutor();
+		try {
+			AsyncJsEngine asyncEngine = createAsyncEngine(engineThread, 10);
+			CountDownLatch startedLatch = new CountDownLatch(1);
+			CountDownLatch blockingLatch = new CountDownLatch(1);
+			asyncEngine.run(engine -> {
+				startedLatch.countDown();
+				await(blockingLatch);
+			});
+			assertTrue(startedLatch.await(10, TimeUnit.SECONDS));
+
+			List<String> executedOperations = Collections.synchronizedList(new ArrayList<>());
+			CompletableFuture<Object> a = asyncEngine.submit("chart", engine -> executedOperations.add("A"));
+			CompletableFuture<Object> b = asyncEngine.submit(engine -> executedOperations.add("B"));
+			CompletableFuture<Object> c = asyncEngine.submit("chart", engine -> executedOperations.add("C"));
+			assertEquals(2, asyncEngine.getNumberOfQueuedOperations());
+
+			blockingLatch.countDown();
+			CompletableFuture.allOf(a, b, c).get(10, TimeUnit.SECONDS);
+			assertEquals(Arrays.asList("B", "C"), executedOperations);
+		} finally {
+			engineThread.shutdown();
+		}
+	}
+
+	@Test
+	public void testRejectedDrain() throws Exception {
+		ExecutorService engineThread = Executors.newSingleThreadExecutor();
+		try {
+			AtomicBoolean isRejecting = new AtomicBoolean(true);
+			Semaphore finishedRuns = new Semaphore(0);
+			Executor executor = runnable -> {
+				if (isRejecting.get()) {
+					throw new RejectedExecutionException("Rejected by the test");
+				}
+				engineThread.execute(() -> {
+					try {
+						runnable.run();
+					} finally {
+						finishedRuns.release();
+					}
+				});
+			};
+			NashornJsEngine engine = engineThread.submit(NashornJsEngine::new).get();
+			AsyncJsEngine asyncEngine = new AsyncJsEngine(engine, executor, () -> false, 200);
+
+			try {
+				asyncEngine.executeScript("1");
+				fail("Expected exception");
+			} catch (RejectedExecutionException exception) {
+				assertEquals(0, asyncEngine.getNumberOfQueuedOperations());
+			}
+
+			isRejecting.set(false);
+			assertEquals(2, asyncEngine.executeScript("2").get(10, TimeUnit.SECONDS));
+			assertTrue(finishedRuns.tryAcquire(10, TimeUnit.SECONDS));
+
+			CountDownLatch blockingLatch = new CountDownLatch(1);
+			engineThread.execute(() -> await(blockingLatch));
+			asyncEngine.run(jsEngine -> isRejecting.set(true));
+			for (int index = 0; index < 100; index++) {
+				asyncEngine.executeScript("" + index);
+			}
+			blockingLatch.countDown();
+			assertTrue(finishedRuns.tryAcquire(10, TimeUnit.SECONDS));
+			assertEquals(1, asyncEngine.getNumberOfQueuedOperations());
+
+			isRejecting.set(false);
+			CompletableFuture<Object> result = asyncEngine.executeScript("3");
+			assertEquals(3, result.get(10, TimeUnit.SECONDS));
+			assertEquals(0, asyncEngine.getNumberOfQueuedOperations());
+		} finally {
+			engineThread.shutdown();
+		}
+	}
+
+	private static AsyncJsEngine createAsyncEngine(ExecutorService engineThread, int capacity) throws Exception {
+		NashornJsEngine engine = engineThread.submit(NashornJsEngine::new).get();
+		Thread[] thread = new Thread[1];
+		engineThread.submit(() -> thread[0] = Thread.currentThread()).get();
+		return new AsyncJsEngine(engine, engineThread, () -> Thread.currentThread() == thread[0], capacity);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+}
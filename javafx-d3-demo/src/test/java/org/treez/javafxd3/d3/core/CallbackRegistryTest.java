@@ -0,0 +1,109 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractTestCase;
+import org.treez.javafxd3.d3.functions.data.ConstantDataFunction;
+import org.treez.javafxd3.d3.functions.data.CountDataFunction;
+
+/**
+ * Tests the class CallbackRegistry
+ */
+public class CallbackRegistryTest extends AbstractTestCase {
+
+	@Override
+	public void doTest() {
+		testStableHandles();
+		testCallbacksAreApplied();
+		testPinAndRelease();
+		testTrampolinesInBatch();
+	}
+
+	private void testStableHandles() {
+		Selection svg = clearSvg();
+		svg.append("rect");
+		svg.append("rect");
+		Selection rects = svg.selectAll("rect");
+
+		CallbackRegistry registry = CallbackRegistry.forEngine(engine);
+		ConstantDataFunction<String> function = new ConstantDataFunction<>("5");
+
+		rects.attr("width", function);
+		int handle = registry.getHandle(function);
+		assertTrue(handle >= 0);
+		int numberOfCallbacks = registry.getNumberOfCallbacks();
+
+		rects.attr("width", function);
+		rects.attr("height", function);
+		assertEquals(handle, registry.getHandle(function));
+		assertEquals(numberOfCallbacks, registry.getNumberOfCallbacks());
+	}
+
+	private void testCallbacksAreApplied() {
+		Selection svg = clearSvg();
+		svg.append("rect");
+		svg.append("rect");
+		svg.append("rect");
+		Selection rects = svg.selectAll("rect");
+
+		CountDataFunction counter = new CountDataFunction();
+		rects.each(counter);
+		rects.each(counter);
+		assertEquals(6, counter.getCount());
+
+		rects.style("fill", new ConstantDataFunction<>("red"));
+		assertEquals("red", rects.style("fill"));
+
+		rects.classed("foo", new ConstantDataFunction<>(true));
+		assertTrue(rects.classed("foo"));
+
+		rects.text(new ConstantDataFunction<>("text"));
+		assertEquals("text", rects.text());
+	}
+
+	private void testPinAndRelease() {
+		CallbackRegistry registry = CallbackRegistry.forEngine(engine);
+		int numberOfPinnedCallbacks = registry.getNumberOfPinnedCallbacks();
+
+		ConstantDataFunction<String> function = new ConstantDataFunction<>("pinned");
+		JsObject trampoline = registry.pin(function, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		assertNotNull(trampoline);
+		assertEquals(numberOfPinnedCallbacks + 1, registry.getNumberOfPinnedCallbacks());
+
+		Object result = trampoline.call("call", null, null, 0);
+		assertEquals("pinned", result);
+
+		registry.release(function);
+		assertEquals(numberOfPinnedCallbacks, registry.getNumberOfPinnedCallbacks());
+		assertEquals(-1, registry.getHandle(function));
+	}
+
+	private void testTrampolinesInBatch() {
+		CallbackRegistry registry = CallbackRegistry.forEngine(engine);
+		int numberOfFunctions = CallbackRegistry.MAX_NUMBER_OF_TRANSIENT_CALLBACKS + 10;
+		JsObject[] trampolines = new JsObject[numberOfFunctions];
+
+		engine.beginBatch();
+		try {
+			for (int index = 0; index < numberOfFunctions; index++) {
+				ConstantDataFunction<String> function = new ConstantDataFunction<>("value" + index);
+				trampolines[index] = registry.getTrampoline(function, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+			}
+			assertTrue(registry.getNumberOfCallbacks() >= numberOfFunctions);
+		} finally {
+			engine.endBatch();
+		}
+
+		for (int index = 0; index < numberOfFunctions; index++) {
+			Object result = trampolines[index].call("call", null, null, index);
+			assertEquals("value" + index, result);
+		}
+
+		int numberOfSlots = registry.getNumberOfSlots();
+		for (int index = 0; index < numberOfFunctions; index++) {
+			registry.getTrampoline(new ConstantDataFunction<>(index), CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		}
+		assertEquals(CallbackRegistry.MAX_NUMBER_OF_TRANSIENT_CALLBACKS,
+				registry.getNumberOfCallbacks() - registry.getNumberOfPinnedCallbacks());
+		assertEquals(numberOfSlots, registry.getNumberOfSlots());
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractTestCase;
+
+/**
+ * Tests the class ConversionUtil
+ */
+public class ConversionUtilTest extends AbstractTestCase {
+
+	@Override
+	public void doTest() {
+		testNumbers();
+		testDatumWrapper();
+		testJavaScriptObject();
+	}
+
+	private void testNumbers() {
+		assertEquals(5.0, ConversionUtil.convertObjectTo(5, Double.class, engine), 1e-6);
+		assertEquals(3, (int) ConversionUtil.convertObjectTo(3.7, Integer.class, engine));
+		assertEquals(2.5F, ConversionUtil.convertObjectTo(2.5, Float.class, engine), 1e-6);
+		assertEquals(4, (short) ConversionUtil.convertObjectTo(4.0, Short.class, engine));
+		assertNull(ConversionUtil.convertObjectTo(Double.NaN, Integer.class, engine));
+		assertEquals(1, (int) ConversionUtil.convertObjectTo(true, Integer.class, engine));
+		assertEquals("12", ConversionUtil.convertObjectTo(12, String.class, engine));
+	}
+
+	private void testDatumWrapper() {
+		Object wrapper = engine.executeScript("({datum: 7})");
+		assertEquals(7, (int) ConversionUtil.convertObjectTo(wrapper, Integer.class, engine));
+
+		Object otherObject = engine.executeScript("({datum: 7, other: 8})");
+		JsObject result = ConversionUtil.convertObjectTo(otherObject, JsObject.class, engine);
+		assertEquals(8, result.getMember("other"));
+	}
+
+	private void testJavaScriptObject() {
+		Object jsObject = engine.executeScript("[1, 2, 3]");
+		Value value = ConversionUtil.convertObjectTo(jsObject, Value.class, engine);
+		assertNotNull(value);
+
+		Selection selection = ConversionUtil.convertObjectTo(engine.executeScript("d3.select('svg')"),
+				Selection.class, engine);
+		assertEquals(1, selection.size());
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.functions.DataFunction;
+
+/**
+ * Tests the coalescing of events with the class EventCoalescing. The
+ * animation frames of the NashornJsEngine are emulated with timers.
+ */
+public class EventCoalescingTest extends AbstractNashornTestCase {
+
+	private static final String DISPATCH_COMMAND = "d3.selectAll('circle').each(function(){" //
+			+ "  this.dispatchEvent(new Event('mousemove'));" //
+			+ "})";
+
+	@Override
+	public void doTest() {
+		testPerAnimationFrame();
+		testThrottle();
+		testRemovedBeforeDelivery();
+		testReplacedBeforeDelivery();
+		testReleaseAllBeforeDelivery();
+		testNegativeInterval();
+	}
+
+	private void testPerAnimationFrame() {
+		RecordingListener listener = new RecordingListener(engine);
+		createCircles(3).on("mousemove", listener, EventCoalescing.perAnimationFrame());
+
+		engine.executeScript(DISPATCH_COMMAND);
+		engine.executeScript(DISPATCH_COMMAND);
+		assertEquals(0, listener.numberOfCalls);
+
+		runTimersAfter(50);
+		assertEquals(1, listener.numberOfCalls);
+		assertEquals(2, listener.index);
+		assertEquals("mousemove", listener.eventType);
+		assertNull(engine.executeScript("d3.event"));
+
+		runTimersAfter(50);
+		assertEquals(1, listener.numberOfCalls);
+	}
+
+	private void testThrottle() {
+		RecordingListener listener = new RecordingListener(engine);
+		createCircles(3).on("mousemove", listener, EventCoalescing.throttle(40));
+
+		engine.executeScript(DISPATCH_COMMAND);
+		assertEquals(1, listener.numberOfCalls);
+		assertEquals(0, listener.index);
+
+		engine.runTimers();
+		assertEquals(1, listener.numberOfCalls);
+
+		runTimersAfter(80);
+		assertEquals(2, listener.numberOfCalls);
+		assertEquals(2, listener.index);
+	}
+
+	private void testRemovedBeforeDelivery() {
+		RecordingListener listener = new RecordingListener(engine);
+		Selection circles = createCircles(3).on("mousemove", listener, EventCoalescing.perAnimationFrame());
+		engine.executeScript(DISPATCH_COMMAND);
+		circles.remove();
+
+		RecordingListener otherListener = new RecordingListener(engine);
+		createCircles(1).on("click", otherListener);
+		runTimersAfter(50);
+		assertEquals(0, listener.numberOfCalls);
+		assertEquals(0, otherListener.numberOfCalls);
+	}
+
+	private void testReplacedBeforeDelivery() {
+		RecordingListener listener = new RecordingListener(engine);
+		Selection circles = createCircles(3).on("mousemove", listener, EventCoalescing.throttle(40));
+		engine.executeScript(DISPATCH_COMMAND);
+		engine.executeScript(DISPATCH_COMMAND);
+		assertEquals(1, listener.numberOfCalls);
+
+		circles.on("mousemove", (DataFunction<Void>) null);
+		runTimersAfter(80);
+		assertEquals(1, listener.numberOfCalls);
+	}
+
+	private void testReleaseAllBeforeDelivery() {
+		RecordingListener listener = new RecordingListener(engine);
+		createCircles(3).on("mousemove", listener, EventCoalescing.perAnimationFrame());
+		engine.executeScript(DISPATCH_COMMAND);
+		CallbackRegistry.forEngine(engine).releaseAll();
+
+		runTimersAfter(50);
+		assertEquals(0, listener.numberOfCalls);
+	}
+
+	private void testNegativeInterval() {
+		try {
+			EventCoalescing.throttle(-1);
+			fail("Expected an exception");
+		} catch (IllegalArgumentException exception) {
+			assertEquals("The throttle interval must not be negative but is -1.", exception.getMessage());
+		}
+	}
+
+	/**
+	 * Records the delivered events
+	 */
+	private static class RecordingListener implements DataFunction<Void> {
+
+		private final JsEngine engine;
+
+		private int numberOfCalls = 0;
+
+		private int index = -1;
+
+		private String eventType;
+
+		RecordingListener(JsEngine engine) {
+			this.engine = engine;
+		}
+
+		@Override
+		public Void apply(Object context, Object datum, int index) {
+			numberOfCalls++;
+			this.index = index;
+			eventType = (String) engine.executeScript("d3.event.type");
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.FrameScheduler.TimerHandle;
+import org.treez.javafxd3.d3.functions.TimerFunction;
+
+/**
+ * Tests the class FrameScheduler
+ */
+public class FrameSchedulerTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testSchedule();
+		testFailingTimer();
+	}
+
+	private void testSchedule() {
+		FrameScheduler scheduler = FrameScheduler.forEngine(engine);
+
+		CountingTimerFunction finishing = new CountingTimerFunction(2);
+		CountingTimerFunction cancelled = new CountingTimerFunction(100);
+		CountingTimerFunction endless = new CountingTimerFunction(100);
+		TimerHandle finishingHandle = d3.scheduleTimer(finishing);
+		TimerHandle cancelledHandle = d3.scheduleTimer(cancelled);
+		d3.timer(endless);
+		assertEquals(3, scheduler.getNumberOfTimers());
+		assertTrue(scheduler.isRunning());
+
+		runFrame();
+		cancelledHandle.cancel();
+		runFrame();
+		runFrame();
+
+		assertEquals(2, finishing.numberOfCalls);
+		assertTrue(finishingHandle.isFinished());
+		assertEquals(1, cancelled.numberOfCalls);
+		assertFalse(cancelledHandle.isActive());
+		assertEquals(3, endless.numberOfCalls);
+		assertEquals(1, scheduler.getNumberOfTimers());
+
+		scheduler.cancelAll();
+		runFrame();
+		assertEquals(3, endless.numberOfCalls);
+		assertFalse(scheduler.isRunning());
+		assertEquals(0, CallbackRegistry.forEngine(engine).getNumberOfPinnedCallbacks());
+		assertTrue(scheduler.getNumberOfFrames() >= 3);
+		assertTrue(scheduler.getStatistics().startsWith("0 timers"));
+
+		d3.timer(endless);
+		runFrame();
+		assertEquals(4, endless.numberOfCalls);
+		scheduler.cancelAll();
+		runFrame();
+	}
+
+	private void testFailingTimer() {
+		List<RuntimeException> errors = new ArrayList<>();
+		FrameScheduler scheduler = FrameScheduler.forEngine(engine).setErrorHandler(errors::add);
+
+		TimerHandle failingHandle = d3.scheduleTimer(() -> {
+			throw new IllegalStateException("failed");
+		});
+		CountingTimerFunction counting = new CountingTimerFunction(3);
+		TimerHandle countingHandle = d3.scheduleTimer(counting);
+
+		runFrame();
+		assertEquals(1, errors.size());
+		assertEquals("failed", errors.get(0).getMessage());
+		assertTrue(failingHandle.isFinished());
+		assertEquals(1, counting.numberOfCalls);
+		assertEquals(1, scheduler.getNumberOfTimers());
+
+		runFrame();
+		runFrame();
+		assertEquals(1, errors.size());
+		assertEquals(3, counting.numberOfCalls);
+		assertTrue(countingHandle.isFinished());
+		assertFalse(scheduler.isRunning());
+	}
+
+	/**
+	 * Counts its calls and finishes after a given number of calls
+	 */
+	private static class CountingTimerFunction implements TimerFunction {
+
+		private final int numberOfCallsUntilFinished;
+
+		private int numberOfCalls = 0;
+
+		CountingTimerFunction(int numberOfCallsUntilFinished) {
+			this.numberOfCallsUntilFinished = numberOfCallsUntilFinished;
+		}
+
+		@Override
+		public boolean execute() {
+			numberOfCalls++;
+			return numberOfCalls >= numberOfCallsUntilFinished;
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.treez.javafxd3.d3.AbstractTestCase;
+import org.treez.javafxd3.d3.arrays.Array;
+
+/**
+ * Tests the batch mode of the JsEngine
+ */
+public class JsEngineBatchTest extends AbstractTestCase {
+
+	@Override
+	public void doTest() {
+		testSettersAreRecorded();
+		testNestedBatches();
+		testReadFlushesBatch();
+		testArrayFromList();
+		testEndWithoutBegin();
+	}
+
+	private void testSettersAreRecorded() {
+		Selection svg = clearSvg();
+		Selection rect = svg.append("rect");
+
+		engine.beginBatch();
+		assertTrue(engine.isBatching());
+		Selection result = rect.attr("width", 10) //
+				.attr("id", "batched\"id'") //
+				.style("fill", "red") //
+				.classed("foo", true);
+		assertNotNull(result);
+
+		engine.endBatch();
+		assertFalse(engine.isBatching());
+
+		assertEquals("10", rect.attr("width"));
+		assertEquals("batched\"id'", rect.attr("id"));
+		assertEquals("red", rect.style("fill"));
+		assertTrue(rect.classed("foo"));
+	}
+
+	private void testNestedBatches() {
+		Selection svg = clearSvg();
+		Selection rect = svg.append("rect");
+
+		engine.beginBatch();
+		engine.beginBatch();
+		rect.attr("height", 20);
+		engine.endBatch();
+		assertTrue(engine.isBatching());
+		engine.endBatch();
+
+		assertEquals("20", rect.attr("height"));
+	}
+
+	private void testReadFlushesBatch() {
+		Selection svg = clearSvg();
+		Selection rect = svg.append("rect");
+
+		engine.beginBatch();
+		rect.attr("x", 5);
+		assertEquals("5", rect.attr("x"));
+		engine.endBatch();
+	}
+
+	private void testArrayFromList() {
+		List<Object> values = new ArrayList<>();
+		values.add(1.5);
+		values.add("text");
+		values.add(3);
+		Array<Object> array = Array.fromList(engine, values);
+		assertEquals(3, array.length());
+		assertEquals(1.5, array.get(0, Double.class), TOLERANCE);
+		assertEquals("text", array.get(1, String.class));
+	}
+
+	private void testEndWithoutBegin() {
+		try {
+			engine.endBatch();
+			fail("Ending a batch that has not been started must fail");
+		} catch (IllegalStateException exception) {
+			// expected
+		}
+	}
+
+}
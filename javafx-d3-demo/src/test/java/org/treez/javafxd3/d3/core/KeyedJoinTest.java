@@ -0,0 +1,108 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.arrays.Array;
+
+/**
+ * Tests the class KeyedJoin
+ */
+public class KeyedJoinTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testIncrementalJoin();
+		testLongKeys();
+		testJavaValues();
+	}
+
+	private void testIncrementalJoin() {
+		Selection svg = clearSvg();
+		KeyedJoin join = new KeyedJoin(engine);
+
+		UpdateSelection update = join.data(svg.selectAll("circle"), values(1, 2, 3, 4, 5),
+				new String[] { "a", "b", "c", "d", "e" });
+		assertEquals(5, join.getNumberOfEntered());
+		update.enter().append("circle").attr("id", new String[] { "a", "b", "c", "d", "e" });
+
+		update = join.data(svg.selectAll("circle"), values(1, 3, 40, 5, 6), new String[] { "a", "c", "d", "e", "f" });
+		assertTrue(join.isIncremental());
+		assertEquals(1, join.getNumberOfEntered());
+		assertEquals(1, join.getNumberOfExited());
+		assertEquals(4, update.size());
+		assertEquals("b", update.exit().attr("id"));
+		update.exit().remove();
+		update.enter().append("circle").attr("id", new String[] { "f" });
+		assertEquals(5, d3.selectAll("circle").size());
+		assertEquals("40", engine.executeScript("d3.select('#d').datum().toString()"));
+
+		update = join.data(svg.selectAll("circle"), values(6, 1), new String[] { "f", "a" });
+		assertFalse(join.isIncremental());
+		assertEquals(0, join.getNumberOfEntered());
+		assertEquals(2, update.size());
+		assertEquals(3, update.exit().size());
+		assertEquals("6", engine.executeScript("d3.select('#f').datum().toString()"));
+	}
+
+	private void testLongKeys() {
+		Selection svg = clearSvg();
+		KeyedJoin join = new KeyedJoin(engine);
+
+		join.data(svg.selectAll("rect"), values(1, 2), new long[] { 10L, 20L }) //
+				.enter() //
+				.append("rect");
+		UpdateSelection update = join.data(svg.selectAll("rect"), values(1, 2, 3), new long[] { 10L, 20L, 30L });
+		assertTrue(join.isIncremental());
+		assertEquals(2, update.size());
+		assertEquals(1, join.getNumberOfEntered());
+		assertEquals(0, join.getNumberOfExited());
+		update.enter().append("rect");
+
+		update = join.data(svg.selectAll("rect"), values(3, 1), new long[] { 30L, 10L });
+		assertFalse(join.isIncremental());
+		assertEquals(2, update.size());
+		assertEquals(1, update.exit().size());
+	}
+
+	private void testJavaValues() {
+		Selection svg = clearSvg();
+		KeyedJoin join = new KeyedJoin(engine);
+
+		join.data(svg.selectAll("circle"), new Object[] { 1.0, 2.0, 3.0 }, new String[] { "a", "b", "c" }) //
+				.enter() //
+				.append("circle") //
+				.attr("id", new String[] { "a", "b", "c" });
+		assertEquals(3, join.getNumberOfUpdatedValues());
+
+		UpdateSelection update = join.data(svg.selectAll("circle"), new Object[] { 1.0, 20.0, 3.0, 4.0 },
+				new String[] { "a", "b", "c", "d" });
+		assertTrue(join.isIncremental());
+		assertEquals(2, join.getNumberOfUpdatedValues());
+		assertEquals(3, update.size());
+		assertEquals("20", engine.executeScript("d3.select('#b').datum().toString()"));
+		assertEquals("1", engine.executeScript("d3.select('#a').datum().toString()"));
+		update.enter().append("circle").attr("id", new String[] { "d" });
+
+		update = join.data(svg.selectAll("circle"), new Object[] { "x", "y", "z" }, new String[] { "c", "a", "d" });
+		assertFalse(join.isIncremental());
+		assertEquals(3, join.getNumberOfUpdatedValues());
+		assertEquals(1, update.exit().size());
+		assertEquals("y", engine.executeScript("d3.select('#a').datum()"));
+
+		update = join.data(svg.selectAll("circle"), new Object[] { "x", "y", "z" }, new String[] { "c", "a", "d" });
+		assertEquals(0, join.getNumberOfUpdatedValues());
+		assertEquals(3, update.size());
+		assertEquals("z", engine.executeScript("d3.select('#d').datum()"));
+
+		try {
+			join.data(svg.selectAll("circle"), new Object[] { 1.0 }, new String[] { "c", "a" });
+			fail("Expected an exception");
+		} catch (IllegalStateException exception) {
+			assertEquals("Expected 2 values but got 1.", exception.getMessage());
+		}
+	}
+
+	private Array<Double> values(double... values) {
+		return Array.fromDoubles(engine, values);
+	}
+
+}
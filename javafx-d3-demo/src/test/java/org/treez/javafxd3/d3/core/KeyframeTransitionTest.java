@@ -0,0 +1,180 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.KeyframeTransition.FrameBudgetReport;
+import org.treez.javafxd3.d3.ease.Easing;
+import org.treez.javafxd3.d3.ease.EasingTable;
+
+/**
+ * Tests the classes KeyframeTransition and EasingTable. The frames are driven
+ * by a manual clock.
+ */
+public class KeyframeTransitionTest extends AbstractNashornTestCase {
+
+	/**
+	 * The interval of the d3 timer frames
+	 */
+	private static final long FRAME = 17;
+
+	@Override
+	public void doTest() {
+		useManualClock();
+		testTransition();
+		testMissingStartValues();
+		testSupersededTransition();
+		testCancel();
+		testEasingTable();
+	}
+
+	private void testTransition() {
+		createCircles(3).attr("cx", new double[] { 0, 10, 20 }).attr("r", 1);
+		Selection circles = d3.selectAll("circle");
+
+		KeyframeTransition transition = new KeyframeTransition(circles) //
+				.duration(10 * FRAME) //
+				.ease(EasingTable.linear()) //
+				.attr("cx", new double[] { 100, 110, 120 }) //
+				.style("opacity", new double[] { 0, 0, 0 }, new double[] { 1, 1, 1 }) //
+				.attrColor("fill", new int[] { 0x000000, 0x000000, 0x000000 }, new int[] { 0xFF0000, 0x00FF00, 0x0000FF }) //
+				.start();
+		assertFalse(transition.isFinished());
+
+		advanceClock(FRAME);
+		assertArrayEquals(new double[] { 0, 10, 20 }, circles.attrValuesAsDouble("cx"), 0);
+
+		advanceFrames(5);
+		assertArrayEquals(new double[] { 50, 60, 70 }, circles.attrValuesAsDouble("cx"), TOLERANCE);
+		assertEquals("0.5", circles.style("opacity"));
+		assertFalse(transition.isFinished());
+
+		advanceFrames(5);
+		assertTrue(transition.isFinished());
+		assertFalse(transition.isCancelled());
+		assertArrayEquals(new double[] { 100, 110, 120 }, circles.attrValuesAsDouble("cx"), 0);
+		assertEquals(1, circles.attrValuesAsDouble("r")[2], 0);
+		assertEquals("1", circles.style("opacity"));
+		assertEquals("rgb(255,0,0)", circles.attr("fill"));
+		assertKeyframesAreReleased();
+
+		FrameBudgetReport report = transition.getReport();
+		assertEquals(3, report.getNumberOfElements());
+		assertEquals(11, report.getNumberOfFrames());
+		assertEquals(FRAME, report.getAverageFrameInterval(), TOLERANCE);
+		assertEquals(1000.0 / FRAME, report.getFramesPerSecond(), TOLERANCE);
+		assertEquals(0, report.getNumberOfDroppedFrames());
+		assertTrue(report.isWithinBudget());
+		assertTrue(report.toString().startsWith("3 elements, 11 frames"));
+
+		try {
+			new KeyframeTransition(circles).attr("cx", new double[] { 1 }).start();
+			fail("Expected exception");
+		} catch (IllegalStateException exception) {
+			assertEquals("Expected 3 values but got 1.", exception.getMessage());
+		}
+	}
+
+	private void testMissingStartValues() {
+		createCircles(2);
+		d3.select("circle").attr("cx", 5);
+		Selection circles = d3.selectAll("circle");
+
+		KeyframeTransition transition = new KeyframeTransition(circles) //
+				.duration(10 * FRAME) //
+				.ease(EasingTable.linear()) //
+				.attr("cx", new double[] { 105, 60 }) //
+				.start();
+
+		advanceClock(FRAME);
+		assertArrayEquals(new double[] { 5, 60 }, circles.attrValuesAsDouble("cx"), 0);
+
+		advanceFrames(5);
+		assertArrayEquals(new double[] { 55, 60 }, circles.attrValuesAsDouble("cx"), TOLERANCE);
+
+		advanceFrames(5);
+		assertTrue(transition.isFinished());
+	}
+
+	private void testSupersededTransition() {
+		createCircles(2).attr("cx", new double[] { 0, 0 });
+		Selection circles = d3.selectAll("circle");
+
+		KeyframeTransition older = new KeyframeTransition(circles) //
+				.duration(10 * FRAME) //
+				.attr("cx", new double[] { 100, 100 }) //
+				.start();
+		advanceClock(FRAME);
+
+		KeyframeTransition newer = new KeyframeTransition(d3.select("circle")) //
+				.duration(0) //
+				.attr("cx", new double[] { 50 }) //
+				.start();
+		advanceClock(FRAME);
+		assertTrue(newer.isFinished());
+		assertFalse(older.isCancelled());
+
+		advanceFrames(10);
+		assertTrue(older.isCancelled());
+		assertFalse(older.isFinished());
+		assertFalse(older.getReport().isFinished());
+		assertArrayEquals(new double[] { 50, 100 }, circles.attrValuesAsDouble("cx"), 0);
+		assertKeyframesAreReleased();
+	}
+
+	private void testCancel() {
+		createCircles(1).attr("cx", new double[] { 0 });
+		Selection circles = d3.selectAll("circle");
+
+		KeyframeTransition transition = new KeyframeTransition(circles) //
+				.duration(10 * FRAME) //
+				.ease(EasingTable.linear()) //
+				.attr("cx", new double[] { 100 }) //
+				.start();
+		advanceFrames(2);
+		assertEquals(10, circles.attrValuesAsDouble("cx")[0], TOLERANCE);
+
+		transition.cancel();
+		assertTrue(transition.isCancelled());
+		assertFalse(transition.isFinished());
+		assertKeyframesAreReleased();
+
+		advanceFrames(2);
+		assertEquals(10, circles.attrValuesAsDouble("cx")[0], TOLERANCE);
+
+		KeyframeTransition finishedTransition = new KeyframeTransition(circles) //
+				.duration(0) //
+				.attr("cx", new double[] { 20 }) //
+				.start();
+		advanceClock(FRAME);
+		finishedTransition.cancel();
+		assertTrue(finishedTransition.isFinished());
+		assertFalse(finishedTransition.isCancelled());
+	}
+
+	private void testEasingTable() {
+		EasingTable linear = EasingTable.linear();
+		assertEquals(0.25, linear.ease(0.25), 1e-12);
+		assertEquals(1, linear.ease(2), 0);
+
+		EasingTable cubicInOut = EasingTable.cubicInOut();
+		assertEquals(EasingTable.DEFAULT_NUMBER_OF_INTERVALS, cubicInOut.getNumberOfIntervals());
+		assertEquals(0.5, cubicInOut.ease(0.5), 1e-12);
+		assertEquals(0, cubicInOut.ease(0), 0);
+
+		EasingTable sampled = EasingTable.sample(Easing.linear(engine), 4);
+		assertArrayEquals(new double[] { 0, 0.25, 0.5, 0.75, 1 }, sampled.getSamples(), 1e-12);
+	}
+
+	private void advanceFrames(int numberOfFrames) {
+		for (int frame = 0; frame < numberOfFrames; frame++) {
+			advanceClock(FRAME);
+		}
+	}
+
+	private void assertKeyframesAreReleased() {
+		Object isReleased = engine.executeScript("d3.selectAll('circle')[0].every(function(node){" //
+				+ "  return !('__javafxd3_keyframes__' in node);" //
+				+ "})");
+		assertEquals(true, isReleased);
+	}
+
+}
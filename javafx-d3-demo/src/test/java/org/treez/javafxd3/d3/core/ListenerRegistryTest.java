@@ -0,0 +1,61 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractTestCase;
+import org.treez.javafxd3.d3.functions.data.CountDataFunction;
+
+/**
+ * Tests the class ListenerRegistry
+ */
+public class ListenerRegistryTest extends AbstractTestCase {
+
+	@Override
+	public void doTest() {
+		testReplaceListener();
+		testRemoveElements();
+	}
+
+	private void testReplaceListener() {
+		ListenerRegistry registry = ListenerRegistry.forEngine(engine);
+		registry.releaseAll();
+
+		Selection rects = createRects();
+		CountDataFunction listener = new CountDataFunction();
+		rects.on("click", listener);
+		assertEquals(1, registry.getNumberOfListeners());
+		assertEquals(3, registry.getNumberOfBindings());
+
+		CountDataFunction otherListener = new CountDataFunction();
+		rects.on("click", otherListener);
+		assertEquals(1, registry.getNumberOfListeners());
+		assertEquals(-1, CallbackRegistry.forEngine(engine).getHandle(listener));
+
+		rects.on("click", null);
+		assertEquals(0, registry.getNumberOfListeners());
+		assertEquals(-1, CallbackRegistry.forEngine(engine).getHandle(otherListener));
+	}
+
+	private void testRemoveElements() {
+		ListenerRegistry registry = ListenerRegistry.forEngine(engine);
+		registry.releaseAll();
+
+		Selection rects = createRects();
+		CountDataFunction listener = new CountDataFunction();
+		rects.on("click", listener);
+		rects.on("mouseover", listener);
+		assertEquals(1, registry.getNumberOfListeners());
+		assertEquals(6, registry.getNumberOfBindings());
+
+		rects.remove();
+		assertEquals(0, registry.getNumberOfListeners());
+		assertEquals(-1, CallbackRegistry.forEngine(engine).getHandle(listener));
+	}
+
+	private Selection createRects() {
+		Selection svg = clearSvg();
+		svg.append("rect");
+		svg.append("rect");
+		svg.append("rect");
+		return svg.selectAll("rect");
+	}
+
+}
@@ -0,0 +1,82 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.scales.LinearScale;
+import org.treez.javafxd3.d3.svg.Axis;
+import org.treez.javafxd3.d3.svg.Axis.Orientation;
+
+/**
+ * Tests the class ScriptTemplateCache and the wrappers that use templates
+ */
+public class ScriptTemplateCacheTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testHitRate();
+		testSelectionAndAxisTemplates();
+		testLargeDataArrays();
+	}
+
+	private void testHitRate() {
+		ScriptTemplateCache cache = ScriptTemplateCache.forEngine(engine);
+		cache.resetStatistics();
+
+		LinearScale scale = d3.scale() //
+				.linear() //
+				.domain(0, 10) //
+				.range(0, 100);
+		for (int index = 0; index <= 10; index++) {
+			assertEquals(10 * index, scale.apply(index).asDouble(), 1e-6);
+		}
+		assertEquals(5, scale.invert(50).asDouble(), 1e-6);
+
+		assertEquals(4, cache.getNumberOfMisses());
+		assertEquals(10, cache.getNumberOfHits());
+		assertEquals(10.0 / 14, cache.getHitRate(), 1e-6);
+		assertTrue(cache.getStatistics().startsWith(cache.getNumberOfTemplates() + " templates, 10 hits, 4 misses"));
+	}
+
+	private void testSelectionAndAxisTemplates() {
+		Selection svg = clearSvg();
+		svg.selectAll("rect") //
+				.data(new Object[] { "a", "b", "c" }) //
+				.enter() //
+				.append("rect") //
+				.attr("id", "it's");
+		assertEquals("it's", svg.select("rect").attr("id"));
+		assertEquals("a", svg.selectAll("rect").datum().asString());
+		assertNotNull(svg.selectAll("rect").get(0));
+
+		svg.datum("data");
+		assertEquals("data", svg.datum().asString());
+
+		Axis axis = d3.svg() //
+				.axis() //
+				.orient(Orientation.LEFT) //
+				.tickValues(1, 2, 3);
+		assertEquals(Orientation.LEFT, axis.orient());
+		assertEquals(3, axis.tickValues().length());
+	}
+
+	private void testLargeDataArrays() {
+		Selection svg = clearSvg();
+
+		int numberOfValues = 3000;
+		Object[] numbers = new Object[numberOfValues];
+		Object[] mixedValues = new Object[numberOfValues];
+		for (int index = 0; index < numberOfValues; index++) {
+			numbers[index] = index * 0.5;
+			mixedValues[index] = index % 2 == 0 ? "text" + index : index;
+		}
+
+		svg.selectAll("rect").data(numbers).enter().append("rect");
+		assertEquals(numberOfValues, svg.selectAll("rect").size());
+		assertEquals(1499.5, engine.executeScript("d3.selectAll('#svg rect')[0][2999].__data__"));
+
+		svg.selectAll("rect").data(mixedValues);
+		assertEquals("text2998", engine.executeScript("d3.selectAll('#svg rect')[0][2998].__data__"));
+		Object lastValue = engine.executeScript("d3.selectAll('#svg rect')[0][2999].__data__");
+		assertEquals(2999, ((Number) lastValue).intValue());
+	}
+
+}
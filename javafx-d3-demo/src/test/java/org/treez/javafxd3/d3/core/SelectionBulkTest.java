@@ -0,0 +1,54 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+
+/**
+ * Tests the bulk setters of the class Selection that apply values that have
+ * been computed in Java
+ */
+public class SelectionBulkTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testBulkSetters();
+		testWrongNumberOfValues();
+		testFloatData();
+	}
+
+	private void testBulkSetters() {
+		Selection circles = createCircles(3);
+		circles.attr("cx", new double[] { 1.5, 2, -3 }) //
+				.attr("id", new String[] { "a", "b;c", "1,2" }) //
+				.style("fill", new String[] { "red", "green", "blue" }) //
+				.classed("hidden", new boolean[] { true, false, true });
+
+		assertEquals("1.5", circles.attr("cx"));
+		assertEquals("-3", engine.executeScript("d3.selectAll('circle')[0][2].getAttribute('cx')"));
+		assertEquals("b;c", engine.executeScript("d3.selectAll('circle')[0][1].getAttribute('id')"));
+		assertEquals("1,2", engine.executeScript("d3.selectAll('circle')[0][2].getAttribute('id')"));
+		assertEquals("blue", engine.executeScript("d3.selectAll('circle')[0][2].style.getPropertyValue('fill')"));
+		assertEquals(2, d3.selectAll(".hidden").size());
+		assertEquals("", engine.executeScript("d3.selectAll('circle')[0][1].getAttribute('class')"));
+	}
+
+	private void testWrongNumberOfValues() {
+		Selection circles = createCircles(2);
+		try {
+			circles.attr("cx", new double[] { 1, 2, 3 });
+			fail("Expected an exception");
+		} catch (RuntimeException exception) {
+			assertTrue(exception.getMessage().contains("Expected 2 values but got 3"));
+		}
+	}
+
+	private void testFloatData() {
+		clearSvg() //
+				.selectAll("circle") //
+				.data(new float[] { 0.1f, 2.5f }) //
+				.enter() //
+				.append("circle");
+		assertEquals("0.1", engine.executeScript("String(d3.select('circle').datum())"));
+		assertEquals(true, engine.executeScript("d3.selectAll('circle').data()[0] === 0.1"));
+	}
+
+}
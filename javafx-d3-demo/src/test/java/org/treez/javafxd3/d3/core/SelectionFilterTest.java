@@ -0,0 +1,54 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.BitSet;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.arrays.Bitmaps;
+
+/**
+ * Tests the bitmap filters of the classes Selection and Transition
+ */
+public class SelectionFilterTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testBitmapFilter();
+		testBitmapClassed();
+	}
+
+	private void testBitmapFilter() {
+		double[] values = { 3, 12, 7, 20, 1, 15, 9, 11, 30 };
+		Selection circles = createCircles(values.length);
+		circles.attr("cx", values);
+
+		BitSet bitmap = Bitmaps.where(values, (value) -> value > 10);
+		Selection filtered = circles.filter(bitmap);
+		assertEquals(5, filtered.size());
+		assertEquals("12", filtered.attr("cx"));
+
+		Selection flagged = circles.filter(new boolean[] { false, false, true, false, false, false, false, false, false });
+		assertEquals(1, flagged.size());
+		assertEquals("7", flagged.attr("cx"));
+
+		Transition transition = circles.transition().filter(bitmap);
+		assertEquals(5, transition.size());
+	}
+
+	private void testBitmapClassed() {
+		Selection circles = createCircles(10);
+		BitSet bitmap = Bitmaps.where(new String[] { "a", null, "b", "a", "c", "a", "b", "a", "a", "b" },
+				(value) -> "a".equals(value));
+		circles.classed("hidden", bitmap);
+		assertEquals(5, d3.selectAll(".hidden").size());
+		assertEquals("hidden", engine.executeScript("d3.selectAll('circle')[0][8].getAttribute('class')"));
+		assertEquals("", engine.executeScript("d3.selectAll('circle')[0][9].getAttribute('class')"));
+
+		try {
+			circles.filter(new boolean[] { true, false });
+			fail("Expected an exception");
+		} catch (RuntimeException exception) {
+			assertTrue(exception.getMessage().contains("Expected 10 values but got 2"));
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+
+/**
+ * Tests the class SelectionProgram
+ */
+public class SelectionProgramTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testRun();
+		testWrongNumberOfValues();
+	}
+
+	private void testRun() {
+		Selection svg = clearSvg();
+
+		Selection circles = render(svg, new double[] { 1, 2, 3 });
+		assertEquals(3, circles.size());
+		assertArrayEquals(new double[] { 10, 20, 30 }, circles.attrValuesAsDouble("cx"), 0);
+		assertArrayEquals(new String[] { "a0", "a1", "a2" }, circles.attrValues("id"));
+		assertArrayEquals(new String[] { "mark", "mark", "mark" }, circles.attrValues("class"));
+
+		ScriptTemplateCache cache = ScriptTemplateCache.forEngine(engine);
+		int numberOfTemplates = cache.getNumberOfTemplates();
+
+		Selection updated = render(svg, new double[] { 4, 5 });
+		assertEquals(2, updated.size());
+		assertEquals(2, d3.selectAll("circle").size());
+		assertArrayEquals(new double[] { 40, 50 }, updated.attrValuesAsDouble("cx"), 0);
+		assertEquals(numberOfTemplates, cache.getNumberOfTemplates());
+	}
+
+	private void testWrongNumberOfValues() {
+		Selection svg = clearSvg();
+		SelectionProgram program = new SelectionProgram() //
+				.selectAll("rect") //
+				.data(new String[] { "a", "b" }) //
+				.enter() //
+				.append("rect") //
+				.text(new String[] { "only one" });
+		try {
+			program.run(svg);
+			fail("Expected an exception");
+		} catch (RuntimeException exception) {
+			assertTrue(exception.getMessage().contains("Expected 2 values but got 1"));
+		}
+	}
+
+	private static Selection render(Selection svg, double[] values) {
+		double[] cx = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			cx[index] = 10 * values[index];
+		}
+		return new SelectionProgram() //
+				.selectAll("circle") //
+				.data(values) //
+				.exit() //
+				.remove() //
+				.update() //
+				.enter() //
+				.append("circle") //
+				.attr("class", "mark") //
+				.update() //
+				.attr("cx", cx) //
+				.attrExpression("id", "function(d, i){ return 'a' + i; }") //
+				.run(svg);
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.List;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.arrays.DataFrame;
+
+/**
+ * Tests the bulk readers of the class Selection
+ */
+public class SelectionReadBackTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testAttributesAndBoundingBoxes();
+		testDataColumns();
+		testLongColumns();
+	}
+
+	private void testAttributesAndBoundingBoxes() {
+		Selection circles = createCircles(3);
+		circles.attr("cx", new double[] { 1.5, 10, -3 }) //
+				.attr("cy", new double[] { 2, 4, 6 }) //
+				.attr("r", new double[] { 1, 2, 3 }) //
+				.attr("id", new String[] { "a", "b;c", null });
+
+		assertArrayEquals(new double[] { 1.5, 10, -3 }, circles.attrValuesAsDouble("cx"), 0);
+		assertArrayEquals(new String[] { "a", "b;c", null }, circles.attrValues("id"));
+		assertTrue(Double.isNaN(circles.attrValuesAsDouble("id")[0]));
+		assertArrayEquals(new String[] { "circle", "circle", "circle" }, circles.propertyValues("localName"));
+
+		double[] boxes = circles.bboxes();
+		assertArrayEquals(new double[] { 0.5, 1, 2, 2, 8, 2, 4, 4, -6, 3, 6, 6 }, boxes, 0);
+	}
+
+	private void testDataColumns() {
+		DataFrame dataFrame = new DataFrame() //
+				.addColumn("x", new double[] { 1, 2.5, Double.NaN }) //
+				.addColumn("count", new double[] { 7, 8, 9 }) //
+				.addColumn("name", new String[] { "a", null, "c" });
+		Selection circles = clearSvg() //
+				.selectAll("circle") //
+				.data(dataFrame) //
+				.enter() //
+				.append("circle");
+
+		assertArrayEquals(new double[] { 1, 2.5, Double.NaN }, circles.dataValuesAsDouble("x"), 0);
+		assertArrayEquals(new String[] { "a", null, "c" }, circles.dataValues("name"));
+
+		List<Row> rows = circles.data(Row.class);
+		assertEquals(3, rows.size());
+		assertEquals(2.5, rows.get(1).x, 0);
+		assertEquals(9, rows.get(2).count);
+		assertNull(rows.get(2).missing);
+		assertEquals("c", rows.get(2).name);
+		assertNull(rows.get(1).name);
+	}
+
+	private void testLongColumns() {
+		DataFrame dataFrame = new DataFrame() //
+				.addColumn("id", new String[] { "9007199254740993", null, "-42" }) //
+				.addColumn("total", new double[] { 2.7, Double.NaN, -3 });
+		Selection circles = clearSvg() //
+				.selectAll("circle") //
+				.data(dataFrame) //
+				.enter() //
+				.append("circle");
+
+		List<LongRow> rows = circles.data(LongRow.class);
+		assertEquals(9007199254740993L, rows.get(0).id);
+		assertEquals(0L, rows.get(1).id);
+		assertEquals(-42L, rows.get(2).id);
+		assertEquals(Long.valueOf(2), rows.get(0).total);
+		assertNull(rows.get(1).total);
+		assertEquals(Long.valueOf(-3), rows.get(2).total);
+
+		circles = clearSvg() //
+				.selectAll("circle") //
+				.data(dataFrame.addColumn("total", new double[] { 1, 9007199254740994.0, 3 })) //
+				.enter() //
+				.append("circle");
+		try {
+			circles.data(LongRow.class);
+			fail("Expected an exception");
+		} catch (RuntimeException exception) {
+			assertTrue(exception.getMessage().contains("can not be read as long without loss of precision"));
+		}
+	}
+
+	/**
+	 * The target of {@link Selection#data(Class)}
+	 */
+	public static class Row {
+
+		public double x;
+
+		public int count;
+
+		public Double missing;
+
+		public String name;
+	}
+
+	/**
+	 * A target of {@link Selection#data(Class)} with long fields
+	 */
+	public static class LongRow {
+
+		public long id;
+
+		public Long total;
+	}
+
+}
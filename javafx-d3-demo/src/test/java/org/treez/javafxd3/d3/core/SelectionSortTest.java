@@ -0,0 +1,117 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.arrays.SortPermutations;
+import org.treez.javafxd3.d3.functions.DataFunction;
+
+/**
+ * Tests the key based sort methods of the class Selection and the class
+ * SortPermutations
+ */
+public class SelectionSortTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testSortByKeys();
+		testSortByMissingKeys();
+		testWrongNumberOfKeys();
+		testSortByKeyFunction();
+		testSortPermutations();
+	}
+
+	private void testSortByKeys() {
+		Selection texts = createTexts();
+
+		texts.sortByKeys(new double[] { 3, 1, 2, 1, 0 });
+		assertEquals("e,b,d,c,a", getDocumentOrder());
+
+		texts = d3.selectAll("text");
+		texts.sortByKeys(new String[] { "x", "b", "a", "c", "b" });
+		assertEquals("d,b,a,c,e", getDocumentOrder());
+
+		texts = d3.selectAll("text");
+		texts.sortByKeys(new long[] { Long.MAX_VALUE, Long.MAX_VALUE - 1, 0, -1, Long.MIN_VALUE });
+		assertEquals("e,c,a,b,d", getDocumentOrder());
+	}
+
+	private void testSortByMissingKeys() {
+		Selection texts = createTexts();
+		texts.sortByKeys(new double[] { Double.NaN, 2, Double.NaN, 1, 3 });
+		assertEquals("d,b,e,a,c", getDocumentOrder());
+
+		texts = createTexts();
+		texts.sortByKeys(new String[] { null, "b", "a", null, "c" });
+		assertEquals("c,b,e,a,d", getDocumentOrder());
+	}
+
+	private void testWrongNumberOfKeys() {
+		Selection texts = createTexts();
+		try {
+			texts.sortByKeys(new double[] { 3, 2, 1 });
+			fail("Expected an exception");
+		} catch (RuntimeException exception) {
+			assertTrue(exception.getMessage().contains("Expected 5 keys but got 3"));
+		}
+		texts.order();
+		assertEquals("a,b,c,d,e", getDocumentOrder());
+	}
+
+	private void testSortByKeyFunction() {
+		Selection texts = createTexts();
+
+		AtomicInteger numberOfCalls = new AtomicInteger();
+		DataFunction<Double> keyFunction = (context, datum, index) -> {
+			numberOfCalls.incrementAndGet();
+			return -1.0 * index;
+		};
+		texts.sortByNumericKey(keyFunction);
+		assertEquals(5, numberOfCalls.get());
+		assertEquals("e,d,c,b,a", getDocumentOrder());
+
+		DataFunction<String> stringKeyFunction = (context, datum, index) -> datum.toString();
+		d3.selectAll("text").sortByStringKey(stringKeyFunction);
+		assertEquals("a,b,c,d,e", getDocumentOrder());
+	}
+
+	private void testSortPermutations() {
+		int[] permutation = SortPermutations.of(new double[] { 2, Double.NaN, 1, 2 });
+		assertArrayEquals(new int[] { 2, 0, 3, 1 }, permutation);
+		assertArrayEquals(new int[] { 1, 3, 0, 2 }, SortPermutations.toRanks(permutation));
+		assertArrayEquals(new int[] { 1, 0, 2 }, SortPermutations.of(new String[] { "b", "a", null }));
+
+		long[] manyKeys = new long[1000];
+		for (int index = 0; index < manyKeys.length; index++) {
+			manyKeys[index] = (index * 7919L) % 13;
+		}
+		int[] manyPermutation = SortPermutations.of(manyKeys);
+		for (int position = 1; position < manyPermutation.length; position++) {
+			long previousKey = manyKeys[manyPermutation[position - 1]];
+			long key = manyKeys[manyPermutation[position]];
+			boolean isSorted = previousKey < key
+					|| (previousKey == key && manyPermutation[position - 1] < manyPermutation[position]);
+			assertTrue(isSorted);
+		}
+
+		Selection texts = createTexts();
+		texts.sortByPermutation(new int[] { 4, 3, 2, 1, 0 });
+		assertEquals("e,d,c,b,a", getDocumentOrder());
+	}
+
+	private Selection createTexts() {
+		return clearSvg() //
+				.selectAll("text") //
+				.data(new String[] { "a", "b", "c", "d", "e" }) //
+				.enter() //
+				.append("text");
+	}
+
+	/**
+	 * Returns the data of the text elements in document order
+	 */
+	private String getDocumentOrder() {
+		return (String) engine.executeScript("d3.selectAll('text').data().join()");
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.treez.javafxd3.d3.core;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.arrays.Array;
+import org.treez.javafxd3.d3.arrays.DataFrame;
+import org.treez.javafxd3.d3.behaviour.Zoom;
+
+/**
+ * Tests the class VirtualizedSelection
+ */
+public class VirtualizedSelectionTest extends AbstractNashornTestCase {
+
+	private static final int GRID_SIZE = 100;
+
+	@Override
+	public void doTest() {
+		testRecycling();
+		testZoomAndDataFrame();
+	}
+
+	private void testRecycling() {
+		Selection svg = clearSvg();
+
+		int numberOfData = GRID_SIZE * GRID_SIZE;
+		double[] x = new double[numberOfData];
+		double[] y = new double[numberOfData];
+		double[] values = new double[numberOfData];
+		for (int index = 0; index < numberOfData; index++) {
+			x[index] = index % GRID_SIZE;
+			y[index] = index / GRID_SIZE;
+			values[index] = index;
+		}
+
+		VirtualizedSelection virtualizedSelection = new VirtualizedSelection(svg, "circle") //
+				.setViewport(0, 0, 9.5, 9.5);
+		UpdateSelection update = virtualizedSelection.data(Array.fromDoubles(engine, values), x, y);
+		update.enter().append("circle");
+		assertEquals(100, svg.selectAll("circle").size());
+		int[] visibleIndices = virtualizedSelection.getVisibleIndices();
+		assertEquals(100, visibleIndices.length);
+		assertEquals(101, visibleIndices[11]);
+
+		update = virtualizedSelection.viewport(50, 50, 59.5, 59.5);
+		assertEquals(100, update.size());
+		assertTrue(update.enter().empty());
+		assertEquals(0, update.exit().size());
+		assertEquals(5050.0, ((Number) engine.executeScript("d3.select('circle').datum()")).doubleValue(), 0);
+
+		update = virtualizedSelection.viewport(95, 95, 200, 200);
+		assertEquals(25, update.size());
+		assertEquals(75, update.exit().size());
+	}
+
+	private void testZoomAndDataFrame() {
+		Selection svg = clearSvg();
+
+		DataFrame dataFrame = new DataFrame() //
+				.addColumn("x", new double[] { 10, 20, 30, 40 }) //
+				.addColumn("y", new double[] { 10, 20, 30, 40 }) //
+				.addColumn("name", new String[] { "a", "b", "c", "d" });
+
+		Zoom zoom = d3.behavior().zoom();
+		VirtualizedSelection virtualizedSelection = new VirtualizedSelection(svg, "circle") //
+				.setZoom(zoom) //
+				.setViewport(0, 0, 25, 25);
+		virtualizedSelection.data(dataFrame, "x", "y").enter().append("circle");
+		assertEquals(2, svg.selectAll("circle").size());
+
+		zoom.scale(0.5);
+		UpdateSelection update = virtualizedSelection.update();
+		assertEquals(2, update.size());
+		update.enter().append("circle");
+		assertEquals("a,b,c,d", engine.executeScript("d3.selectAll('circle').data().map(function(d){ return d.name; }).join()"));
+	}
+
+}
@@ -0,0 +1,128 @@
+package org.treez.javafxd3.d3.wrapper.canvas;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.scales.LinearScale;
+
+/**
+ * Tests the classes CanvasMarkRenderer, ColorLookupTable and SpatialGrid. Uses
+ * a JavaScript object that logs the calls of a canvas context.
+ */
+public class CanvasMarkRendererTest extends AbstractNashornTestCase {
+
+	private static final String LOGGING_CONTEXT = "(function(){" //
+			+ "  var context = { log: [] };" //
+			+ "  ['save', 'restore', 'beginPath', 'moveTo', 'lineTo', 'arc', 'rect', 'clip', 'fill', 'stroke', 'clearRect']" //
+			+ "    .forEach(function(name){" //
+			+ "      context[name] = function(){" //
+			+ "        var style = name === 'fill' ? ':' + this.fillStyle : name === 'stroke' ? ':' + this.strokeStyle : '';" //
+			+ "        this.log.push(name + '(' + Array.prototype.join.call(arguments, ',') + ')' + style);" //
+			+ "      };" //
+			+ "    });" //
+			+ "  return context;" //
+			+ "})()";
+
+	@Override
+	public void doTest() {
+		testRenderAndHitTesting();
+		testSpatialGrid();
+	}
+
+	private void testRenderAndHitTesting() {
+		JsObject jsContext = (JsObject) engine.executeScript(LOGGING_CONTEXT);
+		Context2d context = new Context2d(engine, jsContext);
+
+		LinearScale xScale = d3.scale().linear().domain(0, 10).range(0, 100);
+		double[] x = xScale.applyForDoubles(new double[] { 1, 5, 9 });
+		assertArrayEquals(new double[] { 10, 50, 90 }, x, 1e-9);
+
+		LinearScale colorScale = d3.scale().linear().domain(0, 1).range("red", "blue");
+		ColorLookupTable colors = ColorLookupTable.fromScale(colorScale, 0, 1, 3);
+		assertEquals(3, colors.size());
+		assertArrayEquals(new int[] { 0, 1, 2, 2 }, colors.indicesOf(new double[] { -1, 0.5, 1, 7 }));
+
+		CanvasMarkRenderer renderer = new CanvasMarkRenderer(context, 100, 100, 10);
+		renderer.setColorLookupTable(colors);
+		renderer.addCircles(x, new double[] { 10, 50, 90 }, 5, new int[] { 2, 0, 2 });
+		renderer.addRects(new double[] { 60 }, new double[] { 0 }, new double[] { 20 }, new double[] { 10 },
+				new int[] { 1 });
+		renderer.addLines(new double[] { 0 }, new double[] { 100 }, new double[] { 100 }, new double[] { 0 },
+				new int[] { 0 });
+		assertEquals(5, renderer.getNumberOfMarks());
+
+		assertEquals(5, renderer.render());
+		String log = jsContext.eval("this.log.join(';')").toString();
+		assertTrue(log.startsWith("clearRect(0,0,100,100);beginPath();moveTo(55,50);arc(50,50,5,0,"));
+		int numberOfFills = ((Number) jsContext.eval("this.log.filter(function(e){ return e.indexOf('fill') === 0; }).length"))
+				.intValue();
+		assertEquals(3, numberOfFills);
+		assertTrue(log.contains("moveTo(0,100);lineTo(100,0);stroke():" + colors.getColors()[0]));
+
+		assertEquals(0, renderer.render());
+
+		assertEquals(4, renderer.pick(50, 50));
+		assertEquals(1, renderer.pick(50, 53));
+		assertEquals(3, renderer.pick(70, 5));
+		assertEquals(-1, renderer.pick(30, 10));
+		assertEquals(0, renderer.pick(30, 10, 16));
+		assertEquals(4, renderer.pick(30, 70.5));
+		assertArrayEquals(new int[] { 1, 2, 4 }, renderer.pickAll(45, 45, 100, 100));
+
+		jsContext.eval("this.log = []");
+		renderer.setColorIndex(2, 1);
+		assertEquals(2, renderer.render());
+		log = jsContext.eval("this.log.join(';')").toString();
+		assertTrue(log.startsWith("save();beginPath();rect(84,84,12,12);clip();clearRect(84,84,12,12);"));
+		assertTrue(log.contains("arc(90,90,5,0,"));
+		assertTrue(log.contains("stroke():" + colors.getColors()[0]));
+		assertEquals(1, renderer.getColorIndex(2));
+
+		jsContext.eval("this.log = []");
+		renderer.setPosition(0, 20, 20);
+		assertEquals(-1, renderer.pick(10, 10));
+		assertEquals(0, renderer.pick(20, 20));
+		assertArrayEquals(new double[] { 15, 15, 10, 10 }, renderer.getBounds(0), 0);
+		assertEquals(2, renderer.render());
+		log = jsContext.eval("this.log.join(';')").toString();
+		assertTrue(log.startsWith("save();beginPath();rect(4,4,22,22);"));
+		assertTrue(log.contains("arc(20,20,5,0,"));
+
+		try {
+			renderer.setColorIndex(5, 0);
+			fail("Expected exception");
+		} catch (IllegalStateException exception) {
+			assertEquals("There is no mark 5. The number of marks is 5.", exception.getMessage());
+		}
+
+		try {
+			renderer.setColorIndex(1, 3);
+			fail("Expected exception");
+		} catch (IllegalStateException exception) {
+			assertEquals("The color index 3 is not in the color lookup table of size 3.", exception.getMessage());
+		}
+
+		renderer.setPosition(0, -100, -100);
+		assertEquals(1, renderer.render());
+		jsContext.eval("this.log = []");
+		renderer.setColorIndex(0, 2);
+		assertEquals(0, renderer.render());
+		assertEquals(0, ((Number) jsContext.eval("this.log.length")).intValue());
+		assertEquals(2, renderer.getColorIndex(0));
+	}
+
+	private void testSpatialGrid() {
+		SpatialGrid grid = new SpatialGrid(100, 100, 10);
+		double[] left = { 0, 15, -50, 95, Double.NaN };
+		double[] top = { 0, 15, -50, 95, 0 };
+		double[] right = { 5, 45, -40, 120, 1 };
+		double[] bottom = { 5, 45, -40, 120, 1 };
+		grid.build(left, top, right, bottom, 5);
+
+		assertArrayEquals(new int[] { 0 }, grid.query(0, 0, 1, 1));
+		assertArrayEquals(new int[] { 1 }, grid.query(20, 20, 40, 40));
+		assertArrayEquals(new int[] { 0, 1, 3 }, grid.query(0, 0, 100, 100));
+		assertArrayEquals(new int[0], grid.query(-50, -50, -40, -40));
+		assertArrayEquals(new int[0], grid.query(6, 6, 14, 14));
+	}
+
+}
@@ -0,0 +1,58 @@
+package org.treez.javafxd3.d3.wrapper.canvas;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.JsObject;
+
+/**
+ * Tests the class Context2dRecorder. Uses a JavaScript object that logs the
+ * calls of a canvas context.
+ */
+public class Context2dRecorderTest extends AbstractNashornTestCase {
+
+	private static final String LOGGING_CONTEXT = "(function(){" //
+			+ "  var context = { log: [] };" //
+			+ "  ['save', 'restore', 'translate', 'rotate', 'beginPath', 'moveTo', 'lineTo', 'stroke', 'fillRect']" //
+			+ "    .forEach(function(name){" //
+			+ "      context[name] = function(){" //
+			+ "        this.log.push(name + '(' + Array.prototype.join.call(arguments, ',') + ')');" //
+			+ "      };" //
+			+ "    });" //
+			+ "  return context;" //
+			+ "})()";
+
+	@Override
+	public void doTest() {
+		testFlush();
+	}
+
+	private void testFlush() {
+		JsObject jsContext = (JsObject) engine.executeScript(LOGGING_CONTEXT);
+		Context2d context = new Context2d(engine, jsContext);
+
+		Context2dRecorder recorder = new Context2dRecorder(context);
+		recorder.save() //
+				.translate(10, 20.5) //
+				.setStrokeStyle("red") //
+				.drawPolyline(new double[] { 0, 0, 1, 2, 3, 4 }) //
+				.setStrokeStyle("blue") //
+				.setStrokeStyle("red") //
+				.setLineWidth(0.5) //
+				.fillRect(0, 0, 5, 5) //
+				.restore();
+		assertEquals(9, recorder.getNumberOfCommands());
+
+		assertEquals(9, recorder.flush());
+		assertEquals(0, recorder.getNumberOfCommands());
+		assertEquals("save(),translate(10,20.5),beginPath(),moveTo(0,0),lineTo(1,2),lineTo(3,4),stroke(),"
+				+ "fillRect(0,0,5,5),restore()", jsContext.eval("this.log.join(',')"));
+		assertEquals("red", jsContext.eval("this.strokeStyle"));
+		assertEquals(0.5, ((Number) jsContext.eval("this.lineWidth")).doubleValue(), 0);
+
+		for (int index = 0; index < 1000; index++) {
+			recorder.moveTo(index, index).lineTo(index + 1, index);
+		}
+		assertEquals(2000, recorder.flush());
+		assertEquals(2009, ((Number) jsContext.eval("this.log.length")).intValue());
+	}
+
+}
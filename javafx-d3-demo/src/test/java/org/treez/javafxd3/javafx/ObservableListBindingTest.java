@@ -0,0 +1,100 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.Selection;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * Tests the class ObservableListBinding. The flushes are executed explicitly
+ * instead of in a later turn of the JavaFx event loop.
+ */
+public class ObservableListBindingTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testChanges();
+		testNumericData();
+	}
+
+	private void testChanges() {
+		Selection svg = clearSvg();
+
+		ObservableList<String> list = FXCollections.observableArrayList();
+		list.addAll("b", "d", "c");
+
+		List<Runnable> scheduledFlushes = new ArrayList<>();
+		List<String> events = new ArrayList<>();
+		ObservableListBinding<String> binding = new ObservableListBinding<>(svg, "text", list) //
+				.setScheduler(scheduledFlushes::add) //
+				.onEnter((selection) -> events.add("enter " + selection.size())) //
+				.onUpdate((selection) -> events.add("update " + selection.size())) //
+				.onExit((selection) -> {
+					events.add("exit " + selection.size());
+					selection.remove();
+				});
+		binding.bind();
+		assertEquals("b,d,c", getData("text"));
+		assertEquals("[enter 3]", events.toString());
+
+		events.clear();
+		list.add("a");
+		list.add(0, "e");
+		list.remove("d");
+		list.set(1, "x");
+		list.add("y");
+		list.remove("y");
+		assertEquals(1, scheduledFlushes.size());
+		assertEquals("b,d,c", getData("text"));
+
+		scheduledFlushes.get(0).run();
+		assertEquals("e,x,c,a", getData("text"));
+		assertEquals("[enter 2, update 1, exit 1]", events.toString());
+
+		events.clear();
+		FXCollections.sort(list);
+		binding.flush();
+		assertEquals("a,c,e,x", getData("text"));
+		assertEquals("[]", events.toString());
+
+		binding.unbind();
+		list.add("z");
+		binding.flush();
+		assertEquals("a,c,e,x", getData("text"));
+	}
+
+	private void testNumericData() {
+		Selection svg = clearSvg();
+
+		ObservableList<Integer> list = FXCollections.observableArrayList();
+		ObservableListBinding<Integer> binding = new ObservableListBinding<>(svg, "circle", list) //
+				.setScheduler((flush) -> {
+					//flushed explicitly
+				});
+		binding.bind();
+
+		List<Integer> numbers = IntStream.range(0, 2000).boxed().collect(Collectors.toList());
+		list.addAll(numbers);
+		list.set(5, -5);
+		binding.flush();
+		assertEquals(2000, d3.selectAll("circle").size());
+		assertEquals("-5", engine.executeScript("'' + d3.selectAll('circle').data()[5]"));
+		assertEquals("number", engine.executeScript("typeof d3.selectAll('circle').data()[1999]"));
+		binding.unbind();
+	}
+
+	/**
+	 * Returns the data of the elements with the given tag name in document
+	 * order
+	 */
+	private String getData(String tagName) {
+		return (String) engine.executeScript("d3.selectAll('" + tagName + "').data().join()");
+	}
+
+}
@@ -0,0 +1,60 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.Selection;
+
+import javafx.scene.canvas.Canvas;
+
+/**
+ * Tests the class PathCanvasRenderer. The path elements are read from a chart
+ * that is created with a NashornJsEngine.
+ */
+public class PathCanvasRendererTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testRender();
+		testSetSize();
+	}
+
+	private void testRender() {
+		Selection svg = clearSvg();
+		svg.append("path").attr("d", "M0,0L10,10Z").attr("fill", "red").attr("transform", "translate(5,5)");
+		svg.append("path").attr("d", "M1,1L2,2").attr("fill", "none").attr("stroke", "blue");
+		svg.append("path").attr("d", "M1,1L2,2").attr("visibility", "hidden").attr("display", "inline");
+		svg.append("path").attr("d", "M1,1L2,2").attr("display", "none");
+		svg.append("path").attr("d", "M1,1L2,2").attr("fill", "none");
+		svg.append("path").attr("fill", "red");
+
+		List<PathElement> elements = PathElement.fromSelection(svg.selectAll("path"));
+		assertEquals(6, elements.size());
+
+		PathCanvasRenderer renderer = new PathCanvasRenderer(100, 50);
+		assertEquals(2, renderer.render(elements));
+
+		elements.get(2).attr("visibility", "visible");
+		assertEquals(3, renderer.render(elements));
+
+		elements.get(3).attr("visibility", "visible");
+		assertEquals(3, renderer.render(elements));
+
+		List<PathElement> emptyElements = Arrays.asList();
+		assertEquals(0, renderer.render(emptyElements));
+	}
+
+	private void testSetSize() {
+		PathCanvasRenderer renderer = new PathCanvasRenderer(100, 50);
+		Canvas canvas = renderer.getNode();
+		assertEquals(100, canvas.getWidth(), 0);
+		assertEquals(50, canvas.getHeight(), 0);
+
+		renderer.setSize(20, 30);
+		assertSame(canvas, renderer.getNode());
+		assertEquals(20, canvas.getWidth(), 0);
+		assertEquals(30, canvas.getHeight(), 0);
+	}
+
+}
@@ -0,0 +1,154 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.Selection;
+import org.treez.javafxd3.d3.svg.Line;
+
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.transform.Affine;
+
+/**
+ * Tests the classes PathElement and PathNodeRenderer. The path data is created
+ * with a NashornJsEngine.
+ */
+public class PathNodeRendererTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testRenderWithNodeReuse();
+		testNodePoolIsBounded();
+		testPaintCacheIsBounded();
+		testPathElement();
+	}
+
+	private void testRenderWithNodeReuse() {
+		Line line = d3.svg().line();
+		JsObject series = (JsObject) engine.executeScript("[[[0, 0], [1, 1]], [[2, 2], [3, 4]]]");
+		String[] paths = line.generateEach(series);
+		assertArrayEquals(new String[] { "M0,0L1,1", "M2,2L3,4" }, paths);
+
+		List<PathElement> elements = PathElement.fromPathData(paths);
+		elements.get(0).attr("stroke", "steelblue").attr("stroke-width", "2px").attr("fill", "none");
+		elements.get(1).attr("transform", "translate(10,20) scale(2)").attr("class", "series highlighted");
+
+		PathNodeRenderer renderer = new PathNodeRenderer();
+		renderer.render(elements);
+		assertEquals(2, renderer.getNumberOfNodes());
+		assertEquals(2, renderer.getNode().getChildren().size());
+		SVGPath first = renderer.getNode("#0");
+		SVGPath second = renderer.getNode("#1");
+		assertEquals("M0,0L1,1", first.getContent());
+		assertNull(first.getFill());
+		assertNotNull(first.getStroke());
+		assertEquals(2, first.getStrokeWidth(), 0);
+		assertEquals(Arrays.asList("series", "highlighted"), second.getStyleClass());
+		Affine transform = (Affine) second.getTransforms().get(0);
+		assertEquals(2, transform.getMxx(), 0);
+		assertEquals(10, transform.getTx(), 0);
+		assertEquals(20, transform.getTy(), 0);
+
+		List<PathElement> updatedElements = Arrays.asList( //
+				new PathElement("#1").attr("d", "M2,2L3,5"), //
+				new PathElement("2").attr("d", "M5,5L6,6").attr("visibility", "hidden"));
+		renderer.render(updatedElements);
+		assertEquals(2, renderer.getNumberOfNodes());
+		assertEquals(2, renderer.getNumberOfCreatedNodes());
+		assertSame(second, renderer.getNode("#1"));
+		assertSame(first, renderer.getNode("2"));
+		assertNull(renderer.getNode("#0"));
+		assertEquals("M2,2L3,5", second.getContent());
+		assertTrue(second.getTransforms().isEmpty());
+		assertTrue(second.getStyleClass().isEmpty());
+		assertFalse(first.isVisible());
+		assertSame(second, renderer.getNode().getChildren().get(0));
+
+		renderer.clear();
+		assertEquals(0, renderer.getNode().getChildren().size());
+
+		try {
+			renderer.render(Arrays.asList(new PathElement("a"), new PathElement("a")));
+			fail("Expected exception");
+		} catch (IllegalStateException exception) {
+			assertEquals("The key 'a' is used by more than one path element.", exception.getMessage());
+		}
+	}
+
+	private void testNodePoolIsBounded() {
+		List<PathElement> elements = new ArrayList<>();
+		for (int index = 0; index < 1000; index++) {
+			elements.add(new PathElement("" + index).attr("d", "M0,0L" + index + ",1"));
+		}
+		PathNodeRenderer renderer = new PathNodeRenderer();
+		renderer.render(elements);
+		assertEquals(0, renderer.getNumberOfUnusedNodes());
+
+		renderer.clear();
+		assertEquals(0, renderer.getNumberOfNodes());
+		assertEquals(256, renderer.getNumberOfUnusedNodes());
+
+		renderer.render(elements.subList(0, 10));
+		assertEquals(246, renderer.getNumberOfUnusedNodes());
+		assertEquals(1000, renderer.getNumberOfCreatedNodes());
+	}
+
+	private void testPaintCacheIsBounded() {
+		PaintCache paints = new PaintCache();
+		Paint red = paints.get("red", 1);
+		assertSame(red, paints.get("red", 1));
+		assertNull(paints.get("none", 1));
+
+		for (int index = 0; index < 2000; index++) {
+			paints.get("blue", index / 2000.0);
+			paints.get("red", 1);
+		}
+		assertEquals(1024, paints.size());
+		assertSame(red, paints.get("red", 1));
+	}
+
+	private void testPathElement() {
+		PathElement element = new PathElement("key").attr("transform", "rotate(90, 10, 10)");
+		double[] matrix = element.getTransform();
+		assertArrayEquals(new double[] { 0, 1, -1, 0, 20, 0 }, matrix, 1e-9);
+		assertTrue(element.isTransformed());
+
+		element.attr("transform", "matrix(1 0 0 1 0 0)");
+		assertFalse(element.isTransformed());
+
+		try {
+			element.attr("cx", "5");
+			fail("Expected exception");
+		} catch (IllegalStateException exception) {
+			assertEquals("The attribute 'cx' is not supported by path elements.", exception.getMessage());
+		}
+
+		element.attr("visibility", "hidden").attr("display", "inline");
+		assertFalse(element.isVisible());
+		element.attr("visibility", "visible").attr("display", "none");
+		assertFalse(element.isVisible());
+		element.attr("display", "inline");
+		assertTrue(element.isVisible());
+		assertFalse(new PathElement(element.attr("display", "none")).isVisible());
+
+		Selection svg = clearSvg();
+		svg.append("path").attr("id", "1");
+		svg.append("path").attr("id", "slice").attr("d", "M0,0L1,1Z").attr("fill", "red").attr("opacity", 0.5);
+		svg.append("path").attr("d", "M1,1L2,2").attr("stroke", "blue").attr("display", "none");
+
+		List<PathElement> elements = PathElement.fromSelection(svg.selectAll("path"));
+		assertEquals(3, elements.size());
+		assertEquals("1", elements.get(0).getKey());
+		assertEquals("slice", elements.get(1).getKey());
+		assertEquals("red", elements.get(1).getFill());
+		assertEquals(0.5, elements.get(1).getOpacity(), 0);
+		assertEquals("#2", elements.get(2).getKey());
+		assertEquals("blue", elements.get(2).getStroke());
+		assertFalse(elements.get(2).isVisible());
+	}
+
+}
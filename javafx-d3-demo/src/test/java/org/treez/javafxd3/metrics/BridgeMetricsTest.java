@@ -0,0 +1,108 @@
+package org.treez.javafxd3.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.Selection;
+import org.treez.javafxd3.d3.scales.LinearScale;
+
+/**
+ * Tests the class BridgeMetrics
+ */
+public class BridgeMetricsTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testAttributionAndRenders();
+		testHistogram();
+		testMBean();
+	}
+
+	private void testAttributionAndRenders() {
+		LinearScale scale = d3.scale() //
+				.linear() //
+				.domain(0, 10) //
+				.range(0, 100);
+		Selection svg = clearSvg();
+
+		BridgeMetrics.reset();
+		scale.apply(1);
+		assertEquals(0, BridgeMetrics.getTotalCount());
+
+		BridgeMetrics.enable();
+		try {
+			RenderScope render = BridgeMetrics.beginRender("test render");
+			try {
+				for (int index = 0; index < 10; index++) {
+					scale.apply(index);
+					svg.attr("width", index);
+				}
+			} finally {
+				render.close();
+			}
+
+			CallSiteStatistics applyStatistics = BridgeMetrics.getCallSiteStatistics("Scale.apply");
+			assertNotNull(applyStatistics);
+			assertEquals(10, applyStatistics.getCount(BridgeOperation.CALL));
+			CallSiteStatistics attrStatistics = BridgeMetrics.getCallSiteStatistics("Selection.attr");
+			assertNotNull(attrStatistics);
+			assertTrue(attrStatistics.getCount(BridgeOperation.CALL) >= 10);
+
+			assertTrue(render.isClosed());
+			assertEquals(BridgeMetrics.getTotalCount(), render.getTotalCount());
+			assertTrue(render.getWallNanos() >= render.getTotalNanos());
+			assertSame(render, BridgeMetrics.getRecentRenders().get(0));
+			assertTrue(BridgeMetrics.getSummary().contains("Scale.apply"));
+
+			LatencyHistogram callHistogram = BridgeMetrics.getHistogram(BridgeOperation.CALL);
+			assertEquals(20, callHistogram.getCount());
+			assertTrue(callHistogram.getPercentileNanos(99) <= callHistogram.getMaxNanos());
+		} finally {
+			BridgeMetrics.disable();
+			BridgeMetrics.reset();
+		}
+	}
+
+	private void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int index = 0; index < 99; index++) {
+			histogram.record(1000);
+		}
+		histogram.record(1_000_000);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(1_000_000, histogram.getMaxNanos());
+		assertEquals(10990, histogram.getMeanNanos(), 1e-6);
+		assertEquals(1023, histogram.getPercentileNanos(50));
+		assertEquals(1023, histogram.getPercentileNanos(99));
+		assertEquals(1_000_000, histogram.getPercentileNanos(100));
+	}
+
+	private void testMBean() {
+		BridgeMetrics.registerMBean();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(BridgeMetrics.OBJECT_NAME);
+
+			server.setAttribute(objectName, new Attribute("Enabled", true));
+			assertTrue(BridgeMetrics.isEnabled());
+
+			TabularData counts = (TabularData) server.getAttribute(objectName, "Counts");
+			assertEquals(BridgeOperation.values().length, counts.size());
+			Object totalCount = server.getAttribute(objectName, "TotalCount");
+			assertEquals(BridgeMetrics.getTotalCount(), totalCount);
+		} catch (JMException exception) {
+			throw new IllegalStateException("Could not access the MBean", exception);
+		} finally {
+			BridgeMetrics.disable();
+			BridgeMetrics.unregisterMBean();
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.treez.javafxd3.nashorn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.treez.javafxd3.d3.AbstractNashornTestCase;
+import org.treez.javafxd3.d3.core.Selection;
+import org.treez.javafxd3.d3.functions.data.ConstantDataFunction;
+import org.treez.javafxd3.d3.scales.LinearScale;
+import org.treez.javafxd3.d3.svg.Axis;
+
+/**
+ * Tests the class NashornJsEngine. Does not need a JavaFx WebView.
+ */
+public class NashornJsEngineTest extends AbstractNashornTestCase {
+
+	@Override
+	public void doTest() {
+		testCreateSvg();
+		testAxis();
+		testParallelEngines();
+	}
+
+	private void testCreateSvg() {
+		Selection svg = d3.select("#svg") //
+				.attr("width", 200) //
+				.attr("height", 100);
+
+		svg.selectAll("rect") //
+				.data(new double[] { 1, 2, 3 }) //
+				.enter() //
+				.append("rect") //
+				.attr("width", new ConstantDataFunction<>("5")) //
+				.style("fill", "red");
+
+		assertEquals(3, svg.selectAll("rect").size());
+
+		String svgString = engine.getSvgString();
+		assertTrue(svgString.startsWith("<svg xmlns=\"http://www.w3.org/2000/svg\" id=\"svg\""));
+		assertTrue(svgString.contains("<rect width=\"5\" style=\"fill: red;\"/>"));
+
+		engine.reset();
+		assertEquals(0, d3.select("#svg").selectAll("rect").size());
+	}
+
+	private void testAxis() {
+		LinearScale scale = d3.scale() //
+				.linear() //
+				.domain(0, 10) //
+				.range(0, 100);
+		assertEquals(50, scale.apply(5).asDouble(), 1e-6);
+
+		Axis axis = d3.svg() //
+				.axis() //
+				.scale(scale);
+		d3.select("#svg") //
+				.append("g") //
+				.call(axis);
+
+		assertEquals(11, d3.selectAll(".tick").size());
+		assertTrue(engine.getSvgString().contains(">10</text>"));
+	}
+
+	private void testParallelEngines() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int index = 0; index < 2; index++) {
+				final int radius = index + 1;
+				results.add(executor.submit(() -> {
+					NashornJsEngine engine = new NashornJsEngine();
+					engine.getD3() //
+							.select("#svg") //
+							.append("circle") //
+							.attr("r", radius);
+					return engine.getSvgString();
+				}));
+			}
+			assertTrue(getResult(results.get(0)).contains("<circle r=\"1\"/>"));
+			assertTrue(getResult(results.get(1)).contains("<circle r=\"2\"/>"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static String getResult(Future<String> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException | ExecutionException exception) {
+			throw new IllegalStateException("Could not get result", exception);
+		}
+	}
+
+}
@@ -16,6 +16,8 @@ import org.treez.javafxd3.d3.behaviour.Drag.DragEvent;
 import org.treez.javafxd3.d3.behaviour.Zoom;
 import org.treez.javafxd3.d3.behaviour.Zoom.ZoomEvent;
 import org.treez.javafxd3.d3.coords.Coords;
+import org.treez.javafxd3.d3.core.CallbackRegistry;
+import org.treez.javafxd3.d3.core.FrameScheduler;
 import org.treez.javafxd3.d3.core.Formatter;
 import org.treez.javafxd3.d3.core.Prefix;
 import org.treez.javafxd3.d3.core.Selection;
@@ -29,6 +31,7 @@ import org.treez.javafxd3.d3.event.D3Event;
 import org.treez.javafxd3.d3.event.Event;
 import org.treez.javafxd3.d3.functions.TimerFunction;
 import org.treez.javafxd3.d3.functions.data.wrapper.PlainDataFunction;
+import org.treez.javafxd3.d3.functions.timer.ReleasingTimerFunctionWrapper;
 import org.treez.javafxd3.d3.geo.Geography;
 import org.treez.javafxd3.d3.geom.Geometry;
 import org.treez.javafxd3.d3.interpolators.Interpolators;
@@ -65,6 +68,15 @@ public class D3 extends JavaScriptObject {
 
 	//#region ATTRIBUTES
 
+	/**
+	 * Calls the execute method of a TimerFunction
+	 */
+	private static final String TIMER_FUNCTION_ADAPTER = "function(fns, h){" //
+			+ "  return function(){" //
+			+ "    return fns[h].execute();" //
+			+ "  };" //
+			+ "}";
+
 	//#end region
 
 	//#region CONSTRUCTORS
@@ -381,47 +393,49 @@ public class D3 extends JavaScriptObject {
 	 *            the command to be executed until it returns true.
 	 */
 	public void timer(TimerFunction timerFunction) {
-
-		assertObjectIsNotAnonymous(timerFunction);
-
-		String methodName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-
-		Object method = timerFunction;
-		boolean isJavaScriptObject = timerFunction instanceof JavaScriptObject;
-		if (isJavaScriptObject) {
-			JavaScriptObject javaScriptObject = (JavaScriptObject) timerFunction;
-			method = javaScriptObject.getJsObject();
-		}
-
-		d3JsObject.setMember(methodName, method);
-
-		String command = "d3.timer(function() { " //
-				+ "return d3." + methodName + ".execute();" //
-				+ "});";
-		eval(command);
+		scheduleTimer(timerFunction);
 	};
 
 	/**
-	 * Alias for {@link #timer(TimerFunction, int, int)} with a mark equals to
-	 * the "now" timestamp (i.e <code>new Date().getTime()</code>).
+	 * Starts a timer that invokes the given command once per animation frame,
+	 * after the given delay, until it returns true. All timers of this method
+	 * are dispatched by the single d3 timer of the {@link FrameScheduler}. Use
+	 * {@link #scheduleTimer(TimerFunction, int)} to get a handle that can
+	 * cancel the timer.
 	 *
 	 * @param command
 	 *            the command to be executed until it returns true.
 	 * @param delayMillis
 	 *            the delay to expires before the command should start being
-	 *            invoked (may be negative if markMillis is in the future)
+	 *            invoked
 	 */
 	public void timer(TimerFunction timerFunction, int delayMillis) {
+		scheduleTimer(timerFunction, delayMillis);
+	};
 
-		assertObjectIsNotAnonymous(timerFunction);
-
-		String funcName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(funcName, timerFunction);
+	/**
+	 * Same as {@link #timer(TimerFunction)} but returns a handle
+	 *
+	 * @param command
+	 *            the command to be executed until it returns true.
+	 * @return the handle that can be used to cancel the timer
+	 */
+	public FrameScheduler.TimerHandle scheduleTimer(TimerFunction timerFunction) {
+		return FrameScheduler.forEngine(engine).schedule(timerFunction);
+	};
 
-		String command = "this.timer(function(d, i) { return d3." + funcName + ".execute();}, " + delayMillis + ");";
-		eval(command);
+	/**
+	 * Same as {@link #timer(TimerFunction, int)} but returns a handle
+	 *
+	 * @param command
+	 *            the command to be executed until it returns true.
+	 * @param delayMillis
+	 *            the delay to expires before the command should start being
+	 *            invoked
+	 * @return the handle that can be used to cancel the timer
+	 */
+	public FrameScheduler.TimerHandle scheduleTimer(TimerFunction timerFunction, int delayMillis) {
+		return FrameScheduler.forEngine(engine).schedule(timerFunction, delayMillis);
 	};
 
 	/**
@@ -465,16 +479,21 @@ public class D3 extends JavaScriptObject {
 
 		assertObjectIsNotAnonymous(timerFunction);
 
-		String funcName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(funcName, timerFunction);
-
-		String command = "this.timer(function(d, i) { return d3." + funcName + ".execute();}, " + delayMillis + ", "
-				+ markMillis + ");";
-		eval(command);
+		JsObject trampoline = pinTimerFunction(timerFunction);
+		getJsObject().callWithoutResult("timer", trampoline, delayMillis, markMillis);
 
 	};
 
+	/**
+	 * Pins the given timer function in the CallbackRegistry until it returns
+	 * true and returns the JavaScript function that calls it
+	 */
+	private JsObject pinTimerFunction(TimerFunction timerFunction) {
+		CallbackRegistry registry = CallbackRegistry.forEngine(engine);
+		TimerFunction wrapper = new ReleasingTimerFunctionWrapper(timerFunction, registry);
+		return registry.pin(wrapper, TIMER_FUNCTION_ADAPTER);
+	}
+
 	/**
 	 * Immediately execute (invoke once) any active timers.
 	 * <p>
@@ -8,6 +8,7 @@ import org.treez.javafxd3.d3.arrays.foreach.ForEachCallback;
 import org.treez.javafxd3.d3.arrays.foreach.ForEachCallbackWrapper;
 import org.treez.javafxd3.d3.arrays.foreach.ForEachObjectDelegate;
 import org.treez.javafxd3.d3.arrays.foreach.ForEachObjectDelegateWrapper;
+import org.treez.javafxd3.d3.core.CallbackRegistry;
 import org.treez.javafxd3.d3.core.ConversionUtil;
 import org.treez.javafxd3.d3.functions.data.wrapper.PlainDataFunction;
 import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
@@ -24,6 +25,73 @@ import org.treez.javafxd3.d3.core.JsObject;
  */
 public class Array<T> extends JavaScriptObject {
 
+	//#region ATTRIBUTES
+
+	/**
+	 * Creates a function that passes each element of an array to a
+	 * ForEachObjectDelegate
+	 */
+	private static final String FOR_EACH_ADAPTER = "function(fns, h){" //
+			+ "  return function(array){" //
+			+ "    Array.prototype.forEach.call(array, function(element){" //
+			+ "      fns[h].process(element);" //
+			+ "    });" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * Creates a function that maps an array with a ForEachCallback. The result
+	 * is a plain array, even if the mapped array is a typed array.
+	 */
+	private static final String MAP_ADAPTER = "function(fns, h){" //
+			+ "  return function(array){" //
+			+ "    return Array.prototype.map.call(array, function(d, i, a){" //
+			+ "      return fns[h].forEach(this, {datum: d}, i, a);" //
+			+ "    });" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * Creates a function that filters an array with a ForEachCallback
+	 */
+	private static final String FILTER_ADAPTER = "function(fns, h){" //
+			+ "  return function(array){" //
+			+ "    return Array.prototype.filter.call(array, function(d, i, a){" //
+			+ "      return fns[h].forEach(this, {datum: d}, i, a);" //
+			+ "    });" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * Packs the elements of the array (this) into a single string of the form
+	 * "length1,length2,...;element1element2..." where the length -1 stands for
+	 * null or undefined elements
+	 */
+	private static final String PACK_STRINGS_TEMPLATE = "function(){" //
+			+ "  var lengths = [];" //
+			+ "  var parts = [];" //
+			+ "  for(var index = 0; index < this.length; index++){" //
+			+ "    var value = this[index];" //
+			+ "    if(value == null){" //
+			+ "      lengths.push(-1);" //
+			+ "    } else {" //
+			+ "      var text = String(value);" //
+			+ "      lengths.push(text.length);" //
+			+ "      parts.push(text);" //
+			+ "    }" //
+			+ "  }" //
+			+ "  return lengths.join(',') + ';' + parts.join('');" //
+			+ "}";
+
+	/**
+	 * Returns the element of a two-dimensional array (this)
+	 */
+	private static final String GET_ELEMENT_TEMPLATE = "function(rowIndex, columnIndex){" //
+			+ "  return this[rowIndex][columnIndex];" //
+			+ "}";
+
+	//#end region
+
 	//#region CONSTRUCTORS
 
 	public Array(JsEngine engine, JsObject wrappedJsObject) {
@@ -59,19 +127,24 @@ public class Array<T> extends JavaScriptObject {
 		d3Obj.eval(command);
 		JsObject tempArray = (JsObject) d3Obj.getMember(varName);
 
-		//fill temporary array
-		for (int index = 0; index < length; index++) {
-			Object value = data.get(index);
+		//fill temporary array (in a single batch)
+		engine.beginBatch();
+		try {
+			for (int index = 0; index < length; index++) {
+				Object value = data.get(index);
 
-			boolean isJavaScriptObject = value instanceof JavaScriptObject;
-			if (isJavaScriptObject) {
-				JavaScriptObject javaScriptObject = (JavaScriptObject) value;
-				JsObject wrappedJsObject = javaScriptObject.getJsObject();
+				boolean isJavaScriptObject = value instanceof JavaScriptObject;
+				if (isJavaScriptObject) {
+					JavaScriptObject javaScriptObject = (JavaScriptObject) value;
+					JsObject wrappedJsObject = javaScriptObject.getJsObject();
 
-				tempArray.setSlot(index, wrappedJsObject);
-			} else {
-				tempArray.setSlot(index, value);
+					tempArray.setSlot(index, wrappedJsObject);
+				} else {
+					tempArray.setSlot(index, value);
+				}
 			}
+		} finally {
+			engine.endBatch();
 		}
 
 		//remove temp var
@@ -101,10 +174,15 @@ public class Array<T> extends JavaScriptObject {
 		d3Obj.eval(command);
 		JsObject tempArray = (JsObject) d3Obj.getMember(varName);
 
-		//fill temporary array
-		for (int index = 0; index < length; index++) {
-			Object value = data.get(index);
-			tempArray.setSlot(index, value);
+		//fill temporary array (in a single batch)
+		engine.beginBatch();
+		try {
+			for (int index = 0; index < length; index++) {
+				Object value = data.get(index);
+				tempArray.setSlot(index, value);
+			}
+		} finally {
+			engine.endBatch();
 		}
 
 		//remove temp var
@@ -150,6 +228,48 @@ public class Array<T> extends JavaScriptObject {
 		return new Array<Double>(engine, result);
 	}
 
+	/**
+	 * Creates a one-dimensional Array from the given double array. The values
+	 * are transferred in binary form and the resulting JavaScript array is a
+	 * Float64Array.
+	 *
+	 * @param engine
+	 * @param data
+	 * @return
+	 */
+	public static Array<Double> fromDoubles(JsEngine engine, double[] data) {
+		JsObject result = TypedArrays.createFloat64Array(engine, data);
+		return new Array<Double>(engine, result);
+	}
+
+	/**
+	 * Creates a one-dimensional Array from the given float array. The values
+	 * are transferred in binary form and the resulting JavaScript array is a
+	 * Float32Array.
+	 *
+	 * @param engine
+	 * @param data
+	 * @return
+	 */
+	public static Array<Double> fromFloats(JsEngine engine, float[] data) {
+		JsObject result = TypedArrays.createFloat32Array(engine, data);
+		return new Array<Double>(engine, result);
+	}
+
+	/**
+	 * Creates a one-dimensional Array from the given int array. The values are
+	 * transferred in binary form and the resulting JavaScript array is an
+	 * Int32Array.
+	 *
+	 * @param engine
+	 * @param data
+	 * @return
+	 */
+	public static Array<Integer> fromInts(JsEngine engine, int[] data) {
+		JsObject result = TypedArrays.createInt32Array(engine, data);
+		return new Array<Integer>(engine, result);
+	}
+
 	public static Array<String> fromStrings(JsEngine engine, String[] data) {
 
 		String varName = createNewTemporaryInstanceName();
@@ -317,21 +437,7 @@ public class Array<T> extends JavaScriptObject {
 	public void forEach(ForEachObjectDelegate forEachDelegate) {
 
 		ForEachObjectDelegateWrapper delegateWrapper = new ForEachObjectDelegateWrapper(engine, forEachDelegate);
-
-		D3 d3 = new D3(engine);
-		JsObject d3Obj = d3.getJsObject();
-		String delegateName = createNewTemporaryInstanceName();
-		d3Obj.setMember(delegateName, delegateWrapper);
-
-		String command = "this.forEach(" + //
-				"  function(element){" + //			
-				"    d3." + delegateName + ".process(element);" + //
-				"  }" + //
-				")";
-		eval(command);
-
-		d3Obj.removeMember(delegateName);
-
+		callWithTemporaryCallback(FOR_EACH_ADAPTER, delegateWrapper);
 	}
 
 	/**
@@ -351,22 +457,7 @@ public class Array<T> extends JavaScriptObject {
 		ForEachCallback<R> callbackWrapper = new ForEachCallbackWrapper<R, T>(argumentClass, engine,
 				mappingFunction);
 
-		D3 d3 = new D3(engine);
-		JsObject d3Obj = d3.getJsObject();
-		String callbackName = createNewTemporaryInstanceName();
-		d3Obj.setMember(callbackName, callbackWrapper);
-
-		String command = "this.map(" + //
-				"  function(d, i, a){" + //			
-				"    var elementResult = d3." + callbackName + ".forEach(this, {datum: d}, i, a);" + //				
-				"    return elementResult; " + //
-				"  }" + //
-				")";
-
-		JsObject jsResult = evalForJsObject(command);
-
-		d3Obj.removeMember(callbackName);
-
+		JsObject jsResult = callWithTemporaryCallback(MAP_ADAPTER, callbackWrapper);
 		if (jsResult == null) {
 			return null;
 		}
@@ -388,22 +479,7 @@ public class Array<T> extends JavaScriptObject {
 
 		ForEachCallback<Boolean> callbackWrapper = new ForEachCallbackWrapper<>(elementClass, engine, callback);
 
-		D3 d3 = new D3(engine);
-		JsObject d3Obj = d3.getJsObject();
-		String callbackName = createNewTemporaryInstanceName();
-		d3Obj.setMember(callbackName, callbackWrapper);
-
-		String command = "this.filter(" + //
-				"  function(d, i, a){" + //			
-				"    var includeElement = d3." + callbackName + ".forEach(this, {datum: d}, i, a);" + //				
-				"    return includeElement; " + //
-				"  }" + //
-				")";
-
-		JsObject jsResult = evalForJsObject(command);
-
-		d3Obj.removeMember(callbackName);
-
+		JsObject jsResult = callWithTemporaryCallback(FILTER_ADAPTER, callbackWrapper);
 		if (jsResult == null) {
 			return null;
 		}
@@ -412,6 +488,26 @@ public class Array<T> extends JavaScriptObject {
 
 	}
 
+	/**
+	 * Passes this array to the function that is created by the given adapter
+	 * for the given callback and returns the result. The callback is released
+	 * afterwards since the wrappers are created for each invocation.
+	 */
+	private JsObject callWithTemporaryCallback(String adapter, Object callback) {
+		CallbackRegistry registry = CallbackRegistry.forEngine(engine);
+		JsObject function = registry.getTrampoline(callback, adapter);
+		try {
+			Object result = function.call("call", null, getJsObject());
+			boolean isJsObject = result instanceof JsObject;
+			if (isJsObject) {
+				return (JsObject) result;
+			}
+			return null;
+		} finally {
+			registry.release(callback);
+		}
+	}
+
 	//#end region
 
 	//#region RETRIVE ITEMS	
@@ -447,8 +543,7 @@ public class Array<T> extends JavaScriptObject {
 	}
 
 	private Object getAsObject(int rowIndex, int columnIndex) {
-		String command = "this[" + rowIndex + "][" + columnIndex + "]";
-		Object resultObj = eval(command);
+		Object resultObj = callTemplate(GET_ELEMENT_TEMPLATE, rowIndex, columnIndex);
 		return resultObj;
 	}
 
@@ -495,6 +590,51 @@ public class Array<T> extends JavaScriptObject {
 
 	//#end region
 
+	//#region BULK RETRIEVAL
+
+	/**
+	 * Reads all elements as doubles with a single call. The elements are
+	 * converted like JavaScript numbers, e.g. null to 0 and undefined to NaN.
+	 *
+	 * @return
+	 */
+	public double[] toDoubleArray() {
+		return TypedArrays.readDoubles(engine, getJsObject());
+	}
+
+	/**
+	 * Reads all elements as integers with a single call. The elements are
+	 * converted like JavaScript 32 bit integers, e.g. 2.7 to 2 and NaN to 0.
+	 *
+	 * @return
+	 */
+	public int[] toIntArray() {
+		return TypedArrays.readInts(engine, getJsObject());
+	}
+
+	/**
+	 * Reads all elements of a two-dimensional array as doubles with a single
+	 * call. The rows might have different lengths.
+	 *
+	 * @return
+	 */
+	public double[][] toDoubleMatrix() {
+		return TypedArrays.readDoubleMatrix(engine, getJsObject());
+	}
+
+	/**
+	 * Reads all elements as strings with a single call. Null and undefined
+	 * elements are returned as null.
+	 *
+	 * @return
+	 */
+	public String[] toStringArray() {
+		String packedStrings = callTemplate(PACK_STRINGS_TEMPLATE).toString();
+		return TypedArrays.unpackStrings(packedStrings);
+	}
+
+	//#end region
+
 	//#region REVERSE
 
 	public Array<T> reverse() {
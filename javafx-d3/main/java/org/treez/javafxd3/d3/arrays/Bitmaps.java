@@ -0,0 +1,101 @@
+package org.treez.javafxd3.d3.arrays;
+
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.function.DoublePredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Creates bitmaps (BitSets) from boolean arrays or by evaluating primitive
+ * predicates over columns and transfers them to JavaScript. A bitmap is
+ * transferred as base64 string of the bytes of {@link BitSet#toByteArray()}:
+ * bit i is the bit (i % 8) of byte (i / 8).
+ */
+public class Bitmaps {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Source code of a JavaScript function(base64) that decodes a bitmap and
+	 * returns a function(index) that tells if the bit with the given index is
+	 * set. Bits beyond the transferred bytes are not set.
+	 */
+	public static final String DECODER_FUNCTION = "function(base64){" //
+			+ "  var bytes = (" + TypedArrays.DECODER_FUNCTION + ")(base64, 'Uint8');" //
+			+ "  return function(index){" //
+			+ "    var byteIndex = index >> 3;" //
+			+ "    return byteIndex < bytes.length && ((bytes[byteIndex] >> (index & 7)) & 1) === 1;" //
+			+ "  };" //
+			+ "}";
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Creates a bitmap whose bit i is set if flags[i] is true
+	 */
+	public static BitSet of(boolean[] flags) {
+		BitSet bitmap = new BitSet(flags.length);
+		for (int index = 0; index < flags.length; index++) {
+			if (flags[index]) {
+				bitmap.set(index);
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Creates a bitmap whose bit i is set if the predicate is true for
+	 * values[i]
+	 */
+	public static BitSet where(double[] values, DoublePredicate predicate) {
+		BitSet bitmap = new BitSet(values.length);
+		for (int index = 0; index < values.length; index++) {
+			if (predicate.test(values[index])) {
+				bitmap.set(index);
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Creates a bitmap whose bit i is set if the predicate is true for
+	 * values[i]
+	 */
+	public static BitSet where(long[] values, LongPredicate predicate) {
+		BitSet bitmap = new BitSet(values.length);
+		for (int index = 0; index < values.length; index++) {
+			if (predicate.test(values[index])) {
+				bitmap.set(index);
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Creates a bitmap whose bit i is set if the predicate is true for
+	 * values[i]
+	 */
+	public static BitSet where(String[] values, Predicate<String> predicate) {
+		BitSet bitmap = new BitSet(values.length);
+		for (int index = 0; index < values.length; index++) {
+			if (predicate.test(values[index])) {
+				bitmap.set(index);
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Encodes the given bitmap as base64 string, see
+	 * {@link #DECODER_FUNCTION}
+	 */
+	public static String encode(BitSet bitmap) {
+		return Base64.getEncoder().encodeToString(bitmap.toByteArray());
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,251 @@
+package org.treez.javafxd3.d3.arrays;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.treez.javafxd3.d3.core.JsEngine;
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.ScriptTemplateCache;
+
+/**
+ * Columnar data that can be joined with a selection, see
+ * {@link org.treez.javafxd3.d3.core.Selection#data(DataFrame)}. The data
+ * consists of named primitive columns of equal length:
+ * <ul>
+ * <li>number columns (double[])</li>
+ * <li>epoch columns (long[] milliseconds since 1970, read as JavaScript Date
+ * objects)</li>
+ * <li>string columns (String[], dictionary encoded)</li>
+ * </ul>
+ * The columns are transferred as typed arrays with a single call. In
+ * JavaScript, each datum is a lightweight row view whose properties read the
+ * values from the columns, so that d3 accessors like
+ * <code>function(d){ return d.x; }</code> work without Java objects per row.
+ * Assigning a property of a row view (e.g. by a layout) overrides the value of
+ * that row. The parallel arrays are available as <code>columns</code> property
+ * of the joined data array: number and epoch columns as Float64Array, string
+ * columns as object with <code>codes</code> (Int32Array, -1 for null) and
+ * <code>dictionary</code>.
+ * <p>
+ * Epoch values are transferred as doubles and are exact for all dates within
+ * 285,000 years of 1970.
+ */
+public class DataFrame {
+
+	//#region ATTRIBUTES
+
+	private static final char NUMBER_KIND = 'n';
+
+	private static final char EPOCH_KIND = 'e';
+
+	private static final char STRING_KIND = 's';
+
+	/**
+	 * Source code of a JavaScript function(numberOfRows, packedNames, kinds,
+	 * packedPayloads) that creates the row views from the arguments that are
+	 * returned by {@link #getScriptArguments()}
+	 */
+	public static final String ROWS_FUNCTION = "function(numberOfRows, packedNames, kinds, packedPayloads){" //
+			+ "  var decode = " + TypedArrays.DECODER_FUNCTION + ";" //
+			+ "  var unpack = " + TypedArrays.STRING_UNPACKER_FUNCTION + ";" //
+			+ "  var names = unpack(packedNames);" //
+			+ "  var payloads = unpack(packedPayloads);" //
+			+ "  var columns = {};" //
+			+ "  var Row = function(rowIndex){" //
+			+ "    Object.defineProperty(this, '__rowIndex__', { value: rowIndex });" //
+			+ "  };" //
+			+ "  var defineColumn = function(name, getValue){" //
+			+ "    Object.defineProperty(Row.prototype, name, {" //
+			+ "      enumerable: true," //
+			+ "      configurable: true," //
+			+ "      get: function(){ return getValue(this.__rowIndex__); }," //
+			+ "      set: function(value){" //
+			+ "        Object.defineProperty(this, name, { value: value, writable: true, enumerable: true, configurable: true });" //
+			+ "      }" //
+			+ "    });" //
+			+ "  };" //
+			+ "  var payloadIndex = 0;" //
+			+ "  names.forEach(function(name, columnIndex){" //
+			+ "    switch(kinds.charAt(columnIndex)){" //
+			+ "      case '" + NUMBER_KIND + "':" //
+			+ "        var numbers = decode(payloads[payloadIndex++], 'Float64');" //
+			+ "        columns[name] = numbers;" //
+			+ "        defineColumn(name, function(rowIndex){ return numbers[rowIndex]; });" //
+			+ "        break;" //
+			+ "      case '" + EPOCH_KIND + "':" //
+			+ "        var epochs = decode(payloads[payloadIndex++], 'Float64');" //
+			+ "        columns[name] = epochs;" //
+			+ "        defineColumn(name, function(rowIndex){ return new Date(epochs[rowIndex]); });" //
+			+ "        break;" //
+			+ "      case '" + STRING_KIND + "':" //
+			+ "        var dictionary = unpack(payloads[payloadIndex++]);" //
+			+ "        var codes = decode(payloads[payloadIndex++], 'Int32');" //
+			+ "        columns[name] = { codes: codes, dictionary: dictionary };" //
+			+ "        defineColumn(name, function(rowIndex){" //
+			+ "          var code = codes[rowIndex];" //
+			+ "          return code < 0 ? null : dictionary[code];" //
+			+ "        });" //
+			+ "        break;" //
+			+ "      default:" //
+			+ "        throw new Error('Unknown column kind ' + kinds.charAt(columnIndex));" //
+			+ "    }" //
+			+ "  });" //
+			+ "  var rows = new Array(numberOfRows);" //
+			+ "  for(var rowIndex = 0; rowIndex < numberOfRows; rowIndex++){" //
+			+ "    rows[rowIndex] = new Row(rowIndex);" //
+			+ "  }" //
+			+ "  rows.columns = columns;" //
+			+ "  return rows;" //
+			+ "}";
+
+	/**
+	 * Creates the row views from the script arguments
+	 */
+	private static final String CREATE_ROWS_TEMPLATE = "function(numberOfRows, names, kinds, payloads){" //
+			+ "  return (" + ROWS_FUNCTION + ")(numberOfRows, names, kinds, payloads);" //
+			+ "}";
+
+	private final Map<String, Column> columns = new LinkedHashMap<>();
+
+	private int numberOfRows = -1;
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Adds a number column
+	 *
+	 * @param name
+	 * @param values
+	 * @return this data frame
+	 */
+	public DataFrame addColumn(String name, double[] values) {
+		return addColumn(name, values.length, NUMBER_KIND, TypedArrays.encode(values));
+	}
+
+	/**
+	 * Adds an epoch column with milliseconds since 1970-01-01T00:00:00Z. The
+	 * values are read as JavaScript Date objects.
+	 *
+	 * @param name
+	 * @param epochMillis
+	 * @return this data frame
+	 */
+	public DataFrame addColumn(String name, long[] epochMillis) {
+		double[] values = new double[epochMillis.length];
+		for (int index = 0; index < epochMillis.length; index++) {
+			values[index] = epochMillis[index];
+		}
+		return addColumn(name, values.length, EPOCH_KIND, TypedArrays.encode(values));
+	}
+
+	/**
+	 * Adds a string column. The values are dictionary encoded, so that each
+	 * distinct value is transferred only once.
+	 *
+	 * @param name
+	 * @param values
+	 *            might contain null
+	 * @return this data frame
+	 */
+	public DataFrame addColumn(String name, String[] values) {
+		Map<String, Integer> codesByValue = new LinkedHashMap<>();
+		int[] codes = new int[values.length];
+		for (int index = 0; index < values.length; index++) {
+			String value = values[index];
+			if (value == null) {
+				codes[index] = -1;
+			} else {
+				Integer code = codesByValue.get(value);
+				if (code == null) {
+					code = codesByValue.size();
+					codesByValue.put(value, code);
+				}
+				codes[index] = code;
+			}
+		}
+		String[] dictionary = codesByValue.keySet().toArray(new String[codesByValue.size()]);
+		return addColumn(name, values.length, STRING_KIND, TypedArrays.packStrings(dictionary),
+				TypedArrays.encode(codes));
+	}
+
+	private DataFrame addColumn(String name, int length, char kind, String... payload) {
+		boolean isFirstColumn = numberOfRows < 0;
+		if (!isFirstColumn && length != numberOfRows) {
+			String message = "The column '" + name + "' has " + length + " values but the data frame has "
+					+ numberOfRows + " rows.";
+			throw new IllegalStateException(message);
+		}
+		numberOfRows = length;
+		columns.put(name, new Column(kind, payload));
+		return this;
+	}
+
+	/**
+	 * Creates the JavaScript array of row views
+	 *
+	 * @param engine
+	 * @return
+	 */
+	public JsObject createRows(JsEngine engine) {
+		JsObject d3 = (JsObject) engine.executeScript("d3");
+		return (JsObject) ScriptTemplateCache.forEngine(engine).invoke(d3, CREATE_ROWS_TEMPLATE,
+				getScriptArguments());
+	}
+
+	/**
+	 * Returns the four arguments of the JavaScript function
+	 * {@link #ROWS_FUNCTION}. The encoded columns are packed into a single
+	 * argument, so that the number of arguments does not depend on the number
+	 * of columns.
+	 */
+	public Object[] getScriptArguments() {
+		List<String> payloads = new ArrayList<>();
+		StringBuilder kinds = new StringBuilder();
+		for (Column column : columns.values()) {
+			kinds.append(column.kind);
+			Collections.addAll(payloads, column.payload);
+		}
+		String packedNames = TypedArrays.packStrings(columns.keySet().toArray(new String[columns.size()]));
+		String packedPayloads = TypedArrays.packStrings(payloads.toArray(new String[payloads.size()]));
+		return new Object[] { getNumberOfRows(), packedNames, kinds.toString(), packedPayloads };
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	public int getNumberOfRows() {
+		return Math.max(numberOfRows, 0);
+	}
+
+	public List<String> getColumnNames() {
+		return new ArrayList<>(columns.keySet());
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * The encoded values of a column
+	 */
+	private static class Column {
+
+		private final char kind;
+
+		private final String[] payload;
+
+		Column(char kind, String[] payload) {
+			this.kind = kind;
+			this.payload = payload;
+		}
+	}
+
+	//#end region
+
+}
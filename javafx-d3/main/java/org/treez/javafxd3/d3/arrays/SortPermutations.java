@@ -0,0 +1,146 @@
+package org.treez.javafxd3.d3.arrays;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorts keys in Java and returns the sort order as permutation: the entry k
+ * of the permutation is the index of the key that is placed at position k.
+ * The sorts are stable merge sorts of primitive index arrays, so that the
+ * indices of large key arrays are not boxed. A permutation can be applied to a selection
+ * with {@link org.treez.javafxd3.d3.core.Selection#sortByPermutation(int[])}.
+ */
+public class SortPermutations {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Runs of this length are sorted by insertion sort before they are merged
+	 */
+	private static final int INSERTION_SORT_LENGTH = 32;
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Returns the permutation that sorts the given keys in ascending order;
+	 * NaN values are placed last
+	 */
+	public static int[] of(double[] keys) {
+		return sort(keys.length, (first, second) -> Double.compare(keys[first], keys[second]));
+	}
+
+	/**
+	 * Returns the permutation that sorts the given keys in ascending order
+	 */
+	public static int[] of(long[] keys) {
+		return sort(keys.length, (first, second) -> Long.compare(keys[first], keys[second]));
+	}
+
+	/**
+	 * Returns the permutation that sorts the given keys in ascending
+	 * (lexicographic) order; null values are placed last
+	 */
+	public static int[] of(String[] keys) {
+		Comparator<String> keyComparator = Comparator.nullsLast(Comparator.naturalOrder());
+		return sort(keys.length, (first, second) -> keyComparator.compare(keys[first], keys[second]));
+	}
+
+	/**
+	 * Returns the permutation that sorts the given items with the given
+	 * comparator
+	 */
+	public static <T> int[] of(List<T> items, Comparator<? super T> comparator) {
+		return sort(items.size(), (first, second) -> comparator.compare(items.get(first), items.get(second)));
+	}
+
+	/**
+	 * Inverts the given permutation: the entry i of the result is the position
+	 * of the key i in the sorted order (its rank)
+	 */
+	public static int[] toRanks(int[] permutation) {
+		int[] ranks = new int[permutation.length];
+		for (int position = 0; position < permutation.length; position++) {
+			ranks[permutation[position]] = position;
+		}
+		return ranks;
+	}
+
+	/**
+	 * Sorts the indices 0..numberOfKeys-1 with a bottom-up merge sort
+	 */
+	private static int[] sort(int numberOfKeys, IndexComparator indexComparator) {
+		int[] indices = new int[numberOfKeys];
+		for (int index = 0; index < numberOfKeys; index++) {
+			indices[index] = index;
+		}
+		for (int start = 0; start < numberOfKeys; start += INSERTION_SORT_LENGTH) {
+			int end = Math.min(start + INSERTION_SORT_LENGTH, numberOfKeys);
+			insertionSort(indices, start, end, indexComparator);
+		}
+
+		int[] source = indices;
+		int[] target = new int[numberOfKeys];
+		for (int width = INSERTION_SORT_LENGTH; width < numberOfKeys; width *= 2) {
+			for (int start = 0; start < numberOfKeys; start += 2 * width) {
+				int middle = Math.min(start + width, numberOfKeys);
+				int end = Math.min(start + 2 * width, numberOfKeys);
+				merge(source, target, start, middle, end, indexComparator);
+			}
+			int[] merged = target;
+			target = source;
+			source = merged;
+		}
+		return source;
+	}
+
+	private static void insertionSort(int[] indices, int start, int end, IndexComparator indexComparator) {
+		for (int position = start + 1; position < end; position++) {
+			int index = indices[position];
+			int previousPosition = position - 1;
+			while (previousPosition >= start && indexComparator.compare(indices[previousPosition], index) > 0) {
+				indices[previousPosition + 1] = indices[previousPosition];
+				previousPosition--;
+			}
+			indices[previousPosition + 1] = index;
+		}
+	}
+
+	/**
+	 * Merges the sorted runs start..middle and middle..end of the source into
+	 * the target; equal keys keep their order
+	 */
+	private static void merge(int[] source, int[] target, int start, int middle, int end,
+			IndexComparator indexComparator) {
+		int left = start;
+		int right = middle;
+		int position = start;
+		while (left < middle && right < end) {
+			boolean isRightFirst = indexComparator.compare(source[right], source[left]) < 0;
+			if (isRightFirst) {
+				target[position++] = source[right++];
+			} else {
+				target[position++] = source[left++];
+			}
+		}
+		System.arraycopy(source, left, target, position, middle - left);
+		System.arraycopy(source, right, target, position + middle - left, end - right);
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * Compares two keys by their indices
+	 */
+	@FunctionalInterface
+	private interface IndexComparator {
+
+		int compare(int firstIndex, int secondIndex);
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,549 @@
+package org.treez.javafxd3.d3.arrays;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.treez.javafxd3.d3.core.JsEngine;
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.ScriptTemplateCache;
+
+/**
+ * Transfers primitive Java arrays to JavaScript typed arrays
+ * (Float64Array, Float32Array, Int32Array) and numeric JavaScript arrays back
+ * to primitive Java arrays.
+ * <p>
+ * Instead of building a JavaScript source literal with one entry per element
+ * (or reading one element per call), the values are packed as little-endian
+ * bytes, encoded as a single base64 string and decoded on the other side with
+ * one call. This avoids the large
+ * temporary strings and the parsing effort of array literals for big data
+ * sets. (The typed arrays use the byte order of the platform, which is little
+ * endian on all platforms that are supported by JavaFx.)
+ */
+public class TypedArrays {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Kinds of the arrays of {@link #toArrayArguments(JsEngine, Object[])}
+	 */
+	private static final String NUMBERS_KIND = "numbers";
+
+	private static final String STRINGS_KIND = "strings";
+
+	private static final String ARRAY_KIND = "array";
+
+	private static final String VALUES_KIND = "values";
+
+	/**
+	 * Arrays of other objects than numbers or strings with more elements than
+	 * this are passed in several calls, so that no call exceeds the argument
+	 * limits of the JavaScript engine
+	 */
+	private static final int MAX_NUMBER_OF_ARGUMENTS = 1024;
+
+	/**
+	 * Source code of a JavaScript function(base64, type) that decodes a
+	 * base64 string of little-endian bytes to a typed array of the given type
+	 * ('Float64', 'Float32', 'Int32' or 'Uint8'). Can be embedded in other
+	 * JavaScript functions that receive encoded arrays.
+	 */
+	public static final String DECODER_FUNCTION = "function(base64, type){" //
+			+ "  var binary = atob(base64);" //
+			+ "  var length = binary.length;" //
+			+ "  var bytes = new Uint8Array(length);" //
+			+ "  for(var index = 0; index < length; index++){" //
+			+ "    bytes[index] = binary.charCodeAt(index);" //
+			+ "  }" //
+			+ "  switch(type){" //
+			+ "    case 'Float64': return new Float64Array(bytes.buffer);" //
+			+ "    case 'Float32': return new Float32Array(bytes.buffer);" //
+			+ "    case 'Int32': return new Int32Array(bytes.buffer);" //
+			+ "    case 'Uint8': return bytes;" //
+			+ "  }" //
+			+ "  throw new Error('Unknown typed array type ' + type);" //
+			+ "}";
+
+	/**
+	 * Source code of a JavaScript function(packed) that unpacks a string that
+	 * has been created with {@link #packStrings(String[])} to an array of
+	 * strings
+	 */
+	public static final String STRING_UNPACKER_FUNCTION = "function(packed){" //
+			+ "  var separatorIndex = packed.indexOf(';');" //
+			+ "  var lengthsString = packed.substring(0, separatorIndex);" //
+			+ "  if(lengthsString.length === 0){" //
+			+ "    return [];" //
+			+ "  }" //
+			+ "  var lengths = lengthsString.split(',');" //
+			+ "  var values = new Array(lengths.length);" //
+			+ "  var offset = separatorIndex + 1;" //
+			+ "  for(var index = 0; index < lengths.length; index++){" //
+			+ "    var length = +lengths[index];" //
+			+ "    if(length < 0){" //
+			+ "      values[index] = null;" //
+			+ "    } else {" //
+			+ "      values[index] = packed.substr(offset, length);" //
+			+ "      offset += length;" //
+			+ "    }" //
+			+ "  }" //
+			+ "  return values;" //
+			+ "}";
+
+	/**
+	 * Source code of a JavaScript function(values, type) that encodes the
+	 * given array as base64 string of the bytes of a typed array of the given
+	 * type ('Float64' or 'Int32'). The values are converted like they would be
+	 * converted when assigning them to a typed array, e.g. null to 0 and
+	 * undefined to NaN. Can be embedded in other JavaScript functions that
+	 * return encoded arrays, see {@link #decodeDoubles(String)}.
+	 */
+	public static final String ENCODER_FUNCTION = "function(values, type){" //
+			+ "  var length = values.length;" //
+			+ "  var typedArray;" //
+			+ "  switch(type){" //
+			+ "    case 'Float64': typedArray = new Float64Array(length); break;" //
+			+ "    case 'Int32': typedArray = new Int32Array(length); break;" //
+			+ "    default: throw new Error('Unknown typed array type ' + type);" //
+			+ "  }" //
+			+ "  for(var index = 0; index < length; index++){" //
+			+ "    typedArray[index] = values[index];" //
+			+ "  }" //
+			+ "  var bytes = new Uint8Array(typedArray.buffer);" //
+			+ "  var chunks = [];" //
+			+ "  for(var start = 0; start < bytes.length; start += 0x8000){" //
+			+ "    chunks.push(String.fromCharCode.apply(null, bytes.subarray(start, start + 0x8000)));" //
+			+ "  }" //
+			+ "  return btoa(chunks.join(''));" //
+			+ "}";
+
+	/**
+	 * Source code of a JavaScript function(strings) that packs an array of
+	 * strings (or null) to a single string that can be unpacked with
+	 * {@link #unpackStrings(String)}
+	 */
+	public static final String STRING_PACKER_FUNCTION = "function(strings){" //
+			+ "  var lengths = new Array(strings.length);" //
+			+ "  for(var index = 0; index < strings.length; index++){" //
+			+ "    var string = strings[index];" //
+			+ "    lengths[index] = string == null ? -1 : string.length;" //
+			+ "  }" //
+			+ "  return lengths.join(',') + ';' + strings.join('');" //
+			+ "}";
+
+	/**
+	 * Source code of a JavaScript function(args, offset) that restores an array
+	 * from the call arguments that have been created with
+	 * {@link #toArrayArguments(JsEngine, Object[])}, starting at the given
+	 * argument offset. Returns a plain JavaScript array.
+	 */
+	public static final String ARRAY_ARGUMENTS_FUNCTION = "function(args, offset){" //
+			+ "  switch(args[offset]){" //
+			+ "    case '" + NUMBERS_KIND + "':" //
+			+ "      var numbers = (" + DECODER_FUNCTION + ")(args[offset + 1], 'Float64');" //
+			+ "      var values = new Array(numbers.length);" //
+			+ "      for(var index = 0; index < numbers.length; index++){" //
+			+ "        values[index] = numbers[index];" //
+			+ "      }" //
+			+ "      return values;" //
+			+ "    case '" + STRINGS_KIND + "':" //
+			+ "      return (" + STRING_UNPACKER_FUNCTION + ")(args[offset + 1]);" //
+			+ "    case '" + ARRAY_KIND + "':" //
+			+ "      return args[offset + 1];" //
+			+ "    default:" //
+			+ "      return Array.prototype.slice.call(args, offset + 1);" //
+			+ "  }" //
+			+ "}";
+
+	/**
+	 * Appends the arguments after the first one to the array that is given as
+	 * first argument
+	 */
+	private static final String APPEND_FUNCTION = "function(array){" //
+			+ "  for(var index = 1; index < arguments.length; index++){" //
+			+ "    array.push(arguments[index]);" //
+			+ "  }" //
+			+ "}";
+
+	private static final String CREATE_ARRAY_FUNCTION = "function(){ return []; }";
+
+	/**
+	 * Source code of a JavaScript function(rows) that encodes a two-dimensional
+	 * array as Float64Array of the form [numberOfRows, rowLength1, ...,
+	 * rowLengthN, values of row 1, ..., values of row N]
+	 */
+	private static final String MATRIX_ENCODER_FUNCTION = "function(rows){" //
+			+ "  var numberOfRows = rows.length;" //
+			+ "  var flat = [numberOfRows];" //
+			+ "  for(var rowIndex = 0; rowIndex < numberOfRows; rowIndex++){" //
+			+ "    flat.push(rows[rowIndex] == null ? 0 : rows[rowIndex].length);" //
+			+ "  }" //
+			+ "  for(rowIndex = 0; rowIndex < numberOfRows; rowIndex++){" //
+			+ "    var row = rows[rowIndex];" //
+			+ "    if(row != null){" //
+			+ "      for(var columnIndex = 0; columnIndex < row.length; columnIndex++){" //
+			+ "        flat.push(row[columnIndex]);" //
+			+ "      }" //
+			+ "    }" //
+			+ "  }" //
+			+ "  return (" + ENCODER_FUNCTION + ")(flat, 'Float64');" //
+			+ "}";
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Creates a JavaScript Float64Array with the given values
+	 *
+	 * @param engine
+	 * @param values
+	 * @return
+	 */
+	public static JsObject createFloat64Array(JsEngine engine, double[] values) {
+		String base64 = encode(values);
+		return decode(engine, base64, "Float64");
+	}
+
+	/**
+	 * Creates a JavaScript Float64Array with the given float values. Each
+	 * value is widened to the double with the same decimal representation
+	 * (e.g. 0.1f to 0.1 instead of 0.10000000149011612), so that the values
+	 * equal the number literals of the floats.
+	 *
+	 * @param engine
+	 * @param values
+	 * @return
+	 */
+	public static JsObject createFloat64Array(JsEngine engine, float[] values) {
+		double[] doubleValues = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			doubleValues[index] = Double.parseDouble(Float.toString(values[index]));
+		}
+		return createFloat64Array(engine, doubleValues);
+	}
+
+	/**
+	 * Creates a JavaScript Float32Array with the given values
+	 *
+	 * @param engine
+	 * @param values
+	 * @return
+	 */
+	public static JsObject createFloat32Array(JsEngine engine, float[] values) {
+		String base64 = encode(values);
+		return decode(engine, base64, "Float32");
+	}
+
+	/**
+	 * Creates a JavaScript Int32Array with the given values
+	 *
+	 * @param engine
+	 * @param values
+	 * @return
+	 */
+	public static JsObject createInt32Array(JsEngine engine, int[] values) {
+		String base64 = encode(values);
+		return decode(engine, base64, "Int32");
+	}
+
+	/**
+	 * Encodes the given values as base64 string of little-endian bytes
+	 *
+	 * @param values
+	 * @return
+	 */
+	public static String encode(double[] values) {
+		ByteBuffer buffer = createBuffer(values.length * Double.BYTES);
+		buffer.asDoubleBuffer().put(values);
+		return encode(buffer);
+	}
+
+	/**
+	 * Encodes the first values of the given array as base64 string of
+	 * little-endian bytes, e.g. the used part of a reusable buffer
+	 *
+	 * @param values
+	 * @param length
+	 *            the number of values to encode
+	 * @return
+	 */
+	public static String encode(double[] values, int length) {
+		ByteBuffer buffer = createBuffer(length * Double.BYTES);
+		buffer.asDoubleBuffer().put(values, 0, length);
+		return encode(buffer);
+	}
+
+	/**
+	 * Encodes the first bytes of the given array as base64 string; can be
+	 * decoded as 'Uint8' typed array
+	 *
+	 * @param bytes
+	 * @param length
+	 *            the number of bytes to encode
+	 * @return
+	 */
+	public static String encode(byte[] bytes, int length) {
+		ByteBuffer buffer = Base64.getEncoder().encode(ByteBuffer.wrap(bytes, 0, length));
+		return new String(buffer.array(), 0, buffer.limit(), StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Encodes the given values as base64 string of little-endian bytes
+	 *
+	 * @param values
+	 * @return
+	 */
+	public static String encode(float[] values) {
+		ByteBuffer buffer = createBuffer(values.length * Float.BYTES);
+		buffer.asFloatBuffer().put(values);
+		return encode(buffer);
+	}
+
+	/**
+	 * Encodes the given values as base64 string of little-endian bytes
+	 *
+	 * @param values
+	 * @return
+	 */
+	public static String encode(int[] values) {
+		ByteBuffer buffer = createBuffer(values.length * Integer.BYTES);
+		buffer.asIntBuffer().put(values);
+		return encode(buffer);
+	}
+
+	/**
+	 * Reads the values of the given JavaScript array (or typed array) with a
+	 * single call
+	 *
+	 * @param engine
+	 * @param array
+	 * @return
+	 */
+	public static double[] readDoubles(JsEngine engine, JsObject array) {
+		String base64 = encodeInJavaScript(engine, ENCODER_FUNCTION, array, "Float64");
+		return decodeDoubles(base64);
+	}
+
+	/**
+	 * Reads the values of the given JavaScript array (or typed array) with a
+	 * single call. The values are converted to 32 bit integers like in
+	 * JavaScript, e.g. 2.7 to 2.
+	 *
+	 * @param engine
+	 * @param array
+	 * @return
+	 */
+	public static int[] readInts(JsEngine engine, JsObject array) {
+		String base64 = encodeInJavaScript(engine, ENCODER_FUNCTION, array, "Int32");
+		return decodeInts(base64);
+	}
+
+	/**
+	 * Reads the values of the given two-dimensional JavaScript array with a
+	 * single call. The rows might have different lengths.
+	 *
+	 * @param engine
+	 * @param rows
+	 * @return
+	 */
+	public static double[][] readDoubleMatrix(JsEngine engine, JsObject rows) {
+		String base64 = encodeInJavaScript(engine, MATRIX_ENCODER_FUNCTION, rows);
+		double[] flatValues = decodeDoubles(base64);
+		int numberOfRows = (int) flatValues[0];
+		double[][] matrix = new double[numberOfRows][];
+		int offset = 1 + numberOfRows;
+		for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			int rowLength = (int) flatValues[1 + rowIndex];
+			matrix[rowIndex] = Arrays.copyOfRange(flatValues, offset, offset + rowLength);
+			offset += rowLength;
+		}
+		return matrix;
+	}
+
+	/**
+	 * Decodes a base64 string of little-endian bytes
+	 *
+	 * @param base64
+	 * @return
+	 */
+	public static double[] decodeDoubles(String base64) {
+		ByteBuffer buffer = wrap(base64);
+		double[] values = new double[buffer.remaining() / Double.BYTES];
+		buffer.asDoubleBuffer().get(values);
+		return values;
+	}
+
+	/**
+	 * Decodes a base64 string of little-endian bytes
+	 *
+	 * @param base64
+	 * @return
+	 */
+	public static int[] decodeInts(String base64) {
+		ByteBuffer buffer = wrap(base64);
+		int[] values = new int[buffer.remaining() / Integer.BYTES];
+		buffer.asIntBuffer().get(values);
+		return values;
+	}
+
+	/**
+	 * Packs the given strings into a single string of the form
+	 * "length1,length2,...;string1string2..." where the length -1 stands for
+	 * null
+	 *
+	 * @param strings
+	 * @return
+	 */
+	public static String packStrings(String[] strings) {
+		StringBuilder lengths = new StringBuilder();
+		StringBuilder contents = new StringBuilder();
+		for (int index = 0; index < strings.length; index++) {
+			if (index > 0) {
+				lengths.append(',');
+			}
+			String string = strings[index];
+			if (string == null) {
+				lengths.append(-1);
+			} else {
+				lengths.append(string.length());
+				contents.append(string);
+			}
+		}
+		return lengths.append(';').append(contents).toString();
+	}
+
+	/**
+	 * Unpacks a string of the form "length1,length2,...;string1string2..."
+	 * where the length -1 stands for null
+	 *
+	 * @param packedStrings
+	 * @return
+	 */
+	public static String[] unpackStrings(String packedStrings) {
+		int separatorIndex = packedStrings.indexOf(';');
+		String lengthsString = packedStrings.substring(0, separatorIndex);
+		if (lengthsString.isEmpty()) {
+			return new String[0];
+		}
+
+		String[] lengths = lengthsString.split(",");
+		String[] strings = new String[lengths.length];
+		int offset = separatorIndex + 1;
+		for (int index = 0; index < lengths.length; index++) {
+			int length = Integer.parseInt(lengths[index]);
+			boolean isNull = length < 0;
+			if (!isNull) {
+				strings[index] = packedStrings.substring(offset, offset + length);
+				offset += length;
+			}
+		}
+		return strings;
+	}
+
+	private static ByteBuffer wrap(String base64) {
+		byte[] bytes = Base64.getDecoder().decode(base64);
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Calls the given encoder function, which is compiled only once per engine
+	 */
+	private static String encodeInJavaScript(JsEngine engine, String encoderFunction, Object... arguments) {
+		Object result = callFunction(engine, encoderFunction, arguments);
+		boolean isString = result instanceof String;
+		if (!isString) {
+			String message = "Could not encode JavaScript array";
+			throw new IllegalStateException(message);
+		}
+		return (String) result;
+	}
+
+	private static ByteBuffer createBuffer(int numberOfBytes) {
+		return ByteBuffer.allocate(numberOfBytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static String encode(ByteBuffer buffer) {
+		return Base64.getEncoder().encodeToString(buffer.array());
+	}
+
+	/**
+	 * Converts the given values to call arguments for a template that restores
+	 * them with {@link #ARRAY_ARGUMENTS_FUNCTION}. Numbers are encoded as a
+	 * single Float64 string and strings are packed into a single string, so
+	 * that large arrays do not need one argument per element. Other objects
+	 * (e.g. JavaScript objects) are passed as arguments; large arrays of them
+	 * are collected in a JavaScript array with one call per
+	 * {@value #MAX_NUMBER_OF_ARGUMENTS} elements.
+	 */
+	public static Object[] toArrayArguments(JsEngine engine, Object[] values) {
+		boolean isNumeric = values.length > 0;
+		boolean isText = values.length > 0;
+		for (Object value : values) {
+			isNumeric = isNumeric && (value instanceof Double || value instanceof Integer || value instanceof Float
+					|| value instanceof Long || value instanceof Short || value instanceof Byte);
+			isText = isText && (value == null || value instanceof String);
+			if (!isNumeric && !isText) {
+				break;
+			}
+		}
+
+		if (isNumeric) {
+			double[] numbers = new double[values.length];
+			for (int index = 0; index < values.length; index++) {
+				numbers[index] = ((Number) values[index]).doubleValue();
+			}
+			return new Object[] { NUMBERS_KIND, encode(numbers) };
+		}
+
+		if (isText) {
+			String[] strings = new String[values.length];
+			System.arraycopy(values, 0, strings, 0, values.length);
+			return new Object[] { STRINGS_KIND, packStrings(strings) };
+		}
+
+		boolean isSmall = values.length <= MAX_NUMBER_OF_ARGUMENTS;
+		if (isSmall) {
+			Object[] arguments = new Object[values.length + 1];
+			arguments[0] = VALUES_KIND;
+			System.arraycopy(values, 0, arguments, 1, values.length);
+			return arguments;
+		}
+
+		Object array = callFunction(engine, CREATE_ARRAY_FUNCTION);
+		for (int start = 0; start < values.length; start += MAX_NUMBER_OF_ARGUMENTS) {
+			int end = Math.min(start + MAX_NUMBER_OF_ARGUMENTS, values.length);
+			Object[] arguments = new Object[end - start + 1];
+			arguments[0] = array;
+			System.arraycopy(values, start, arguments, 1, end - start);
+			callFunction(engine, APPEND_FUNCTION, arguments);
+		}
+		return new Object[] { ARRAY_KIND, array };
+	}
+
+	/**
+	 * Calls the decoder function, which is compiled only once per engine
+	 */
+	private static JsObject decode(JsEngine engine, String base64, String type) {
+		Object result = callFunction(engine, DECODER_FUNCTION, base64, type);
+		boolean isJsObject = result instanceof JsObject;
+		if (!isJsObject) {
+			String message = "Could not create JavaScript " + type + "Array";
+			throw new IllegalStateException(message);
+		}
+		return (JsObject) result;
+	}
+
+	private static Object callFunction(JsEngine engine, String functionSource, Object... arguments) {
+		JsObject function = ScriptTemplateCache.forEngine(engine).getFunction(functionSource);
+		Object[] callArguments = new Object[arguments.length + 1];
+		System.arraycopy(arguments, 0, callArguments, 1, arguments.length);
+		return function.call("call", callArguments);
+	}
+
+	//#end region
+
+}
@@ -8,6 +8,8 @@ import org.treez.javafxd3.d3.functions.JsFunction;
 import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
 
 import org.treez.javafxd3.d3.core.JsEngine;
+import org.treez.javafxd3.d3.core.EventCoalescing;
+import org.treez.javafxd3.d3.core.ListenerRegistry;
 import org.treez.javafxd3.d3.core.JsObject;
 
 /**
@@ -17,6 +19,16 @@ import org.treez.javafxd3.d3.core.JsObject;
  */
 public class Drag extends JavaScriptObject implements JsFunction {
 
+	//#region ATTRIBUTES
+
+	private static final String DRAG_START_ADAPTER = createDragFunctionAdapter("handleDragStart");
+
+	private static final String DRAG_ADAPTER = createDragFunctionAdapter("handleDrag");
+
+	private static final String DRAG_END_ADAPTER = createDragFunctionAdapter("handleDragEnd");
+
+	//#end region
+
 	//#region CONSTRUCTORS
 
 	/**
@@ -32,6 +44,14 @@ public class Drag extends JavaScriptObject implements JsFunction {
 
 	//#region METHODS
 
+	private static String createDragFunctionAdapter(String handlerName) {
+		return "function(fns, h){" //
+				+ "  return function(d, index){" //
+				+ "    fns[h]." + handlerName + "(this, d, index);" //
+				+ "  };" //
+				+ "}";
+	}
+
 	/**
 	 * Type of drag event to listen to.
 	 * 
@@ -67,80 +87,46 @@ public class Drag extends JavaScriptObject implements JsFunction {
 	 * @return
 	 */
 	public Drag on(DragEventType type, DataFunction<Void> listener) {
+		String eventName = type.name().toLowerCase().replace("_", "-");
+		ListenerRegistry.forEngine(engine).addObjectListener(getJsObject(), eventName, listener,
+				ListenerRegistry.DATA_FUNCTION_LISTENER_ADAPTER);
+		return new Drag(engine, getJsObject());
+	}
 
+	/**
+	 * Same as {@link #on(DragEventType, DataFunction)} but coalesces the
+	 * events in JavaScript, e.g. the drag events. See {@link EventCoalescing}.
+	 * 
+	 * @param type
+	 * @param listener
+	 * @param coalescing
+	 * @return
+	 */
+	public Drag on(DragEventType type, DataFunction<Void> listener, EventCoalescing coalescing) {
 		String eventName = type.name().toLowerCase().replace("_", "-");
-		String listenerName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(listenerName, listener);
-		String command = "var "+varName+" = d3." + listenerName + " == null ? null : " + "function(d, index) {" //		      
-				+ "d3." + listenerName + ".apply(this,d,index);" //
-				+ " }; ";
-		eval(command);
-		String onCommand = "this.on('" + eventName + "', "+varName+");";
-
-		JsObject result = evalForJsObject(onCommand);
-		
-		if(result==null){
-			return null;
-		}
-		
-		return new Drag(engine, result);
+		ListenerRegistry.forEngine(engine).addObjectListener(getJsObject(), eventName, listener,
+				coalescing.getAdapter());
+		return new Drag(engine, getJsObject());
 	}
-	
-	
+
 	public Drag onDragStart(DragFunction listener) {
-		assertObjectIsNotAnonymous(listener);
-		String listenerName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(listenerName, listener);
-		String command = "var "+varName+" = d3." + listenerName + " == null ? null : " + "function(d, index) {" //		      
-				+ "d3." + listenerName + ".handleDragStart(this,d,index);" //
-				+ " }; ";
-		eval(command);
-		String onCommand = "this.on('dragstart', "+varName+");";
-		JsObject result = evalForJsObject(onCommand);
-		
-		if(result==null){
-			return null;
-		}
-		
-		return new Drag(engine, result);
+		return onDragEvent("dragstart", listener, DRAG_START_ADAPTER);
 	}
-	
+
 	public Drag onDrag(DragFunction listener) {
-		assertObjectIsNotAnonymous(listener);
-		String listenerName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(listenerName, listener);
-		String command = "var "+varName+" = d3." + listenerName + " == null ? null : " + "function(d, index) {" //		      
-				+ "d3." + listenerName + ".handleDrag(this,d,index);" //
-				+ " }; ";
-		eval(command);
-		String onCommand = "this.on('drag', "+varName+");";
-		JsObject result = evalForJsObject(onCommand);
-		
-		if(result==null){
-			return null;
-		}
-		return new Drag(engine, result);
+		return onDragEvent("drag", listener, DRAG_ADAPTER);
 	}
-	
+
 	public Drag onDragEnd(DragFunction listener) {
-		assertObjectIsNotAnonymous(listener);
-		String listenerName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(listenerName, listener);
-		String command = "var "+varName+" = d3." + listenerName + " == null ? null : " + "function(d, index) {" //		      
-				+ "d3." + listenerName + ".handleDragEnd(this,d,index);" //
-				+ " }; ";
-		eval(command);
-		String onCommand = "this.on('dragend', "+varName+");";
-		JsObject result = evalForJsObject(onCommand);
-		return new Drag(engine, result);
+		return onDragEvent("dragend", listener, DRAG_END_ADAPTER);
+	}
+
+	private Drag onDragEvent(String eventName, DragFunction listener, String adapter) {
+		if (listener != null) {
+			assertObjectIsNotAnonymous(listener);
+		}
+		ListenerRegistry.forEngine(engine).addObjectListener(getJsObject(), eventName, listener, adapter);
+		return new Drag(engine, getJsObject());
 	}
 
 	/**
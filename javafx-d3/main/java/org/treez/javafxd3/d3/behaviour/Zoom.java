@@ -12,8 +12,10 @@ import org.treez.javafxd3.d3.functions.JsFunction;
 import org.treez.javafxd3.d3.scales.LinearScale;
 import org.treez.javafxd3.d3.scales.QuantitativeScale;
 
+import org.treez.javafxd3.d3.core.EventCoalescing;
 import org.treez.javafxd3.d3.core.JsEngine;
 import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.ListenerRegistry;
 
 /**
  * This behavior automatically creates event listeners to handle scroll gestures
@@ -83,30 +85,33 @@ public class Zoom extends JavaScriptObject implements JsFunction {
 	 * @return the current zoom instance
 	 */
 	public Zoom on(ZoomEventType type, DataFunction<Void> listener) {
-
-		assertObjectIsNotAnonymous(listener);
-
-		String listenerName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(listenerName, listener);
-
+		if (listener != null) {
+			assertObjectIsNotAnonymous(listener);
+		}
 		String eventName = type.name().toLowerCase();
-				
-		String command = "var "+varName+" = d3." + listenerName + " == null ? null : " + "function(d, i) {" //		      
-				+ "d3." + listenerName + ".apply(this,d,i);" //
-				+ " }; ";
-
-		eval(command);
-		String onCommand = "this.on('" + eventName + "', "+varName+");";
-
-		JsObject result = evalForJsObject(onCommand);
-		
+		ListenerRegistry.forEngine(engine).addObjectListener(getJsObject(), eventName, listener,
+				ListenerRegistry.DATA_FUNCTION_LISTENER_ADAPTER);
+		return new Zoom(engine, getJsObject());
+	}
 
-		if (result == null) {
-			return null;
+	/**
+	 * Same as {@link #on(ZoomEventType, DataFunction)} but coalesces the
+	 * events in JavaScript, e.g. the zoom events of a mouse wheel. See
+	 * {@link EventCoalescing}.
+	 * 
+	 * @param type
+	 * @param listener
+	 * @param coalescing
+	 * @return the current zoom instance
+	 */
+	public Zoom on(ZoomEventType type, DataFunction<Void> listener, EventCoalescing coalescing) {
+		if (listener != null) {
+			assertObjectIsNotAnonymous(listener);
 		}
-		return new Zoom(engine, result);
+		String eventName = type.name().toLowerCase();
+		ListenerRegistry.forEngine(engine).addObjectListener(getJsObject(), eventName, listener,
+				coalescing.getAdapter());
+		return new Zoom(engine, getJsObject());
 	}
 
 	/**
@@ -0,0 +1,404 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.treez.javafxd3.d3.D3;
+import org.treez.javafxd3.metrics.BridgeMetrics;
+import org.treez.javafxd3.metrics.RenderScope;
+
+/**
+ * Executes operations on a JsEngine (and its D3 wrapper) that are submitted
+ * from arbitrary threads. The operations are queued and executed in the order
+ * of their submission on the thread of the engine (e.g. the JavaFx
+ * application thread). Their results are passed to the returned
+ * CompletableFutures.
+ * <p>
+ * Operations that are submitted with a key replace a pending operation with
+ * the same key, e.g. if a chart is updated more often than the engine thread
+ * can render it. The replacing operation is moved to the end of the queue, so
+ * that it is still executed after all operations that have been submitted
+ * before it. The futures of the replaced operations are completed with the
+ * result of the replacing operation.
+ * <p>
+ * The number of queued operations is limited. If the queue is full, threads
+ * that submit operations are blocked until the engine thread has processed
+ * some of the operations. Operations that are submitted on the engine thread
+ * are never blocked.
+ * <p>
+ * Each operation is executed within a batch of the engine, see
+ * {@link JsEngine#beginBatch()}.
+ */
+public class AsyncJsEngine {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Default maximum number of queued operations
+	 */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	/**
+	 * Maximum number of operations that are executed at once before the
+	 * engine thread is released for other work (e.g. rendering)
+	 */
+	private static final int MAX_NUMBER_OF_OPERATIONS_PER_DRAIN = 100;
+
+	/**
+	 * The name of the renders in the BridgeMetrics
+	 */
+	private static final String RENDER_NAME = "AsyncJsEngine.drain";
+
+	private final JsEngine engine;
+
+	/**
+	 * Executes runnables on the engine thread, e.g. Platform::runLater
+	 */
+	private final Executor engineThreadExecutor;
+
+	/**
+	 * Returns true if the current thread is the engine thread
+	 */
+	private final BooleanSupplier isEngineThread;
+
+	/**
+	 * Limits the number of queued operations
+	 */
+	private final Semaphore permits;
+
+	private final Object lock = new Object();
+
+	private final ArrayDeque<Operation> queue = new ArrayDeque<>();
+
+	/**
+	 * The queued operations that have been submitted with a key, by key
+	 */
+	private final Map<Object, Operation> operationsByKey = new HashMap<>();
+
+	private boolean drainIsScheduled = false;
+
+	/**
+	 * The d3 wrapper; only used on the engine thread
+	 */
+	private D3 d3;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public AsyncJsEngine(JsEngine engine, Executor engineThreadExecutor, BooleanSupplier isEngineThread) {
+		this(engine, engineThreadExecutor, isEngineThread, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param engine
+	 * @param engineThreadExecutor
+	 *            executes runnables on the thread of the engine, e.g.
+	 *            Platform::runLater
+	 * @param isEngineThread
+	 *            returns true if the current thread is the thread of the
+	 *            engine, e.g. Platform::isFxApplicationThread
+	 * @param capacity
+	 *            maximum number of queued operations
+	 */
+	public AsyncJsEngine(JsEngine engine, Executor engineThreadExecutor, BooleanSupplier isEngineThread,
+			int capacity) {
+		this.engine = Objects.requireNonNull(engine);
+		this.engineThreadExecutor = Objects.requireNonNull(engineThreadExecutor);
+		this.isEngineThread = Objects.requireNonNull(isEngineThread);
+		if (capacity < 1) {
+			throw new IllegalStateException("The capacity must be positive");
+		}
+		this.permits = new Semaphore(capacity);
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Queues the given operation
+	 */
+	public <R> CompletableFuture<R> submit(Function<JsEngine, R> operation) {
+		return enqueue(null, operation);
+	}
+
+	/**
+	 * Queues the given operation. If an operation with the same key is still
+	 * queued, it is replaced by the given operation.
+	 */
+	public <R> CompletableFuture<R> submit(Object key, Function<JsEngine, R> operation) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return enqueue(key, operation);
+	}
+
+	/**
+	 * Queues the given operation that does not return a result
+	 */
+	public CompletableFuture<Void> run(Consumer<JsEngine> operation) {
+		return enqueue(null, jsEngine -> {
+			operation.accept(jsEngine);
+			return null;
+		});
+	}
+
+	/**
+	 * Queues the given operation on the d3 wrapper of the engine
+	 */
+	public <R> CompletableFuture<R> submitToD3(Function<D3, R> operation) {
+		return enqueue(null, jsEngine -> operation.apply(getD3()));
+	}
+
+	/**
+	 * Queues the given operation on the d3 wrapper of the engine. If an
+	 * operation with the same key is still queued, it is replaced by the given
+	 * operation.
+	 */
+	public <R> CompletableFuture<R> submitToD3(Object key, Function<D3, R> operation) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return enqueue(key, jsEngine -> operation.apply(getD3()));
+	}
+
+	/**
+	 * Queues the execution of the given script
+	 */
+	public CompletableFuture<Object> executeScript(String script) {
+		return enqueue(null, jsEngine -> jsEngine.executeScript(script));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R> CompletableFuture<R> enqueue(Object key, Function<JsEngine, R> function) {
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		Function<JsEngine, Object> operationFunction = (Function<JsEngine, Object>) function;
+
+		boolean isCoalesced = tryToReplaceQueuedOperation(key, operationFunction, future);
+		if (isCoalesced) {
+			return (CompletableFuture<R>) future;
+		}
+
+		boolean holdsPermit = !isEngineThread.getAsBoolean();
+		if (holdsPermit) {
+			try {
+				permits.acquire();
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				future.completeExceptionally(exception);
+				return (CompletableFuture<R>) future;
+			}
+		}
+
+		Operation operation;
+		boolean scheduleDrain;
+		synchronized (lock) {
+			isCoalesced = tryToReplaceQueuedOperation(key, operationFunction, future);
+			if (isCoalesced) {
+				if (holdsPermit) {
+					permits.release();
+				}
+				return (CompletableFuture<R>) future;
+			}
+
+			operation = new Operation(key, operationFunction, future, holdsPermit);
+			queue.add(operation);
+			if (key != null) {
+				operationsByKey.put(key, operation);
+			}
+
+			scheduleDrain = !drainIsScheduled;
+			drainIsScheduled = true;
+		}
+
+		if (scheduleDrain) {
+			try {
+				engineThreadExecutor.execute(this::drain);
+			} catch (RuntimeException exception) {
+				cancelQueuedOperation(operation, exception);
+				throw exception;
+			}
+		}
+		return (CompletableFuture<R>) future;
+	}
+
+	/**
+	 * Removes the given operation after its drain could not be scheduled (e.g.
+	 * because the executor has been shut down), so that the next submission
+	 * schedules a new drain
+	 */
+	private void cancelQueuedOperation(Operation operation, RuntimeException exception) {
+		synchronized (lock) {
+			drainIsScheduled = false;
+			boolean isQueued = queue.remove(operation);
+			if (!isQueued) {
+				return;
+			}
+			if (operation.key != null) {
+				operationsByKey.remove(operation.key, operation);
+			}
+		}
+		if (operation.holdsPermit) {
+			permits.release();
+		}
+		operation.fail(exception);
+	}
+
+	private boolean tryToReplaceQueuedOperation(Object key, Function<JsEngine, Object> function,
+			CompletableFuture<Object> future) {
+		if (key == null) {
+			return false;
+		}
+		synchronized (lock) {
+			Operation queuedOperation = operationsByKey.get(key);
+			if (queuedOperation == null) {
+				return false;
+			}
+			queuedOperation.replace(function, future);
+			queue.remove(queuedOperation);
+			queue.add(queuedOperation);
+			return true;
+		}
+	}
+
+	/**
+	 * Executes the queued operations on the engine thread and schedules the
+	 * next drain if operations are left. If that fails, the next submission
+	 * schedules a new drain.
+	 */
+	private void drain() {
+		boolean isHandedOver = false;
+		try {
+			boolean isQueueEmpty = executeQueuedOperations();
+			if (!isQueueEmpty) {
+				engineThreadExecutor.execute(this::drain);
+			}
+			isHandedOver = true;
+		} finally {
+			if (!isHandedOver) {
+				synchronized (lock) {
+					drainIsScheduled = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes up to MAX_NUMBER_OF_OPERATIONS_PER_DRAIN queued operations and
+	 * returns true if the queue has been emptied. Each call is measured as a
+	 * render by the BridgeMetrics.
+	 */
+	private boolean executeQueuedOperations() {
+		RenderScope render = BridgeMetrics.beginRender(RENDER_NAME);
+		try {
+			for (int count = 0; count < MAX_NUMBER_OF_OPERATIONS_PER_DRAIN; count++) {
+				Operation operation;
+				synchronized (lock) {
+					operation = queue.poll();
+					if (operation == null) {
+						drainIsScheduled = false;
+						return true;
+					}
+					if (operation.key != null) {
+						operationsByKey.remove(operation.key);
+					}
+				}
+				if (operation.holdsPermit) {
+					permits.release();
+				}
+				operation.execute(engine);
+			}
+			return false;
+		} finally {
+			render.close();
+		}
+	}
+
+	private D3 getD3() {
+		if (d3 == null) {
+			d3 = new D3(engine);
+		}
+		return d3;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the number of queued operations
+	 */
+	public int getNumberOfQueuedOperations() {
+		synchronized (lock) {
+			return queue.size();
+		}
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * A queued operation with the futures that wait for its result
+	 */
+	private static class Operation {
+
+		private final Object key;
+
+		private Function<JsEngine, Object> function;
+
+		private final List<CompletableFuture<Object>> futures = new ArrayList<>(1);
+
+		private final boolean holdsPermit;
+
+		Operation(Object key, Function<JsEngine, Object> function, CompletableFuture<Object> future,
+				boolean holdsPermit) {
+			this.key = key;
+			this.function = function;
+			this.futures.add(future);
+			this.holdsPermit = holdsPermit;
+		}
+
+		/**
+		 * Only called while holding the lock of the AsyncJsEngine
+		 */
+		void replace(Function<JsEngine, Object> newFunction, CompletableFuture<Object> future) {
+			function = newFunction;
+			futures.add(future);
+		}
+
+		void execute(JsEngine engine) {
+			Object result;
+			try {
+				engine.beginBatch();
+				try {
+					result = function.apply(engine);
+				} finally {
+					engine.endBatch();
+				}
+			} catch (Throwable throwable) {
+				fail(throwable);
+				return;
+			}
+			for (CompletableFuture<Object> future : futures) {
+				future.complete(result);
+			}
+		}
+
+		void fail(Throwable throwable) {
+			for (CompletableFuture<Object> future : futures) {
+				future.completeExceptionally(throwable);
+			}
+		}
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,355 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+/**
+ * Passes Java callbacks (e.g. DataFunctions) to JavaScript without creating
+ * temporary members of d3 and without evaluating new JavaScript source code
+ * for each invocation.
+ * <p>
+ * Each registered callback gets a stable integer handle and is stored in a
+ * JavaScript array under that handle. JavaScript functions that forward their
+ * calls to the callback ("trampolines") are created by adapters. An adapter
+ * is the source code of a JavaScript factory function that gets the callback
+ * array and the handle, e.g.
+ *
+ * <pre>
+ * function(fns, h){ return function(d, i){ return fns[h].apply(this, d, i); }; }
+ * </pre>
+ *
+ * Each adapter is compiled only once per engine and each trampoline is created
+ * only once per callback and adapter.
+ * <p>
+ * Callbacks that are only used during a single invocation (e.g. for
+ * Selection.attr) are kept in a least recently used cache, so that repeated
+ * invocations with the same callback objects do not need any additional
+ * crossing. Callbacks that are used later on (e.g. for timers and event
+ * listeners) are pinned until they are released explicitly.
+ * <p>
+ * A trampoline may provide a cancel function (e.g. to drop a delayed
+ * invocation, see {@link EventCoalescing}); it is called when the callback
+ * is released.
+ */
+public class CallbackRegistry {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Calls the callback as DataFunction (this = element, datum, index)
+	 */
+	public static final String DATA_FUNCTION_ADAPTER = "function(fns, h){" //
+			+ "  return function(d, i){" //
+			+ "    return fns[h].apply(this, d, i);" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * Maximum number of callbacks that are not pinned. The limit is exceeded
+	 * while the engine is batching.
+	 */
+	static final int MAX_NUMBER_OF_TRANSIENT_CALLBACKS = 256;
+
+	private static final String CREATE_REGISTRY_COMMAND = "(function(){" //
+			+ "  var fns = [];" //
+			+ "  var factories = {};" //
+			+ "  var cancels = {};" //
+			+ "  var cancel = function(h){" //
+			+ "    var hooks = cancels[h];" //
+			+ "    if(hooks){" //
+			+ "      delete cancels[h];" //
+			+ "      hooks.forEach(function(hook){" //
+			+ "        hook();" //
+			+ "      });" //
+			+ "    }" //
+			+ "  };" //
+			+ "  return {" //
+			+ "    fns: fns," //
+			+ "    create: function(h, adapter){" //
+			+ "      var factory = factories[adapter];" //
+			+ "      if(!factory){" //
+			+ "        factory = new Function('return ' + adapter)();" //
+			+ "        factories[adapter] = factory;" //
+			+ "      }" //
+			+ "      var trampoline = factory(fns, h);" //
+			+ "      if(typeof trampoline.cancel === 'function'){" //
+			+ "        (cancels[h] || (cancels[h] = [])).push(trampoline.cancel);" //
+			+ "      }" //
+			+ "      return trampoline;" //
+			+ "    }," //
+			+ "    release: function(h){" //
+			+ "      fns[h] = null;" //
+			+ "      cancel(h);" //
+			+ "    }," //
+			+ "    clear: function(){" //
+			+ "      fns.length = 0;" //
+			+ "      for(var h in cancels){" //
+			+ "        cancel(h);" //
+			+ "      }" //
+			+ "    }" //
+			+ "  };" //
+			+ "})()";
+
+	private JsEngine engine;
+
+	/**
+	 * The JavaScript registry object
+	 */
+	private JsObject jsRegistry;
+
+	/**
+	 * The JavaScript array that contains the callbacks
+	 */
+	private JsObject jsCallbacks;
+
+	private int nextHandle = 0;
+
+	/**
+	 * Handles of evicted and released callbacks that can be reused
+	 */
+	private Deque<Integer> freeHandles = new ArrayDeque<>();
+
+	/**
+	 * The callbacks that are not pinned, in the order of their last usage
+	 */
+	private Map<CallbackKey, CallbackEntry> transientEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private Map<CallbackKey, CallbackEntry> pinnedEntries = new HashMap<>();
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public CallbackRegistry(JsEngine engine) {
+		this.engine = engine;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Returns the CallbackRegistry of the given engine
+	 */
+	public static CallbackRegistry forEngine(JsEngine engine) {
+		return engine.getService(CallbackRegistry.class, CallbackRegistry::new);
+	}
+
+	/**
+	 * Returns a JavaScript function that forwards its calls to the given
+	 * callback using the given adapter. The callback is kept in a least
+	 * recently used cache; therefore the returned function must only be used
+	 * during the current invocation (or the current batch).
+	 * <p>
+	 * Old callbacks are only evicted while the engine is not batching, so that
+	 * the trampolines of recorded operations stay valid until the batch is
+	 * flushed. Evicting keeps the most recently used callbacks, which includes
+	 * the callbacks of the current invocation.
+	 */
+	public JsObject getTrampoline(Object callback, String adapter) {
+		Objects.requireNonNull(callback, "Callback must not be null");
+		CallbackKey key = new CallbackKey(callback);
+		CallbackEntry entry = pinnedEntries.get(key);
+		if (entry == null) {
+			entry = transientEntries.get(key);
+		}
+		if (entry == null) {
+			if (!engine.isBatching()) {
+				evictOldTransientEntries(MAX_NUMBER_OF_TRANSIENT_CALLBACKS - 1);
+			}
+			entry = register(callback);
+			transientEntries.put(key, entry);
+		}
+		return entry.getTrampoline(adapter);
+	}
+
+	/**
+	 * Returns a JavaScript function that forwards its calls to the given
+	 * callback using the given adapter. The callback is pinned until
+	 * {@link #release(Object)} is called.
+	 */
+	public JsObject pin(Object callback, String adapter) {
+		Objects.requireNonNull(callback, "Callback must not be null");
+		CallbackKey key = new CallbackKey(callback);
+		CallbackEntry entry = pinnedEntries.get(key);
+		if (entry == null) {
+			entry = transientEntries.remove(key);
+			if (entry == null) {
+				entry = register(callback);
+			}
+			pinnedEntries.put(key, entry);
+		}
+		return entry.getTrampoline(adapter);
+	}
+
+	/**
+	 * Removes the given callback from the registry. Trampolines that have
+	 * been created for the callback must not be called afterwards.
+	 */
+	public void release(Object callback) {
+		CallbackKey key = new CallbackKey(callback);
+		CallbackEntry entry = pinnedEntries.remove(key);
+		if (entry == null) {
+			entry = transientEntries.remove(key);
+		}
+		if (entry != null) {
+			unregister(entry);
+		}
+	}
+
+	/**
+	 * Removes all callbacks from the registry, including the pinned ones
+	 */
+	public void releaseAll() {
+		transientEntries.clear();
+		pinnedEntries.clear();
+		freeHandles.clear();
+		nextHandle = 0;
+		if (jsRegistry != null) {
+			jsRegistry.callWithoutResult("clear");
+		}
+	}
+
+	/**
+	 * Returns the handle of the given callback or -1 if it is not registered
+	 */
+	public int getHandle(Object callback) {
+		CallbackKey key = new CallbackKey(callback);
+		CallbackEntry entry = pinnedEntries.get(key);
+		if (entry == null) {
+			entry = transientEntries.get(key);
+		}
+		if (entry == null) {
+			return -1;
+		}
+		return entry.handle;
+	}
+
+	private CallbackEntry register(Object callback) {
+		Integer freeHandle = freeHandles.poll();
+		int handle = freeHandle == null ? nextHandle++ : freeHandle;
+		getJsCallbacks().setSlot(handle, callback);
+		return new CallbackEntry(handle);
+	}
+
+	private void unregister(CallbackEntry entry) {
+		getJsRegistry().callWithoutResult("release", entry.handle);
+		freeHandles.push(entry.handle);
+	}
+
+	/**
+	 * Evicts the least recently used transient callbacks until at most the
+	 * given number is left. The slots of evicted callbacks are not cleared
+	 * because they are overwritten when their handles are reused.
+	 */
+	private void evictOldTransientEntries(int maxNumberOfEntries) {
+		Iterator<Entry<CallbackKey, CallbackEntry>> iterator = transientEntries.entrySet().iterator();
+		while (transientEntries.size() > maxNumberOfEntries && iterator.hasNext()) {
+			CallbackEntry eldestEntry = iterator.next().getValue();
+			iterator.remove();
+			freeHandles.push(eldestEntry.handle);
+		}
+	}
+
+	private JsObject getJsRegistry() {
+		if (jsRegistry == null) {
+			jsRegistry = (JsObject) engine.executeScript(CREATE_REGISTRY_COMMAND);
+		}
+		return jsRegistry;
+	}
+
+	private JsObject getJsCallbacks() {
+		if (jsCallbacks == null) {
+			jsCallbacks = (JsObject) getJsRegistry().getMember("fns");
+		}
+		return jsCallbacks;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the number of registered callbacks
+	 */
+	public int getNumberOfCallbacks() {
+		return transientEntries.size() + pinnedEntries.size();
+	}
+
+	/**
+	 * Returns the number of JavaScript slots that have been allocated for
+	 * callbacks; the slots of evicted and released callbacks are reused
+	 */
+	public int getNumberOfSlots() {
+		return nextHandle;
+	}
+
+	/**
+	 * Returns the number of pinned callbacks
+	 */
+	public int getNumberOfPinnedCallbacks() {
+		return pinnedEntries.size();
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * A registered callback with its trampolines, by adapter
+	 */
+	private class CallbackEntry {
+
+		private final int handle;
+
+		private final Map<String, JsObject> trampolines = new HashMap<>(4);
+
+		CallbackEntry(int handle) {
+			this.handle = handle;
+		}
+
+		JsObject getTrampoline(String adapter) {
+			JsObject trampoline = trampolines.get(adapter);
+			if (trampoline == null) {
+				trampoline = (JsObject) getJsRegistry().call("create", handle, adapter);
+				trampolines.put(adapter, trampoline);
+			}
+			return trampoline;
+		}
+	}
+
+	/**
+	 * Identifies callbacks by identity, even if they override equals
+	 */
+	private static class CallbackKey {
+
+		private final Object callback;
+
+		CallbackKey(Object callback) {
+			this.callback = callback;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(callback);
+		}
+
+		@Override
+		public boolean equals(Object otherObject) {
+			boolean isCallbackKey = otherObject instanceof CallbackKey;
+			if (!isCallbackKey) {
+				return false;
+			}
+			return ((CallbackKey) otherObject).callback == callback;
+		}
+	}
+
+	//#end region
+
+}
@@ -11,36 +11,52 @@ import org.treez.javafxd3.d3.core.JsEngine;
 import netscape.javascript.JSException;
 import org.treez.javafxd3.d3.core.JsObject;
 
+/**
+ * Converts the results of JavaScript calls (e.g. the datum that is passed to
+ * a DataFunction) to the wanted Java types. The conversion strategy for each
+ * target class is determined only once and cached, so that the conversion of
+ * a value does neither need reflection nor any locking.
+ */
 public class ConversionUtil {
 
+	/**
+	 * The converters by target class
+	 */
+	private static final ClassValue<Converter> CONVERTERS = new ClassValue<Converter>() {
+
+		@Override
+		protected Converter computeValue(Class<?> targetClass) {
+			return createConverter(targetClass);
+		}
+	};
+
 	@SuppressWarnings("unchecked")
-	public synchronized static <T> T convertObjectTo(Object argumentObj, Class<T> classObj, JsEngine engine) {
+	public static <T> T convertObjectTo(Object argumentObj, Class<T> classObj, JsEngine engine) {
 
 		if (argumentObj == null) {
 			return null;
 		}
-		
+
 		Object object = engine.toJsObjectIfNotSimpleType(argumentObj);
-		
 
 		boolean isUndefined = object.equals("undefined");
 		if (isUndefined) {
 			return null;
 		}
-		
+
 		boolean objectAlreadyHasWantedType = object.getClass().equals(classObj);
 		if (objectAlreadyHasWantedType) {
 			T convertedResult = (T) object;
 			return convertedResult;
 		}
-		
+
 		boolean targetIsValue = classObj.equals(Value.class);
 		if (targetIsValue) {
 			T result = (T) convertToValue(object, engine);
 			return result;
 		}
 
-		Object resultObj = extractDataIfObjectIsWrapper(object);
+		Object resultObj = extractDataIfObjectIsWrapper(object, engine);
 		if (resultObj == null) {
 			return null;
 		}
@@ -51,48 +67,52 @@ public class ConversionUtil {
 			return convertedResult;
 		}
 
+		Converter converter = CONVERTERS.get(classObj);
+		T result = (T) converter.convert(resultObj, engine);
+		return result;
+	}
+
+	private static Converter createConverter(Class<?> classObj) {
+
 		boolean targetIsString = classObj.equals(String.class);
 		if (targetIsString) {
-			T result = (T) convertToString(resultObj);
-			return result;
+			return (resultObj, engine) -> convertToString(resultObj);
 		}
 
 		boolean targetIsDouble = classObj.equals(Double.class);
 		if (targetIsDouble) {
-			T result = (T) convertToDouble(resultObj);
-			return result;
+			return (resultObj, engine) -> convertToDouble(resultObj);
 		}
 
 		boolean targetIsFloat = classObj.equals(Float.class);
 		if (targetIsFloat) {
-			T result = (T) convertToFloat(resultObj);
-			return result;
+			return (resultObj, engine) -> convertToFloat(resultObj);
 		}
 
 		boolean targetIsInteger = classObj.equals(Integer.class);
 		if (targetIsInteger) {
-			T result = (T) convertToInteger(resultObj);
-			return result;
+			return (resultObj, engine) -> convertToInteger(resultObj);
 		}
 
 		boolean targetIsShort = classObj.equals(Short.class);
 		if (targetIsShort) {
-			T result = (T) convertToShort(resultObj);
-			return result;
+			return (resultObj, engine) -> convertToShort(resultObj);
 		}
 
 		boolean targetIsCharacter = classObj.equals(Character.class);
 		if (targetIsCharacter) {
-			T result = (T) convertToCharacter(resultObj);
-			return result;
-		}		
+			return (resultObj, engine) -> convertToCharacter(resultObj);
+		}
 
 		boolean targetIsJavaScriptObject = JavaScriptObject.class.isAssignableFrom(classObj);
 		if (targetIsJavaScriptObject) {
-			T result = convertToJavaScriptObject(resultObj, classObj, engine);
-			return result;
+			return new JavaScriptObjectConverter<>(classObj);
 		}
 
+		return (resultObj, engine) -> cast(resultObj, classObj);
+	}
+
+	private static <T> T cast(Object resultObj, Class<T> classObj) {
 		try {
 			T result = classObj.cast(resultObj);
 			return result;
@@ -128,13 +148,29 @@ public class ConversionUtil {
 
 	}
 
-	private static <T> Object extractDataIfObjectIsWrapper(Object resultObj) {
-		Object result = resultObj;
-		boolean isWrappingDatumObject = isJsDataObject(resultObj);
-		if (isWrappingDatumObject) {
-			result = extractDatum(resultObj);
+	/**
+	 * If the given object is a JavaScript object that only wraps a datum, e.g.
+	 * {datum: 5}, the datum is returned. Otherwise the object itself is
+	 * returned. Needs at most a single call to JavaScript.
+	 */
+	private static Object extractDataIfObjectIsWrapper(Object resultObj, JsEngine engine) {
+		boolean isJsObject = resultObj instanceof JsObject;
+		if (!isJsObject) {
+			return resultObj;
 		}
-		return result;
+
+		JsObject jsObject = (JsObject) resultObj;
+		JsObject datumExtractor = engine.getService(DatumExtractor.class, DatumExtractor::new).getJsExtractor();
+		try {
+			Object datum = datumExtractor.call("extract", jsObject);
+			boolean isWrappingDatumObject = datum != null;
+			if (isWrappingDatumObject) {
+				return engine.toJsObjectIfNotSimpleType(datum);
+			}
+		} catch (JSException exception) {
+			//the object is not a datum wrapper
+		}
+		return resultObj;
 	}
 
 	private static Short convertToShort(Object resultObj) {
@@ -160,6 +196,16 @@ public class ConversionUtil {
 			return 1;
 		}
 
+		boolean isNumber = resultObj instanceof Number;
+		if (isNumber) {
+			double doubleResult = ((Number) resultObj).doubleValue();
+			if (Double.isNaN(doubleResult)) {
+				return null;
+			}
+			short result = (short) doubleResult;
+			return result;
+		}
+
 		try {
 			short result = Short.parseShort("" + resultObj);
 			return result;
@@ -172,6 +218,11 @@ public class ConversionUtil {
 
 	private static Integer convertToInteger(Object resultObj) {
 
+		boolean isNumber = resultObj instanceof Number;
+		if (isNumber) {
+			return convertDoubleToInteger(((Number) resultObj).doubleValue());
+		}
+
 		String resultString = resultObj.toString();
 		boolean isNaN = resultString.equals("NaN");
 		if (isNaN) {
@@ -198,29 +249,37 @@ public class ConversionUtil {
 			return integerResult;
 		} catch (Exception exception) {
 			double doubleResult = Double.parseDouble(resultString);
+			return convertDoubleToInteger(doubleResult);
+		}
+	}
 
-			if (doubleResult > Integer.MAX_VALUE) {
-				String message = "The value " + doubleResult + " exceeds the maximum integer value " + Integer.MAX_VALUE
-						+ " and can not be returned as integer.";
-				throw new IllegalStateException(message);
-			}
+	private static Integer convertDoubleToInteger(double doubleResult) {
 
-			if (doubleResult < Integer.MIN_VALUE) {
-				String message = "The value " + doubleResult + " exceeds the minimum integer value " + Integer.MIN_VALUE
-						+ " and can not be returned as integer.";
-				throw new IllegalStateException(message);
-			}
+		if (Double.isNaN(doubleResult)) {
+			return null;
+		}
 
-			int intResult = (int) doubleResult;
-			return intResult;
+		if (doubleResult > Integer.MAX_VALUE) {
+			String message = "The value " + doubleResult + " exceeds the maximum integer value " + Integer.MAX_VALUE
+					+ " and can not be returned as integer.";
+			throw new IllegalStateException(message);
 		}
+
+		if (doubleResult < Integer.MIN_VALUE) {
+			String message = "The value " + doubleResult + " exceeds the minimum integer value " + Integer.MIN_VALUE
+					+ " and can not be returned as integer.";
+			throw new IllegalStateException(message);
+		}
+
+		int intResult = (int) doubleResult;
+		return intResult;
 	}
 
 	private static Float convertToFloat(Object resultObj) {
 
 		boolean isNumber = resultObj instanceof Number;
 		if (isNumber) {
-			Float result = Float.parseFloat("" + resultObj);
+			Float result = ((Number) resultObj).floatValue();
 			return result;
 		}
 
@@ -232,7 +291,7 @@ public class ConversionUtil {
 
 		boolean isNumber = resultObj instanceof Number;
 		if (isNumber) {
-			Double result = Double.parseDouble("" + resultObj);
+			Double result = ((Number) resultObj).doubleValue();
 			return result;
 		}
 
@@ -271,29 +330,6 @@ public class ConversionUtil {
 		return newJavaScriptObject;
 	}
 
-	private static Object extractDatum(Object resultObj) {
-		JsObject jsObject = (JsObject) resultObj;
-		return jsObject.eval("this.datum");
-	}
-
-	private static boolean isJsDataObject(Object resultObj) {
-
-		boolean isJsObject = resultObj instanceof JsObject;
-		if (!isJsObject) {
-			return false;
-		}
-
-		JsObject jsObject = (JsObject) resultObj;
-
-		try {
-			String command = "this.datum != undefined && Object.keys(this).length ==1";
-			return (boolean) jsObject.eval(command);
-		} catch (JSException exception) {
-			return false;
-		}
-
-	}
-
 	public static <T> T tryToCreateNewInstance(Object resultObj, Class<T> classObj, Constructor<T> constructor,
 			JsEngine engine) {
 		T newJavaScriptObject;
@@ -367,4 +403,77 @@ public class ConversionUtil {
 
 	}
 
+	/**
+	 * Converts a value to a specific target class
+	 */
+	private interface Converter {
+
+		Object convert(Object resultObj, JsEngine engine);
+	}
+
+	/**
+	 * Creates JavaScriptObjects using the constructor (JsEngine, JsObject) of
+	 * the target class, which is looked up only once
+	 */
+	private static class JavaScriptObjectConverter<T> implements Converter {
+
+		private final Class<T> classObj;
+
+		private final Constructor<T> jsObjectConstructor;
+
+		JavaScriptObjectConverter(Class<T> classObj) {
+			this.classObj = classObj;
+			this.jsObjectConstructor = getJsObjectConstructor(classObj);
+		}
+
+		@Override
+		public Object convert(Object resultObj, JsEngine engine) {
+			boolean useCachedConstructor = jsObjectConstructor != null && resultObj instanceof JsObject;
+			if (useCachedConstructor) {
+				return tryToCreateNewInstance(resultObj, classObj, jsObjectConstructor, engine);
+			}
+			return convertToJavaScriptObject(resultObj, classObj, engine);
+		}
+
+		private static <T> Constructor<T> getJsObjectConstructor(Class<T> classObj) {
+			try {
+				return classObj.getConstructor(JsEngine.class, JsObject.class);
+			} catch (NoSuchMethodException exception) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Provides a JavaScript function that returns the datum of objects that
+	 * only wrap a datum (and null for all other objects). There is a single
+	 * instance per engine.
+	 */
+	private static class DatumExtractor {
+
+		private static final String CREATE_EXTRACTOR_COMMAND = "({" //
+				+ "  extract: function(o){" //
+				+ "    if(o.datum != undefined && Object.keys(o).length == 1){" //
+				+ "      return o.datum;" //
+				+ "    }" //
+				+ "    return null;" //
+				+ "  }" //
+				+ "})";
+
+		private final JsEngine engine;
+
+		private JsObject jsExtractor;
+
+		DatumExtractor(JsEngine engine) {
+			this.engine = engine;
+		}
+
+		JsObject getJsExtractor() {
+			if (jsExtractor == null) {
+				jsExtractor = (JsObject) engine.executeScript(CREATE_EXTRACTOR_COMMAND);
+			}
+			return jsExtractor;
+		}
+	}
+
 }
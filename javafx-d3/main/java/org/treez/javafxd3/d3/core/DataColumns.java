@@ -0,0 +1,271 @@
+package org.treez.javafxd3.d3.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.treez.javafxd3.d3.arrays.TypedArrays;
+
+/**
+ * Reads the data of the elements of a selection into instances of a Java
+ * class, see {@link Selection#data(Class)}. The data are read column by
+ * column: the properties that correspond to the numeric public fields of the
+ * class are transferred as a single Float64Array and the properties that
+ * correspond to the string fields are transferred as packed strings, so that
+ * the complete read only needs one call.
+ * <p>
+ * Supported field types are double, float, long, int, short, byte, boolean,
+ * their wrapper classes and String. Wrapper fields are set to null for
+ * undefined (or non-numeric) values; primitive fields to NaN, 0 or false.
+ * Other fields as well as static and final fields are ignored.
+ * <p>
+ * Long fields are transferred as strings, so that string properties and
+ * Java Long objects are read without loss of precision. JavaScript numbers
+ * can only represent integers up to 2^53 exactly; reading a larger number
+ * into a long field throws an exception.
+ */
+public final class DataColumns {
+
+	//#region ATTRIBUTES
+
+	private static final char NUMBER_KIND = 'n';
+
+	private static final char STRING_KIND = 's';
+
+	private static final char LONG_KIND = 'l';
+
+	/**
+	 * The largest integer that can be represented exactly by a JavaScript
+	 * number (2^53 - 1)
+	 */
+	private static final long MAX_SAFE_INTEGER = 9007199254740991L;
+
+	/**
+	 * Reads the given datum properties of all selected elements and packs the
+	 * number of elements, the encoded numeric columns and the long and string
+	 * columns (column-major) into a single string
+	 */
+	private static final String READ_COLUMNS_TEMPLATE = "function(packedNames, kinds){" //
+			+ "  var names = (" + TypedArrays.STRING_UNPACKER_FUNCTION + ")(packedNames);" //
+			+ "  var toLongString = function(value, name){" //
+			+ "    if(typeof value === 'string' || (typeof value === 'object' && !(value instanceof Date))){" //
+			+ "      return '' + value;" //
+			+ "    }" //
+			+ "    var number = +value;" //
+			+ "    if(Math.abs(number) > " + MAX_SAFE_INTEGER + "){" //
+			+ "      throw new Error('The value ' + number + ' of the property ' + name + ' can not be read as long without loss of precision');" //
+			+ "    }" //
+			+ "    return '' + number;" //
+			+ "  };" //
+			+ "  var data = [];" //
+			+ "  this.each(function(d){" //
+			+ "    data.push(d);" //
+			+ "  });" //
+			+ "  var numbers = [];" //
+			+ "  var strings = ['' + data.length, null];" //
+			+ "  names.forEach(function(name, columnIndex){" //
+			+ "    var kind = kinds.charAt(columnIndex);" //
+			+ "    data.forEach(function(d){" //
+			+ "      var value = d == null ? undefined : d[name];" //
+			+ "      if(kind === '" + NUMBER_KIND + "'){" //
+			+ "        numbers.push(value == null ? NaN : +value);" //
+			+ "      } else if(kind === '" + LONG_KIND + "'){" //
+			+ "        strings.push(value == null ? null : toLongString(value, name));" //
+			+ "      } else {" //
+			+ "        strings.push(value == null ? null : '' + value);" //
+			+ "      }" //
+			+ "    });" //
+			+ "  });" //
+			+ "  strings[1] = (" + TypedArrays.ENCODER_FUNCTION + ")(numbers, 'Float64');" //
+			+ "  return (" + TypedArrays.STRING_PACKER_FUNCTION + ")(strings);" //
+			+ "}";
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	private DataColumns() {
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Reads the data of all non-null elements of the given selection into
+	 * instances of the given class
+	 *
+	 * @param selection
+	 * @param type
+	 *            a class with a public no-argument constructor
+	 * @return one instance per element
+	 */
+	public static <T> List<T> read(Selection selection, Class<T> type) {
+
+		List<Field> numericFields = new ArrayList<>();
+		List<Field> longFields = new ArrayList<>();
+		List<Field> stringFields = new ArrayList<>();
+		for (Field field : type.getFields()) {
+			int modifiers = field.getModifiers();
+			boolean isIgnored = Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers);
+			if (isIgnored) {
+				continue;
+			}
+			Class<?> fieldType = field.getType();
+			boolean isString = fieldType.equals(String.class);
+			boolean isLong = fieldType.equals(long.class) || fieldType.equals(Long.class);
+			if (isString) {
+				stringFields.add(field);
+			} else if (isLong) {
+				longFields.add(field);
+			} else if (isNumeric(field.getType())) {
+				numericFields.add(field);
+			}
+		}
+
+		List<Field> fields = new ArrayList<>(numericFields);
+		fields.addAll(longFields);
+		fields.addAll(stringFields);
+		String[] names = new String[fields.size()];
+		StringBuilder kinds = new StringBuilder();
+		for (int index = 0; index < names.length; index++) {
+			names[index] = fields.get(index).getName();
+			if (index < numericFields.size()) {
+				kinds.append(NUMBER_KIND);
+			} else if (index < numericFields.size() + longFields.size()) {
+				kinds.append(LONG_KIND);
+			} else {
+				kinds.append(STRING_KIND);
+			}
+		}
+
+		JsEngine engine = selection.getJsEngine();
+		Object result = ScriptTemplateCache.forEngine(engine).invoke(selection.getJsObject(), READ_COLUMNS_TEMPLATE,
+				TypedArrays.packStrings(names), kinds.toString());
+		if (result == null) {
+			return new ArrayList<>();
+		}
+
+		String[] packedColumns = TypedArrays.unpackStrings(result.toString());
+		int numberOfElements = Integer.parseInt(packedColumns[0]);
+		double[] numbers = TypedArrays.decodeDoubles(packedColumns[1]);
+		int longOffset = 2;
+		int stringOffset = longOffset + longFields.size() * numberOfElements;
+		String[] longs = Arrays.copyOfRange(packedColumns, longOffset, stringOffset);
+		String[] strings = Arrays.copyOfRange(packedColumns, stringOffset, packedColumns.length);
+
+		List<T> items = new ArrayList<>(numberOfElements);
+		for (int elementIndex = 0; elementIndex < numberOfElements; elementIndex++) {
+			T item = createInstance(type);
+			for (int columnIndex = 0; columnIndex < numericFields.size(); columnIndex++) {
+				double value = numbers[columnIndex * numberOfElements + elementIndex];
+				setNumber(item, numericFields.get(columnIndex), value);
+			}
+			for (int columnIndex = 0; columnIndex < longFields.size(); columnIndex++) {
+				String value = longs[columnIndex * numberOfElements + elementIndex];
+				setLong(item, longFields.get(columnIndex), value);
+			}
+			for (int columnIndex = 0; columnIndex < stringFields.size(); columnIndex++) {
+				String value = strings[columnIndex * numberOfElements + elementIndex];
+				setValue(item, stringFields.get(columnIndex), value);
+			}
+			items.add(item);
+		}
+		return items;
+	}
+
+	private static boolean isNumeric(Class<?> fieldType) {
+		return fieldType.equals(double.class) || fieldType.equals(Double.class) //
+				|| fieldType.equals(float.class) || fieldType.equals(Float.class) //
+				|| fieldType.equals(int.class) || fieldType.equals(Integer.class) //
+				|| fieldType.equals(short.class) || fieldType.equals(Short.class) //
+				|| fieldType.equals(byte.class) || fieldType.equals(Byte.class) //
+				|| fieldType.equals(boolean.class) || fieldType.equals(Boolean.class);
+	}
+
+	private static <T> T createInstance(Class<T> type) {
+		try {
+			return type.getConstructor().newInstance();
+		} catch (ReflectiveOperationException exception) {
+			String message = "Could not create an instance of " + type.getName()
+					+ ". Please provide a public no-argument constructor.";
+			throw new IllegalStateException(message, exception);
+		}
+	}
+
+	private static void setNumber(Object item, Field field, double value) {
+		Class<?> fieldType = field.getType();
+		boolean isMissing = Double.isNaN(value);
+		if (isMissing && !fieldType.isPrimitive()) {
+			setValue(item, field, null);
+		} else if (fieldType.equals(double.class) || fieldType.equals(Double.class)) {
+			setValue(item, field, value);
+		} else if (fieldType.equals(float.class) || fieldType.equals(Float.class)) {
+			setValue(item, field, (float) value);
+		} else if (fieldType.equals(int.class) || fieldType.equals(Integer.class)) {
+			setValue(item, field, (int) value);
+		} else if (fieldType.equals(short.class) || fieldType.equals(Short.class)) {
+			setValue(item, field, (short) value);
+		} else if (fieldType.equals(byte.class) || fieldType.equals(Byte.class)) {
+			setValue(item, field, (byte) value);
+		} else {
+			setValue(item, field, !isMissing && value != 0);
+		}
+	}
+
+	/**
+	 * Sets the given long field to the parsed value. Values that are not
+	 * integers are parsed as doubles and truncated, like for the other
+	 * integral fields.
+	 */
+	private static void setLong(Object item, Field field, String value) {
+		Long longValue = parseLong(field, value);
+		boolean isMissing = longValue == null;
+		if (isMissing && field.getType().isPrimitive()) {
+			setValue(item, field, 0L);
+		} else {
+			setValue(item, field, longValue);
+		}
+	}
+
+	private static Long parseLong(Field field, String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException exception) {
+			//not an integer; parse it as double
+		}
+
+		double doubleValue;
+		try {
+			doubleValue = Double.parseDouble(value);
+		} catch (NumberFormatException exception) {
+			return null;
+		}
+		if (Double.isNaN(doubleValue)) {
+			return null;
+		}
+		boolean isExact = Math.abs(doubleValue) <= MAX_SAFE_INTEGER;
+		if (!isExact) {
+			String message = "The value " + value + " of the field " + field.getName()
+					+ " can not be read as long without loss of precision.";
+			throw new IllegalStateException(message);
+		}
+		return (long) doubleValue;
+	}
+
+	private static void setValue(Object item, Field field, Object value) {
+		try {
+			field.set(item, value);
+		} catch (IllegalAccessException exception) {
+			throw new IllegalStateException("Could not set the field " + field.getName(), exception);
+		}
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,158 @@
+package org.treez.javafxd3.d3.core;
+
+/**
+ * Coalesces high-frequency events (e.g. mousemove, drag, zoom or brush
+ * events) in JavaScript before they are delivered to a Java listener, see
+ * {@link Selection#on(String, org.treez.javafxd3.d3.functions.DataFunction, EventCoalescing)}.
+ * <p>
+ * The events are not forwarded to Java one by one. Instead, the latest event
+ * (with its element, datum and index) is remembered and delivered
+ * <ul>
+ * <li>once per animation frame ({@link #perAnimationFrame()}) or</li>
+ * <li>at most once per interval ({@link #throttle(long)}); the first event of
+ * a quiet period is delivered immediately and the latest event of a burst is
+ * delivered at the end of the interval.</li>
+ * </ul>
+ * While the listener is invoked, d3.event is set to the delivered event, so
+ * that the listener can use d3.event and d3.mouse as usual. The events are
+ * coalesced per listener: if the same listener is registered for several
+ * elements, only the latest event of all elements is delivered. Note that a
+ * delayed event might be delivered after an event of another type, e.g. a
+ * brush event after the brush end event.
+ */
+public final class EventCoalescing {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Creates the trampoline of a DataFunction that remembers the latest
+	 * event and delivers it with the given schedule, see
+	 * {@link ListenerRegistry#DATA_FUNCTION_LISTENER_ADAPTER}. The pending
+	 * delivery is canceled if the callback is released (see
+	 * {@link CallbackRegistry}) and an event is only delivered to the
+	 * callback that received it, even if the handle has been reused.
+	 */
+	private static final String ADAPTER_TEMPLATE = "function(fns, h){" //
+			+ "  var interval = %INTERVAL%;" //
+			+ "  var isFrameAvailable = typeof requestAnimationFrame === 'function';" //
+			+ "  var requestFrame = isFrameAvailable" //
+			+ "    ? requestAnimationFrame" //
+			+ "    : function(callback){ return setTimeout(callback, 16); };" //
+			+ "  var cancelFrame = isFrameAvailable ? cancelAnimationFrame : clearTimeout;" //
+			+ "  var pending = null;" //
+			+ "  var isScheduled = false;" //
+			+ "  var scheduledId = null;" //
+			+ "  var lastDelivery = -Infinity;" //
+			+ "  var deliver = function(){" //
+			+ "    isScheduled = false;" //
+			+ "    scheduledId = null;" //
+			+ "    var event = pending;" //
+			+ "    pending = null;" //
+			+ "    if(!event){" //
+			+ "      return;" //
+			+ "    }" //
+			+ "    var callback = fns[h];" //
+			+ "    if(!callback || callback !== event.callback){" //
+			+ "      return;" //
+			+ "    }" //
+			+ "    lastDelivery = Date.now();" //
+			+ "    var previousEvent = d3.event;" //
+			+ "    d3.event = event.d3Event;" //
+			+ "    try {" //
+			+ "      callback.apply(event.context, event.d, event.i);" //
+			+ "    } finally {" //
+			+ "      d3.event = previousEvent;" //
+			+ "    }" //
+			+ "  };" //
+			+ "  var trampoline = function(d, i){" //
+			+ "    pending = { context: this, d: d, i: i, d3Event: d3.event, callback: fns[h] };" //
+			+ "    if(isScheduled){" //
+			+ "      return;" //
+			+ "    }" //
+			+ "    isScheduled = true;" //
+			+ "    if(interval < 0){" //
+			+ "      scheduledId = requestFrame(deliver);" //
+			+ "      return;" //
+			+ "    }" //
+			+ "    var wait = lastDelivery + interval - Date.now();" //
+			+ "    if(wait <= 0){" //
+			+ "      deliver();" //
+			+ "    } else {" //
+			+ "      scheduledId = setTimeout(deliver, wait);" //
+			+ "    }" //
+			+ "  };" //
+			+ "  trampoline.cancel = function(){" //
+			+ "    pending = null;" //
+			+ "    if(isScheduled && scheduledId !== null){" //
+			+ "      (interval < 0 ? cancelFrame : clearTimeout)(scheduledId);" //
+			+ "    }" //
+			+ "    isScheduled = false;" //
+			+ "    scheduledId = null;" //
+			+ "  };" //
+			+ "  return trampoline;" //
+			+ "}";
+
+	private static final EventCoalescing PER_ANIMATION_FRAME = new EventCoalescing(-1);
+
+	/**
+	 * The minimum time between two deliveries in milliseconds or -1 for
+	 * delivery per animation frame
+	 */
+	private final long interval;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	private EventCoalescing(long interval) {
+		this.interval = interval;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Delivers the latest event once per animation frame
+	 */
+	public static EventCoalescing perAnimationFrame() {
+		return PER_ANIMATION_FRAME;
+	}
+
+	/**
+	 * Delivers the latest event at most once per given interval
+	 *
+	 * @param intervalInMilliseconds
+	 *            the minimum time between two deliveries
+	 */
+	public static EventCoalescing throttle(long intervalInMilliseconds) {
+		if (intervalInMilliseconds < 0) {
+			String message = "The throttle interval must not be negative but is " + intervalInMilliseconds + ".";
+			throw new IllegalArgumentException(message);
+		}
+		return new EventCoalescing(intervalInMilliseconds);
+	}
+
+	/**
+	 * Returns the adapter that creates the coalescing trampolines of
+	 * DataFunction listeners, see {@link CallbackRegistry}
+	 */
+	public String getAdapter() {
+		return ADAPTER_TEMPLATE.replace("%INTERVAL%", Long.toString(interval));
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the minimum time between two deliveries in milliseconds or -1
+	 * for delivery per animation frame
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,402 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.treez.javafxd3.d3.functions.TimerFunction;
+
+/**
+ * Dispatches all Java TimerFunctions of an engine with a single d3 timer:
+ * instead of one d3.timer closure (and one upcall) per TimerFunction, the
+ * scheduler registers one trampoline that invokes all due TimerFunctions in
+ * one upcall per animation frame.
+ * <p>
+ * Each scheduled TimerFunction is invoked once per frame until it returns
+ * true or until its {@link TimerHandle} is cancelled; finished timers are
+ * dropped automatically. The d3 timer of the scheduler stops when no timers
+ * are left and is restarted when a new timer is scheduled. Timers that are
+ * scheduled while the timers of a frame are executed start with the next
+ * frame.
+ * <p>
+ * A TimerFunction that throws an exception is removed (its handle is marked as
+ * finished) without affecting the other timers of the frame. The exceptions
+ * of a frame are reported after all timers have been executed, see
+ * {@link #setErrorHandler(Consumer)}; they are not thrown to JavaScript,
+ * because that would stop the d3 timer queue.
+ * <p>
+ * The scheduler records the duration of each frame (the time that is spent in
+ * the TimerFunctions) and counts the frames that overran the frame budget,
+ * see {@link #getStatistics()}.
+ */
+public class FrameScheduler {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Calls the execute method of the frame dispatcher
+	 */
+	private static final String FRAME_ADAPTER = "function(fns, h){" //
+			+ "  return function(){" //
+			+ "    return fns[h].execute();" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * The default frame budget of 60 frames per second
+	 */
+	private static final double DEFAULT_FRAME_BUDGET_IN_MILLIS = 1000.0 / 60;
+
+	private final JsEngine engine;
+
+	/**
+	 * Is invoked by the single d3 timer of the scheduler
+	 */
+	private final FrameDispatcher frameDispatcher = new FrameDispatcher(this);
+
+	/**
+	 * The active timers
+	 */
+	private final List<TimerHandle> timers = new ArrayList<>();
+
+	/**
+	 * The timers that have been scheduled while a frame was executed
+	 */
+	private final List<TimerHandle> scheduledTimers = new ArrayList<>();
+
+	private boolean isRunning = false;
+
+	private boolean isExecutingFrame = false;
+
+	private double frameBudgetInMillis = DEFAULT_FRAME_BUDGET_IN_MILLIS;
+
+	/**
+	 * Receives the exceptions of the TimerFunctions of a frame
+	 */
+	private Consumer<RuntimeException> errorHandler = FrameScheduler::reportUncaughtException;
+
+	private long numberOfFrames = 0;
+
+	private long numberOfOverruns = 0;
+
+	private double totalFrameDurationInMillis = 0;
+
+	private double maxFrameDurationInMillis = 0;
+
+	private double lastFrameDurationInMillis = 0;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public FrameScheduler(JsEngine engine) {
+		this.engine = engine;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Returns the FrameScheduler of the given engine
+	 */
+	public static FrameScheduler forEngine(JsEngine engine) {
+		return engine.getService(FrameScheduler.class, FrameScheduler::new);
+	}
+
+	/**
+	 * Schedules the given TimerFunction: it is invoked once per frame until
+	 * it returns true or until the returned handle is cancelled
+	 */
+	public TimerHandle schedule(TimerFunction timerFunction) {
+		return schedule(timerFunction, 0);
+	}
+
+	/**
+	 * Schedules the given TimerFunction with the given delay, see
+	 * {@link #schedule(TimerFunction)}
+	 */
+	public TimerHandle schedule(TimerFunction timerFunction, int delayMillis) {
+		Objects.requireNonNull(timerFunction);
+		long startNanos = System.nanoTime() + delayMillis * 1_000_000L;
+		TimerHandle handle = new TimerHandle(timerFunction, startNanos);
+		if (isExecutingFrame) {
+			scheduledTimers.add(handle);
+		} else {
+			timers.add(handle);
+		}
+		start();
+		return handle;
+	}
+
+	/**
+	 * Cancels all timers
+	 */
+	public void cancelAll() {
+		for (TimerHandle handle : timers) {
+			handle.isCancelled = true;
+		}
+		for (TimerHandle handle : scheduledTimers) {
+			handle.isCancelled = true;
+		}
+		timers.clear();
+		scheduledTimers.clear();
+	}
+
+	/**
+	 * Resets the frame statistics
+	 */
+	public void resetStatistics() {
+		numberOfFrames = 0;
+		numberOfOverruns = 0;
+		totalFrameDurationInMillis = 0;
+		maxFrameDurationInMillis = 0;
+		lastFrameDurationInMillis = 0;
+	}
+
+	private void start() {
+		if (isRunning) {
+			return;
+		}
+		isRunning = true;
+		JsObject trampoline = CallbackRegistry.forEngine(engine).pin(frameDispatcher, FRAME_ADAPTER);
+		JsObject d3 = (JsObject) engine.executeScript("d3");
+		d3.callWithoutResult("timer", trampoline);
+	}
+
+	/**
+	 * Executes the due timers and returns true if the d3 timer of the
+	 * scheduler can be stopped
+	 */
+	private boolean executeFrame() {
+		long frameStartNanos = System.nanoTime();
+		RuntimeException error = null;
+		isExecutingFrame = true;
+		try {
+			Iterator<TimerHandle> iterator = timers.iterator();
+			while (iterator.hasNext()) {
+				TimerHandle handle = iterator.next();
+				if (handle.isCancelled) {
+					iterator.remove();
+					continue;
+				}
+				boolean isDue = handle.startNanos - frameStartNanos <= 0;
+				if (!isDue) {
+					continue;
+				}
+				boolean isFinished;
+				try {
+					isFinished = handle.timerFunction.execute();
+				} catch (RuntimeException exception) {
+					if (error == null) {
+						error = exception;
+					} else {
+						error.addSuppressed(exception);
+					}
+					isFinished = true;
+				}
+				if (isFinished) {
+					handle.isFinished = true;
+					iterator.remove();
+				}
+			}
+		} finally {
+			isExecutingFrame = false;
+			timers.addAll(scheduledTimers);
+			scheduledTimers.clear();
+			recordFrame(frameStartNanos);
+		}
+
+		boolean isIdle = timers.isEmpty();
+		if (isIdle) {
+			isRunning = false;
+			CallbackRegistry.forEngine(engine).release(frameDispatcher);
+		}
+
+		if (error != null) {
+			errorHandler.accept(error);
+		}
+		return isIdle;
+	}
+
+	private static void reportUncaughtException(RuntimeException exception) {
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+	}
+
+	private void recordFrame(long frameStartNanos) {
+		double durationInMillis = (System.nanoTime() - frameStartNanos) / 1e6;
+		numberOfFrames++;
+		totalFrameDurationInMillis += durationInMillis;
+		maxFrameDurationInMillis = Math.max(maxFrameDurationInMillis, durationInMillis);
+		lastFrameDurationInMillis = durationInMillis;
+		boolean isOverrun = durationInMillis > frameBudgetInMillis;
+		if (isOverrun) {
+			numberOfOverruns++;
+		}
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the number of active timers
+	 */
+	public int getNumberOfTimers() {
+		int numberOfTimers = 0;
+		for (TimerHandle handle : timers) {
+			if (!handle.isCancelled) {
+				numberOfTimers++;
+			}
+		}
+		for (TimerHandle handle : scheduledTimers) {
+			if (!handle.isCancelled) {
+				numberOfTimers++;
+			}
+		}
+		return numberOfTimers;
+	}
+
+	/**
+	 * Returns true if the d3 timer of the scheduler is running
+	 */
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	/**
+	 * Sets the time in milliseconds that a frame may take without being
+	 * counted as overrun (default: 1000/60)
+	 */
+	public FrameScheduler setFrameBudget(double frameBudgetInMillis) {
+		this.frameBudgetInMillis = frameBudgetInMillis;
+		return this;
+	}
+
+	/**
+	 * Sets the handler for the exceptions that are thrown by the
+	 * TimerFunctions of a frame; further exceptions of the same frame are
+	 * added as suppressed exceptions. By default, the exceptions are passed
+	 * to the uncaught exception handler of the current thread.
+	 */
+	public FrameScheduler setErrorHandler(Consumer<RuntimeException> errorHandler) {
+		this.errorHandler = Objects.requireNonNull(errorHandler);
+		return this;
+	}
+
+	public double getFrameBudget() {
+		return frameBudgetInMillis;
+	}
+
+	public long getNumberOfFrames() {
+		return numberOfFrames;
+	}
+
+	/**
+	 * Returns the number of frames that took longer than the frame budget
+	 */
+	public long getNumberOfOverruns() {
+		return numberOfOverruns;
+	}
+
+	/**
+	 * Returns the average time in milliseconds that has been spent in the
+	 * TimerFunctions per frame
+	 */
+	public double getAverageFrameDuration() {
+		if (numberOfFrames == 0) {
+			return 0;
+		}
+		return totalFrameDurationInMillis / numberOfFrames;
+	}
+
+	public double getMaxFrameDuration() {
+		return maxFrameDurationInMillis;
+	}
+
+	public double getLastFrameDuration() {
+		return lastFrameDurationInMillis;
+	}
+
+	/**
+	 * Returns a summary of the frame statistics, e.g. for logging
+	 */
+	public String getStatistics() {
+		return String.format("%d timers, %d frames, %.2f ms average, %.2f ms max, %d overruns (budget %.1f ms)",
+				getNumberOfTimers(), numberOfFrames, getAverageFrameDuration(), maxFrameDurationInMillis,
+				numberOfOverruns, frameBudgetInMillis);
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * The TimerFunction of the single d3 timer; is public, so that it can be
+	 * called from JavaScript
+	 */
+	public static final class FrameDispatcher implements TimerFunction {
+
+		private final FrameScheduler scheduler;
+
+		FrameDispatcher(FrameScheduler scheduler) {
+			this.scheduler = scheduler;
+		}
+
+		@Override
+		public boolean execute() {
+			return scheduler.executeFrame();
+		}
+	}
+
+	/**
+	 * A scheduled TimerFunction that can be cancelled
+	 */
+	public static class TimerHandle {
+
+		private final TimerFunction timerFunction;
+
+		private final long startNanos;
+
+		private boolean isCancelled = false;
+
+		private boolean isFinished = false;
+
+		TimerHandle(TimerFunction timerFunction, long startNanos) {
+			this.timerFunction = timerFunction;
+			this.startNanos = startNanos;
+		}
+
+		/**
+		 * Stops the timer; it is not invoked anymore
+		 */
+		public void cancel() {
+			isCancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return isCancelled;
+		}
+
+		/**
+		 * Returns true if the TimerFunction returned true or threw an
+		 * exception
+		 */
+		public boolean isFinished() {
+			return isFinished;
+		}
+
+		/**
+		 * Returns true if the timer has neither been cancelled nor finished
+		 */
+		public boolean isActive() {
+			return !isCancelled && !isFinished;
+		}
+	}
+
+	//#end region
+
+}
@@ -1,5 +1,7 @@
 package org.treez.javafxd3.d3.core;
 
+import java.util.function.Function;
+
 public interface JsEngine {
 	
     /**
@@ -25,4 +27,38 @@ public interface JsEngine {
 	 */
 	Object toJsObjectIfNotSimpleType(Object argument);       
 
+	/**
+	 * Starts a batch. Until the batch is ended, operations that do not need a
+	 * return value (e.g. setters and setMember) are recorded instead of being
+	 * executed one by one. Batches might be nested.
+	 */
+	void beginBatch();
+
+	/**
+	 * Ends the current batch. If the outermost batch is ended, all recorded
+	 * operations are executed.
+	 */
+	void endBatch();
+
+	/**
+	 * Returns true if a batch has been started and not yet ended
+	 */
+	boolean isBatching();
+
+	/**
+	 * Executes all recorded operations. Operations that return a value flush
+	 * automatically, so that they see the effects of the recorded operations.
+	 * Engines that record operations also flush them automatically in a later
+	 * turn of their event loop.
+	 */
+	void flush();
+
+	/**
+	 * Returns the service of the given class that belongs to this engine (e.g.
+	 * the CallbackRegistry). If the service does not exist yet, it is created
+	 * with the given factory. There is at most one service of each class per
+	 * engine.
+	 */
+	<S> S getService(Class<S> serviceClass, Function<JsEngine, S> factory);
+
 }
@@ -13,6 +13,17 @@ public interface JsObject  {
 	
 	  public abstract Object call(String methodName, Object... args);
 
+	    /**
+	     * <p> Calls a JavaScript method whose return value is not needed. If
+	     * the engine is batching, the call is only recorded and executed
+	     * with the next flush.
+	     * </p>
+	     *
+	     * @param methodName The name of the JavaScript method to be called.
+	     * @param args The arguments of the call.
+	     */
+	    void callWithoutResult(String methodName, Object... args);
+
 	    /**
 	     * <p> Evaluates a JavaScript expression. The expression is a string of
 	     * JavaScript source code which will be evaluated in the context given by
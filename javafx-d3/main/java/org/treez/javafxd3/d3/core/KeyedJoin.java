@@ -0,0 +1,602 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.treez.javafxd3.d3.arrays.TypedArrays;
+import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
+
+/**
+ * A keyed data join whose keys are compared in Java instead of calling a Java
+ * {@link KeyFunction} for each element and each datum.
+ * <p>
+ * The join remembers the keys that have been bound by its previous
+ * invocation. Each key gets an integer slot; the slots are stored at the
+ * bound elements in JavaScript. On the next invocation, the new keys are
+ * diffed with the previous keys in Java and only the changes are transferred:
+ * the positions of the removed and of the inserted keys. Only if the order of
+ * the remaining keys changed, the complete slot sequence is transferred. The
+ * d3 join itself then uses a pure JavaScript key function that compares
+ * slots, so that the returned {@link UpdateSelection} (with enter and exit)
+ * behaves like a regular keyed join.
+ * <p>
+ * If the values are given as Java array, they are diffed, too: the join
+ * remembers the bound values in JavaScript and only the values of inserted
+ * keys and the values that are not equal to the previously bound value of
+ * their key are transferred. If the values are given as JavaScript array, the
+ * array is passed by reference.
+ * <p>
+ * Use one KeyedJoin for each selection that is updated repeatedly, e.g.
+ *
+ * <pre>
+ * KeyedJoin join = new KeyedJoin(engine);
+ * ...
+ * UpdateSelection update = join.data(svg.selectAll("circle"), values, keys);
+ * update.enter().append("circle");
+ * update.exit().remove();
+ * </pre>
+ *
+ * The selection must consist of a single group. Elements that have not been
+ * bound by this join are treated like elements with unknown keys and end up
+ * in the exit selection. Entered elements are only remembered if they are
+ * appended (or inserted) to the enter selection, which merges them into the
+ * update selection. As for d3, the first of several datums with the same key
+ * is bound and the others are ignored.
+ */
+public class KeyedJoin {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Stamps the slots of the previous join on its elements, reconstructs the
+	 * new slot sequence (and the new values, if they are not given) from the
+	 * transferred changes and joins the values with a key function that
+	 * compares slots
+	 */
+	private static final String JOIN_TEMPLATE = "function(state, values, isComplete, first, second, updatedPositions){" //
+			+ "  var decode = " + TypedArrays.DECODER_FUNCTION + ";" //
+			+ "  var previousSlots = state.slots;" //
+			+ "  if(state.update){" //
+			+ "    state.update.each(function(d, index){" //
+			+ "      this.__javafxd3_slot__ = previousSlots[index];" //
+			+ "    });" //
+			+ "  }" //
+			+ "  var slots;" //
+			+ "  if(isComplete){" //
+			+ "    slots = decode(first, 'Int32');" //
+			+ "  } else {" //
+			+ "    var removedPositions = decode(first, 'Int32');" //
+			+ "    var insertions = decode(second, 'Int32');" //
+			+ "    var numberOfSlots = previousSlots.length - removedPositions.length + insertions.length / 2;" //
+			+ "    slots = new Int32Array(numberOfSlots);" //
+			+ "    var removedIndex = 0;" //
+			+ "    var insertionIndex = 0;" //
+			+ "    var previousIndex = 0;" //
+			+ "    for(var index = 0; index < numberOfSlots; index++){" //
+			+ "      if(insertionIndex < insertions.length && insertions[insertionIndex] === index){" //
+			+ "        slots[index] = insertions[insertionIndex + 1];" //
+			+ "        insertionIndex += 2;" //
+			+ "        continue;" //
+			+ "      }" //
+			+ "      while(removedIndex < removedPositions.length && removedPositions[removedIndex] === previousIndex){" //
+			+ "        removedIndex++;" //
+			+ "        previousIndex++;" //
+			+ "      }" //
+			+ "      slots[index] = previousSlots[previousIndex++];" //
+			+ "    }" //
+			+ "  }" //
+			+ "  if(!values){" //
+			+ "    var previousValues = state.values;" //
+			+ "    var valuesBySlot = {};" //
+			+ "    for(var index = previousSlots.length - 1; index >= 0; index--){" //
+			+ "      valuesBySlot[previousSlots[index]] = previousValues[index];" //
+			+ "    }" //
+			+ "    values = new Array(slots.length);" //
+			+ "    for(var index = 0; index < slots.length; index++){" //
+			+ "      values[index] = valuesBySlot[slots[index]];" //
+			+ "    }" //
+			+ "    var positions = decode(updatedPositions, 'Int32');" //
+			+ "    var updatedValues = (" + TypedArrays.ARRAY_ARGUMENTS_FUNCTION + ")(arguments, 6);" //
+			+ "    for(var index = 0; index < positions.length; index++){" //
+			+ "      values[positions[index]] = updatedValues[index];" //
+			+ "    }" //
+			+ "  }" //
+			+ "  if(slots.length !== values.length){" //
+			+ "    throw new Error('Expected ' + slots.length + ' values but got ' + values.length);" //
+			+ "  }" //
+			+ "  var update = this.data(values, function(d, index){" //
+			+ "    if(this === values){" //
+			+ "      return '' + slots[index];" //
+			+ "    }" //
+			+ "    var slot = this.__javafxd3_slot__;" //
+			+ "    return slot === undefined ? 'unknown' + index : '' + slot;" //
+			+ "  });" //
+			+ "  state.slots = slots;" //
+			+ "  state.values = values;" //
+			+ "  state.update = update;" //
+			+ "  return update;" //
+			+ "}";
+
+	private final JsEngine engine;
+
+	/**
+	 * The JavaScript object that holds the slots, the values and the update
+	 * selection of the previous join; is created on the first join
+	 */
+	private JsObject state;
+
+	/**
+	 * The first positions of the string keys of the previous join; is null if
+	 * the previous join used long keys
+	 */
+	private Map<String, Integer> positionsByKey = new HashMap<>();
+
+	/**
+	 * The first positions of the long keys of the previous join; is null if
+	 * the previous join used string keys
+	 */
+	private LongPositionMap positionsByLongKey;
+
+	/**
+	 * The slots of the previous join in data order
+	 */
+	private int[] slots = new int[0];
+
+	/**
+	 * For each position of the previous join the first position with the
+	 * same key
+	 */
+	private int[] firstPositions = new int[0];
+
+	/**
+	 * The first positions of the keys of the running join; they replace
+	 * {@link #firstPositions} when the join succeeded
+	 */
+	private int[] pendingFirstPositions;
+
+	/**
+	 * The values of the previous join if they have been given as Java array
+	 * and null otherwise
+	 */
+	private Object[] values;
+
+	private int nextSlot = 0;
+
+	private int numberOfEntered = 0;
+
+	private int numberOfExited = 0;
+
+	private int numberOfUpdatedValues = 0;
+
+	private boolean isIncremental = false;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public KeyedJoin(JsEngine engine) {
+		this.engine = engine;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Joins the given values with the given selection. The values are
+	 * identified by the given keys.
+	 *
+	 * @param selection
+	 *            the selection of the elements that have been bound by the
+	 *            previous join
+	 * @param values
+	 *            the JavaScript array of the new data
+	 * @param keys
+	 *            the keys of the new data, one per value
+	 * @return the update selection
+	 */
+	public UpdateSelection data(Selection selection, JavaScriptObject values, String[] keys) {
+		return data(selection, values.getJsObject(), keys);
+	}
+
+	/**
+	 * Joins the given values with the given selection, see
+	 * {@link #data(Selection, JavaScriptObject, String[])}
+	 */
+	public UpdateSelection data(Selection selection, JavaScriptObject values, long[] keys) {
+		return data(selection, values.getJsObject(), keys);
+	}
+
+	/**
+	 * Joins the given values with the given selection, see
+	 * {@link #data(Selection, JavaScriptObject, String[])}
+	 */
+	public UpdateSelection data(Selection selection, JsObject values, String[] keys) {
+		int[] previousPositions = findPreviousPositions(keys);
+		return join(selection, values, null, previousPositions);
+	}
+
+	/**
+	 * Joins the given values with the given selection, see
+	 * {@link #data(Selection, JavaScriptObject, String[])}
+	 */
+	public UpdateSelection data(Selection selection, JsObject values, long[] keys) {
+		int[] previousPositions = findPreviousPositions(keys);
+		return join(selection, values, null, previousPositions);
+	}
+
+	/**
+	 * Joins the given Java values (numbers, strings or JsObjects) with the
+	 * given selection. Only the values of inserted keys and the values that
+	 * changed since the previous join are transferred. See
+	 * {@link #data(Selection, JavaScriptObject, String[])}
+	 */
+	public UpdateSelection data(Selection selection, Object[] values, String[] keys) {
+		checkNumberOfValues(values, keys.length);
+		int[] previousPositions = findPreviousPositions(keys);
+		return join(selection, null, values, previousPositions);
+	}
+
+	/**
+	 * Joins the given Java values (numbers, strings or JsObjects) with the
+	 * given selection, see {@link #data(Selection, Object[], String[])}
+	 */
+	public UpdateSelection data(Selection selection, Object[] values, long[] keys) {
+		checkNumberOfValues(values, keys.length);
+		int[] previousPositions = findPreviousPositions(keys);
+		return join(selection, null, values, previousPositions);
+	}
+
+	private static void checkNumberOfValues(Object[] values, int numberOfKeys) {
+		if (values.length != numberOfKeys) {
+			String message = "Expected " + numberOfKeys + " values but got " + values.length + ".";
+			throw new IllegalStateException(message);
+		}
+	}
+
+	/**
+	 * Returns the first position of each key in the previous join (or -1 for
+	 * new keys) and remembers the first positions of the given keys for the
+	 * next join
+	 */
+	private int[] findPreviousPositions(String[] keys) {
+		Map<String, Integer> newPositionsByKey = new HashMap<>(keys.length * 2);
+		int[] previousPositions = new int[keys.length];
+		int[] newFirstPositions = new int[keys.length];
+		for (int index = 0; index < keys.length; index++) {
+			String key = keys[index];
+			Integer firstPosition = newPositionsByKey.putIfAbsent(key, index);
+			newFirstPositions[index] = firstPosition == null ? index : firstPosition;
+			Integer previousPosition = positionsByKey == null ? null : positionsByKey.get(key);
+			previousPositions[index] = previousPosition == null ? -1 : previousPosition;
+		}
+		positionsByKey = newPositionsByKey;
+		positionsByLongKey = null;
+		pendingFirstPositions = newFirstPositions;
+		return previousPositions;
+	}
+
+	/**
+	 * Returns the first position of each key in the previous join (or -1 for
+	 * new keys) and remembers the first positions of the given keys for the
+	 * next join. Does not box the keys.
+	 */
+	private int[] findPreviousPositions(long[] keys) {
+		LongPositionMap newPositionsByKey = new LongPositionMap(keys.length);
+		int[] previousPositions = new int[keys.length];
+		int[] newFirstPositions = new int[keys.length];
+		for (int index = 0; index < keys.length; index++) {
+			long key = keys[index];
+			int firstPosition = newPositionsByKey.putIfAbsent(key, index);
+			newFirstPositions[index] = firstPosition < 0 ? index : firstPosition;
+			previousPositions[index] = positionsByLongKey == null ? -1 : positionsByLongKey.get(key);
+		}
+		positionsByLongKey = newPositionsByKey;
+		positionsByKey = null;
+		pendingFirstPositions = newFirstPositions;
+		return previousPositions;
+	}
+
+	private UpdateSelection join(Selection selection, JsObject jsValues, Object[] newValues,
+			int[] previousPositions) {
+
+		int numberOfValues = previousPositions.length;
+		int[] newFirstPositions = pendingFirstPositions;
+		int[] newSlots = new int[numberOfValues];
+		int[] insertions = new int[2 * numberOfValues];
+		int numberOfInsertions = 0;
+		boolean[] isMatched = new boolean[slots.length];
+		int newNextSlot = nextSlot;
+		for (int index = 0; index < numberOfValues; index++) {
+			int firstPosition = newFirstPositions[index];
+			boolean isDuplicate = firstPosition != index;
+			if (isDuplicate) {
+				newSlots[index] = newSlots[firstPosition];
+				continue;
+			}
+			int previousPosition = previousPositions[index];
+			boolean isInserted = previousPosition < 0;
+			if (isInserted) {
+				int slot = newNextSlot++;
+				insertions[2 * numberOfInsertions] = index;
+				insertions[2 * numberOfInsertions + 1] = slot;
+				numberOfInsertions++;
+				newSlots[index] = slot;
+			} else {
+				isMatched[previousPosition] = true;
+				newSlots[index] = slots[previousPosition];
+			}
+		}
+		insertions = Arrays.copyOf(insertions, 2 * numberOfInsertions);
+
+		int[] removedPositions = findRemovedPositions(isMatched);
+		boolean isOrderPreserved = isOrderPreserved(newSlots, insertions, removedPositions);
+
+		boolean isFirstJoin = state == null;
+		if (isFirstJoin) {
+			state = (JsObject) engine.executeScript("({ slots: [], values: [], update: null })");
+		}
+
+		String first;
+		String second;
+		if (isOrderPreserved) {
+			first = TypedArrays.encode(removedPositions);
+			second = TypedArrays.encode(insertions);
+		} else {
+			first = TypedArrays.encode(newSlots);
+			second = "";
+		}
+
+		JsObject result;
+		try {
+			boolean hasJavaValues = newValues != null;
+			if (hasJavaValues) {
+				result = invokeJoin(selection, isOrderPreserved, first, second,
+						findUpdatedPositions(newValues, previousPositions), newValues);
+			} else {
+				result = invokeJoin(selection, jsValues, isOrderPreserved, first, second);
+				numberOfUpdatedValues = numberOfValues;
+			}
+		} catch (RuntimeException exception) {
+			reset();
+			throw exception;
+		}
+
+		slots = newSlots;
+		firstPositions = newFirstPositions;
+		values = newValues;
+		nextSlot = newNextSlot;
+		numberOfEntered = numberOfInsertions;
+		numberOfExited = removedPositions.length;
+		isIncremental = isOrderPreserved;
+
+		if (result == null) {
+			return null;
+		}
+		return new UpdateSelection(engine, result);
+	}
+
+	/**
+	 * Returns the positions of the new values that have been inserted or that
+	 * are not equal to the previous value of their key
+	 */
+	private int[] findUpdatedPositions(Object[] newValues, int[] previousPositions) {
+		int[] updatedPositions = new int[newValues.length];
+		int numberOfUpdatedPositions = 0;
+		for (int index = 0; index < newValues.length; index++) {
+			int previousPosition = previousPositions[index];
+			boolean isUpdated = previousPosition < 0 || values == null
+					|| !Objects.equals(values[previousPosition], newValues[index]);
+			if (isUpdated) {
+				updatedPositions[numberOfUpdatedPositions++] = index;
+			}
+		}
+		numberOfUpdatedValues = numberOfUpdatedPositions;
+		return Arrays.copyOf(updatedPositions, numberOfUpdatedPositions);
+	}
+
+	private JsObject invokeJoin(Selection selection, JsObject jsValues, boolean isIncrementalJoin, String first,
+			String second) {
+		Object result = ScriptTemplateCache.forEngine(engine).invoke(selection.getJsObject(), JOIN_TEMPLATE, state,
+				jsValues, !isIncrementalJoin, first, second, "");
+		return toJsObject(result);
+	}
+
+	private JsObject invokeJoin(Selection selection, boolean isIncrementalJoin, String first, String second,
+			int[] updatedPositions, Object[] newValues) {
+		Object[] updatedValues = new Object[updatedPositions.length];
+		for (int index = 0; index < updatedPositions.length; index++) {
+			updatedValues[index] = newValues[updatedPositions[index]];
+		}
+		Object[] valueArguments = TypedArrays.toArrayArguments(engine, updatedValues);
+
+		Object[] args = new Object[6 + valueArguments.length];
+		args[0] = state;
+		args[1] = null;
+		args[2] = !isIncrementalJoin;
+		args[3] = first;
+		args[4] = second;
+		args[5] = TypedArrays.encode(updatedPositions);
+		System.arraycopy(valueArguments, 0, args, 6, valueArguments.length);
+		Object result = ScriptTemplateCache.forEngine(engine).invoke(selection.getJsObject(), JOIN_TEMPLATE, args);
+		return toJsObject(result);
+	}
+
+	private static JsObject toJsObject(Object result) {
+		boolean isJsObject = result instanceof JsObject;
+		if (isJsObject) {
+			return (JsObject) result;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the previous positions whose keys are not contained in the new
+	 * keys, in ascending order
+	 */
+	private int[] findRemovedPositions(boolean[] isMatched) {
+		int[] removedPositions = new int[slots.length];
+		int numberOfRemovedPositions = 0;
+		for (int index = 0; index < slots.length; index++) {
+			boolean isRemaining = isMatched[firstPositions[index]];
+			if (!isRemaining) {
+				removedPositions[numberOfRemovedPositions++] = index;
+			}
+		}
+		return Arrays.copyOf(removedPositions, numberOfRemovedPositions);
+	}
+
+	/**
+	 * Checks if the new slot sequence equals the previous slot sequence
+	 * without the removed positions and with the insertions
+	 */
+	private boolean isOrderPreserved(int[] newSlots, int[] insertions, int[] removedPositions) {
+		int numberOfRemaining = slots.length - removedPositions.length;
+		int numberOfInsertions = insertions.length / 2;
+		if (numberOfRemaining + numberOfInsertions != newSlots.length) {
+			return false;
+		}
+		int insertionIndex = 0;
+		int removedIndex = 0;
+		int previousIndex = 0;
+		for (int index = 0; index < newSlots.length; index++) {
+			boolean isInsertion = insertionIndex < insertions.length && insertions[insertionIndex] == index;
+			if (isInsertion) {
+				insertionIndex += 2;
+				continue;
+			}
+			while (removedIndex < removedPositions.length && removedPositions[removedIndex] == previousIndex) {
+				removedIndex++;
+				previousIndex++;
+			}
+			if (slots[previousIndex++] != newSlots[index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Forgets the previously bound keys, e.g. if the elements have been
+	 * removed. The next join treats all existing elements as exiting.
+	 */
+	public void reset() {
+		state = null;
+		positionsByKey = new HashMap<>();
+		positionsByLongKey = null;
+		slots = new int[0];
+		firstPositions = new int[0];
+		values = null;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the number of keys that have been entered by the last join
+	 */
+	public int getNumberOfEntered() {
+		return numberOfEntered;
+	}
+
+	/**
+	 * Returns the number of previously bound positions that have been removed
+	 * by the last join
+	 */
+	public int getNumberOfExited() {
+		return numberOfExited;
+	}
+
+	/**
+	 * Returns the number of values that have been transferred by the last
+	 * join: all values if they have been given as JavaScript array and only
+	 * the inserted and changed values if they have been given as Java array
+	 */
+	public int getNumberOfUpdatedValues() {
+		return numberOfUpdatedValues;
+	}
+
+	/**
+	 * Returns true if only the changes have been transferred by the last join
+	 * and false if the complete slot sequence has been transferred because
+	 * the order of the keys changed
+	 */
+	public boolean isIncremental() {
+		return isIncremental;
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * Maps long keys to positions without boxing them (open addressing with
+	 * linear probing). The capacity is fixed at creation, because the number
+	 * of keys of a join is known in advance.
+	 */
+	private static class LongPositionMap {
+
+		private final long[] keys;
+
+		/**
+		 * The positions plus one; zero marks an empty entry
+		 */
+		private final int[] entries;
+
+		private final int mask;
+
+		LongPositionMap(int maximumSize) {
+			int capacity = 16;
+			while (capacity < 2 * maximumSize) {
+				capacity <<= 1;
+			}
+			keys = new long[capacity];
+			entries = new int[capacity];
+			mask = capacity - 1;
+		}
+
+		/**
+		 * Returns the position of the given key or -1 if it is not contained
+		 */
+		int get(long key) {
+			for (int index = indexOf(key);; index = (index + 1) & mask) {
+				int entry = entries[index];
+				if (entry == 0) {
+					return -1;
+				}
+				if (keys[index] == key) {
+					return entry - 1;
+				}
+			}
+		}
+
+		/**
+		 * Puts the given position if the key is not contained yet and returns
+		 * the existing position otherwise (or -1)
+		 */
+		int putIfAbsent(long key, int position) {
+			for (int index = indexOf(key);; index = (index + 1) & mask) {
+				int entry = entries[index];
+				if (entry == 0) {
+					keys[index] = key;
+					entries[index] = position + 1;
+					return -1;
+				}
+				if (keys[index] == key) {
+					return entry - 1;
+				}
+			}
+		}
+
+		private int indexOf(long key) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,632 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.treez.javafxd3.d3.arrays.TypedArrays;
+import org.treez.javafxd3.d3.ease.EasingTable;
+
+/**
+ * A transition whose start and end values are computed in Java and shipped
+ * once as a keyframe table, so that the frames are interpolated entirely in
+ * JavaScript. In contrast to a {@link Transition} with DataFunctions or
+ * TweenFunctions, there is no call to Java per element or per frame:
+ *
+ * <pre>
+ * KeyframeTransition transition = new KeyframeTransition(circles) //
+ * 		.duration(750) //
+ * 		.ease(EasingTable.cubicInOut()) //
+ * 		.attr("cx", newX) //
+ * 		.attr("r", oldRadii, newRadii) //
+ * 		.start();
+ * ...
+ * FrameBudgetReport report = transition.getReport();
+ * </pre>
+ *
+ * The values are given per element (the non-null elements of the selection,
+ * in selection order). The easing curve is sampled into a lookup table in
+ * Java, see {@link EasingTable}. Each frame sets the interpolated values with
+ * setAttribute and style.setProperty.
+ * <p>
+ * The clock starts with the first frame, so that the time needed to ship the
+ * keyframe table does not skip frames. Each frame is measured in JavaScript.
+ * The {@link FrameBudgetReport} tells how long the frames took and how many
+ * frames overran the frame budget or arrived late, e.g. to verify that a
+ * transition of thousands of elements runs at 60 frames per second.
+ * <p>
+ * Starting a keyframe transition on an element stops older keyframe
+ * transitions for that element; an older transition that has been stopped for
+ * some of its elements is reported as cancelled instead of finished. Keyframe
+ * transitions do not interrupt d3 transitions and vice versa.
+ */
+public class KeyframeTransition {
+
+	//#region ATTRIBUTES
+
+	private static final String ATTR = "attr";
+
+	private static final String STYLE = "style";
+
+	private static final String NUMBER = "number";
+
+	private static final String COLOR = "color";
+
+	private static final String TRANSLATE = "translate";
+
+	/**
+	 * The default frame budget of 60 frames per second
+	 */
+	private static final double DEFAULT_FRAME_BUDGET_IN_MILLIS = 1000.0 / 60;
+
+	/**
+	 * Frames that arrive later than this factor times the frame budget after
+	 * the previous frame are counted as dropped
+	 */
+	private static final double DROPPED_FRAME_FACTOR = 1.5;
+
+	private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+	/**
+	 * Prepares the keyframe table, starts a d3 timer that interpolates the
+	 * frames and returns the state of the transition (this = selection)
+	 */
+	private static final String START_TEMPLATE = "function(encodedValues, packedChannels, encodedSamples, encodedDelays, duration, delay, frameBudget, id){" //
+			+ "  var decode = " + TypedArrays.DECODER_FUNCTION + ";" //
+			+ "  var values = decode(encodedValues, 'Float64');" //
+			+ "  var descriptors = (" + TypedArrays.STRING_UNPACKER_FUNCTION + ")(packedChannels);" //
+			+ "  var samples = decode(encodedSamples, 'Float64');" //
+			+ "  var lastSample = samples.length - 1;" //
+			+ "  var nodes = [];" //
+			+ "  this.each(function(){ nodes.push(this); });" //
+			+ "  var numberOfElements = nodes.length;" //
+			+ "  var delays = encodedDelays.length === 0 ? null : decode(encodedDelays, 'Float64');" //
+			+ "  if(delays && delays.length !== numberOfElements){" //
+			+ "    throw new Error('Expected ' + numberOfElements + ' delays but got ' + delays.length);" //
+			+ "  }" //
+			+ "  var widths = { " + NUMBER + ": 1, " + COLOR + ": 3, " + TRANSLATE + ": 2 };" //
+			+ "  var channels = [];" //
+			+ "  var offset = 0;" //
+			+ "  for(var c = 0; c < descriptors.length; c += 3){" //
+			+ "    var width = widths[descriptors[c + 2]];" //
+			+ "    var size = numberOfElements * width;" //
+			+ "    channels.push({ target: descriptors[c], name: descriptors[c + 1], kind: descriptors[c + 2]," //
+			+ "      width: width, from: offset, to: offset + size });" //
+			+ "    offset += 2 * size;" //
+			+ "  }" //
+			+ "  if(offset !== values.length){" //
+			+ "    throw new Error('Expected ' + offset + ' values but got ' + values.length);" //
+			+ "  }" //
+			+ "  nodes.forEach(function(node){ node.__javafxd3_keyframes__ = id; });" //
+			+ "  var now = typeof performance !== 'undefined' && performance.now" //
+			+ "    ? function(){ return performance.now(); }" //
+			+ "    : function(){ return Date.now(); };" //
+			+ "  var ease = function(t){" //
+			+ "    if(t >= 1){" //
+			+ "      return samples[lastSample];" //
+			+ "    }" //
+			+ "    var position = t * lastSample;" //
+			+ "    var index = Math.floor(position);" //
+			+ "    return samples[index] + (samples[index + 1] - samples[index]) * (position - index);" //
+			+ "  };" //
+			+ "  var interpolate = function(channel, k, e){" //
+			+ "    var from = values[channel.from + k];" //
+			+ "    return from + (values[channel.to + k] - from) * e;" //
+			+ "  };" //
+			+ "  var channel255 = function(value){" //
+			+ "    return Math.max(0, Math.min(255, Math.round(value)));" //
+			+ "  };" //
+			+ "  var format = function(channel, i, e){" //
+			+ "    var k = i * channel.width;" //
+			+ "    switch(channel.kind){" //
+			+ "      case '" + COLOR + "':" //
+			+ "        return 'rgb(' + channel255(interpolate(channel, k, e)) + ','" //
+			+ "          + channel255(interpolate(channel, k + 1, e)) + ','" //
+			+ "          + channel255(interpolate(channel, k + 2, e)) + ')';" //
+			+ "      case '" + TRANSLATE + "':" //
+			+ "        return 'translate(' + interpolate(channel, k, e) + ',' + interpolate(channel, k + 1, e) + ')';" //
+			+ "      default:" //
+			+ "        return interpolate(channel, k, e);" //
+			+ "    }" //
+			+ "  };" //
+			+ "  var state = { isCancelled: false, isFinished: false, isSuperseded: false," //
+			+ "    numberOfElements: numberOfElements, numberOfFrames: 0, totalFrameTime: 0, maxFrameTime: 0," //
+			+ "    numberOfOverruns: 0, numberOfIntervals: 0, totalFrameInterval: 0, maxFrameInterval: 0," //
+			+ "    numberOfDroppedFrames: 0 };" //
+			+ "  var release = function(node){" //
+			+ "    if(node.__javafxd3_keyframes__ === id){" //
+			+ "      delete node.__javafxd3_keyframes__;" //
+			+ "    }" //
+			+ "  };" //
+			+ "  state.release = function(){" //
+			+ "    nodes.forEach(release);" //
+			+ "  };" //
+			+ "  var isDone = new Uint8Array(numberOfElements);" //
+			+ "  var startTime = NaN;" //
+			+ "  var lastFrameStart = NaN;" //
+			+ "  d3.timer(function(){" //
+			+ "    if(state.isCancelled){" //
+			+ "      return true;" //
+			+ "    }" //
+			+ "    var frameStart = now();" //
+			+ "    if(!isNaN(lastFrameStart)){" //
+			+ "      var interval = frameStart - lastFrameStart;" //
+			+ "      state.numberOfIntervals++;" //
+			+ "      state.totalFrameInterval += interval;" //
+			+ "      state.maxFrameInterval = Math.max(state.maxFrameInterval, interval);" //
+			+ "      if(interval > " + DROPPED_FRAME_FACTOR + " * frameBudget){" //
+			+ "        state.numberOfDroppedFrames++;" //
+			+ "      }" //
+			+ "    }" //
+			+ "    lastFrameStart = frameStart;" //
+			+ "    if(isNaN(startTime)){" //
+			+ "      startTime = frameStart;" //
+			+ "    }" //
+			+ "    var isRunning = false;" //
+			+ "    for(var i = 0; i < numberOfElements; i++){" //
+			+ "      var node = nodes[i];" //
+			+ "      if(isDone[i]){" //
+			+ "        continue;" //
+			+ "      }" //
+			+ "      if(node.__javafxd3_keyframes__ !== id){" //
+			+ "        isDone[i] = 1;" //
+			+ "        state.isSuperseded = true;" //
+			+ "        continue;" //
+			+ "      }" //
+			+ "      var elapsed = frameStart - startTime - delay - (delays ? delays[i] : 0);" //
+			+ "      if(elapsed < 0){" //
+			+ "        isRunning = true;" //
+			+ "        continue;" //
+			+ "      }" //
+			+ "      var t = duration > 0 ? elapsed / duration : 1;" //
+			+ "      if(t >= 1){" //
+			+ "        t = 1;" //
+			+ "        isDone[i] = 1;" //
+			+ "        release(node);" //
+			+ "      } else {" //
+			+ "        isRunning = true;" //
+			+ "      }" //
+			+ "      var e = ease(t);" //
+			+ "      for(var c = 0; c < channels.length; c++){" //
+			+ "        var channel = channels[c];" //
+			+ "        var value = format(channel, i, e);" //
+			+ "        if(channel.target === '" + ATTR + "'){" //
+			+ "          node.setAttribute(channel.name, value);" //
+			+ "        } else {" //
+			+ "          node.style.setProperty(channel.name, value, '');" //
+			+ "        }" //
+			+ "      }" //
+			+ "    }" //
+			+ "    var frameTime = now() - frameStart;" //
+			+ "    state.numberOfFrames++;" //
+			+ "    state.totalFrameTime += frameTime;" //
+			+ "    state.maxFrameTime = Math.max(state.maxFrameTime, frameTime);" //
+			+ "    if(frameTime > frameBudget){" //
+			+ "      state.numberOfOverruns++;" //
+			+ "    }" //
+			+ "    if(isRunning){" //
+			+ "      return false;" //
+			+ "    }" //
+			+ "    state.isCancelled = state.isSuperseded;" //
+			+ "    state.isFinished = !state.isSuperseded;" //
+			+ "    return true;" //
+			+ "  });" //
+			+ "  return state;" //
+			+ "}";
+
+	/**
+	 * Stops the transition and releases its elements (this = state)
+	 */
+	private static final String CANCEL_TEMPLATE = "function(){" //
+			+ "  if(!this.isFinished){" //
+			+ "    this.isCancelled = true;" //
+			+ "  }" //
+			+ "  this.release();" //
+			+ "}";
+
+	/**
+	 * Returns the encoded frame statistics (this = state)
+	 */
+	private static final String REPORT_TEMPLATE = "function(){" //
+			+ "  return (" + TypedArrays.ENCODER_FUNCTION + ")([this.numberOfElements, this.numberOfFrames," //
+			+ "    this.totalFrameTime, this.maxFrameTime, this.numberOfOverruns, this.numberOfIntervals," //
+			+ "    this.totalFrameInterval, this.maxFrameInterval, this.numberOfDroppedFrames," //
+			+ "    this.isFinished ? 1 : 0, this.isCancelled ? 1 : 0], 'Float64');" //
+			+ "}";
+
+	private final Selection selection;
+
+	private double duration = 250;
+
+	private double delay = 0;
+
+	private double[] delays = null;
+
+	private EasingTable easingTable = EasingTable.cubicInOut();
+
+	private double frameBudgetInMillis = DEFAULT_FRAME_BUDGET_IN_MILLIS;
+
+	/**
+	 * The target, name and kind of each channel
+	 */
+	private final List<String> channelDescriptors = new ArrayList<>();
+
+	/**
+	 * The start and end values of each channel
+	 */
+	private final List<double[]> channelValues = new ArrayList<>();
+
+	/**
+	 * The JavaScript state of the started transition
+	 */
+	private JsObject state;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	/**
+	 * @param selection
+	 *            the elements to transition
+	 */
+	public KeyframeTransition(Selection selection) {
+		this.selection = selection;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Sets the duration in milliseconds (default: 250)
+	 */
+	public KeyframeTransition duration(double milliseconds) {
+		this.duration = milliseconds;
+		return this;
+	}
+
+	/**
+	 * Sets the delay of all elements in milliseconds (default: 0)
+	 */
+	public KeyframeTransition delay(double milliseconds) {
+		this.delay = milliseconds;
+		return this;
+	}
+
+	/**
+	 * Sets an additional delay per element, e.g. to stagger the elements
+	 */
+	public KeyframeTransition delays(double[] milliseconds) {
+		this.delays = milliseconds.clone();
+		return this;
+	}
+
+	/**
+	 * Sets the easing curve (default: cubic-in-out)
+	 */
+	public KeyframeTransition ease(EasingTable easingTable) {
+		this.easingTable = easingTable;
+		return this;
+	}
+
+	/**
+	 * Sets the time in milliseconds that a frame may take without being
+	 * counted as overrun (default: 1000/60)
+	 */
+	public KeyframeTransition frameBudget(double milliseconds) {
+		this.frameBudgetInMillis = milliseconds;
+		return this;
+	}
+
+	/**
+	 * Transitions the numeric attribute from its current values (read in bulk
+	 * when this method is called) to the given values. Elements that have no
+	 * numeric value for the attribute start at their end value, i.e. the
+	 * attribute is set without animation.
+	 */
+	public KeyframeTransition attr(String name, double[] to) {
+		double[] from = selection.attrValuesAsDouble(name);
+		checkLength(from.length, to);
+		for (int index = 0; index < from.length; index++) {
+			boolean isMissing = Double.isNaN(from[index]);
+			if (isMissing) {
+				from[index] = to[index];
+			}
+		}
+		return attr(name, from, to);
+	}
+
+	/**
+	 * Transitions the numeric attribute from the given start values to the
+	 * given end values
+	 */
+	public KeyframeTransition attr(String name, double[] from, double[] to) {
+		return addChannel(ATTR, name, NUMBER, 1, from, to);
+	}
+
+	/**
+	 * Transitions the numeric style property (e.g. opacity) from the given
+	 * start values to the given end values
+	 */
+	public KeyframeTransition style(String name, double[] from, double[] to) {
+		return addChannel(STYLE, name, NUMBER, 1, from, to);
+	}
+
+	/**
+	 * Transitions the color attribute (e.g. fill) in RGB space
+	 *
+	 * @param fromRgb
+	 *            the start colors as 0xRRGGBB
+	 * @param toRgb
+	 *            the end colors as 0xRRGGBB
+	 */
+	public KeyframeTransition attrColor(String name, int[] fromRgb, int[] toRgb) {
+		return addChannel(ATTR, name, COLOR, 3, toChannels(fromRgb), toChannels(toRgb));
+	}
+
+	/**
+	 * Transitions the color style property (e.g. fill) in RGB space, see
+	 * {@link #attrColor(String, int[], int[])}
+	 */
+	public KeyframeTransition styleColor(String name, int[] fromRgb, int[] toRgb) {
+		return addChannel(STYLE, name, COLOR, 3, toChannels(fromRgb), toChannels(toRgb));
+	}
+
+	/**
+	 * Transitions the transform attribute as translate(x,y), e.g. to move
+	 * groups
+	 */
+	public KeyframeTransition translate(double[] fromX, double[] fromY, double[] toX, double[] toY) {
+		checkLength(fromX.length, fromY);
+		checkLength(fromX.length, toX);
+		checkLength(fromX.length, toY);
+		return addChannel(ATTR, "transform", TRANSLATE, 2, interleave(fromX, fromY), interleave(toX, toY));
+	}
+
+	/**
+	 * Ships the keyframe table with a single call and starts the transition
+	 */
+	public KeyframeTransition start() {
+		if (state != null) {
+			throw new IllegalStateException("The keyframe transition has already been started.");
+		}
+
+		int numberOfValues = 0;
+		for (double[] values : channelValues) {
+			numberOfValues += values.length;
+		}
+		double[] keyframes = new double[numberOfValues];
+		int offset = 0;
+		for (double[] values : channelValues) {
+			System.arraycopy(values, 0, keyframes, offset, values.length);
+			offset += values.length;
+		}
+
+		String encodedDelays = delays == null ? "" : TypedArrays.encode(delays);
+		String packedChannels = TypedArrays.packStrings(channelDescriptors.toArray(new String[0]));
+		JsEngine engine = selection.getJsEngine();
+		Object result = ScriptTemplateCache.forEngine(engine).invoke(selection.getJsObject(), START_TEMPLATE,
+				TypedArrays.encode(keyframes), packedChannels, TypedArrays.encode(easingTable.getSamples()),
+				encodedDelays, duration, delay, frameBudgetInMillis, NEXT_ID.getAndIncrement());
+		state = (JsObject) result;
+		return this;
+	}
+
+	/**
+	 * Stops the transition; the elements keep their current values
+	 */
+	public void cancel() {
+		checkStarted();
+		ScriptTemplateCache.forEngine(selection.getJsEngine()).invoke(state, CANCEL_TEMPLATE);
+	}
+
+	/**
+	 * Returns true if all elements have reached their end values
+	 */
+	public boolean isFinished() {
+		return getReport().isFinished();
+	}
+
+	/**
+	 * Returns true if the transition has been cancelled or has been stopped
+	 * for some of its elements by a newer keyframe transition
+	 */
+	public boolean isCancelled() {
+		return getReport().isCancelled();
+	}
+
+	/**
+	 * Returns the frame statistics of the transition so far
+	 */
+	public FrameBudgetReport getReport() {
+		checkStarted();
+		Object result = ScriptTemplateCache.forEngine(selection.getJsEngine()).invoke(state, REPORT_TEMPLATE);
+		double[] statistics = TypedArrays.decodeDoubles(result.toString());
+		return new FrameBudgetReport(statistics, frameBudgetInMillis);
+	}
+
+	private KeyframeTransition addChannel(String target, String name, String kind, int width, double[] from,
+			double[] to) {
+		if (state != null) {
+			throw new IllegalStateException("Channels must be added before the keyframe transition is started.");
+		}
+		checkLength(from.length, to);
+		if (from.length % width != 0) {
+			String message = "The number of values must be a multiple of " + width + " but is " + from.length + ".";
+			throw new IllegalStateException(message);
+		}
+		channelDescriptors.add(target);
+		channelDescriptors.add(name);
+		channelDescriptors.add(kind);
+		double[] values = new double[2 * from.length];
+		System.arraycopy(from, 0, values, 0, from.length);
+		System.arraycopy(to, 0, values, from.length, to.length);
+		channelValues.add(values);
+		return this;
+	}
+
+	private void checkStarted() {
+		if (state == null) {
+			throw new IllegalStateException("The keyframe transition has not been started.");
+		}
+	}
+
+	private static double[] toChannels(int[] rgbColors) {
+		double[] channels = new double[3 * rgbColors.length];
+		for (int index = 0; index < rgbColors.length; index++) {
+			int rgb = rgbColors[index];
+			channels[3 * index] = (rgb >> 16) & 0xFF;
+			channels[3 * index + 1] = (rgb >> 8) & 0xFF;
+			channels[3 * index + 2] = rgb & 0xFF;
+		}
+		return channels;
+	}
+
+	private static double[] interleave(double[] x, double[] y) {
+		double[] xy = new double[2 * x.length];
+		for (int index = 0; index < x.length; index++) {
+			xy[2 * index] = x[index];
+			xy[2 * index + 1] = y[index];
+		}
+		return xy;
+	}
+
+	private static void checkLength(int expectedLength, double[] values) {
+		if (values.length != expectedLength) {
+			throw new IllegalStateException("Expected " + expectedLength + " values but got " + values.length + ".");
+		}
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * The frame statistics of a keyframe transition. Frame times are the times
+	 * spent in the frames of the transition; frame intervals are the times
+	 * between the starts of consecutive frames.
+	 */
+	public static class FrameBudgetReport {
+
+		private final int numberOfElements;
+
+		private final int numberOfFrames;
+
+		private final double averageFrameTime;
+
+		private final double maxFrameTime;
+
+		private final int numberOfOverruns;
+
+		private final double averageFrameInterval;
+
+		private final double maxFrameInterval;
+
+		private final int numberOfDroppedFrames;
+
+		private final boolean isFinished;
+
+		private final boolean isCancelled;
+
+		private final double frameBudget;
+
+		FrameBudgetReport(double[] statistics, double frameBudget) {
+			numberOfElements = (int) statistics[0];
+			numberOfFrames = (int) statistics[1];
+			averageFrameTime = numberOfFrames == 0 ? 0 : statistics[2] / numberOfFrames;
+			maxFrameTime = statistics[3];
+			numberOfOverruns = (int) statistics[4];
+			int numberOfIntervals = (int) statistics[5];
+			averageFrameInterval = numberOfIntervals == 0 ? 0 : statistics[6] / numberOfIntervals;
+			maxFrameInterval = statistics[7];
+			numberOfDroppedFrames = (int) statistics[8];
+			isFinished = statistics[9] != 0;
+			isCancelled = statistics[10] != 0;
+			this.frameBudget = frameBudget;
+		}
+
+		public int getNumberOfElements() {
+			return numberOfElements;
+		}
+
+		public int getNumberOfFrames() {
+			return numberOfFrames;
+		}
+
+		/**
+		 * Returns the average time in milliseconds that has been spent per
+		 * frame
+		 */
+		public double getAverageFrameTime() {
+			return averageFrameTime;
+		}
+
+		public double getMaxFrameTime() {
+			return maxFrameTime;
+		}
+
+		/**
+		 * Returns the number of frames that took longer than the frame budget
+		 */
+		public int getNumberOfOverruns() {
+			return numberOfOverruns;
+		}
+
+		public double getAverageFrameInterval() {
+			return averageFrameInterval;
+		}
+
+		public double getMaxFrameInterval() {
+			return maxFrameInterval;
+		}
+
+		/**
+		 * Returns the number of frames that started later than 1.5 times the
+		 * frame budget after the previous frame
+		 */
+		public int getNumberOfDroppedFrames() {
+			return numberOfDroppedFrames;
+		}
+
+		/**
+		 * Returns the achieved frame rate, derived from the average frame
+		 * interval
+		 */
+		public double getFramesPerSecond() {
+			if (averageFrameInterval == 0) {
+				return 0;
+			}
+			return 1000 / averageFrameInterval;
+		}
+
+		/**
+		 * Returns true if no frame took longer than the frame budget
+		 */
+		public boolean isWithinBudget() {
+			return numberOfOverruns == 0;
+		}
+
+		public boolean isFinished() {
+			return isFinished;
+		}
+
+		public boolean isCancelled() {
+			return isCancelled;
+		}
+
+		public double getFrameBudget() {
+			return frameBudget;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%d elements, %d frames, %.2f ms average, %.2f ms max, %d overruns (budget %.1f ms), %.1f fps, %d dropped frames",
+					numberOfElements, numberOfFrames, averageFrameTime, maxFrameTime, numberOfOverruns, frameBudget,
+					getFramesPerSecond(), numberOfDroppedFrames);
+		}
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,331 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the Java event listeners that are registered with the
+ * on-methods of selections and behaviors (e.g. Selection.on, Brush.on) and
+ * releases them when they are not used anymore.
+ * <p>
+ * The listeners are pinned in the CallbackRegistry. Each owner of a listener
+ * (a DOM element or a JavaScript object like a brush) remembers the handles of
+ * its listeners by event type. A listener is released (the JavaScript
+ * reference as well as the Java reference) when it is not bound to any owner
+ * anymore, which happens
+ * <ul>
+ * <li>if the listener is replaced with another listener or with null,
+ * <li>if the owning elements are removed with Selection.remove(),
+ * <li>if all listeners are released with {@link #releaseAll()}, e.g. if the
+ * browser is disposed.
+ * </ul>
+ */
+public class ListenerRegistry {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Calls a DataFunction as event listener (this = element, datum, index)
+	 */
+	public static final String DATA_FUNCTION_LISTENER_ADAPTER = "function(fns, h){" //
+			+ "  return function(d, i){" //
+			+ "    fns[h].apply(this, d, i);" //
+			+ "  };" //
+			+ "}";
+
+	private static final String CREATE_HELPER_COMMAND = "(function(){" //
+			+ "  var key = '__javafxd3_listeners__';" //
+			+ "  function rebind(owner, type, h, released){" //
+			+ "    var map = owner[key];" //
+			+ "    if(map && type.charAt(0) === '.'){" //
+			+ "      for(var t in map){" //
+			+ "        var dot = t.indexOf('.');" //
+			+ "        if(map.hasOwnProperty(t) && dot >= 0 && t.slice(dot) === type){" //
+			+ "          released.push(map[t]);" //
+			+ "          delete map[t];" //
+			+ "        }" //
+			+ "      }" //
+			+ "    }" //
+			+ "    if(map && map.hasOwnProperty(type)){" //
+			+ "      released.push(map[type]);" //
+			+ "      delete map[type];" //
+			+ "    }" //
+			+ "    if(h < 0){" //
+			+ "      return 0;" //
+			+ "    }" //
+			+ "    if(!map){" //
+			+ "      map = owner[key] = {};" //
+			+ "    }" //
+			+ "    map[type] = h;" //
+			+ "    return 1;" //
+			+ "  }" //
+			+ "  function collect(node, released){" //
+			+ "    var map = node[key];" //
+			+ "    if(map){" //
+			+ "      for(var type in map){" //
+			+ "        if(map.hasOwnProperty(type)){" //
+			+ "          released.push(map[type]);" //
+			+ "        }" //
+			+ "      }" //
+			+ "      delete node[key];" //
+			+ "    }" //
+			+ "  }" //
+			+ "  return {" //
+			+ "    onSelection: function(selection, type, h, listener, capture){" //
+			+ "      var released = [];" //
+			+ "      var bound = 0;" //
+			+ "      selection.each(function(){" //
+			+ "        bound += rebind(this, type, h, released);" //
+			+ "      });" //
+			+ "      if(capture === null){" //
+			+ "        selection.on(type, listener);" //
+			+ "      } else {" //
+			+ "        selection.on(type, listener, capture);" //
+			+ "      }" //
+			+ "      return bound + ';' + released.join(',');" //
+			+ "    }," //
+			+ "    onObject: function(owner, type, h, listener){" //
+			+ "      var released = [];" //
+			+ "      var bound = rebind(owner, type, h, released);" //
+			+ "      owner.on(type, listener);" //
+			+ "      return bound + ';' + released.join(',');" //
+			+ "    }," //
+			+ "    collect: function(selection){" //
+			+ "      var released = [];" //
+			+ "      selection.each(function(){" //
+			+ "        collect(this, released);" //
+			+ "        if(this.querySelectorAll){" //
+			+ "          var nodes = this.querySelectorAll('*');" //
+			+ "          for(var index = 0; index < nodes.length; index++){" //
+			+ "            collect(nodes[index], released);" //
+			+ "          }" //
+			+ "        }" //
+			+ "      });" //
+			+ "      return released.join(',');" //
+			+ "    }" //
+			+ "  };" //
+			+ "})()";
+
+	private JsEngine engine;
+
+	private JsObject jsHelper;
+
+	/**
+	 * The registered listeners, by their handle
+	 */
+	private Map<Integer, ListenerEntry> entries = new HashMap<>();
+
+	/**
+	 * Number of bindings to DOM elements. Selection.remove() only needs to
+	 * look for listeners if this is larger than zero.
+	 */
+	private int numberOfElementBindings = 0;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public ListenerRegistry(JsEngine engine) {
+		this.engine = engine;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Returns the ListenerRegistry of the given engine
+	 */
+	public static ListenerRegistry forEngine(JsEngine engine) {
+		return engine.getService(ListenerRegistry.class, ListenerRegistry::new);
+	}
+
+	/**
+	 * Registers the given listener for the given event type on all elements of
+	 * the given selection. If the listener is null, the current listeners are
+	 * removed.
+	 *
+	 * @param selection
+	 * @param type
+	 * @param listener
+	 * @param adapter
+	 *            see {@link CallbackRegistry}
+	 * @param useCapture
+	 *            might be null if it should not be passed
+	 */
+	public void addSelectionListener(JsObject selection, String type, Object listener, String adapter,
+			Boolean useCapture) {
+		JsObject trampoline = pinListener(listener, adapter);
+		ListenerEntry entry = getOrCreateEntry(listener);
+		int handle = entry == null ? -1 : entry.handle;
+		Object result = getJsHelper().call("onSelection", selection, type, handle, trampoline, useCapture);
+		int numberOfBindings = updateBindings(entry, result);
+		numberOfElementBindings += numberOfBindings;
+	}
+
+	/**
+	 * Registers the given listener for the given event type on the given
+	 * JavaScript object (e.g. a brush or a zoom behavior). If the listener is
+	 * null, the current listener is removed.
+	 *
+	 * @param owner
+	 * @param type
+	 * @param listener
+	 * @param adapter
+	 *            see {@link CallbackRegistry}
+	 */
+	public void addObjectListener(JsObject owner, String type, Object listener, String adapter) {
+		JsObject trampoline = pinListener(listener, adapter);
+		ListenerEntry entry = getOrCreateEntry(listener);
+		int handle = entry == null ? -1 : entry.handle;
+		Object result = getJsHelper().call("onObject", owner, type, handle, trampoline);
+		updateBindings(entry, result);
+	}
+
+	/**
+	 * Releases the listeners that are bound to the elements of the given
+	 * selection and to their descendants. Called before the elements are
+	 * removed.
+	 */
+	public void releaseListenersOf(JsObject selection) {
+		if (numberOfElementBindings <= 0) {
+			return;
+		}
+		Object result = getJsHelper().call("collect", selection);
+		List<Integer> releasedHandles = parseHandles(result.toString());
+		numberOfElementBindings -= releasedHandles.size();
+		unbind(releasedHandles);
+	}
+
+	/**
+	 * Releases all listeners
+	 */
+	public void releaseAll() {
+		CallbackRegistry callbackRegistry = CallbackRegistry.forEngine(engine);
+		for (ListenerEntry entry : entries.values()) {
+			callbackRegistry.release(entry.listener);
+		}
+		entries.clear();
+		numberOfElementBindings = 0;
+	}
+
+	private JsObject pinListener(Object listener, String adapter) {
+		if (listener == null) {
+			return null;
+		}
+		return CallbackRegistry.forEngine(engine).pin(listener, adapter);
+	}
+
+	private ListenerEntry getOrCreateEntry(Object listener) {
+		if (listener == null) {
+			return null;
+		}
+		int handle = CallbackRegistry.forEngine(engine).getHandle(listener);
+		ListenerEntry entry = entries.get(handle);
+		if (entry == null) {
+			entry = new ListenerEntry(listener, handle);
+			entries.put(handle, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Processes the result of a JavaScript on-call, which has the form
+	 * "numberOfBindings;releasedHandle1,releasedHandle2,..." and returns the
+	 * number of new bindings
+	 */
+	private int updateBindings(ListenerEntry entry, Object result) {
+		String[] parts = result.toString().split(";", -1);
+		int numberOfBindings = Integer.parseInt(parts[0]);
+		if (entry != null) {
+			entry.numberOfBindings += numberOfBindings;
+		}
+		List<Integer> releasedHandles = parseHandles(parts[1]);
+		unbind(releasedHandles);
+		if (entry != null && entry.numberOfBindings <= 0) {
+			release(entry);
+		}
+		return numberOfBindings - releasedHandles.size();
+	}
+
+	private void unbind(List<Integer> handles) {
+		for (Integer handle : handles) {
+			ListenerEntry entry = entries.get(handle);
+			if (entry != null) {
+				entry.numberOfBindings--;
+				if (entry.numberOfBindings <= 0) {
+					release(entry);
+				}
+			}
+		}
+	}
+
+	private void release(ListenerEntry entry) {
+		entries.remove(entry.handle);
+		CallbackRegistry.forEngine(engine).release(entry.listener);
+	}
+
+	private static List<Integer> parseHandles(String handlesString) {
+		List<Integer> handles = new ArrayList<>();
+		if (handlesString.isEmpty()) {
+			return handles;
+		}
+		for (String handleString : handlesString.split(",")) {
+			handles.add(Integer.parseInt(handleString));
+		}
+		return handles;
+	}
+
+	private JsObject getJsHelper() {
+		if (jsHelper == null) {
+			jsHelper = (JsObject) engine.executeScript(CREATE_HELPER_COMMAND);
+		}
+		return jsHelper;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the number of registered (= live) listeners
+	 */
+	public int getNumberOfListeners() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of bindings of the registered listeners to their
+	 * owners (e.g. to DOM elements)
+	 */
+	public int getNumberOfBindings() {
+		int numberOfBindings = 0;
+		for (ListenerEntry entry : entries.values()) {
+			numberOfBindings += entry.numberOfBindings;
+		}
+		return numberOfBindings;
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	private static class ListenerEntry {
+
+		private final Object listener;
+
+		private final int handle;
+
+		private int numberOfBindings = 0;
+
+		ListenerEntry(Object listener, int handle) {
+			this.listener = listener;
+			this.handle = handle;
+		}
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,173 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compiles JavaScript snippets that only differ in their values (e.g.
+ * "this(1.5)" and "this(2.5)" for scales) to functions that are compiled only
+ * once per engine. Instead of evaluating new source code for each invocation,
+ * the compiled function is invoked with JsObject.call and the values are
+ * passed as arguments.
+ * <p>
+ * A template is the source code of a JavaScript function that is invoked with
+ * the wrapped object as this, e.g.
+ *
+ * <pre>
+ * function(name){ return this.attr(name); }
+ * </pre>
+ *
+ * The cache counts hits (invocations of templates that have already been
+ * compiled) and misses (compilations of new templates); see
+ * {@link #getHitRate()} and {@link #getStatistics()}.
+ */
+public class ScriptTemplateCache {
+
+	//#region ATTRIBUTES
+
+	private JsEngine engine;
+
+	/**
+	 * The compiled functions, by their template
+	 */
+	private Map<String, JsObject> functions = new HashMap<>();
+
+	private long numberOfHits = 0;
+
+	private long numberOfMisses = 0;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public ScriptTemplateCache(JsEngine engine) {
+		this.engine = engine;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Returns the ScriptTemplateCache of the given engine
+	 */
+	public static ScriptTemplateCache forEngine(JsEngine engine) {
+		return engine.getService(ScriptTemplateCache.class, ScriptTemplateCache::new);
+	}
+
+	/**
+	 * Invokes the given template with the given object as this and returns
+	 * the result
+	 */
+	public Object invoke(JsObject thisObject, String template, Object... args) {
+		JsObject function = getFunction(template);
+		return function.call("call", createCallArguments(thisObject, args));
+	}
+
+	/**
+	 * Invokes the given template with the given object as this. If the engine
+	 * is batching, the invocation is only recorded.
+	 */
+	public void invokeWithoutResult(JsObject thisObject, String template, Object... args) {
+		JsObject function = getFunction(template);
+		function.callWithoutResult("call", createCallArguments(thisObject, args));
+	}
+
+	/**
+	 * Returns the compiled function of the given template. The template is
+	 * compiled if it has not been compiled yet.
+	 */
+	public JsObject getFunction(String template) {
+		Objects.requireNonNull(template, "Template must not be null");
+		JsObject function = functions.get(template);
+		if (function != null) {
+			numberOfHits++;
+			return function;
+		}
+
+		numberOfMisses++;
+		Object compiledTemplate = engine.executeScript("(" + template + ")");
+		boolean isJsObject = compiledTemplate instanceof JsObject;
+		if (!isJsObject) {
+			String message = "The template '" + template + "' is not a JavaScript function.";
+			throw new IllegalStateException(message);
+		}
+		function = (JsObject) compiledTemplate;
+		functions.put(template, function);
+		return function;
+	}
+
+	private static Object[] createCallArguments(JsObject thisObject, Object... args) {
+		Objects.requireNonNull(thisObject);
+		Object[] callArgs = new Object[args.length + 1];
+		callArgs[0] = thisObject;
+		System.arraycopy(args, 0, callArgs, 1, args.length);
+		return callArgs;
+	}
+
+	/**
+	 * Removes the compiled functions, e.g. if the content of the engine is
+	 * replaced. The statistics are kept.
+	 */
+	public void clear() {
+		functions.clear();
+	}
+
+	/**
+	 * Resets the numbers of hits and misses
+	 */
+	public void resetStatistics() {
+		numberOfHits = 0;
+		numberOfMisses = 0;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the number of invocations of templates that had already been
+	 * compiled
+	 */
+	public long getNumberOfHits() {
+		return numberOfHits;
+	}
+
+	/**
+	 * Returns the number of template compilations
+	 */
+	public long getNumberOfMisses() {
+		return numberOfMisses;
+	}
+
+	/**
+	 * Returns the number of compiled templates
+	 */
+	public int getNumberOfTemplates() {
+		return functions.size();
+	}
+
+	/**
+	 * Returns the ratio of hits to all template invocations (0 if no template
+	 * has been invoked yet)
+	 */
+	public double getHitRate() {
+		long numberOfInvocations = numberOfHits + numberOfMisses;
+		if (numberOfInvocations == 0) {
+			return 0;
+		}
+		return (double) numberOfHits / numberOfInvocations;
+	}
+
+	/**
+	 * Returns a short report of the cache statistics, e.g. for logging
+	 */
+	public String getStatistics() {
+		return String.format("%d templates, %d hits, %d misses, hit rate %.1f%%", getNumberOfTemplates(),
+				numberOfHits, numberOfMisses, 100 * getHitRate());
+	}
+
+	//#end region
+
+}
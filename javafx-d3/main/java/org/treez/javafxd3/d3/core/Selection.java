@@ -2,6 +2,7 @@ package org.treez.javafxd3.d3.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -11,6 +12,10 @@ import java.util.Map;
 import org.treez.javafxd3.d3.D3;
 import org.treez.javafxd3.d3.arrays.Array;
 import org.treez.javafxd3.d3.arrays.ArrayUtils;
+import org.treez.javafxd3.d3.arrays.Bitmaps;
+import org.treez.javafxd3.d3.arrays.DataFrame;
+import org.treez.javafxd3.d3.arrays.SortPermutations;
+import org.treez.javafxd3.d3.arrays.TypedArrays;
 import org.treez.javafxd3.d3.functions.DataFunction;
 import org.treez.javafxd3.d3.functions.KeyFunction;
 import org.treez.javafxd3.d3.functions.MouseClickFunction;
@@ -95,6 +100,285 @@ public class Selection extends EnteringSelection {
 	 */
 	public static final String DATA_PROPERTY = "__data__";
 
+	/**
+	 * Calls a DataFunction and shows an alert if it throws an exception
+	 */
+	static final String CATCHING_DATA_FUNCTION_ADAPTER = "function(fns, h){" //
+			+ "  return function(d, i){" //
+			+ "    try {" //
+			+ "      return fns[h].apply(this, d, i);" //
+			+ "    } catch (exception) {" //
+			+ "      alert(exception);" //
+			+ "      return null;" //
+			+ "    }" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * Calls a DataFunction and converts its result to a string
+	 */
+	static final String TO_STRING_DATA_FUNCTION_ADAPTER = "function(fns, h){" //
+			+ "  return function(d, i){" //
+			+ "    var r = fns[h].apply(this, d, i);" //
+			+ "    return r ? r.toString() : null;" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * Calls a DataFunction and converts a null result to false
+	 */
+	private static final String BOOLEAN_DATA_FUNCTION_ADAPTER = "function(fns, h){" //
+			+ "  return function(d, i){" //
+			+ "    var r = fns[h].apply(this, d, i);" //
+			+ "    return r == null ? false : r;" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * Calls a MouseClickFunction as event listener
+	 */
+	private static final String MOUSE_CLICK_LISTENER_ADAPTER = "function(fns, h){" //
+			+ "  return function(d, i){" //
+			+ "    fns[h].handleMouseClick(this);" //
+			+ "  };" //
+			+ "}";
+
+	private static final String GET_GROUP_TEMPLATE = "function(index){ return this[index]; }";
+
+	private static final String ATTR_TEMPLATE = "function(name){ return this.attr(name); }";
+
+	/**
+	 * Binds the data array that is given as array arguments, see
+	 * {@link TypedArrays#toArrayArguments(JsEngine, Object[])}
+	 */
+	private static final String DATA_ARRAY_TEMPLATE = "function(){" //
+			+ "  return this.data((" + TypedArrays.ARRAY_ARGUMENTS_FUNCTION + ")(arguments, 0));" //
+			+ "}";
+
+	/**
+	 * Sorts the groups of a selection by the given keys (one per non-null
+	 * element, in selection order) with a stable sort and reorders the
+	 * document. NaN, null and undefined keys are placed last, like
+	 * {@link SortPermutations} does.
+	 */
+	private static final String SORT_BY_KEYS_FUNCTION = "function(selection, keys){" //
+			+ "  var numberOfElements = 0;" //
+			+ "  selection.forEach(function(group){" //
+			+ "    for(var index = 0; index < group.length; index++){" //
+			+ "      if(group[index]){" //
+			+ "        numberOfElements++;" //
+			+ "      }" //
+			+ "    }" //
+			+ "  });" //
+			+ "  if(numberOfElements !== keys.length){" //
+			+ "    throw new Error('Expected ' + numberOfElements + ' keys but got ' + keys.length);" //
+			+ "  }" //
+			+ "  var compare = function(first, second){" //
+			+ "    if(first.isMissing || second.isMissing){" //
+			+ "      if(first.isMissing && second.isMissing){" //
+			+ "        return first.index - second.index;" //
+			+ "      }" //
+			+ "      return first.isMissing ? 1 : -1;" //
+			+ "    }" //
+			+ "    return first.key < second.key ? -1 : first.key > second.key ? 1 : first.index - second.index;" //
+			+ "  };" //
+			+ "  var keyIndex = 0;" //
+			+ "  for(var groupIndex = 0; groupIndex < selection.length; groupIndex++){" //
+			+ "    var group = selection[groupIndex];" //
+			+ "    var entries = [];" //
+			+ "    for(var index = 0; index < group.length; index++){" //
+			+ "      if(group[index]){" //
+			+ "        var key = keys[keyIndex++];" //
+			+ "        var isMissing = key === null || key === undefined || key !== key;" //
+			+ "        entries.push({ node: group[index], key: key, isMissing: isMissing, index: entries.length });" //
+			+ "      }" //
+			+ "    }" //
+			+ "    entries.sort(compare);" //
+			+ "    for(index = 0; index < group.length; index++){" //
+			+ "      group[index] = index < entries.length ? entries[index].node : null;" //
+			+ "    }" //
+			+ "  }" //
+			+ "  return selection.order();" //
+			+ "}";
+
+	/**
+	 * Sorts by base64 encoded numeric keys
+	 */
+	private static final String SORT_BY_NUMBERS_TEMPLATE = "function(base64, type){" //
+			+ "  var keys = (" + TypedArrays.DECODER_FUNCTION + ")(base64, type);" //
+			+ "  return (" + SORT_BY_KEYS_FUNCTION + ")(this, keys);" //
+			+ "}";
+
+	/**
+	 * Sorts by packed string keys
+	 */
+	private static final String SORT_BY_STRINGS_TEMPLATE = "function(packed){" //
+			+ "  var keys = (" + TypedArrays.STRING_UNPACKER_FUNCTION + ")(packed);" //
+			+ "  return (" + SORT_BY_KEYS_FUNCTION + ")(this, keys);" //
+			+ "}";
+
+	/**
+	 * Extracts the keys with a single call of the key function per element
+	 * and sorts by them
+	 */
+	private static final String SORT_BY_KEY_FUNCTION_TEMPLATE = "function(keyFunction, isNumeric){" //
+			+ "  var keys = [];" //
+			+ "  this.each(function(d, i){" //
+			+ "    var key = keyFunction.call(this, d, i);" //
+			+ "    keys.push(isNumeric ? +key : '' + key);" //
+			+ "  });" //
+			+ "  return (" + SORT_BY_KEYS_FUNCTION + ")(this, keys);" //
+			+ "}";
+
+	/**
+	 * Joins the row views of a data frame, see
+	 * {@link DataFrame#getScriptArguments()}
+	 */
+	private static final String DATA_FRAME_TEMPLATE = "function(numberOfRows, names, kinds, payloads){" //
+			+ "  return this.data((" + DataFrame.ROWS_FUNCTION + ")(numberOfRows, names, kinds, payloads));" //
+			+ "}";
+
+	/**
+	 * Joins the row views of a data frame, using the values of a column as
+	 * keys. The first argument is the name of the key column. Existing elements
+	 * without data (e.g. from a join that did not use a data frame) get no key.
+	 */
+	private static final String KEYED_DATA_FRAME_TEMPLATE = "function(keyColumn, numberOfRows, names, kinds, payloads){" //
+			+ "  var rows = (" + DataFrame.ROWS_FUNCTION + ")(numberOfRows, names, kinds, payloads);" //
+			+ "  if(!rows.columns.hasOwnProperty(keyColumn)){" //
+			+ "    throw new Error('Unknown key column ' + keyColumn);" //
+			+ "  }" //
+			+ "  return this.data(rows, function(d){ return d == null ? undefined : '' + d[keyColumn]; });" //
+			+ "}";
+
+	private static final String DATUM_TEMPLATE = "function(){ return this.datum(); }";
+
+	/**
+	 * Binds the datum array that is given as array arguments, see
+	 * {@link TypedArrays#toArrayArguments(JsEngine, Object[])}
+	 */
+	private static final String DATUM_ARRAY_TEMPLATE = "function(){" //
+			+ "  return this.datum((" + TypedArrays.ARRAY_ARGUMENTS_FUNCTION + ")(arguments, 0));" //
+			+ "}";
+
+	/**
+	 * Throws an error if the number of values does not match the number of
+	 * selected elements
+	 */
+	private static final String CHECK_NUMBER_OF_VALUES = "  var size = this.size();" //
+			+ "  if(values.length !== size){" //
+			+ "    throw new Error('Expected ' + size + ' values but got ' + values.length);" //
+			+ "  }";
+
+	/**
+	 * Sets an attribute to base64 encoded numbers, one per selected element
+	 */
+	private static final String BULK_NUMBER_ATTR_TEMPLATE = "function(name, base64){" //
+			+ "  var values = (" + TypedArrays.DECODER_FUNCTION + ")(base64, 'Float64');" //
+			+ CHECK_NUMBER_OF_VALUES //
+			+ "  var index = 0;" //
+			+ "  return this.attr(name, function(){ return values[index++]; });" //
+			+ "}";
+
+	/**
+	 * Sets an attribute to packed strings, one per selected element
+	 */
+	private static final String BULK_STRING_ATTR_TEMPLATE = "function(name, packed){" //
+			+ "  var values = (" + TypedArrays.STRING_UNPACKER_FUNCTION + ")(packed);" //
+			+ CHECK_NUMBER_OF_VALUES //
+			+ "  var index = 0;" //
+			+ "  return this.attr(name, function(){ return values[index++]; });" //
+			+ "}";
+
+	/**
+	 * Sets a style to packed strings, one per selected element
+	 */
+	private static final String BULK_STRING_STYLE_TEMPLATE = "function(name, packed){" //
+			+ "  var values = (" + TypedArrays.STRING_UNPACKER_FUNCTION + ")(packed);" //
+			+ CHECK_NUMBER_OF_VALUES //
+			+ "  var index = 0;" //
+			+ "  return this.style(name, function(){ return values[index++]; });" //
+			+ "}";
+
+	/**
+	 * Throws an error if the expected size (if not negative) does not match
+	 * the number of selected elements
+	 */
+	private static final String CHECK_EXPECTED_SIZE = "  if(expectedSize >= 0){" //
+			+ "    var size = this.size();" //
+			+ "    if(expectedSize !== size){" //
+			+ "      throw new Error('Expected ' + size + ' values but got ' + expectedSize);" //
+			+ "    }" //
+			+ "  }";
+
+	/**
+	 * Assigns or unassigns a class according to a bitmap, one bit per
+	 * selected element
+	 */
+	private static final String BITMAP_CLASSED_TEMPLATE = "function(name, base64, expectedSize){" //
+			+ "  var isSet = (" + Bitmaps.DECODER_FUNCTION + ")(base64);" //
+			+ CHECK_EXPECTED_SIZE //
+			+ "  var index = 0;" //
+			+ "  return this.classed(name, function(){ return isSet(index++); });" //
+			+ "}";
+
+	/**
+	 * Reads an attribute ('attr'), a property ('property') or a datum property
+	 * ('datum') of all selected elements and returns the values as encoded
+	 * Float64Array or as packed strings
+	 */
+	private static final String READ_VALUES_TEMPLATE = "function(source, name, isNumeric){" //
+			+ "  var qualifiedName = source === 'attr' ? d3.ns.qualify(name) : null;" //
+			+ "  var values = [];" //
+			+ "  this.each(function(d){" //
+			+ "    var value;" //
+			+ "    switch(source){" //
+			+ "      case 'attr':" //
+			+ "        value = qualifiedName.local" //
+			+ "          ? this.getAttributeNS(qualifiedName.space, qualifiedName.local)" //
+			+ "          : this.getAttribute(qualifiedName);" //
+			+ "        break;" //
+			+ "      case 'property':" //
+			+ "        value = this[name];" //
+			+ "        break;" //
+			+ "      default:" //
+			+ "        value = d == null ? undefined : d[name];" //
+			+ "    }" //
+			+ "    if(isNumeric){" //
+			+ "      values.push(value == null ? NaN : typeof value === 'string' ? parseFloat(value) : +value);" //
+			+ "    } else {" //
+			+ "      values.push(value == null ? null : '' + value);" //
+			+ "    }" //
+			+ "  });" //
+			+ "  return isNumeric" //
+			+ "    ? (" + TypedArrays.ENCODER_FUNCTION + ")(values, 'Float64')" //
+			+ "    : (" + TypedArrays.STRING_PACKER_FUNCTION + ")(values);" //
+			+ "}";
+
+	/**
+	 * Returns the bounding boxes of all selected elements as encoded
+	 * Float64Array (x, y, width, height per element)
+	 */
+	private static final String BOUNDING_BOXES_TEMPLATE = "function(){" //
+			+ "  var values = [];" //
+			+ "  this.each(function(){" //
+			+ "    var box = this.getBBox();" //
+			+ "    values.push(box.x, box.y, box.width, box.height);" //
+			+ "  });" //
+			+ "  return (" + TypedArrays.ENCODER_FUNCTION + ")(values, 'Float64');" //
+			+ "}";
+
+	/**
+	 * Keeps the elements whose bit in a bitmap is set; is used for
+	 * selections and transitions
+	 */
+	static final String BITMAP_FILTER_TEMPLATE = "function(base64, expectedSize){" //
+			+ "  var isSet = (" + Bitmaps.DECODER_FUNCTION + ")(base64);" //
+			+ CHECK_EXPECTED_SIZE //
+			+ "  var index = 0;" //
+			+ "  return this.filter(function(){ return isSet(index++); });" //
+			+ "}";
+
 	//#end region
 
 	//#region CONSTRUCTORS
@@ -175,7 +459,7 @@ public class Selection extends EnteringSelection {
 	 * @return
 	 */
 	public Selection selectAll(String selector) {
-		JsObject result = evalForJsObject("this.selectAll('" + selector + "');");
+		JsObject result = call("selectAll", selector);
 		return new Selection(engine, result);
 	}
 
@@ -237,8 +521,7 @@ public class Selection extends EnteringSelection {
 	 */
 	public Selection get(int index) {
 
-		String command = "this[" + index + "]";
-		Object resultObj = eval(command);
+		Object resultObj = callTemplate(GET_GROUP_TEMPLATE, index);
 
 		if (resultObj == null) {
 			return null;
@@ -280,8 +563,7 @@ public class Selection extends EnteringSelection {
 	 * @return the value of the attribute
 	 */
 	public String attr(final String name) {
-		String command = "this.attr('" + name + "')";
-		Object attrObj = eval(command);
+		Object attrObj = callTemplate(ATTR_TEMPLATE, name);
 		if (attrObj == null) {
 			return null;
 		}
@@ -297,11 +579,37 @@ public class Selection extends EnteringSelection {
 		return Double.parseDouble(attribute);
 	}
 
+	/**
+	 * Returns the values of the specified attribute for all non-null elements
+	 * in selection order. The values are read with a single call.
+	 *
+	 * @param name
+	 *            the name of the attribute
+	 * @return the values of the attribute, null for missing attributes
+	 */
+	public String[] attrValues(String name) {
+		return readStrings("attr", name);
+	}
+
+	/**
+	 * Returns the numeric values of the specified attribute for all non-null
+	 * elements in selection order, see {@link #attrValues(String)}. The
+	 * values are parsed like with parseFloat, e.g. "12px" is read as 12.
+	 *
+	 * @param name
+	 *            the name of the attribute
+	 * @return the values of the attribute, NaN for missing or non-numeric
+	 *         attributes
+	 */
+	public double[] attrValuesAsDouble(String name) {
+		return readDoubles("attr", name);
+	}
+
 	/**
 	 * Removes the attribute with the given name
 	 */
 	public <T> Selection attrRemove(final String name) {
-		JsObject result = call("attr", name, null);
+		JsObject result = callForThis("attr", name, null);
 		return new Selection(engine, result);
 	}
 
@@ -324,7 +632,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public <T> Selection attr(final String name, String value) {
-		JsObject result = call("attr", name, value);
+		JsObject result = callForThis("attr", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -338,7 +646,7 @@ public class Selection extends EnteringSelection {
 	 */
 	public Selection attr(final String name, JavaScriptObject value) {
 		JsObject valueObj = value.getJsObject();
-		JsObject result = call("attr", name, valueObj);
+		JsObject result = callForThis("attr", name, valueObj);
 		return new Selection(engine, result);
 	}
 
@@ -364,15 +672,7 @@ public class Selection extends EnteringSelection {
 	public Selection attr(final String name, PathDataGenerator generator) {
 
 		JsObject jsObject = generator.getJsObject();
-		String memberName = createNewTemporaryInstanceName();
-
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(memberName, jsObject);
-
-		String command = "this.attr('" + name + "',d3." + memberName + ")";
-		JsObject result = evalForJsObject(command);
-
-		d3JsObj.removeMember(memberName);
+		JsObject result = callForThis("attr", name, jsObject);
 
 		if (result == null) {
 			return null;
@@ -389,7 +689,7 @@ public class Selection extends EnteringSelection {
 	 * @return
 	 */
 	public Selection attr(final String name, double value) {
-		JsObject result = call("attr", name, value);
+		JsObject result = callForThis("attr", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -401,7 +701,7 @@ public class Selection extends EnteringSelection {
 	 * @return
 	 */
 	public Selection attr(final String name, boolean value) {
-		JsObject result = call("attr", name, value);
+		JsObject result = callForThis("attr", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -429,20 +729,50 @@ public class Selection extends EnteringSelection {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String memberName = createNewTemporaryInstanceName();
-
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(memberName, callback);
-
-		// tell x to use the callback
-		String command = "this.attr('" + name + "', function(d,i) {" //				
-				+ "return d3." + memberName + ".apply(this, d, i);" //
-				+ "})";
-
-		JsObject result = evalForJsObject(command);
+		JsObject trampoline = getTrampoline(callback, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("attr", name, trampoline);
+		if (result == null) {
+			return null;
+		}
+		return new Selection(engine, result);
+	}
 
-		d3JsObj.removeMember(memberName);
+	/**
+	 * Sets the attribute with the specified name to the given values that
+	 * have been computed in Java. The values are assigned to the selected
+	 * elements in selection order (the i-th non-null element gets the i-th
+	 * value). All values are transferred as a single typed array, so that no
+	 * Java function is called per element.
+	 *
+	 * @param name
+	 *            the name of the attribute
+	 * @param values
+	 *            one value per selected element
+	 * @return the current selection
+	 */
+	public Selection attr(final String name, double[] values) {
+		String base64 = TypedArrays.encode(values);
+		JsObject result = callTemplateForThis(BULK_NUMBER_ATTR_TEMPLATE, name, base64);
+		if (result == null) {
+			return null;
+		}
+		return new Selection(engine, result);
+	}
 
+	/**
+	 * Sets the attribute with the specified name to the given values that
+	 * have been computed in Java, see {@link #attr(String, double[])}. A null
+	 * value removes the attribute.
+	 *
+	 * @param name
+	 *            the name of the attribute
+	 * @param values
+	 *            one value per selected element
+	 * @return the current selection
+	 */
+	public Selection attr(final String name, String[] values) {
+		String packedValues = TypedArrays.packStrings(values);
+		JsObject result = callTemplateForThis(BULK_STRING_ATTR_TEMPLATE, name, packedValues);
 		if (result == null) {
 			return null;
 		}
@@ -494,7 +824,7 @@ public class Selection extends EnteringSelection {
 	 * @return
 	 */
 	public Selection style(String name, String value) {
-		JsObject result = (JsObject) eval("this.style('" + name + "','" + value + "')");
+		JsObject result = callForThis("style", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -506,7 +836,7 @@ public class Selection extends EnteringSelection {
 	 * @return
 	 */
 	public Selection style(String name, double value) {
-		JsObject result = call("style", name, value);
+		JsObject result = callForThis("style", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -521,26 +851,8 @@ public class Selection extends EnteringSelection {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String funcName = createNewTemporaryInstanceName();
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(funcName, callback);
-
-		String command = "this.style('" + name + "', " + //
-				"      function(d, i) { " + //
-				"        try { " + //
-				"               var result = d3." + funcName + ".apply(this,d,i);" + //
-				"               return result; " + "             } " + //
-				"         catch (exception) {" + //
-				"            alert(exception);" + //
-				"            return null; " + //
-				"         } " + //
-				"      }" + //
-				"    );";
-
-		JsObject result = evalForJsObject(command);
-
-		d3JsObj.removeMember(funcName);
-
+		JsObject trampoline = getTrampoline(callback, CATCHING_DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("style", name, trampoline);
 		return new Selection(engine, result);
 	}
 
@@ -570,24 +882,35 @@ public class Selection extends EnteringSelection {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String funcName = createNewTemporaryInstanceName();
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(funcName, callback);
-
-		String command = "var imp = " + important + " ? 'important' : null; " + //
-				"this.style('" + name + "', function(d, i) { " + //
-				"   var r = d3." + funcName + ".apply(this,d,i);" + //
-				"   return r?r.toString():null;" + //
-				"}, imp);";
+		JsObject trampoline = getTrampoline(callback, TO_STRING_DATA_FUNCTION_ADAPTER);
+		String priority = important ? "important" : null;
+		JsObject result = callForThis("style", name, trampoline, priority);
+		if (result == null) {
+			return null;
+		}
+		return new Selection(engine, result);
 
-		JsObject result = evalForJsObject(command);
+	}
 
-		d3JsObj.removeMember(funcName);
+	/**
+	 * Sets the style with the specified name to the given values that have
+	 * been computed in Java. The values are assigned to the selected elements
+	 * in selection order and are transferred with a single call. A null value
+	 * removes the style.
+	 *
+	 * @param name
+	 *            the name of the style
+	 * @param values
+	 *            one value per selected element
+	 * @return the current selection
+	 */
+	public Selection style(String name, String[] values) {
+		String packedValues = TypedArrays.packStrings(values);
+		JsObject result = callTemplateForThis(BULK_STRING_STYLE_TEMPLATE, name, packedValues);
 		if (result == null) {
 			return null;
 		}
 		return new Selection(engine, result);
-
 	}
 
 	// ================ classed functions ================
@@ -615,7 +938,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public Selection classed(String classNames, boolean add) {
-		JsObject result = call("classed", classNames, add);
+		JsObject result = callForThis("classed", classNames, add);
 		return new Selection(engine, result);
 	}
 
@@ -665,16 +988,8 @@ public class Selection extends EnteringSelection {
 
 		assertObjectIsNotAnonymous(assignSwitchFunction);
 
-		String methodName = createNewTemporaryInstanceName();
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(methodName, assignSwitchFunction);
-
-		String command = "this.classed('" + classNames + "', function(d, i) { " + //		
-				"   var r = d3." + methodName + ".apply(this,d,i);" + //
-				"   return r == null ? false : r; " + //			
-				"});";
-		JsObject result = evalForJsObject(command);
-		d3JsObj.removeMember(methodName);
+		JsObject trampoline = getTrampoline(assignSwitchFunction, BOOLEAN_DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("classed", classNames, trampoline);
 		if (result == null) {
 			return null;
 		}
@@ -682,6 +997,47 @@ public class Selection extends EnteringSelection {
 
 	}
 
+	/**
+	 * Assigns (true) or unassigns (false) the specified class(es) to the
+	 * selected elements according to the given flags that have been computed
+	 * in Java. The flags are applied in selection order and are transferred
+	 * with a single call.
+	 *
+	 * @param classNames
+	 *            the class(es) to assign or not
+	 * @param flags
+	 *            one flag per selected element
+	 * @return the current selection
+	 */
+	public Selection classed(String classNames, boolean[] flags) {
+		return classed(classNames, Bitmaps.of(flags), flags.length);
+	}
+
+	/**
+	 * Assigns (set bit) or unassigns (unset bit) the specified class(es) to
+	 * the selected elements according to the given bitmap. The bit i
+	 * corresponds to the i-th non-null element in selection order. The bitmap
+	 * is transferred with a single call.
+	 *
+	 * @param classNames
+	 *            the class(es) to assign or not
+	 * @param bitmap
+	 *            one bit per selected element
+	 * @return the current selection
+	 */
+	public Selection classed(String classNames, BitSet bitmap) {
+		return classed(classNames, bitmap, -1);
+	}
+
+	private Selection classed(String classNames, BitSet bitmap, int expectedSize) {
+		JsObject result = callTemplateForThis(BITMAP_CLASSED_TEMPLATE, classNames, Bitmaps.encode(bitmap),
+				expectedSize);
+		if (result == null) {
+			return null;
+		}
+		return new Selection(engine, result);
+	}
+
 	// ================ property functions ================
 
 	/**
@@ -709,6 +1065,62 @@ public class Selection extends EnteringSelection {
 		return Value.create(engine, result);
 	}
 
+	/**
+	 * Returns the values of the specified property for all non-null elements
+	 * in selection order as strings. The values are read with a single call.
+	 *
+	 * @param name
+	 *            the name of the property
+	 * @return the values of the property, null for undefined properties
+	 */
+	public String[] propertyValues(String name) {
+		return readStrings("property", name);
+	}
+
+	/**
+	 * Returns the numeric values of the specified property for all non-null
+	 * elements in selection order, see {@link #propertyValues(String)}
+	 *
+	 * @param name
+	 *            the name of the property
+	 * @return the values of the property, NaN for undefined or non-numeric
+	 *         properties
+	 */
+	public double[] propertyValuesAsDouble(String name) {
+		return readDoubles("property", name);
+	}
+
+	/**
+	 * Returns the bounding boxes of all non-null elements in selection order
+	 * with a single call. The result contains four values per element: x, y,
+	 * width and height, e.g. for label collision avoidance or hit testing.
+	 *
+	 * @return the packed bounding boxes
+	 */
+	public double[] bboxes() {
+		String base64 = callTemplateForString(BOUNDING_BOXES_TEMPLATE);
+		if (base64 == null) {
+			return new double[0];
+		}
+		return TypedArrays.decodeDoubles(base64);
+	}
+
+	private String[] readStrings(String source, String name) {
+		String packedValues = callTemplateForString(READ_VALUES_TEMPLATE, source, name, false);
+		if (packedValues == null) {
+			return new String[0];
+		}
+		return TypedArrays.unpackStrings(packedValues);
+	}
+
+	private double[] readDoubles(String source, String name) {
+		String base64 = callTemplateForString(READ_VALUES_TEMPLATE, source, name, true);
+		if (base64 == null) {
+			return new double[0];
+		}
+		return TypedArrays.decodeDoubles(base64);
+	}
+
 	/**
 	 * Sets the property with the specified name to the specified value on all
 	 * selected elements.
@@ -729,7 +1141,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public <T> Selection property(final String name, String value) {
-		JsObject result = call("property", name, value);
+		JsObject result = callForThis("property", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -743,7 +1155,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public Selection property(final String name, double value) {
-		JsObject result = call("property", name, value);
+		JsObject result = callForThis("property", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -757,7 +1169,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public <T> Selection property(final String name, JavaScriptObject value) {
-		JsObject result = call("property", name, value);
+		JsObject result = callForThis("property", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -771,7 +1183,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public <T> Selection property(final String name, boolean value) {
-		JsObject result = call("property", name, value);
+		JsObject result = callForThis("property", name, value);
 		return new Selection(engine, result);
 	}
 
@@ -806,15 +1218,8 @@ public class Selection extends EnteringSelection {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String methodName = createNewTemporaryInstanceName();
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(methodName, callback);
-
-		String command = "this.property('" + name + "', function(d, i) {" + "return d3." + methodName
-				+ ".apply(this,d,i);" + " });";
-
-		JsObject result = evalForJsObject(command);
-		d3JsObj.removeMember(methodName);
+		JsObject trampoline = getTrampoline(callback, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("property", name, trampoline);
 		if (result == null) {
 			return null;
 		}
@@ -850,7 +1255,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public <T> Selection text(String value) {
-		JsObject result = call("text", value);
+		JsObject result = callForThis("text", value);
 		return new Selection(engine, result);
 	}
 
@@ -873,16 +1278,8 @@ public class Selection extends EnteringSelection {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String methodName = createNewTemporaryInstanceName();
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(methodName, callback);
-
-		String command = "this.text(function(d, i) {" + "return d3." + methodName + ".apply(this,d,i);"
-				+ " });";
-
-		JsObject result = evalForJsObject(command);
-
-		d3JsObj.removeMember(methodName);
+		JsObject trampoline = getTrampoline(callback, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("text", trampoline);
 		if (result == null) {
 			return null;
 		}
@@ -932,18 +1329,8 @@ public class Selection extends EnteringSelection {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String memberName = createNewTemporaryInstanceName();
-
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(memberName, callback);
-
-		// tell x to use the callback
-		String command = "this.html(function(d,i) {" //				
-				+ "return d3." + memberName + ".apply(this, d, i);" //
-				+ "})";
-
-		JsObject result = evalForJsObject(command);
-		d3JsObj.removeMember(memberName);
+		JsObject trampoline = getTrampoline(callback, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("html", trampoline);
 		if (result == null) {
 			return null;
 		}
@@ -966,7 +1353,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public Selection html(String value) {
-		JsObject result = call("html", value);
+		JsObject result = callForThis("html", value);
 		if (result == null) {
 			return null;
 		}
@@ -1035,6 +1422,7 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection containing only the removed elements
 	 */
 	public Selection remove() {
+		ListenerRegistry.forEngine(engine).releaseListenersOf(getJsObject());
 		JsObject result = call("remove");
 		return new Selection(engine, result);
 	}
@@ -1069,16 +1457,8 @@ public class Selection extends EnteringSelection {
 
 		assertObjectIsNotAnonymous(function);
 
-		String functionName = createNewTemporaryInstanceName();
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(functionName, function);
-
-		String command = "this.each(function(d, i) { " + //
-				"   d3." + functionName + ".apply(this,d,i); " + //
-				" });";
-		JsObject result = evalForJsObject(command);
-
-		d3JsObj.removeMember(functionName);
+		JsObject trampoline = getTrampoline(function, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = call("each", trampoline);
 		if (result == null) {
 			return null;
 		}
@@ -1106,6 +1486,47 @@ public class Selection extends EnteringSelection {
 		return new Array<T>(engine, result);
 	}
 
+	/**
+	 * Returns the values of the specified property of the data of all
+	 * non-null elements in selection order. The values are read with a single
+	 * call.
+	 *
+	 * @param name
+	 *            the name of the datum property, e.g. "x"
+	 * @return the values, NaN for undefined or non-numeric values
+	 */
+	public double[] dataValuesAsDouble(String name) {
+		return readDoubles("datum", name);
+	}
+
+	/**
+	 * Returns the values of the specified property of the data of all
+	 * non-null elements in selection order as strings, see
+	 * {@link #dataValuesAsDouble(String)}
+	 *
+	 * @param name
+	 *            the name of the datum property
+	 * @return the values, null for undefined values
+	 */
+	public String[] dataValues(String name) {
+		return readStrings("datum", name);
+	}
+
+	/**
+	 * Reads the data of all non-null elements in selection order into
+	 * instances of the given class. The public fields of the class (numbers,
+	 * booleans and strings) are filled with the equally named properties of
+	 * the data. The data are read column by column with a single call, see
+	 * {@link DataColumns}.
+	 *
+	 * @param type
+	 *            a class with a public no-argument constructor
+	 * @return one instance per element
+	 */
+	public <T> List<T> data(Class<T> type) {
+		return DataColumns.read(this, type);
+	}
+
 	// ================================ data setter functions with array
 	// ========
 
@@ -1188,50 +1609,64 @@ public class Selection extends EnteringSelection {
 	 */
 	public UpdateSelection data(Collection<? extends JavaScriptObject> collection) {
 
-		JsObject d3JsObj = getD3();
+		Object[] values = collection.stream() //
+				.map(JavaScriptObject::getJsObject) //
+				.toArray();
+		JsObject result = callTemplateForJsObject(DATA_ARRAY_TEMPLATE, TypedArrays.toArrayArguments(engine, values));
 
-		List<String> fullVarNames = new ArrayList<>();
-		List<String> varNames = new ArrayList<>();
-		for (JavaScriptObject javaScriptObject : collection) {
-			String varName = createNewTemporaryInstanceName();
-			JsObject jsObject = javaScriptObject.getJsObject();
-			d3JsObj.setMember(varName, jsObject);
-			fullVarNames.add("d3." + varName);
-			varNames.add(varName);
+		if (result == null) {
+			return null;
 		}
 
-		String command = "this.data([" + String.join(",", fullVarNames) + "])";
-		JsObject result = evalForJsObject(command);
+		return new UpdateSelection(engine, result);
+	}
 
-		for (String varName : varNames) {
-			d3JsObj.removeMember(varName);
-		}
+	/**
+	 * Joins the rows of the specified data frame with the current selection
+	 * using the default by-index key mapping. The columns are transferred with
+	 * a single call; each datum is a row view that reads its values from the
+	 * columns, see {@link DataFrame}.
+	 *
+	 * @param dataFrame
+	 *            the columnar data to map to the selection
+	 * @return the update selection
+	 */
+	public UpdateSelection data(DataFrame dataFrame) {
+		JsObject result = callTemplateForJsObject(DATA_FRAME_TEMPLATE, dataFrame.getScriptArguments());
 		if (result == null) {
 			return null;
 		}
+		return new UpdateSelection(engine, result);
+	}
 
+	/**
+	 * Joins the rows of the specified data frame with the current selection,
+	 * using the values of the given column as keys. The keys are evaluated in
+	 * JavaScript, so that no Java function is called per row.
+	 *
+	 * @param dataFrame
+	 *            the columnar data to map to the selection
+	 * @param keyColumn
+	 *            the name of the column that identifies the rows
+	 * @return the update selection
+	 */
+	public UpdateSelection data(DataFrame dataFrame, String keyColumn) {
+		Object[] frameArguments = dataFrame.getScriptArguments();
+		Object[] args = new Object[frameArguments.length + 1];
+		args[0] = keyColumn;
+		System.arraycopy(frameArguments, 0, args, 1, frameArguments.length);
+		JsObject result = callTemplateForJsObject(KEYED_DATA_FRAME_TEMPLATE, args);
+		if (result == null) {
+			return null;
+		}
 		return new UpdateSelection(engine, result);
 	}
 
 	public UpdateSelection dataObjectCollection(Collection<Object> collection) {
 
-		JsObject d3JsObj = getD3();
-
-		List<String> fullVarNames = new ArrayList<>();
-		List<String> varNames = new ArrayList<>();
-		for (Object object : collection) {
-			String varName = createNewTemporaryInstanceName();
-			d3JsObj.setMember(varName, object);
-			fullVarNames.add("d3." + varName);
-			varNames.add(varName);
-		}
+		Object[] arrayArguments = TypedArrays.toArrayArguments(engine, collection.toArray());
+		JsObject result = callTemplateForJsObject(DATA_ARRAY_TEMPLATE, arrayArguments);
 
-		String command = "this.data([" + String.join(",", fullVarNames) + "])";
-		JsObject result = evalForJsObject(command);
-
-		for (String varName : varNames) {
-			d3JsObj.removeMember(varName);
-		}
 		if (result == null) {
 			return null;
 		}
@@ -1433,24 +1868,7 @@ public class Selection extends EnteringSelection {
 	 */
 	public final UpdateSelection data(final Object[] array) {
 
-		JsObject d3JsObj = getD3();
-		List<String> fullVarNames = new ArrayList<>();
-		List<String> varNames = new ArrayList<>();
-
-		for (Object object : array) {
-			String varName = JavaScriptObject.createNewTemporaryInstanceName();
-			d3JsObj.setMember(varName, object);
-			fullVarNames.add("d3." + varName);
-			varNames.add(varName);
-		}
-
-		String command = "this.data([" + String.join(",", fullVarNames) + "])";
-
-		JsObject result = evalForJsObject(command);
-
-		for (String varName : varNames) {
-			d3JsObj.removeMember(varName);
-		}
+		JsObject result = callTemplateForJsObject(DATA_ARRAY_TEMPLATE, TypedArrays.toArrayArguments(engine, array));
 
 		if (result == null) {
 			return null;
@@ -1540,8 +1958,8 @@ public class Selection extends EnteringSelection {
 	 * @return the update selection
 	 */
 	public final UpdateSelection data(final double[] array) {
-		String arrayString = ArrayUtils.createArrayString(array);
-		return data(arrayString);
+		JsObject jsArrayObject = TypedArrays.createFloat64Array(engine, array);
+		return data(jsArrayObject);
 	}
 
 	/**
@@ -1557,15 +1975,16 @@ public class Selection extends EnteringSelection {
 	 */
 	public final UpdateSelection data(final double[] array, final KeyFunction<?> keyFunction) {
 
-		String arrayString = ArrayUtils.createArrayString(array);
-		JsObject jsArrayObject = evalForJsObject(arrayString);
+		JsObject jsArrayObject = TypedArrays.createFloat64Array(engine, array);
 		return data(jsArrayObject, keyFunction);
 
 	}
 
 	/**
 	 * Joins the specified array of data with the current selection using the
-	 * default by-index key mapping.
+	 * default by-index key mapping. The floats are bound with their decimal
+	 * values, e.g. 0.1f as 0.1, see
+	 * {@link TypedArrays#createFloat64Array(JsEngine, float[])}.
 	 * <p>
 	 *
 	 * @param array
@@ -1574,12 +1993,13 @@ public class Selection extends EnteringSelection {
 	 */
 	public final UpdateSelection data(final float[] array) {
 
-		String arrayString = ArrayUtils.createArrayString(array);
-		return data(arrayString);
+		JsObject jsArrayObject = TypedArrays.createFloat64Array(engine, array);
+		return data(jsArrayObject);
 	}
 
 	/**
-	 * Same as {@link #data(JsObject, KeyFunction)}.
+	 * Same as {@link #data(JsObject, KeyFunction)}. The floats are bound with
+	 * their decimal values, see {@link #data(float[])}.
 	 * <p>
 	 *
 	 * @param array
@@ -1591,8 +2011,7 @@ public class Selection extends EnteringSelection {
 	 */
 	public final UpdateSelection data(final float[] array, final KeyFunction<?> keyFunction) {
 
-		String arrayString = ArrayUtils.createArrayString(array);
-		JsObject jsArrayObject = evalForJsObject(arrayString);
+		JsObject jsArrayObject = TypedArrays.createFloat64Array(engine, array);
 		return data(jsArrayObject, keyFunction);
 	}
 
@@ -1607,8 +2026,8 @@ public class Selection extends EnteringSelection {
 	 */
 	public final UpdateSelection data(final int[] array) {
 
-		String arrayString = ArrayUtils.createArrayString(array);
-		return data(arrayString);
+		JsObject jsArrayObject = TypedArrays.createInt32Array(engine, array);
+		return data(jsArrayObject);
 	}
 
 	/**
@@ -1624,8 +2043,7 @@ public class Selection extends EnteringSelection {
 	 */
 	public final UpdateSelection data(final int[] array, final KeyFunction<?> keyFunction) {
 
-		String arrayString = ArrayUtils.createArrayString(array);
-		JsObject jsArrayObject = evalForJsObject(arrayString);
+		JsObject jsArrayObject = TypedArrays.createInt32Array(engine, array);
 		return data(jsArrayObject, keyFunction);
 	}
 
@@ -1736,24 +2154,10 @@ public class Selection extends EnteringSelection {
 	 */
 	public final UpdateSelection data(final List<JavaScriptObject> list) {
 
-		JsObject d3JsObj = getD3();
-		List<String> fullVarNames = new ArrayList<>();
-		List<String> varNames = new ArrayList<>();
-
-		for (JavaScriptObject javaScriptObject : list) {
-			String varName = createNewTemporaryInstanceName();
-			JsObject jsObject = javaScriptObject.getJsObject();
-			d3JsObj.setMember(varName, jsObject);
-			fullVarNames.add("d3." + varName);
-			varNames.add(varName);
-		}
-
-		String command = "this.data([" + String.join(",", fullVarNames) + "])";
-		JsObject result = evalForJsObject(command);
-
-		for (String varName : varNames) {
-			d3JsObj.removeMember(varName);
-		}
+		Object[] values = list.stream() //
+				.map(JavaScriptObject::getJsObject) //
+				.toArray();
+		JsObject result = callTemplateForJsObject(DATA_ARRAY_TEMPLATE, TypedArrays.toArrayArguments(engine, values));
 
 		if (result == null) {
 			return null;
@@ -1826,14 +2230,7 @@ public class Selection extends EnteringSelection {
 	 */
 	public Selection datum(JsObject object) {
 
-		String dataName = createNewTemporaryInstanceName();
-
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(dataName, object);
-		String command = "this.datum(d3." + dataName + ")";
-		JsObject result = evalForJsObject(command);
-
-		d3JsObj.removeMember(dataName);
+		JsObject result = callForThis("datum", object);
 
 		if (result == null) {
 			return null;
@@ -1846,14 +2243,7 @@ public class Selection extends EnteringSelection {
 	public Selection datum(JavaScriptObject object) {
 
 		JsObject datumObj = object.getJsObject();
-		String dataName = createNewTemporaryInstanceName();
-
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(dataName, datumObj);
-		String command = "this.datum(d3." + dataName + ")";
-		JsObject result = evalForJsObject(command);
-
-		d3JsObj.removeMember(dataName);
+		JsObject result = callForThis("datum", datumObj);
 
 		if (result == null) {
 			return null;
@@ -1865,14 +2255,7 @@ public class Selection extends EnteringSelection {
 
 	public Selection datum(String object) {
 
-		String dataName = createNewTemporaryInstanceName();
-
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(dataName, object);
-		String command = "this.datum(d3." + dataName + ")";
-		JsObject result = evalForJsObject(command);
-
-		d3JsObj.removeMember(dataName);
+		JsObject result = callForThis("datum", object);
 
 		if (result == null) {
 			return null;
@@ -1884,23 +2267,14 @@ public class Selection extends EnteringSelection {
 
 	public Selection datum(Array<? extends JavaScriptObject> array) {
 
-		JsObject d3JsObj = getD3();
-		List<String> fullVarNames = new ArrayList<>();
-		List<String> varNames = new ArrayList<>();
-
+		List<Object> elements = new ArrayList<>();
 		array.forEach((element) -> {
 			JsObject jsElement = (JsObject) engine.toJsObjectIfNotSimpleType(element);
-			String varName = createNewTemporaryInstanceName();
-			d3JsObj.setMember(varName, jsElement);
-			fullVarNames.add("d3." + varName);
+			elements.add(jsElement);
 		});
 
-		String command = "this.datum([" + String.join(",", fullVarNames) + "])";
-		JsObject result = evalForJsObject(command);
-
-		for (String varName : varNames) {
-			d3JsObj.removeMember(varName);
-		}
+		Object[] arrayArguments = TypedArrays.toArrayArguments(engine, elements.toArray());
+		JsObject result = callTemplateForJsObject(DATUM_ARRAY_TEMPLATE, arrayArguments);
 
 		if (result == null) {
 			return null;
@@ -1971,8 +2345,7 @@ public class Selection extends EnteringSelection {
 	 * @return the datum of the first non null element
 	 */
 	public Value datum() {
-		String command = "this.datum()";
-		Object result = eval(command);
+		Object result = callTemplate(DATUM_TEMPLATE);
 		Value value = Value.create(engine, result);
 		return value;
 	}
@@ -1997,6 +2370,43 @@ public class Selection extends EnteringSelection {
 		return new Selection(engine, result);
 	}
 
+	/**
+	 * Filters the selection, returning a new selection that contains only the
+	 * elements whose flag is true. The flags have been computed in Java, one
+	 * per non-null element in selection order, and are transferred as bitmap
+	 * with a single call.
+	 *
+	 * @param flags
+	 *            one flag per selected element
+	 * @return a new selection containing the filtered elements
+	 */
+	public Selection filter(boolean[] flags) {
+		return filter(Bitmaps.of(flags), flags.length);
+	}
+
+	/**
+	 * Filters the selection, returning a new selection that contains only the
+	 * elements whose bit is set, see {@link #filter(boolean[])}. The bit i
+	 * corresponds to the i-th non-null element in selection order, e.g. the
+	 * result of {@link Bitmaps#where(double[], java.util.function.DoublePredicate)}
+	 * for a column of the data.
+	 *
+	 * @param bitmap
+	 *            one bit per selected element
+	 * @return a new selection containing the filtered elements
+	 */
+	public Selection filter(BitSet bitmap) {
+		return filter(bitmap, -1);
+	}
+
+	private Selection filter(BitSet bitmap, int expectedSize) {
+		JsObject result = callTemplateForJsObject(BITMAP_FILTER_TEMPLATE, Bitmaps.encode(bitmap), expectedSize);
+		if (result == null) {
+			return null;
+		}
+		return new Selection(engine, result);
+	}
+
 	/**
 	 * Filters the selection, returning a new selection that contains only the
 	 * elements returned by the given function.
@@ -2076,6 +2486,111 @@ public class Selection extends EnteringSelection {
 		return new Selection(engine, result);
 	}
 
+	/**
+	 * Sorts the elements in the current selection by the numeric keys that
+	 * are returned by the given function. In contrast to
+	 * {@link #sort(Comparator)}, the function is called only once per
+	 * element; the keys are compared in JavaScript. The sort is stable.
+	 *
+	 * @param keyFunction
+	 *            returns the sort key of an element
+	 * @return the current selection
+	 */
+	public Selection sortByNumericKey(DataFunction<? extends Number> keyFunction) {
+		return sortByKeyFunction(keyFunction, true);
+	}
+
+	/**
+	 * Sorts the elements in the current selection by the string keys that are
+	 * returned by the given function, see
+	 * {@link #sortByNumericKey(DataFunction)}
+	 *
+	 * @param keyFunction
+	 *            returns the sort key of an element
+	 * @return the current selection
+	 */
+	public Selection sortByStringKey(DataFunction<String> keyFunction) {
+		return sortByKeyFunction(keyFunction, false);
+	}
+
+	private Selection sortByKeyFunction(DataFunction<?> keyFunction, boolean isNumeric) {
+		assertObjectIsNotAnonymous(keyFunction);
+		JsObject trampoline = getTrampoline(keyFunction, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callTemplateForThis(SORT_BY_KEY_FUNCTION_TEMPLATE, trampoline, isNumeric);
+		if (result == null) {
+			return null;
+		}
+		return new Selection(engine, result);
+	}
+
+	/**
+	 * Sorts the elements in the current selection by the given keys that have
+	 * been extracted in Java, one per element in selection order. The keys
+	 * are transferred as typed array and are compared in JavaScript. The sort
+	 * is stable.
+	 *
+	 * @param keys
+	 *            the sort keys
+	 * @return the current selection
+	 */
+	public Selection sortByKeys(double[] keys) {
+		return sortByEncodedNumbers(TypedArrays.encode(keys), "Float64");
+	}
+
+	/**
+	 * Sorts the elements in the current selection by the given keys, see
+	 * {@link #sortByKeys(double[])}. Since JavaScript numbers can not
+	 * represent all long values, the keys are sorted in Java and their ranks
+	 * are transferred.
+	 *
+	 * @param keys
+	 *            the sort keys
+	 * @return the current selection
+	 */
+	public Selection sortByKeys(long[] keys) {
+		return sortByPermutation(SortPermutations.of(keys));
+	}
+
+	/**
+	 * Sorts the elements in the current selection by the given keys, see
+	 * {@link #sortByKeys(double[])}
+	 *
+	 * @param keys
+	 *            the sort keys
+	 * @return the current selection
+	 */
+	public Selection sortByKeys(String[] keys) {
+		String packedKeys = TypedArrays.packStrings(keys);
+		JsObject result = callTemplateForThis(SORT_BY_STRINGS_TEMPLATE, packedKeys);
+		if (result == null) {
+			return null;
+		}
+		return new Selection(engine, result);
+	}
+
+	/**
+	 * Reorders the elements in the current selection according to a
+	 * permutation that has been computed in Java, e.g. with
+	 * {@link SortPermutations}: the entry k of the permutation is the index
+	 * (in selection order) of the element that is placed at position k.
+	 *
+	 * @param permutation
+	 *            the new order of the elements
+	 * @return the current selection
+	 */
+	public Selection sortByPermutation(int[] permutation) {
+		int[] ranks = SortPermutations.toRanks(permutation);
+		return sortByEncodedNumbers(TypedArrays.encode(ranks), "Int32");
+	}
+
+	private Selection sortByEncodedNumbers(String base64, String type) {
+		JsObject result = callTemplateForThis(SORT_BY_NUMBERS_TEMPLATE, base64, type);
+		if (result == null) {
+			return null;
+		}
+		return new Selection(engine, result);
+	}
+
 	/**
 	 * Re-inserts elements into the document such that the document order
 	 * matches the selection order.
@@ -2145,32 +2660,12 @@ public class Selection extends EnteringSelection {
 	 * @return
 	 */
 	public Selection on(String eventType, DataFunction<Void> listener) {
-
-		assertObjectIsNotAnonymous(listener);
-
-		String listenerName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(listenerName, listener);
-
-		String command = "var "+varName+" = d3." + listenerName + " == null ? null : " + "function(d, i) {" //		      
-				+ "d3." + listenerName + ".apply(this,d,i);" //
-				+ " }; ";
-
-		eval(command);
-		String onCommand = "this.on('" + eventType + "', "+varName+");";
-
-		JsObject result = evalForJsObject(onCommand);
-
-		//hint: the "temporary" member of d3JsObj must stay as long as it is used. 
-		//don't remove it here with d3JsObj.removeMember(listenerName)
-
-		if (result == null) {
-			return null;
+		if (listener != null) {
+			assertObjectIsNotAnonymous(listener);
 		}
-		return new Selection(engine, result);
-
+		ListenerRegistry.forEngine(engine).addSelectionListener(getJsObject(), eventType, listener,
+				ListenerRegistry.DATA_FUNCTION_LISTENER_ADAPTER, null);
+		return new Selection(engine, getJsObject());
 	}
 
 	/**
@@ -2216,60 +2711,41 @@ public class Selection extends EnteringSelection {
 	 * @return the current selection
 	 */
 	public Selection on(String eventType, DataFunction<Void> listener, boolean useCapture) {
-
-		assertObjectIsNotAnonymous(listener);
-
-		String methodName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(methodName, listener);
-
-		String command = "var "+varName+" = (d3." + methodName + " == null ? null : function(d, i) {" + "d3." + methodName
-				+ ".apply(this,d,i);" //
-				+ " });" //
-				+ "return this.on('" + eventType + "', "+varName+", " + useCapture + ");";
-
-		JsObject result = evalForJsObject(command);
-
-		//hint: the "temporary" member of d3JsObj must stay as long as it is used. 
-		//don't remove it here with d3JsObj.removeMember(methodName)
-
-		if (result == null) {
-			return null;
+		if (listener != null) {
+			assertObjectIsNotAnonymous(listener);
 		}
+		ListenerRegistry.forEngine(engine).addSelectionListener(getJsObject(), eventType, listener,
+				ListenerRegistry.DATA_FUNCTION_LISTENER_ADAPTER, useCapture);
+		return new Selection(engine, getJsObject());
+	}
 
-		return new Selection(engine, result);
-
+	/**
+	 * Same as {@link #on(String, DataFunction)} but coalesces the events in
+	 * JavaScript, so that the listener is not invoked for every event, e.g.
+	 * for "mousemove" events. See {@link EventCoalescing}.
+	 *
+	 * @param eventType
+	 * @param listener
+	 * @param coalescing
+	 *            e.g. {@link EventCoalescing#perAnimationFrame()}
+	 * @return the current selection
+	 */
+	public Selection on(String eventType, DataFunction<Void> listener, EventCoalescing coalescing) {
+		if (listener != null) {
+			assertObjectIsNotAnonymous(listener);
+		}
+		ListenerRegistry.forEngine(engine).addSelectionListener(getJsObject(), eventType, listener,
+				coalescing.getAdapter(), null);
+		return new Selection(engine, getJsObject());
 	}
 
 	public Selection onMouseClick(MouseClickFunction listener) {
-
-		assertObjectIsNotAnonymous(listener);
-
-		String listenerName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-
-		JsObject d3JsObj = getD3();
-		d3JsObj.setMember(listenerName, listener);
-
-		String command = "var "+varName+" = d3." + listenerName + " == null ? null : " + "function(d, i) {" //		      
-				+ "d3." + listenerName + ".handleMouseClick(this);" //
-				+ " }; ";
-
-		eval(command);
-		String onCommand = "this.on('click', "+varName+");";
-
-		JsObject result = evalForJsObject(onCommand);
-
-		//hint: the "temporary" member of d3JsObj must stay as long as it is used. 
-		//don't remove it here with d3JsObj.removeMember(listenerName)
-
-		if (result == null) {
-			return null;
+		if (listener != null) {
+			assertObjectIsNotAnonymous(listener);
 		}
-
-		return new Selection(engine, result);
-
+		ListenerRegistry.forEngine(engine).addSelectionListener(getJsObject(), "click", listener,
+				MOUSE_CLICK_LISTENER_ADAPTER, null);
+		return new Selection(engine, getJsObject());
 	}
 
 	@Override
@@ -0,0 +1,323 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.treez.javafxd3.d3.arrays.DataFrame;
+import org.treez.javafxd3.d3.arrays.TypedArrays;
+import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
+
+/**
+ * Records a selection pipeline and runs it as a single JavaScript function, so
+ * that a chain like
+ *
+ * <pre>
+ * svg.selectAll(".cell").data(points).enter().append("g").attr(...).attr(...)
+ * </pre>
+ *
+ * only needs one call instead of one call (and one Selection wrapper) per
+ * step:
+ *
+ * <pre>
+ * SelectionProgram program = new SelectionProgram() //
+ * 		.selectAll(".cell") //
+ * 		.data(points) //
+ * 		.enter() //
+ * 		.append("g") //
+ * 		.attr("class", "cell") //
+ * 		.attr("x", x);
+ * Selection cells = program.run(svg);
+ * </pre>
+ *
+ * The recorded steps are compiled to the source code of a JavaScript function
+ * whose arguments are the recorded values (constants, data and encoded bulk
+ * arrays). The source code only depends on the shape of the pipeline (the
+ * kinds of the steps and the expressions), so the compiled function is
+ * cached by the {@link ScriptTemplateCache} and reused when the program is
+ * recorded again with new values, e.g. for re-rendering with new data.
+ * <p>
+ * Bulk arrays are applied to the non-null elements in selection order and
+ * must have one value per element. {@link #update()} returns to the update
+ * selection of the last data join, which includes the elements that have
+ * been appended to the enter selection in the meantime.
+ */
+public class SelectionProgram {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Declares the helper functions of the compiled function
+	 */
+	private static final String PROLOGUE = "function(){" //
+			+ "  var args = arguments;" //
+			+ "  var decode = " + TypedArrays.DECODER_FUNCTION + ";" //
+			+ "  var unpack = " + TypedArrays.STRING_UNPACKER_FUNCTION + ";" //
+			+ "  var bulk = function(selection, values){" //
+			+ "    var size = selection.size();" //
+			+ "    if(values.length !== size){" //
+			+ "      throw new Error('Expected ' + size + ' values but got ' + values.length);" //
+			+ "    }" //
+			+ "    var index = 0;" //
+			+ "    return function(){ return values[index++]; };" //
+			+ "  };" //
+			+ "  var selection = this;" //
+			+ "  var update = null;";
+
+	private static final String EPILOGUE = "  return selection;" //
+			+ "}";
+
+	/**
+	 * The source code of the recorded steps
+	 */
+	private final StringBuilder steps = new StringBuilder();
+
+	/**
+	 * The recorded values that are passed as arguments
+	 */
+	private final List<Object> args = new ArrayList<>();
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Runs the recorded pipeline with the given selection as start and returns
+	 * the resulting selection
+	 */
+	public Selection run(Selection root) {
+		JsEngine engine = root.getJsEngine();
+		Object result = ScriptTemplateCache.forEngine(engine).invoke(root.getJsObject(), getTemplate(),
+				args.toArray());
+		boolean isJsObject = result instanceof JsObject;
+		if (!isJsObject) {
+			return null;
+		}
+		return new Selection(engine, (JsObject) result);
+	}
+
+	/**
+	 * Returns the source code of the compiled function. Programs with the same
+	 * shape have the same source code.
+	 */
+	public String getTemplate() {
+		return PROLOGUE + steps + EPILOGUE;
+	}
+
+	// ======== selection steps ========
+
+	public SelectionProgram select(String selector) {
+		return step("selection = selection.select(" + argument(selector) + ");");
+	}
+
+	public SelectionProgram selectAll(String selector) {
+		return step("selection = selection.selectAll(" + argument(selector) + ");");
+	}
+
+	public SelectionProgram append(String name) {
+		return step("selection = selection.append(" + argument(name) + ");");
+	}
+
+	public SelectionProgram insert(String name, String before) {
+		return step("selection = selection.insert(" + argument(name) + ", " + argument(before) + ");");
+	}
+
+	public SelectionProgram remove() {
+		return step("selection = selection.remove();");
+	}
+
+	// ======== data steps ========
+
+	/**
+	 * Joins the given JavaScript array by index
+	 */
+	public SelectionProgram data(JavaScriptObject values) {
+		return data(values.getJsObject());
+	}
+
+	/**
+	 * Joins the given JavaScript array by index
+	 */
+	public SelectionProgram data(JsObject values) {
+		return step("selection = update = selection.data(" + argument(values) + ");");
+	}
+
+	/**
+	 * Joins the given JavaScript array with the given JavaScript key function
+	 * expression, e.g. "function(d){ return d.id; }"
+	 */
+	public SelectionProgram data(JsObject values, String keyFunctionExpression) {
+		return step("selection = update = selection.data(" + argument(values) + ", " + keyFunctionExpression + ");");
+	}
+
+	/**
+	 * Joins the given numbers by index; they are transferred as encoded
+	 * typed array
+	 */
+	public SelectionProgram data(double[] values) {
+		String encodedValues = argument(TypedArrays.encode(values));
+		return step("selection = update = selection.data(Array.prototype.slice.call(decode(" + encodedValues
+				+ ", 'Float64')));");
+	}
+
+	/**
+	 * Joins the given strings by index; they are transferred as packed
+	 * strings
+	 */
+	public SelectionProgram data(String[] values) {
+		String packedValues = argument(TypedArrays.packStrings(values));
+		return step("selection = update = selection.data(unpack(" + packedValues + "));");
+	}
+
+	/**
+	 * Joins the rows of the given data frame by index, see
+	 * {@link Selection#data(DataFrame)}
+	 */
+	public SelectionProgram data(DataFrame dataFrame) {
+		Object[] frameArguments = dataFrame.getScriptArguments();
+		int start = args.size();
+		Collections.addAll(args, frameArguments);
+		int end = args.size();
+		steps.append("selection = update = selection.data((" + DataFrame.ROWS_FUNCTION
+				+ ").apply(null, Array.prototype.slice.call(args, " + start + ", " + end + ")));");
+		return this;
+	}
+
+	public SelectionProgram enter() {
+		return step("selection = selection.enter();");
+	}
+
+	public SelectionProgram exit() {
+		return step("selection = selection.exit();");
+	}
+
+	/**
+	 * Returns to the update selection of the last data join
+	 */
+	public SelectionProgram update() {
+		return step("if(!update){ throw new Error('There is no data join to return to'); }"
+				+ "selection = update;");
+	}
+
+	// ======== attr steps ========
+
+	public SelectionProgram attr(String name, String value) {
+		return step("selection = selection.attr(" + argument(name) + ", " + argument(value) + ");");
+	}
+
+	public SelectionProgram attr(String name, double value) {
+		return step("selection = selection.attr(" + argument(name) + ", " + argument(value) + ");");
+	}
+
+	/**
+	 * Sets the attribute with the given JavaScript expression, e.g.
+	 * "function(d){ return d.x; }"; the expression is part of the shape
+	 */
+	public SelectionProgram attrExpression(String name, String expression) {
+		return step("selection = selection.attr(" + argument(name) + ", " + expression + ");");
+	}
+
+	/**
+	 * Sets the attribute to the given precomputed values, one per element
+	 */
+	public SelectionProgram attr(String name, double[] values) {
+		String nameReference = argument(name);
+		String encodedValues = argument(TypedArrays.encode(values));
+		return step("selection = selection.attr(" + nameReference + ", bulk(selection, decode(" + encodedValues
+				+ ", 'Float64')));");
+	}
+
+	/**
+	 * Sets the attribute to the given precomputed values, one per element
+	 */
+	public SelectionProgram attr(String name, String[] values) {
+		String nameReference = argument(name);
+		String packedValues = argument(TypedArrays.packStrings(values));
+		return step("selection = selection.attr(" + nameReference + ", bulk(selection, unpack(" + packedValues + ")));");
+	}
+
+	// ======== style steps ========
+
+	public SelectionProgram style(String name, String value) {
+		return step("selection = selection.style(" + argument(name) + ", " + argument(value) + ");");
+	}
+
+	/**
+	 * Sets the style with the given JavaScript expression; the expression is
+	 * part of the shape
+	 */
+	public SelectionProgram styleExpression(String name, String expression) {
+		return step("selection = selection.style(" + argument(name) + ", " + expression + ");");
+	}
+
+	/**
+	 * Sets the style to the given precomputed values, one per element
+	 */
+	public SelectionProgram style(String name, String[] values) {
+		String nameReference = argument(name);
+		String packedValues = argument(TypedArrays.packStrings(values));
+		return step("selection = selection.style(" + nameReference + ", bulk(selection, unpack(" + packedValues + ")));");
+	}
+
+	// ======== classed steps ========
+
+	public SelectionProgram classed(String classNames, boolean flag) {
+		return step("selection = selection.classed(" + argument(classNames) + ", " + argument(flag) + ");");
+	}
+
+	/**
+	 * Assigns the classes with the given JavaScript expression; the expression
+	 * is part of the shape
+	 */
+	public SelectionProgram classedExpression(String classNames, String expression) {
+		return step("selection = selection.classed(" + argument(classNames) + ", " + expression + ");");
+	}
+
+	// ======== text steps ========
+
+	public SelectionProgram text(String value) {
+		return step("selection = selection.text(" + argument(value) + ");");
+	}
+
+	/**
+	 * Sets the text content with the given JavaScript expression; the
+	 * expression is part of the shape
+	 */
+	public SelectionProgram textExpression(String expression) {
+		return step("selection = selection.text(" + expression + ");");
+	}
+
+	/**
+	 * Sets the text content to the given precomputed values, one per element
+	 */
+	public SelectionProgram text(String[] values) {
+		String packedValues = argument(TypedArrays.packStrings(values));
+		return step("selection = selection.text(bulk(selection, unpack(" + packedValues + ")));");
+	}
+
+	/**
+	 * Invokes the given JavaScript function expression for each element, e.g.
+	 * "function(d, i){ ... }"; the expression is part of the shape
+	 */
+	public SelectionProgram each(String expression) {
+		return step("selection = selection.each(" + expression + ");");
+	}
+
+	private SelectionProgram step(String code) {
+		steps.append(code);
+		return this;
+	}
+
+	/**
+	 * Records the given value as argument and returns the JavaScript reference
+	 * to it
+	 */
+	private String argument(Object value) {
+		String reference = "args[" + args.size() + "]";
+		args.add(value);
+		return reference;
+	}
+
+	//#end region
+
+}
@@ -1,6 +1,9 @@
 package org.treez.javafxd3.d3.core;
 
+import java.util.BitSet;
+
 import org.treez.javafxd3.d3.D3;
+import org.treez.javafxd3.d3.arrays.Bitmaps;
 import org.treez.javafxd3.d3.color.Color;
 import org.treez.javafxd3.d3.ease.Easing;
 import org.treez.javafxd3.d3.ease.EasingFunction;
@@ -102,7 +105,7 @@ public class Transition extends JavaScriptObject {
 	 * @return the current transition
 	 */
 	public Transition delay(int milliseconds) {
-		JsObject result = call("delay", milliseconds);
+		JsObject result = callForThis("delay", milliseconds);
 		return new Transition(engine, result);
 	}
 
@@ -140,17 +143,8 @@ public class Transition extends JavaScriptObject {
 
 		assertObjectIsNotAnonymous(func);
 
-		String memberName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(memberName, func);
-
-		String command = "this.delay(function(d, i) { " //
-				+ "return d3." + memberName + ".apply(this,d,i);"//
-				+ " });";
-
-		JsObject result = evalForJsObject(command);
-
-		d3JsObject.removeMember(memberName);
+		JsObject trampoline = getTrampoline(func, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("delay", trampoline);
 
 		if (result == null) {
 			return null;
@@ -168,7 +162,7 @@ public class Transition extends JavaScriptObject {
 	 * @return the current transition
 	 */
 	public Transition duration(int milliseconds) {
-		JsObject result = call("duration", milliseconds);
+		JsObject result = callForThis("duration", milliseconds);
 		if (result == null) {
 			return null;
 		}
@@ -187,17 +181,8 @@ public class Transition extends JavaScriptObject {
 
 		assertObjectIsNotAnonymous(func);
 
-		String memberName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(memberName, func);
-
-		String command = "this.duration(function(d, i) { " //
-				+ "return d3." + memberName + ".apply(this,d,i);"//
-				+ " });";
-
-		JsObject result = evalForJsObject(command);
-
-		d3JsObject.removeMember(memberName);
+		JsObject trampoline = getTrampoline(func, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("duration", trampoline);
 
 		if (result == null) {
 			return null;
@@ -273,7 +258,7 @@ public class Transition extends JavaScriptObject {
 	 * @return the current transition
 	 */
 	public Transition attr(final String name, String value) {
-		JsObject result = call("attr", name, value);
+		JsObject result = callForThis("attr", name, value);
 		return new Transition(engine, result);
 	}
 
@@ -289,7 +274,7 @@ public class Transition extends JavaScriptObject {
 	 * @return the current transition
 	 */
 	public Transition attr(final String name, double value) {
-		JsObject result = call("attr", name, value);
+		JsObject result = callForThis("attr", name, value);
 		return new Transition(engine, result);
 	}
 
@@ -325,17 +310,8 @@ public class Transition extends JavaScriptObject {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String memberName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(memberName, callback);
-
-		String command = "this.attr('" + name + "', function(d, i) {" //
-				+ "return d3." + memberName + ".apply(this,d,i);" //
-				+ "});";
-
-		JsObject result = evalForJsObject(command);
-
-		d3JsObject.removeMember(memberName);
+		JsObject trampoline = getTrampoline(callback, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("attr", name, trampoline);
 
 		if (result == null) {
 			return null;
@@ -456,7 +432,7 @@ public class Transition extends JavaScriptObject {
 	 * @return the current transition
 	 */
 	public Transition style(String name, String value) {
-		JsObject result = call("style", name, value);
+		JsObject result = callForThis("style", name, value);
 		return new Transition(engine, result);
 	}
 
@@ -470,7 +446,7 @@ public class Transition extends JavaScriptObject {
 	 * @return the current transition
 	 */
 	public Transition style(String name, double value) {
-		JsObject result = call("style", name, value);
+		JsObject result = callForThis("style", name, value);
 		return new Transition(engine, result);
 	}
 
@@ -487,24 +463,9 @@ public class Transition extends JavaScriptObject {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String memberName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(memberName, callback);
-
 		try {
-			String command = "this.style('" + name + "', function(d, i) {" //
-					+ "             try { "//
-					+ "               var r = d3." + memberName + ".apply(this,d,i);" //
-					+ "               return r;" //
-					+ "             } catch (e) {"//
-					+ "               alert(e); "//
-					+ "               return null; "//
-					+ "             }"//
-					+ "          });";
-
-			JsObject result = evalForJsObject(command);
-
-			d3JsObject.removeMember(memberName);
+			JsObject trampoline = getTrampoline(callback, Selection.CATCHING_DATA_FUNCTION_ADAPTER);
+			JsObject result = callForThis("style", name, trampoline);
 
 			if (result == null) {
 				return null;
@@ -566,23 +527,9 @@ public class Transition extends JavaScriptObject {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String memberName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(memberName, callback);
-
-		String impCommand = "var imp = " + important + " ? 'important' : null;";
-		eval(impCommand);
-
-		String command = "this.style('" + name + "'," //
-				+ "  function(d, i) { "//
-				+ "    var r = d3." + memberName + ".apply(this,d,i); "//
-				+ "    return r ? r.toString() : null;"//
-				+ "  },"//
-				+ "imp);";
-
-		JsObject result = evalForJsObject(command);
-
-		d3JsObject.removeMember(memberName);
+		JsObject trampoline = getTrampoline(callback, Selection.TO_STRING_DATA_FUNCTION_ADAPTER);
+		String priority = important ? "important" : null;
+		JsObject result = callForThis("style", name, trampoline, priority);
 
 		if (result == null) {
 			return null;
@@ -659,7 +606,7 @@ public class Transition extends JavaScriptObject {
 	 * @return the current transition
 	 */
 	public <T> Transition text(String value) {
-		JsObject result = call("text", value);
+		JsObject result = callForThis("text", value);
 		return new Transition(engine, result);
 	}
 
@@ -688,17 +635,8 @@ public class Transition extends JavaScriptObject {
 
 		assertObjectIsNotAnonymous(callback);
 
-		String memberName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(memberName, callback);
-
-		String command = "this.text(function(d, i) { " //
-				+ "return d3." + memberName + ".apply(this,d,i);"//
-				+ "});";
-
-		JsObject result = evalForJsObject(command);
-
-		d3JsObject.removeMember(memberName);
+		JsObject trampoline = getTrampoline(callback, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = callForThis("text", trampoline);
 
 		if (result == null) {
 			return null;
@@ -865,24 +803,48 @@ public class Transition extends JavaScriptObject {
 
 		assertObjectIsNotAnonymous(datumFunction);
 
-		String memberName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(memberName, datumFunction);
+		JsObject trampoline = getTrampoline(datumFunction, CallbackRegistry.DATA_FUNCTION_ADAPTER);
+		JsObject result = call("filter", trampoline);
 
-		String command = "this.filter(function(d, i) { " //
-				+ "return d3." + memberName + ".apply(this,d,i);" //
-				+ "});";
+		if (result == null) {
+			return null;
+		}
 
-		JsObject result = evalForJsObject(command);
+		return new Transition(engine, result);
+	}
 
-		d3JsObject.removeMember(memberName);
+	/**
+	 * Filters the transition, returning a new transition that contains only
+	 * the elements whose flag is true. The flags have been computed in Java,
+	 * one per non-null element in selection order, and are transferred as
+	 * bitmap with a single call.
+	 * 
+	 * @param flags
+	 *            one flag per element
+	 * @return a new transition containing the filtered elements
+	 */
+	public Transition filter(boolean[] flags) {
+		return filter(Bitmaps.of(flags), flags.length);
+	}
 
-		d3JsObject.removeMember(memberName);
+	/**
+	 * Filters the transition, returning a new transition that contains only
+	 * the elements whose bit is set, see {@link #filter(boolean[])}
+	 * 
+	 * @param bitmap
+	 *            one bit per element
+	 * @return a new transition containing the filtered elements
+	 */
+	public Transition filter(BitSet bitmap) {
+		return filter(bitmap, -1);
+	}
 
+	private Transition filter(BitSet bitmap, int expectedSize) {
+		JsObject result = callTemplateForJsObject(Selection.BITMAP_FILTER_TEMPLATE, Bitmaps.encode(bitmap),
+				expectedSize);
 		if (result == null) {
 			return null;
 		}
-
 		return new Transition(engine, result);
 	}
 
@@ -0,0 +1,301 @@
+package org.treez.javafxd3.d3.core;
+
+import java.util.Objects;
+
+import org.treez.javafxd3.d3.arrays.DataFrame;
+import org.treez.javafxd3.d3.arrays.TypedArrays;
+import org.treez.javafxd3.d3.behaviour.Zoom;
+import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
+
+/**
+ * Renders large data sets by only creating elements for the data whose
+ * projected position lies within the current viewport.
+ * <p>
+ * The complete data and the projected positions (e.g. the pixel coordinates
+ * before any zoom transformation) are kept in JavaScript. Each call of
+ * {@link #update()} determines the visible data and joins them by index with
+ * the existing elements, so that elements are recycled when the viewport is
+ * panned or zoomed: the update selection rebinds existing elements to the
+ * visible data, the enter selection only contains placeholders for additional
+ * visible data and the exit selection contains the surplus elements. Thus, the
+ * usual enter/update/exit code can be used, e.g.
+ *
+ * <pre>
+ * VirtualizedSelection circles = new VirtualizedSelection(svg, "circle") //
+ * 		.setViewport(0, 0, width, height);
+ * UpdateSelection update = circles.data(values, x, y);
+ * update.enter().append("circle");
+ * update.attrExpression("cx", "function(d){ return d.x; }");
+ * update.exit().remove();
+ * </pre>
+ *
+ * The visible data are determined with an index of the data that is sorted by
+ * x; each update only visits the data within the x range of the viewport.
+ */
+public class VirtualizedSelection {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Sorts the data indices by x and stores them as state.order
+	 */
+	private static final String CREATE_ORDER_FUNCTION = "function(state){" //
+			+ "  var x = state.x;" //
+			+ "  var numberOfData = state.values.length;" //
+			+ "  if(x.length !== numberOfData || state.y.length !== numberOfData){" //
+			+ "    throw new Error('Expected ' + numberOfData + ' positions but got ' + x.length + ' and ' + state.y.length);" //
+			+ "  }" //
+			+ "  var order = new Array(numberOfData);" //
+			+ "  for(var index = 0; index < numberOfData; index++){" //
+			+ "    order[index] = index;" //
+			+ "  }" //
+			+ "  order.sort(function(first, second){ return x[first] - x[second]; });" //
+			+ "  state.order = order;" //
+			+ "}";
+
+	/**
+	 * Stores the data and the decoded positions (this = state)
+	 */
+	private static final String ARRAY_DATA_TEMPLATE = "function(values, encodedX, encodedY){" //
+			+ "  var state = this;" //
+			+ "  var decode = " + TypedArrays.DECODER_FUNCTION + ";" //
+			+ "  state.values = values;" //
+			+ "  state.x = decode(encodedX, 'Float64');" //
+			+ "  state.y = decode(encodedY, 'Float64');" //
+			+ "  (" + CREATE_ORDER_FUNCTION + ")(state);" //
+			+ "}";
+
+	/**
+	 * Stores the row views of a data frame and uses two of its columns as
+	 * positions (this = state)
+	 */
+	private static final String FRAME_DATA_TEMPLATE = "function(xColumn, yColumn, numberOfRows, names, kinds, payloads){" //
+			+ "  var state = this;" //
+			+ "  var rows = (" + DataFrame.ROWS_FUNCTION + ")(numberOfRows, names, kinds, payloads);" //
+			+ "  state.values = rows;" //
+			+ "  state.x = rows.columns[xColumn];" //
+			+ "  state.y = rows.columns[yColumn];" //
+			+ "  if(!state.x || !state.y){" //
+			+ "    throw new Error('Unknown position columns ' + xColumn + ', ' + yColumn);" //
+			+ "  }" //
+			+ "  (" + CREATE_ORDER_FUNCTION + ")(state);" //
+			+ "}";
+
+	/**
+	 * Determines the visible data and joins them by index (this = parent
+	 * selection). If a zoom is given, the viewport is transformed with its
+	 * inverse transformation.
+	 */
+	private static final String JOIN_TEMPLATE = "function(state, selector, x0, y0, x1, y1, overscan, zoom){" //
+			+ "  var scale = 1;" //
+			+ "  if(zoom){" //
+			+ "    var translate = zoom.translate();" //
+			+ "    scale = zoom.scale();" //
+			+ "    x0 = (x0 - translate[0]) / scale;" //
+			+ "    x1 = (x1 - translate[0]) / scale;" //
+			+ "    y0 = (y0 - translate[1]) / scale;" //
+			+ "    y1 = (y1 - translate[1]) / scale;" //
+			+ "  }" //
+			+ "  var margin = overscan / scale;" //
+			+ "  x0 -= margin; y0 -= margin; x1 += margin; y1 += margin;" //
+			+ "  var x = state.x;" //
+			+ "  var y = state.y;" //
+			+ "  var order = state.order || [];" //
+			+ "  var low = 0;" //
+			+ "  var high = order.length;" //
+			+ "  while(low < high){" //
+			+ "    var middle = (low + high) >>> 1;" //
+			+ "    if(x[order[middle]] < x0){" //
+			+ "      low = middle + 1;" //
+			+ "    } else {" //
+			+ "      high = middle;" //
+			+ "    }" //
+			+ "  }" //
+			+ "  var visibleIndices = [];" //
+			+ "  for(var position = low; position < order.length; position++){" //
+			+ "    var index = order[position];" //
+			+ "    if(x[index] > x1){" //
+			+ "      break;" //
+			+ "    }" //
+			+ "    var yValue = y[index];" //
+			+ "    if(yValue >= y0 && yValue <= y1){" //
+			+ "      visibleIndices.push(index);" //
+			+ "    }" //
+			+ "  }" //
+			+ "  visibleIndices.sort(function(first, second){ return first - second; });" //
+			+ "  var visibleData = new Array(visibleIndices.length);" //
+			+ "  for(var visibleIndex = 0; visibleIndex < visibleIndices.length; visibleIndex++){" //
+			+ "    visibleData[visibleIndex] = state.values[visibleIndices[visibleIndex]];" //
+			+ "  }" //
+			+ "  state.visibleIndices = visibleIndices;" //
+			+ "  return this.selectAll(selector).data(visibleData);" //
+			+ "}";
+
+	private final Selection parent;
+
+	private final String selector;
+
+	private final JsEngine engine;
+
+	/**
+	 * The JavaScript object that holds the data, the positions and the index
+	 */
+	private final JsObject state;
+
+	private double viewportX0 = Double.NEGATIVE_INFINITY;
+
+	private double viewportY0 = Double.NEGATIVE_INFINITY;
+
+	private double viewportX1 = Double.POSITIVE_INFINITY;
+
+	private double viewportY1 = Double.POSITIVE_INFINITY;
+
+	/**
+	 * If not null, the viewport is given in screen coordinates and is
+	 * transformed with the inverse transformation of the zoom
+	 */
+	private Zoom zoom;
+
+	/**
+	 * The width of the margin around the viewport (in screen coordinates)
+	 * whose data are rendered as well, so that they do not pop up while
+	 * panning
+	 */
+	private double overscan = 0;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	/**
+	 * @param parent
+	 *            the selection of the parent element
+	 * @param selector
+	 *            the selector of the child elements, e.g. "circle"
+	 */
+	public VirtualizedSelection(Selection parent, String selector) {
+		this.parent = Objects.requireNonNull(parent);
+		this.selector = Objects.requireNonNull(selector);
+		this.engine = parent.getJsEngine();
+		this.state = (JsObject) engine.executeScript("({})");
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Sets the data and their projected positions and joins the visible data
+	 * with the elements
+	 *
+	 * @param values
+	 *            the JavaScript array of all data
+	 * @param x
+	 *            the projected x coordinates, one per datum
+	 * @param y
+	 *            the projected y coordinates, one per datum
+	 * @return the update selection
+	 */
+	public UpdateSelection data(JavaScriptObject values, double[] x, double[] y) {
+		return data(values.getJsObject(), x, y);
+	}
+
+	/**
+	 * Sets the data and their projected positions, see
+	 * {@link #data(JavaScriptObject, double[], double[])}
+	 */
+	public UpdateSelection data(JsObject values, double[] x, double[] y) {
+		ScriptTemplateCache.forEngine(engine).invoke(state, ARRAY_DATA_TEMPLATE, values,
+				TypedArrays.encode(x), TypedArrays.encode(y));
+		return update();
+	}
+
+	/**
+	 * Sets the rows of the given data frame as data and uses the given
+	 * columns as projected positions, see
+	 * {@link #data(JavaScriptObject, double[], double[])}
+	 */
+	public UpdateSelection data(DataFrame dataFrame, String xColumn, String yColumn) {
+		Object[] frameArguments = dataFrame.getScriptArguments();
+		Object[] args = new Object[frameArguments.length + 2];
+		args[0] = xColumn;
+		args[1] = yColumn;
+		System.arraycopy(frameArguments, 0, args, 2, frameArguments.length);
+		ScriptTemplateCache.forEngine(engine).invoke(state, FRAME_DATA_TEMPLATE, args);
+		return update();
+	}
+
+	/**
+	 * Joins the data that are visible in the current viewport with the
+	 * elements, e.g. after the viewport has been panned or zoomed
+	 *
+	 * @return the update selection
+	 */
+	public UpdateSelection update() {
+		JsObject zoomObject = zoom == null ? null : zoom.getJsObject();
+		Object result = ScriptTemplateCache.forEngine(engine).invoke(parent.getJsObject(), JOIN_TEMPLATE, state,
+				selector, viewportX0, viewportY0, viewportX1, viewportY1, overscan, zoomObject);
+		boolean isJsObject = result instanceof JsObject;
+		if (!isJsObject) {
+			return null;
+		}
+		return new UpdateSelection(engine, (JsObject) result);
+	}
+
+	/**
+	 * Sets the viewport and joins the visible data with the elements
+	 *
+	 * @return the update selection
+	 */
+	public UpdateSelection viewport(double x0, double y0, double x1, double y1) {
+		setViewport(x0, y0, x1, y1);
+		return update();
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Sets the viewport in the coordinates of the projected positions or, if
+	 * a zoom has been set, in screen coordinates
+	 */
+	public VirtualizedSelection setViewport(double x0, double y0, double x1, double y1) {
+		viewportX0 = Math.min(x0, x1);
+		viewportY0 = Math.min(y0, y1);
+		viewportX1 = Math.max(x0, x1);
+		viewportY1 = Math.max(y0, y1);
+		return this;
+	}
+
+	/**
+	 * Sets the zoom whose transformation is applied to the projected
+	 * positions. The viewport is then given in screen coordinates, e.g. (0, 0,
+	 * width, height). Call {@link #update()} in the zoom listener.
+	 */
+	public VirtualizedSelection setZoom(Zoom zoom) {
+		this.zoom = zoom;
+		return this;
+	}
+
+	/**
+	 * Sets the width of the margin around the viewport (in screen
+	 * coordinates) whose data are rendered as well
+	 */
+	public VirtualizedSelection setOverscan(double overscan) {
+		this.overscan = overscan;
+		return this;
+	}
+
+	/**
+	 * Returns the indices (within all data) of the data that have been bound
+	 * by the last update
+	 */
+	public int[] getVisibleIndices() {
+		JsObject visibleIndices = (JsObject) state.getMember("visibleIndices");
+		return TypedArrays.readInts(engine, visibleIndices);
+	}
+
+	//#end region
+
+}
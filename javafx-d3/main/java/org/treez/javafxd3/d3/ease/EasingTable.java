@@ -0,0 +1,135 @@
+package org.treez.javafxd3.d3.ease;
+
+/**
+ * An easing curve that has been sampled at equidistant times into a lookup
+ * table. The table is computed once in Java and shipped with a transition, so
+ * that the frames of the transition do not need to call the easing function,
+ * see org.treez.javafxd3.d3.core.KeyframeTransition. Between the samples, the
+ * curve is interpolated linearly.
+ * <p>
+ * Easing functions of the {@link Easing} factory are sampled with a single
+ * call; custom Java easing functions are sampled in Java.
+ */
+public class EasingTable {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * The default number of intervals: fine enough for transitions of several
+	 * seconds at 60 frames per second
+	 */
+	public static final int DEFAULT_NUMBER_OF_INTERVALS = 256;
+
+	/**
+	 * The values of the easing curve at t = index / (length - 1)
+	 */
+	private final double[] samples;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	/**
+	 * @param samples
+	 *            the values of the easing curve at equidistant times from 0 to
+	 *            1 (at least two samples)
+	 */
+	public EasingTable(double[] samples) {
+		if (samples.length < 2) {
+			String message = "An easing table needs at least two samples but got " + samples.length + ".";
+			throw new IllegalStateException(message);
+		}
+		this.samples = samples.clone();
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Samples the given easing function with the default number of intervals
+	 */
+	public static EasingTable sample(EasingFunction easingFunction) {
+		return sample(easingFunction, DEFAULT_NUMBER_OF_INTERVALS);
+	}
+
+	/**
+	 * Samples the given easing function
+	 *
+	 * @param easingFunction
+	 * @param numberOfIntervals
+	 *            the number of intervals between t = 0 and t = 1
+	 */
+	public static EasingTable sample(EasingFunction easingFunction, int numberOfIntervals) {
+		if (numberOfIntervals < 1) {
+			String message = "The number of intervals must be positive but is " + numberOfIntervals + ".";
+			throw new IllegalStateException(message);
+		}
+		double[] times = new double[numberOfIntervals + 1];
+		for (int index = 0; index <= numberOfIntervals; index++) {
+			times[index] = (double) index / numberOfIntervals;
+		}
+
+		boolean isJavascriptFunction = easingFunction instanceof JavascriptEasingFunction;
+		if (isJavascriptFunction) {
+			return new EasingTable(((JavascriptEasingFunction) easingFunction).ease(times));
+		}
+
+		double[] samples = new double[times.length];
+		for (int index = 0; index < times.length; index++) {
+			samples[index] = easingFunction.ease(times[index]);
+		}
+		return new EasingTable(samples);
+	}
+
+	/**
+	 * The identity function
+	 */
+	public static EasingTable linear() {
+		return new EasingTable(new double[] { 0, 1 });
+	}
+
+	/**
+	 * The default easing of d3 transitions ("cubic-in-out"), computed in Java
+	 */
+	public static EasingTable cubicInOut() {
+		return sample((t) -> {
+			boolean isFirstHalf = t <= 0.5;
+			if (isFirstHalf) {
+				return 4 * t * t * t;
+			}
+			double reflected = 1 - t;
+			return 1 - 4 * reflected * reflected * reflected;
+		});
+	}
+
+	/**
+	 * Returns the interpolated value of the easing curve at the given time
+	 * (clamped to [0, 1])
+	 */
+	public double ease(double t) {
+		int lastIndex = samples.length - 1;
+		double position = Math.max(0, Math.min(1, t)) * lastIndex;
+		int index = Math.min((int) position, lastIndex - 1);
+		double fraction = position - index;
+		return samples[index] + (samples[index + 1] - samples[index]) * fraction;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns a copy of the samples
+	 */
+	public double[] getSamples() {
+		return samples.clone();
+	}
+
+	public int getNumberOfIntervals() {
+		return samples.length - 1;
+	}
+
+	//#end region
+
+}
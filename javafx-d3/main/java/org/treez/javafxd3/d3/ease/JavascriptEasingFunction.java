@@ -1,5 +1,6 @@
 package org.treez.javafxd3.d3.ease;
 
+import org.treez.javafxd3.d3.arrays.TypedArrays;
 import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
 
 import org.treez.javafxd3.d3.core.JsEngine;
@@ -10,6 +11,23 @@ import org.treez.javafxd3.d3.core.JsObject;
  */
 public class JavascriptEasingFunction extends JavaScriptObject implements EasingFunction {
 
+	//#region ATTRIBUTES
+
+	/**
+	 * Applies the easing function to all given values (encoded Float64Array)
+	 * and returns the encoded results
+	 */
+	private static final String SAMPLE_TEMPLATE = "function(encodedValues){" //
+			+ "  var values = (" + TypedArrays.DECODER_FUNCTION + ")(encodedValues, 'Float64');" //
+			+ "  var results = new Array(values.length);" //
+			+ "  for(var index = 0; index < values.length; index++){" //
+			+ "    results[index] = this(values[index]);" //
+			+ "  }" //
+			+ "  return (" + TypedArrays.ENCODER_FUNCTION + ")(results, 'Float64');" //
+			+ "}";
+
+	//#end region
+
 	//#region CONSTRUCTORS
 
 	/**
@@ -35,6 +53,15 @@ public class JavascriptEasingFunction extends JavaScriptObject implements Easing
 		Double result = Double.parseDouble(stringValue);
 		return result;
 	}
+
+	/**
+	 * Applies the easing function to all given values with a single call, e.g.
+	 * to sample it into an {@link EasingTable}
+	 */
+	public double[] ease(double[] values) {
+		Object result = callTemplate(SAMPLE_TEMPLATE, TypedArrays.encode(values));
+		return TypedArrays.decodeDoubles(result.toString());
+	}
 	
 	//#end region
 }
@@ -0,0 +1,43 @@
+package org.treez.javafxd3.d3.functions.timer;
+
+import org.treez.javafxd3.d3.core.CallbackRegistry;
+import org.treez.javafxd3.d3.functions.TimerFunction;
+
+/**
+ * Wraps a TimerFunction that is pinned in the CallbackRegistry and releases
+ * itself from the registry when the wrapped function returns true (= the
+ * timer is finished).
+ */
+public class ReleasingTimerFunctionWrapper implements TimerFunction {
+
+	//#region ATTRIBUTES
+
+	private TimerFunction timerFunction;
+
+	private CallbackRegistry registry;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public ReleasingTimerFunctionWrapper(TimerFunction timerFunction, CallbackRegistry registry) {
+		this.timerFunction = timerFunction;
+		this.registry = registry;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	@Override
+	public boolean execute() {
+		boolean isFinished = timerFunction.execute();
+		if (isFinished) {
+			registry.release(this);
+		}
+		return isFinished;
+	}
+
+	//#end region
+
+}
@@ -355,6 +355,19 @@ public class Quadtree extends JavaScriptObject {
 	 */
 	public static class RootNode<T> extends Node<T> {
 
+		//#region ATTRIBUTES
+
+		/**
+		 * Calls the visit method of a Callback
+		 */
+		private static final String VISIT_ADAPTER = "function(fns, h){" //
+				+ "  return function(node, x1, y1, x2, y2){" //
+				+ "    return fns[h].visit(node, x1, y1, x2, y2);" //
+				+ "  };" //
+				+ "}";
+
+		//#end region
+
 		//#region CONSTRUCTORS
 
 		/**
@@ -408,29 +421,12 @@ public class Quadtree extends JavaScriptObject {
 
 			assertObjectIsNotAnonymous(callback);
 
-			JsObject d3JsObject = getD3();
-			String methodName = createNewTemporaryInstanceName();
-			d3JsObject.setMember(methodName, callback);
-
-			String command = "this.visit(function(node, x1, y1, x2, y2) { " //
-					+ "return d3." + methodName + ".visit(node,x1,y1,x2,y2);" //
-					+ " });";
-
-			Object result = eval(command);
-			
-			d3JsObject.removeMember(methodName);
-			
-			if (result==null){
+			JsObject trampoline = getTrampoline(callback, VISIT_ADAPTER);
+			JsObject jsResult = call("visit", trampoline);
+			if (jsResult == null) {
 				return null;
 			}
-			if (result.equals("undefined")){
-				return null;
-			}
-			JsObject jsResult = (JsObject) result;
-						
-			
 			return new RootNode<T>(engine, jsResult);
-			
 		}
 	}
 
@@ -9,6 +9,7 @@ import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
 
 import org.treez.javafxd3.d3.core.JsEngine;
 import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.ListenerRegistry;
 
 /**
  * Force layout binding to D3. <br>
@@ -680,28 +681,12 @@ public class Force extends JavaScriptObject {
 	 * @return
 	 */
 	public Selection on(String name, DataFunction<?> callback) {
-
-		assertObjectIsNotAnonymous(callback);
-
-		String funcName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(funcName, callback);
-
-		String command = "var "+varName+" = d3." + funcName + " == null ? null : " + "function(d, i) {" //		      
-				+ "d3." + funcName + ".apply(this,d,i);" //
-				+ " }; ";
-
-		eval(command);
-		String onCommand = "this.on("+varName+");";
-
-		JsObject result = evalForJsObject(onCommand);
-
-		if (result == null) {
-			return null;
+		if (callback != null) {
+			assertObjectIsNotAnonymous(callback);
 		}
-
-		return new Selection(engine, result);
+		ListenerRegistry.forEngine(engine).addObjectListener(getJsObject(), name, callback,
+				ListenerRegistry.DATA_FUNCTION_LISTENER_ADAPTER);
+		return new Selection(engine, getJsObject());
 	}
 
 	/**
@@ -25,6 +25,14 @@ import org.treez.javafxd3.d3.core.JsObject;
 public abstract class ContinuousQuantitativeScale<S extends ContinuousQuantitativeScale<S>>
 		extends QuantitativeScale<S> {
 
+	//#region ATTRIBUTES
+
+	private static final String RANGE_ROUND_TEMPLATE = "function(){ return this.rangeRound(Array.prototype.slice.call(arguments)); }";
+
+	private static final String INVERT_TEMPLATE = "function(value){ return this.invert(value); }";
+
+	//#end region
+
 	//#region CONSTRUCTORS
 
 	/**
@@ -78,9 +86,8 @@ public abstract class ContinuousQuantitativeScale<S extends ContinuousQuantitati
 	 * @return the current scale for chaining
 	 */
 	public final S rangeRound(final double... numbers) {
-		String arrayString = ArrayUtils.createArrayString(numbers);
-		String command = "this.rangeRound(" + arrayString + ")";
-		JsObject result = evalForJsObject(command);
+		Object[] values = ArrayUtils.createArrayFromDoubles(numbers);
+		JsObject result = callTemplateForJsObject(RANGE_ROUND_TEMPLATE, values);
 		S resultScale = createScale(engine, result);
 		return resultScale;	
 		
@@ -93,9 +100,8 @@ public abstract class ContinuousQuantitativeScale<S extends ContinuousQuantitati
 	 * @return the current scale for chaining
 	 */
 	public final S rangeRound(final String... strings) {
-		String arrayString = ArrayUtils.createArrayString(strings);
-		String command = "this.rangeRound(" + arrayString + ")";
-		JsObject result = evalForJsObject(command);
+		Object[] values = ArrayUtils.createArrayFromStrings(strings);
+		JsObject result = callTemplateForJsObject(RANGE_ROUND_TEMPLATE, values);
 		S resultScale = createScale(engine, result);
 		return resultScale;
 	}
@@ -127,8 +133,7 @@ public abstract class ContinuousQuantitativeScale<S extends ContinuousQuantitati
 	 * @return
 	 */
 	public  Value invert(double d){
-		String command = "this.invert(" + d + ")";
-		Object result = eval(command);
+		Object result = callTemplate(INVERT_TEMPLATE, d);
 		if (result==null){
 			return null;
 		}
@@ -3,6 +3,7 @@ package org.treez.javafxd3.d3.scales;
 import org.treez.javafxd3.d3.D3;
 import org.treez.javafxd3.d3.arrays.Array;
 import org.treez.javafxd3.d3.arrays.ArrayUtils;
+import org.treez.javafxd3.d3.arrays.TypedArrays;
 import org.treez.javafxd3.d3.core.Value;
 import org.treez.javafxd3.d3.interpolators.Interpolator;
 import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
@@ -28,6 +29,50 @@ import org.treez.javafxd3.d3.core.JsObject;
  */
 public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
 
+	//#region ATTRIBUTES
+
+	/**
+	 * Applies the scale to the given value
+	 */
+	private static final String APPLY_TEMPLATE = "function(value){ return this(value); }";
+
+	/**
+	 * Applies the scale to all given values (encoded Float64Array or packed
+	 * strings) and returns the encoded numeric results
+	 */
+	private static final String APPLY_FOR_DOUBLES_TEMPLATE = "function(values, isPacked){" //
+			+ "  var input = isPacked" //
+			+ "    ? (" + TypedArrays.STRING_UNPACKER_FUNCTION + ")(values)" //
+			+ "    : (" + TypedArrays.DECODER_FUNCTION + ")(values, 'Float64');" //
+			+ "  var output = new Array(input.length);" //
+			+ "  for(var index = 0; index < input.length; index++){" //
+			+ "    output[index] = +this(input[index]);" //
+			+ "  }" //
+			+ "  return (" + TypedArrays.ENCODER_FUNCTION + ")(output, 'Float64');" //
+			+ "}";
+
+	/**
+	 * Applies the scale to all given values (encoded Float64Array) and returns
+	 * the packed string results
+	 */
+	private static final String APPLY_FOR_STRINGS_TEMPLATE = "function(values){" //
+			+ "  var input = (" + TypedArrays.DECODER_FUNCTION + ")(values, 'Float64');" //
+			+ "  var output = new Array(input.length);" //
+			+ "  for(var index = 0; index < input.length; index++){" //
+			+ "    var value = this(input[index]);" //
+			+ "    output[index] = value == null ? null : '' + value;" //
+			+ "  }" //
+			+ "  return (" + TypedArrays.STRING_PACKER_FUNCTION + ")(output);" //
+			+ "}";
+
+	private static final String DOMAIN_TEMPLATE = "function(){ return this.domain(Array.prototype.slice.call(arguments)); }";
+
+	private static final String RANGE_TEMPLATE = "function(){ return this.range(Array.prototype.slice.call(arguments)); }";
+
+	private static final String DOMAIN_WITH_BOUNDS_TEMPLATE = "function(min, max){ return this.domain([min, max]); }";
+
+	//#end region
+
 	//#region CONSTRUCTORS
 
 	/**
@@ -72,10 +117,9 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
      *            the array of numbers
      * @return the current scale
      */
-    public final S domain(final double... numbers) {    	    	
-    	String arrayString = ArrayUtils.createArrayString(numbers);    	
-    	String command = "this.domain("+ arrayString +")";    	
-    	JsObject result = evalForJsObject(command);    	
+    public final S domain(final double... numbers) {
+    	Object[] values = ArrayUtils.createArrayFromDoubles(numbers);
+    	JsObject result = callTemplateForJsObject(DOMAIN_TEMPLATE, values);
     	S scaleResult = createScale(engine, result);   
     	return scaleResult;    	
     }  
@@ -89,9 +133,8 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
      * @return the current scale
      */
     public final S domain(final String... strings) {
-    	String arrayString = ArrayUtils.createArrayString(strings);    	
-    	String command = "this.domain("+ arrayString +")";    	
-    	JsObject result = evalForJsObject(command);    	
+    	Object[] values = ArrayUtils.createArrayFromStrings(strings);
+    	JsObject result = callTemplateForJsObject(DOMAIN_TEMPLATE, values);
     	S scaleResult = createScale(engine, result);   
     	return scaleResult;
     }
@@ -123,17 +166,7 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
 		
 		Object max = array.get(1,  Object.class);
 		
-		String minName = createNewTemporaryInstanceName();
-		String maxName = createNewTemporaryInstanceName();
-
-		JsObject d3jsObj = getD3();
-		d3jsObj.setMember(minName, min);
-		d3jsObj.setMember(maxName, max);
-		    		
-		JsObject result = evalForJsObject("this.domain([d3."+ minName + ", d3." + maxName + "])");
-		
-		d3jsObj.removeMember(minName);
-		d3jsObj.removeMember(maxName);
+		JsObject result = callTemplateForJsObject(DOMAIN_WITH_BOUNDS_TEMPLATE, min, max);
 		
 		if(result==null){
 			return null;
@@ -169,9 +202,8 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
      * @return the current scale for chaining
      */
     public final S range(final double... numbers) {
-    	String arrayString = ArrayUtils.createArrayString(numbers);
-    	String command = "this.range(" + arrayString +")";
-    	JsObject result = evalForJsObject(command);
+    	Object[] values = ArrayUtils.createArrayFromDoubles(numbers);
+    	JsObject result = callTemplateForJsObject(RANGE_TEMPLATE, values);
     	S scaleResult = createScale(engine, result);   
     	return scaleResult;
     }
@@ -187,9 +219,8 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
      * @return the current scale for chaining
      */
     public final S range(final String... strings) {
-    	String arrayString = ArrayUtils.createArrayString(strings);
-    	String command = "this.range(" + arrayString +")";
-    	JsObject result = evalForJsObject(command);
+    	Object[] values = ArrayUtils.createArrayFromStrings(strings);
+    	JsObject result = callTemplateForJsObject(RANGE_TEMPLATE, values);
     	S scaleResult = createScale(engine, result);   
     	return scaleResult;
     }
@@ -288,9 +319,8 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
      *            the input value
      * @return the output value
      */
-    public  Value apply(double d){    	
-    	String command = "this(" + d + ")";
-    	Object result = eval(command);
+    public  Value apply(double d){
+    	Object result = callTemplate(APPLY_TEMPLATE, d);
     	
     	if (result == null){
     		return null;
@@ -319,8 +349,7 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
      * @return the output value
      */
     public  Value apply(String d){
-    	String command = "this('" + d + "')";
-    	Object result = eval(command);
+    	Object result = callTemplate(APPLY_TEMPLATE, d);
     	
     	Value value = Value.create(engine,  result);
     	return value;    	
@@ -332,8 +361,7 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
     }
     
     public  Double applyForDouble(String d){
-    	String command = "this('" + d + "')";
-    	Object result = eval(command);  
+    	Object result = callTemplate(APPLY_TEMPLATE, d);
     	String valueString = result.toString();
     	boolean isUndefined = valueString.equals("undefined");
     	if(isUndefined){
@@ -345,8 +373,48 @@ public abstract class Scale<S extends Scale<?>> extends JavaScriptObject {
     }
     
     public  String applyForString(String d){
-    	String command = "this('" + d + "')";
-    	Object result = eval(command);    	
+    	Object result = callTemplate(APPLY_TEMPLATE, d);
     	return result.toString();    	
     }
+
+    /**
+     * Applies the scale to all given values with a single call, e.g. to
+     * compute the pixel coordinates of a large data column. The values are
+     * transferred as encoded typed array.
+     *
+     * @param values
+     *            the input values, e.g. numbers or milliseconds for a time
+     *            scale
+     * @return the output values; NaN for non-numeric outputs
+     */
+    public double[] applyForDoubles(double[] values) {
+    	Object result = callTemplate(APPLY_FOR_DOUBLES_TEMPLATE, TypedArrays.encode(values), false);
+    	return TypedArrays.decodeDoubles(result.toString());
+    }
+
+    /**
+     * Applies the scale to all given values with a single call, e.g. to
+     * compute the pixel coordinates of the categories of an ordinal scale
+     *
+     * @param values
+     *            the input values
+     * @return the output values; NaN for non-numeric outputs
+     */
+    public double[] applyForDoubles(String[] values) {
+    	Object result = callTemplate(APPLY_FOR_DOUBLES_TEMPLATE, TypedArrays.packStrings(values), true);
+    	return TypedArrays.decodeDoubles(result.toString());
+    }
+
+    /**
+     * Applies the scale to all given values with a single call, e.g. to
+     * sample the colors of a color scale
+     *
+     * @param values
+     *            the input values
+     * @return the output values as strings
+     */
+    public String[] applyForStrings(double[] values) {
+    	Object result = callTemplate(APPLY_FOR_STRINGS_TEMPLATE, TypedArrays.encode(values));
+    	return TypedArrays.unpackStrings(result.toString());
+    }
 }
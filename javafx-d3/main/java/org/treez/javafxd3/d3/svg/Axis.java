@@ -34,6 +34,10 @@ public class Axis extends JavaScriptObject implements JsFunction {
 
 	//#region ATTRIBUTES
 
+	private static final String ORIENT_TEMPLATE = "function(){ return this.orient().toUpperCase(); }";
+
+	private static final String TICK_VALUES_TEMPLATE = "function(){ return this.tickValues(Array.prototype.slice.call(arguments)); }";
+
 	Scale<?> associatedScale;
 
 	//#end region
@@ -97,8 +101,7 @@ public class Axis extends JavaScriptObject implements JsFunction {
 	 */
 	public Orientation orient() {
 
-		String command = "this.orient().toUpperCase()";
-		String enumString = evalForString(command);
+		String enumString = callTemplateForString(ORIENT_TEMPLATE);
 		Orientation orientation = Orientation.valueOf(enumString);
 		return orientation;
 
@@ -512,9 +515,8 @@ public class Axis extends JavaScriptObject implements JsFunction {
 	 * @return the current axis
 	 */
 	public final Axis tickValues(double... values) {
-		String arrayString = ArrayUtils.createArrayString(values);
-		String command = "this.tickValues(" + arrayString + ");";
-		JsObject result = evalForJsObject(command);
+		Object[] tickValues = ArrayUtils.createArrayFromDoubles(values);
+		JsObject result = callTemplateForJsObject(TICK_VALUES_TEMPLATE, tickValues);
 		return new Axis(engine, result);
 	}
 
@@ -526,9 +528,8 @@ public class Axis extends JavaScriptObject implements JsFunction {
 	 * @return the current axis
 	 */
 	public final Axis tickValues(String... values) {
-		String arrayString = ArrayUtils.createArrayString(values);
-		String command = "this.tickValues(" + arrayString + ");";
-		JsObject result = evalForJsObject(command);
+		Object[] tickValues = ArrayUtils.createArrayFromStrings(values);
+		JsObject result = callTemplateForJsObject(TICK_VALUES_TEMPLATE, tickValues);
 		return new Axis(engine, result);
 	}
 
@@ -14,8 +14,10 @@ import org.treez.javafxd3.d3.scales.QuantitativeScale;
 import org.treez.javafxd3.d3.scales.Scale;
 import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
 
+import org.treez.javafxd3.d3.core.EventCoalescing;
 import org.treez.javafxd3.d3.core.JsEngine;
 import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.ListenerRegistry;
 
 /**
  * 
@@ -320,30 +322,30 @@ public class Brush extends JavaScriptObject implements JsFunction {
 	 * @return the current brush.
 	 */
 	public Brush on(BrushEvent event, DataFunction<Void> listener) {
-
 		String eventString = event.getValue();
+		ListenerRegistry.forEngine(engine).addObjectListener(getJsObject(), eventString, listener,
+				ListenerRegistry.DATA_FUNCTION_LISTENER_ADAPTER);
+		return new Brush(engine, getJsObject());
+	}
 
-		String memberName = createNewTemporaryInstanceName();
-		String varName = createNewTemporaryInstanceName();
-		JsObject d3JsObject = getD3();
-		d3JsObject.setMember(memberName, listener);
-		
-		String command = "d3."+varName+" = function(d, i) {" //		      
-				+ "d3." + memberName + ".apply(this,d,i);" //
-				+ " }; ";
-
-		eval(command);
-		String onCommand = "this.on('" + eventString + "', d3."+varName+");";
-		
-		
-
-		JsObject result = evalForJsObject(onCommand);
-		
-		if(result==null){
-			return null;
-		}
-		return new Brush(engine, result);
-		
+	/**
+	 * Same as {@link #on(BrushEvent, DataFunction)} but coalesces the events
+	 * in JavaScript, e.g. the {@link BrushEvent#BRUSH} events while the mouse
+	 * is moved. See {@link EventCoalescing}.
+	 *
+	 * @param event
+	 *            the event.
+	 * @param listener
+	 *            the event listener.
+	 * @param coalescing
+	 *            e.g. {@link EventCoalescing#perAnimationFrame()}
+	 * @return the current brush.
+	 */
+	public Brush on(BrushEvent event, DataFunction<Void> listener, EventCoalescing coalescing) {
+		String eventString = event.getValue();
+		ListenerRegistry.forEngine(engine).addObjectListener(getJsObject(), eventString, listener,
+				coalescing.getAdapter());
+		return new Brush(engine, getJsObject());
 	}
 
 	/**
@@ -5,6 +5,7 @@ import java.util.List;
 
 import org.treez.javafxd3.d3.arrays.Array;
 import org.treez.javafxd3.d3.arrays.ArrayUtils;
+import org.treez.javafxd3.d3.arrays.TypedArrays;
 import org.treez.javafxd3.d3.functions.DataFunction;
 import org.treez.javafxd3.d3.functions.JsFunction;
 import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
@@ -52,6 +53,22 @@ import org.treez.javafxd3.d3.core.JsObject;
  */
 public abstract class PathDataGenerator extends JavaScriptObject implements JsFunction {
 
+	//#region ATTRIBUTES
+
+	/**
+	 * Applies the generator to each element of the given array and returns
+	 * the packed path strings
+	 */
+	private static final String GENERATE_EACH_TEMPLATE = "function(data){" //
+			+ "  var paths = new Array(data.length);" //
+			+ "  for(var index = 0; index < data.length; index++){" //
+			+ "    paths[index] = this(data[index], index);" //
+			+ "  }" //
+			+ "  return (" + TypedArrays.STRING_PACKER_FUNCTION + ")(paths);" //
+			+ "}";
+
+	//#end region
+
 	//#region CONSTRUCTORS
 
 	/**
@@ -183,6 +200,30 @@ public abstract class PathDataGenerator extends JavaScriptObject implements JsFu
 		return pathString;
 	}
 
+	/**
+	 * Generates the path data for each element of the given array with a
+	 * single call, e.g. one arc per slice of a pie layout, one symbol per
+	 * point or one line per series. The generator is called with the element
+	 * and its index, like it is called for the data of a path selection.
+	 *
+	 * @param data
+	 *            an array of data
+	 * @return the generated path data, one per element (null for undefined
+	 *         results)
+	 */
+	public String[] generateEach(JavaScriptObject data) {
+		return generateEach(data.getJsObject());
+	}
+
+	/**
+	 * Generates the path data for each element of the given array, see
+	 * {@link #generateEach(JavaScriptObject)}
+	 */
+	public String[] generateEach(JsObject data) {
+		Object result = callTemplate(GENERATE_EACH_TEMPLATE, data);
+		return TypedArrays.unpackStrings(result.toString());
+	}
+
 	public String generate(String dataArrayString) {
 		String command = "this(" + dataArrayString + ")";
 		String pathString = this.evalForString(command);
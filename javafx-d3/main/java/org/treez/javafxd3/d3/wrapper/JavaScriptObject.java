@@ -4,10 +4,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+import org.treez.javafxd3.d3.core.CallbackRegistry;
 import org.treez.javafxd3.d3.core.ConversionUtil;
 
 import org.treez.javafxd3.d3.core.JsEngine;
 import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.ScriptTemplateCache;
 
 /**
  * Base class for all JavaScript wrappers
@@ -234,6 +236,25 @@ public class JavaScriptObject {
 		throw new IllegalStateException(message);
 	}
 
+	/**
+	 * Invokes a method that returns the wrapped object itself (e.g. a d3
+	 * setter). If the engine is batching, the invocation is only recorded and
+	 * the wrapped object is returned without waiting for the result.
+	 *
+	 * @param methodName
+	 * @param args
+	 * @return
+	 */
+	protected JsObject callForThis(String methodName, Object... args) {
+		Objects.requireNonNull(jsObject);
+		boolean isBatching = engine.isBatching();
+		if (isBatching) {
+			jsObject.callWithoutResult(methodName, args);
+			return jsObject;
+		}
+		return call(methodName, args);
+	}
+
 	private void checkIfMethodExists(String methodName) {
 		Object method = jsObject.getMember(methodName);
 		Objects.requireNonNull(method, "Method "+methodName+" does not exist");
@@ -549,6 +570,83 @@ public class JavaScriptObject {
 
 	//#end region	
 	
+	//#region TEMPLATE
+
+	/**
+	 * Invokes the given JavaScript function template with the wrapped object
+	 * as this and returns the result as Object. The template is only compiled
+	 * once per engine, see {@link ScriptTemplateCache}.
+	 * 
+	 * @param template
+	 *            the source code of a JavaScript function, e.g.
+	 *            "function(d){ return this(d); }"
+	 * @param args
+	 * @return
+	 */
+	protected Object callTemplate(String template, Object... args) {
+		Objects.requireNonNull(jsObject);
+		return ScriptTemplateCache.forEngine(engine).invoke(jsObject, template, args);
+	}
+
+	/**
+	 * Invokes the given JavaScript function template and returns the result
+	 * as JsObject (null if the result is undefined)
+	 * 
+	 * @param template
+	 * @param args
+	 * @return
+	 */
+	protected JsObject callTemplateForJsObject(String template, Object... args) {
+		Object result = callTemplate(template, args);
+		boolean isJsObject = result instanceof JsObject;
+		if (isJsObject) {
+			return (JsObject) result;
+		}
+		boolean isUndefined = result == null || result.equals("undefined");
+		if (isUndefined) {
+			return null;
+		}
+		String message = "A result of type '" + result.getClass().getName() + "' could not be processed.";
+		throw new IllegalStateException(message);
+	}
+
+	/**
+	 * Invokes the given JavaScript function template and returns the result
+	 * as String
+	 * 
+	 * @param template
+	 * @param args
+	 * @return
+	 */
+	protected String callTemplateForString(String template, Object... args) {
+		Object result = callTemplate(template, args);
+		if (result == null) {
+			return null;
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Invokes a JavaScript function template that returns the wrapped object
+	 * itself (e.g. a d3 setter). If the engine is batching, the invocation is
+	 * only recorded, see {@link #callForThis(String, Object...)}.
+	 * 
+	 * @param template
+	 * @param args
+	 * @return
+	 */
+	protected JsObject callTemplateForThis(String template, Object... args) {
+		Objects.requireNonNull(jsObject);
+		boolean isBatching = engine.isBatching();
+		if (isBatching) {
+			ScriptTemplateCache.forEngine(engine).invokeWithoutResult(jsObject, template, args);
+			return jsObject;
+		}
+		return callTemplateForJsObject(template, args);
+	}
+
+	//#end region
+
 	//#region EQUALS
 	
 	@Override
@@ -598,6 +696,18 @@ public class JavaScriptObject {
 	}
 	
 	
+	/**
+	 * Returns a JavaScript function that forwards its calls to the given
+	 * callback, see {@link CallbackRegistry#getTrampoline(Object, String)}
+	 * 
+	 * @param callback
+	 * @param adapter
+	 * @return
+	 */
+	protected JsObject getTrampoline(Object callback, String adapter) {
+		return CallbackRegistry.forEngine(engine).getTrampoline(callback, adapter);
+	}
+
 	protected JsObject getD3() {
 		JsObject d3jsObj = (JsObject) engine.executeScript("d3");
 		return d3jsObj;
@@ -0,0 +1,857 @@
+package org.treez.javafxd3.d3.wrapper.canvas;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.treez.javafxd3.d3.arrays.TypedArrays;
+import org.treez.javafxd3.d3.core.JsEngine;
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.ScriptTemplateCache;
+
+/**
+ * Draws large numbers of marks (circles, rectangles and lines) on a canvas
+ * instead of creating one SVG element per datum. The marks are held as
+ * primitive columns in pixel coordinates, e.g.
+ *
+ * <pre>
+ * double[] x = xScale.applyForDoubles(temperatures);
+ * double[] y = yScale.applyForDoubles(timestamps);
+ * ColorLookupTable colors = ColorLookupTable.fromScale(colorScale, 0, 100, 256);
+ *
+ * CanvasMarkRenderer renderer = new CanvasMarkRenderer(context, width, height);
+ * renderer.setColorLookupTable(colors);
+ * renderer.addCircles(x, y, 2, colors.indicesOf(humidities));
+ * renderer.render();
+ * </pre>
+ *
+ * The columns are transferred once as encoded typed arrays and kept in
+ * JavaScript. The marks are drawn grouped by color index, so that each color
+ * needs one path and one fill (or stroke) call; within a color, the marks are
+ * drawn in the order in which they have been added.
+ * <p>
+ * Changes of single marks ({@link #setColorIndex(int, int)},
+ * {@link #setPosition(int, double, double)}) only transfer the changed values
+ * and the next {@link #render()} only redraws the dirty regions (the old and
+ * new bounds of the changed marks). If the dirty regions cover a large part of
+ * the canvas, the canvas is redrawn completely.
+ * <p>
+ * The marks are indexed with a {@link SpatialGrid} for hit testing, see
+ * {@link #pick(double, double, double)} and
+ * {@link #pickAll(double, double, double, double)}, e.g. for tooltips and
+ * brushing. The renderer expects to be the only one that draws on its canvas.
+ */
+public class CanvasMarkRenderer {
+
+	//#region ATTRIBUTES
+
+	private static final byte CIRCLE = 0;
+
+	private static final byte RECT = 1;
+
+	private static final byte LINE = 2;
+
+	/**
+	 * The number of values that are transferred per changed mark: a, b, c, d
+	 * and color index
+	 */
+	private static final int PATCH_SIZE = 5;
+
+	/**
+	 * The maximum number of separate dirty regions; more regions are merged to
+	 * their bounding box
+	 */
+	private static final int MAX_NUMBER_OF_DIRTY_REGIONS = 16;
+
+	/**
+	 * The dirty area (relative to the canvas area) above which the canvas is
+	 * redrawn completely
+	 */
+	private static final double FULL_REDRAW_RATIO = 0.5;
+
+	private static final double DEFAULT_CELL_SIZE = 32;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Creates the JavaScript state that holds the columns of the marks and the
+	 * colors
+	 */
+	private static final String UPLOAD_TEMPLATE = "function(shapes, a, b, c, d, colorIndices, packedColors){" //
+			+ "  var decode = " + TypedArrays.DECODER_FUNCTION + ";" //
+			+ "  return {" //
+			+ "    shapes: decode(shapes, 'Uint8')," //
+			+ "    a: decode(a, 'Float64')," //
+			+ "    b: decode(b, 'Float64')," //
+			+ "    c: decode(c, 'Float64')," //
+			+ "    d: decode(d, 'Float64')," //
+			+ "    colorIndices: decode(colorIndices, 'Int32')," //
+			+ "    colors: (" + TypedArrays.STRING_UNPACKER_FUNCTION + ")(packedColors)" //
+			+ "  };" //
+			+ "}";
+
+	/**
+	 * Applies the changed values to the state and draws the marks on the
+	 * context (this): all marks for a full redraw, else the given marks of
+	 * each region, clipped to the region (nothing if there are no regions).
+	 * Returns the number of drawn marks.
+	 */
+	private static final String DRAW_TEMPLATE = "function(state, patchIndices, patchValues, isFullRedraw, regions, order, orderOffsets, lineWidth, width, height){" //
+			+ "  var decode = " + TypedArrays.DECODER_FUNCTION + ";" //
+			+ "  var context = this;" //
+			+ "  var shapes = state.shapes, a = state.a, b = state.b, c = state.c, d = state.d;" //
+			+ "  var colorIndices = state.colorIndices, colors = state.colors;" //
+			+ "  var indices = decode(patchIndices, 'Int32');" //
+			+ "  var values = decode(patchValues, 'Float64');" //
+			+ "  for(var k = 0; k < indices.length; k++){" //
+			+ "    var i = indices[k], p = " + PATCH_SIZE + " * k;" //
+			+ "    a[i] = values[p]; b[i] = values[p + 1]; c[i] = values[p + 2]; d[i] = values[p + 3];" //
+			+ "    colorIndices[i] = values[p + 4];" //
+			+ "  }" //
+			+ "  var draw = function(marks, start, end){" //
+			+ "    var runStart = start;" //
+			+ "    while(runStart < end){" //
+			+ "      var colorIndex = colorIndices[marks[runStart]];" //
+			+ "      var runEnd = runStart;" //
+			+ "      while(runEnd < end && colorIndices[marks[runEnd]] === colorIndex){" //
+			+ "        runEnd++;" //
+			+ "      }" //
+			+ "      var color = colors[colorIndex];" //
+			+ "      var hasLines = false;" //
+			+ "      context.fillStyle = color;" //
+			+ "      context.beginPath();" //
+			+ "      for(var k = runStart; k < runEnd; k++){" //
+			+ "        var i = marks[k];" //
+			+ "        switch(shapes[i]){" //
+			+ "          case " + CIRCLE + ":" //
+			+ "            context.moveTo(a[i] + c[i], b[i]);" //
+			+ "            context.arc(a[i], b[i], c[i], 0, 2 * Math.PI);" //
+			+ "            break;" //
+			+ "          case " + RECT + ": context.rect(a[i], b[i], c[i], d[i]); break;" //
+			+ "          case " + LINE + ": hasLines = true; break;" //
+			+ "        }" //
+			+ "      }" //
+			+ "      context.fill();" //
+			+ "      if(hasLines){" //
+			+ "        context.strokeStyle = color;" //
+			+ "        context.beginPath();" //
+			+ "        for(var k = runStart; k < runEnd; k++){" //
+			+ "          var i = marks[k];" //
+			+ "          if(shapes[i] === " + LINE + "){" //
+			+ "            context.moveTo(a[i], b[i]);" //
+			+ "            context.lineTo(c[i], d[i]);" //
+			+ "          }" //
+			+ "        }" //
+			+ "        context.stroke();" //
+			+ "      }" //
+			+ "      runStart = runEnd;" //
+			+ "    }" //
+			+ "    return end - start;" //
+			+ "  };" //
+			+ "  context.lineWidth = lineWidth;" //
+			+ "  if(isFullRedraw){" //
+			+ "    var numberOfMarks = shapes.length;" //
+			+ "    var counts = new Int32Array(colors.length + 1);" //
+			+ "    for(var i = 0; i < numberOfMarks; i++){" //
+			+ "      counts[colorIndices[i] + 1]++;" //
+			+ "    }" //
+			+ "    for(var k = 1; k < counts.length; k++){" //
+			+ "      counts[k] += counts[k - 1];" //
+			+ "    }" //
+			+ "    var sortedMarks = new Int32Array(numberOfMarks);" //
+			+ "    for(var i = 0; i < numberOfMarks; i++){" //
+			+ "      sortedMarks[counts[colorIndices[i]]++] = i;" //
+			+ "    }" //
+			+ "    context.clearRect(0, 0, width, height);" //
+			+ "    return draw(sortedMarks, 0, numberOfMarks);" //
+			+ "  }" //
+			+ "  if(regions.length === 0){" //
+			+ "    return 0;" //
+			+ "  }" //
+			+ "  var rectangles = decode(regions, 'Float64');" //
+			+ "  var marks = decode(order, 'Int32');" //
+			+ "  var offsets = decode(orderOffsets, 'Int32');" //
+			+ "  var numberOfDrawnMarks = 0;" //
+			+ "  for(var r = 0; r < offsets.length - 1; r++){" //
+			+ "    var x = rectangles[4 * r], y = rectangles[4 * r + 1];" //
+			+ "    var w = rectangles[4 * r + 2], h = rectangles[4 * r + 3];" //
+			+ "    context.save();" //
+			+ "    context.beginPath();" //
+			+ "    context.rect(x, y, w, h);" //
+			+ "    context.clip();" //
+			+ "    context.clearRect(x, y, w, h);" //
+			+ "    numberOfDrawnMarks += draw(marks, offsets[r], offsets[r + 1]);" //
+			+ "    context.restore();" //
+			+ "  }" //
+			+ "  return numberOfDrawnMarks;" //
+			+ "}";
+
+	private final Context2d context;
+
+	private final double width;
+
+	private final double height;
+
+	private final SpatialGrid grid;
+
+	private ColorLookupTable colorLookupTable;
+
+	private double lineWidth = 1;
+
+	private int numberOfMarks = 0;
+
+	private byte[] shapes = new byte[INITIAL_CAPACITY];
+
+	/**
+	 * The geometry of the marks: center x, center y and radius for circles;
+	 * x, y, width and height for rectangles; x1, y1, x2 and y2 for lines
+	 */
+	private double[] a = new double[INITIAL_CAPACITY];
+
+	private double[] b = new double[INITIAL_CAPACITY];
+
+	private double[] c = new double[INITIAL_CAPACITY];
+
+	private double[] d = new double[INITIAL_CAPACITY];
+
+	private int[] colorIndices = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The bounding boxes of the marks, including half of the line width
+	 */
+	private double[] left = new double[INITIAL_CAPACITY];
+
+	private double[] top = new double[INITIAL_CAPACITY];
+
+	private double[] right = new double[INITIAL_CAPACITY];
+
+	private double[] bottom = new double[INITIAL_CAPACITY];
+
+	/**
+	 * The JavaScript state with the uploaded columns
+	 */
+	private JsObject state;
+
+	private boolean isUploadNeeded = true;
+
+	private boolean isFullRedrawNeeded = true;
+
+	private boolean isIndexValid = false;
+
+	/**
+	 * The marks whose values have changed since the last render
+	 */
+	private final BitSet changedMarks = new BitSet();
+
+	/**
+	 * The dirty regions as x, y, width, height
+	 */
+	private double[] dirtyRegions = new double[4 * MAX_NUMBER_OF_DIRTY_REGIONS];
+
+	private int numberOfDirtyRegions = 0;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	/**
+	 * @param context
+	 *            the context of the canvas
+	 * @param width
+	 *            the width of the canvas in pixels
+	 * @param height
+	 *            the height of the canvas in pixels
+	 */
+	public CanvasMarkRenderer(Context2d context, double width, double height) {
+		this(context, width, height, DEFAULT_CELL_SIZE);
+	}
+
+	/**
+	 * @param context
+	 *            the context of the canvas
+	 * @param width
+	 *            the width of the canvas in pixels
+	 * @param height
+	 *            the height of the canvas in pixels
+	 * @param cellSize
+	 *            the cell size of the spatial index in pixels
+	 */
+	public CanvasMarkRenderer(Context2d context, double width, double height, double cellSize) {
+		this.context = context;
+		this.width = width;
+		this.height = height;
+		grid = new SpatialGrid(width, height, cellSize);
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Adds filled circles
+	 *
+	 * @param cx
+	 *            the x coordinates of the centers in pixels
+	 * @param cy
+	 *            the y coordinates of the centers in pixels
+	 * @param radius
+	 *            the radius of all circles in pixels
+	 * @param colorIndices
+	 *            the indices of the colors in the color lookup table
+	 * @return the index of the first added mark
+	 */
+	public int addCircles(double[] cx, double[] cy, double radius, int[] colorIndices) {
+		double[] radii = new double[cx.length];
+		Arrays.fill(radii, radius);
+		return addCircles(cx, cy, radii, colorIndices);
+	}
+
+	/**
+	 * Adds filled circles with individual radii, see
+	 * {@link #addCircles(double[], double[], double, int[])}
+	 */
+	public int addCircles(double[] cx, double[] cy, double[] radii, int[] colorIndices) {
+		return addMarks(CIRCLE, cx, cy, radii, radii, colorIndices);
+	}
+
+	/**
+	 * Adds filled rectangles
+	 *
+	 * @param x
+	 *            the x coordinates of the upper left corners in pixels
+	 * @param y
+	 *            the y coordinates of the upper left corners in pixels
+	 * @param widths
+	 * @param heights
+	 * @param colorIndices
+	 *            the indices of the colors in the color lookup table
+	 * @return the index of the first added mark
+	 */
+	public int addRects(double[] x, double[] y, double[] widths, double[] heights, int[] colorIndices) {
+		return addMarks(RECT, x, y, widths, heights, colorIndices);
+	}
+
+	/**
+	 * Adds stroked line segments from (x1, y1) to (x2, y2)
+	 *
+	 * @param colorIndices
+	 *            the indices of the colors in the color lookup table
+	 * @return the index of the first added mark
+	 */
+	public int addLines(double[] x1, double[] y1, double[] x2, double[] y2, int[] colorIndices) {
+		return addMarks(LINE, x1, y1, x2, y2, colorIndices);
+	}
+
+	/**
+	 * Removes all marks
+	 */
+	public void clearMarks() {
+		numberOfMarks = 0;
+		isUploadNeeded = true;
+		isIndexValid = false;
+	}
+
+	/**
+	 * Changes the color of the given mark; only the region of the mark is
+	 * redrawn on the next render
+	 */
+	public void setColorIndex(int mark, int colorIndex) {
+		checkMark(mark);
+		checkColorIndex(colorIndex);
+		if (colorIndices[mark] == colorIndex) {
+			return;
+		}
+		colorIndices[mark] = colorIndex;
+		markChanged(mark);
+	}
+
+	/**
+	 * Changes the color of the given marks, e.g. to highlight the marks of a
+	 * brush selection
+	 */
+	public void setColorIndex(int[] marks, int colorIndex) {
+		checkColorIndex(colorIndex);
+		for (int mark : marks) {
+			setColorIndex(mark, colorIndex);
+		}
+	}
+
+	/**
+	 * Moves the given mark: the center of a circle, the upper left corner of a
+	 * rectangle or the start point of a line (the end point is moved by the
+	 * same offset)
+	 */
+	public void setPosition(int mark, double x, double y) {
+		checkMark(mark);
+		addDirtyRegion(mark);
+		if (shapes[mark] == LINE) {
+			c[mark] += x - a[mark];
+			d[mark] += y - b[mark];
+		}
+		a[mark] = x;
+		b[mark] = y;
+		updateBounds(mark);
+		isIndexValid = false;
+		markChanged(mark);
+	}
+
+	/**
+	 * Marks the complete canvas as dirty
+	 */
+	public void invalidate() {
+		isFullRedrawNeeded = true;
+	}
+
+	/**
+	 * Transfers the changes and redraws the dirty regions (or the complete
+	 * canvas) with a single call
+	 *
+	 * @return the number of drawn marks
+	 */
+	public int render() {
+		JsEngine engine = context.getJsEngine();
+		ScriptTemplateCache templateCache = ScriptTemplateCache.forEngine(engine);
+		if (isUploadNeeded) {
+			state = upload(templateCache);
+			isUploadNeeded = false;
+			isFullRedrawNeeded = true;
+			changedMarks.clear();
+		}
+
+		int numberOfChangedMarks = changedMarks.cardinality();
+		int[] patchIndices = new int[numberOfChangedMarks];
+		double[] patchValues = new double[PATCH_SIZE * numberOfChangedMarks];
+		int patchIndex = 0;
+		for (int mark = changedMarks.nextSetBit(0); mark >= 0; mark = changedMarks.nextSetBit(mark + 1)) {
+			patchIndices[patchIndex] = mark;
+			int offset = PATCH_SIZE * patchIndex;
+			patchValues[offset] = a[mark];
+			patchValues[offset + 1] = b[mark];
+			patchValues[offset + 2] = c[mark];
+			patchValues[offset + 3] = d[mark];
+			patchValues[offset + 4] = colorIndices[mark];
+			patchIndex++;
+		}
+		changedMarks.clear();
+
+		mergeDirtyRegions();
+		boolean isFullRedraw = isFullRedrawNeeded || getDirtyArea() > FULL_REDRAW_RATIO * width * height;
+		boolean isClean = !isFullRedraw && numberOfDirtyRegions == 0;
+		if (isClean && numberOfChangedMarks == 0) {
+			return 0;
+		}
+
+		String encodedRegions = "";
+		String encodedOrder = "";
+		String encodedOrderOffsets = "";
+		if (!isFullRedraw) {
+			ensureIndex();
+			int[] orderOffsets = new int[numberOfDirtyRegions + 1];
+			int[][] regionMarks = new int[numberOfDirtyRegions][];
+			for (int region = 0; region < numberOfDirtyRegions; region++) {
+				regionMarks[region] = sortByDrawingOrder(queryRegion(region));
+				orderOffsets[region + 1] = orderOffsets[region] + regionMarks[region].length;
+			}
+			int[] order = new int[orderOffsets[numberOfDirtyRegions]];
+			for (int region = 0; region < numberOfDirtyRegions; region++) {
+				System.arraycopy(regionMarks[region], 0, order, orderOffsets[region], regionMarks[region].length);
+			}
+			encodedRegions = TypedArrays.encode(dirtyRegions, 4 * numberOfDirtyRegions);
+			encodedOrder = TypedArrays.encode(order);
+			encodedOrderOffsets = TypedArrays.encode(orderOffsets);
+		}
+
+		isFullRedrawNeeded = false;
+		numberOfDirtyRegions = 0;
+
+		Object result = templateCache.invoke(context.getJsObject(), DRAW_TEMPLATE, state,
+				TypedArrays.encode(patchIndices), TypedArrays.encode(patchValues), isFullRedraw, encodedRegions,
+				encodedOrder, encodedOrderOffsets, lineWidth, width, height);
+		return ((Number) result).intValue();
+	}
+
+	/**
+	 * Returns the topmost mark at the given position or -1
+	 */
+	public int pick(double x, double y) {
+		return pick(x, y, 0);
+	}
+
+	/**
+	 * Returns the topmost mark whose shape is at most the given tolerance (in
+	 * pixels) away from the given position or -1, e.g. for tooltips
+	 */
+	public int pick(double x, double y, double tolerance) {
+		ensureIndex();
+		int[] candidates = grid.query(x - tolerance, y - tolerance, x + tolerance, y + tolerance);
+		int topmostMark = -1;
+		for (int mark : candidates) {
+			boolean isHit = contains(mark, x, y, tolerance);
+			boolean isAbove = topmostMark < 0 || compareDrawingOrder(mark, topmostMark) > 0;
+			if (isHit && isAbove) {
+				topmostMark = mark;
+			}
+		}
+		return topmostMark;
+	}
+
+	/**
+	 * Returns the marks whose bounds intersect the given rectangle (in
+	 * ascending order), e.g. for brushing
+	 */
+	public int[] pickAll(double x0, double y0, double x1, double y1) {
+		ensureIndex();
+		return grid.query(x0, y0, x1, y1);
+	}
+
+	private int addMarks(byte shape, double[] aValues, double[] bValues, double[] cValues, double[] dValues,
+			int[] colorIndexValues) {
+		int numberOfNewMarks = aValues.length;
+		checkLength(numberOfNewMarks, bValues);
+		checkLength(numberOfNewMarks, cValues);
+		checkLength(numberOfNewMarks, dValues);
+		if (colorIndexValues.length != numberOfNewMarks) {
+			throwLengthMismatch(numberOfNewMarks, colorIndexValues.length);
+		}
+
+		int firstMark = numberOfMarks;
+		ensureCapacity(numberOfMarks + numberOfNewMarks);
+		Arrays.fill(shapes, firstMark, firstMark + numberOfNewMarks, shape);
+		System.arraycopy(aValues, 0, a, firstMark, numberOfNewMarks);
+		System.arraycopy(bValues, 0, b, firstMark, numberOfNewMarks);
+		System.arraycopy(cValues, 0, c, firstMark, numberOfNewMarks);
+		System.arraycopy(dValues, 0, d, firstMark, numberOfNewMarks);
+		System.arraycopy(colorIndexValues, 0, colorIndices, firstMark, numberOfNewMarks);
+		numberOfMarks += numberOfNewMarks;
+		for (int mark = firstMark; mark < numberOfMarks; mark++) {
+			updateBounds(mark);
+		}
+
+		isUploadNeeded = true;
+		isIndexValid = false;
+		return firstMark;
+	}
+
+	private JsObject upload(ScriptTemplateCache templateCache) {
+		if (colorLookupTable == null) {
+			throw new IllegalStateException("Please set a color lookup table before rendering the marks.");
+		}
+		int numberOfColors = colorLookupTable.size();
+		for (int mark = 0; mark < numberOfMarks; mark++) {
+			boolean isValid = colorIndices[mark] >= 0 && colorIndices[mark] < numberOfColors;
+			if (!isValid) {
+				String message = "The color index " + colorIndices[mark] + " of mark " + mark
+						+ " is not in the color lookup table of size " + numberOfColors + ".";
+				throw new IllegalStateException(message);
+			}
+		}
+		Object result = templateCache.invoke(context.getJsObject(), UPLOAD_TEMPLATE, //
+				TypedArrays.encode(shapes, numberOfMarks), //
+				TypedArrays.encode(a, numberOfMarks), //
+				TypedArrays.encode(b, numberOfMarks), //
+				TypedArrays.encode(c, numberOfMarks), //
+				TypedArrays.encode(d, numberOfMarks), //
+				TypedArrays.encode(Arrays.copyOf(colorIndices, numberOfMarks)), //
+				TypedArrays.packStrings(colorLookupTable.getColors()));
+		return (JsObject) result;
+	}
+
+	private void markChanged(int mark) {
+		if (isUploadNeeded) {
+			return;
+		}
+		changedMarks.set(mark);
+		addDirtyRegion(mark);
+	}
+
+	private void addDirtyRegion(int mark) {
+		if (isUploadNeeded || isFullRedrawNeeded) {
+			return;
+		}
+		double x0 = Math.max(0, Math.floor(left[mark]) - 1);
+		double y0 = Math.max(0, Math.floor(top[mark]) - 1);
+		double x1 = Math.min(width, Math.ceil(right[mark]) + 1);
+		double y1 = Math.min(height, Math.ceil(bottom[mark]) + 1);
+		boolean isVisible = x1 > x0 && y1 > y0;
+		if (!isVisible) {
+			return;
+		}
+		if (numberOfDirtyRegions == MAX_NUMBER_OF_DIRTY_REGIONS) {
+			mergeDirtyRegions();
+		}
+		if (numberOfDirtyRegions == MAX_NUMBER_OF_DIRTY_REGIONS) {
+			collapseDirtyRegions();
+		}
+		int offset = 4 * numberOfDirtyRegions;
+		dirtyRegions[offset] = x0;
+		dirtyRegions[offset + 1] = y0;
+		dirtyRegions[offset + 2] = x1 - x0;
+		dirtyRegions[offset + 3] = y1 - y0;
+		numberOfDirtyRegions++;
+	}
+
+	/**
+	 * Merges overlapping dirty regions until all regions are disjoint
+	 */
+	private void mergeDirtyRegions() {
+		boolean hasMerged = true;
+		while (hasMerged) {
+			hasMerged = false;
+			for (int first = 0; first < numberOfDirtyRegions && !hasMerged; first++) {
+				for (int second = first + 1; second < numberOfDirtyRegions && !hasMerged; second++) {
+					if (regionsIntersect(first, second)) {
+						uniteRegions(first, second);
+						removeRegion(second);
+						hasMerged = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces all dirty regions by their bounding box
+	 */
+	private void collapseDirtyRegions() {
+		for (int region = numberOfDirtyRegions - 1; region > 0; region--) {
+			uniteRegions(0, region);
+		}
+		numberOfDirtyRegions = Math.min(numberOfDirtyRegions, 1);
+	}
+
+	private boolean regionsIntersect(int first, int second) {
+		int i = 4 * first;
+		int j = 4 * second;
+		return dirtyRegions[i] <= dirtyRegions[j] + dirtyRegions[j + 2]
+				&& dirtyRegions[j] <= dirtyRegions[i] + dirtyRegions[i + 2]
+				&& dirtyRegions[i + 1] <= dirtyRegions[j + 1] + dirtyRegions[j + 3]
+				&& dirtyRegions[j + 1] <= dirtyRegions[i + 1] + dirtyRegions[i + 3];
+	}
+
+	/**
+	 * Extends the first region to the bounding box of both regions
+	 */
+	private void uniteRegions(int first, int second) {
+		int i = 4 * first;
+		int j = 4 * second;
+		double x0 = Math.min(dirtyRegions[i], dirtyRegions[j]);
+		double y0 = Math.min(dirtyRegions[i + 1], dirtyRegions[j + 1]);
+		double x1 = Math.max(dirtyRegions[i] + dirtyRegions[i + 2], dirtyRegions[j] + dirtyRegions[j + 2]);
+		double y1 = Math.max(dirtyRegions[i + 1] + dirtyRegions[i + 3], dirtyRegions[j + 1] + dirtyRegions[j + 3]);
+		dirtyRegions[i] = x0;
+		dirtyRegions[i + 1] = y0;
+		dirtyRegions[i + 2] = x1 - x0;
+		dirtyRegions[i + 3] = y1 - y0;
+	}
+
+	private void removeRegion(int region) {
+		int lastRegion = numberOfDirtyRegions - 1;
+		System.arraycopy(dirtyRegions, 4 * lastRegion, dirtyRegions, 4 * region, 4);
+		numberOfDirtyRegions--;
+	}
+
+	private double getDirtyArea() {
+		double area = 0;
+		for (int region = 0; region < numberOfDirtyRegions; region++) {
+			area += dirtyRegions[4 * region + 2] * dirtyRegions[4 * region + 3];
+		}
+		return area;
+	}
+
+	private int[] queryRegion(int region) {
+		int offset = 4 * region;
+		double x = dirtyRegions[offset];
+		double y = dirtyRegions[offset + 1];
+		return grid.query(x, y, x + dirtyRegions[offset + 2], y + dirtyRegions[offset + 3]);
+	}
+
+	/**
+	 * Sorts the given marks by color index and index, which is the order in
+	 * which they are drawn
+	 */
+	private int[] sortByDrawingOrder(int[] marks) {
+		long[] keys = new long[marks.length];
+		for (int index = 0; index < marks.length; index++) {
+			keys[index] = ((long) colorIndices[marks[index]] << 32) | marks[index];
+		}
+		Arrays.sort(keys);
+		int[] sortedMarks = new int[marks.length];
+		for (int index = 0; index < marks.length; index++) {
+			sortedMarks[index] = (int) keys[index];
+		}
+		return sortedMarks;
+	}
+
+	private int compareDrawingOrder(int firstMark, int secondMark) {
+		int colorComparison = Integer.compare(colorIndices[firstMark], colorIndices[secondMark]);
+		if (colorComparison != 0) {
+			return colorComparison;
+		}
+		return Integer.compare(firstMark, secondMark);
+	}
+
+	private boolean contains(int mark, double x, double y, double tolerance) {
+		switch (shapes[mark]) {
+		case CIRCLE:
+			double radius = c[mark] + tolerance;
+			double dx = x - a[mark];
+			double dy = y - b[mark];
+			return dx * dx + dy * dy <= radius * radius;
+		case RECT:
+			double x0 = Math.min(a[mark], a[mark] + c[mark]) - tolerance;
+			double x1 = Math.max(a[mark], a[mark] + c[mark]) + tolerance;
+			double y0 = Math.min(b[mark], b[mark] + d[mark]) - tolerance;
+			double y1 = Math.max(b[mark], b[mark] + d[mark]) + tolerance;
+			return x >= x0 && x <= x1 && y >= y0 && y <= y1;
+		default:
+			double maxDistance = lineWidth / 2 + tolerance;
+			return distanceToSegment(x, y, a[mark], b[mark], c[mark], d[mark]) <= maxDistance;
+		}
+	}
+
+	private static double distanceToSegment(double x, double y, double x1, double y1, double x2, double y2) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double lengthSquared = dx * dx + dy * dy;
+		double t = lengthSquared == 0 ? 0 : ((x - x1) * dx + (y - y1) * dy) / lengthSquared;
+		t = Math.max(0, Math.min(1, t));
+		return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+	}
+
+	private void updateBounds(int mark) {
+		switch (shapes[mark]) {
+		case CIRCLE:
+			left[mark] = a[mark] - c[mark];
+			right[mark] = a[mark] + c[mark];
+			top[mark] = b[mark] - c[mark];
+			bottom[mark] = b[mark] + c[mark];
+			break;
+		case RECT:
+			left[mark] = Math.min(a[mark], a[mark] + c[mark]);
+			right[mark] = Math.max(a[mark], a[mark] + c[mark]);
+			top[mark] = Math.min(b[mark], b[mark] + d[mark]);
+			bottom[mark] = Math.max(b[mark], b[mark] + d[mark]);
+			break;
+		default:
+			double halfLineWidth = lineWidth / 2;
+			left[mark] = Math.min(a[mark], c[mark]) - halfLineWidth;
+			right[mark] = Math.max(a[mark], c[mark]) + halfLineWidth;
+			top[mark] = Math.min(b[mark], d[mark]) - halfLineWidth;
+			bottom[mark] = Math.max(b[mark], d[mark]) + halfLineWidth;
+		}
+	}
+
+	private void ensureIndex() {
+		if (isIndexValid) {
+			return;
+		}
+		grid.build(left, top, right, bottom, numberOfMarks);
+		isIndexValid = true;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= shapes.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, 2 * shapes.length);
+		shapes = Arrays.copyOf(shapes, newCapacity);
+		a = Arrays.copyOf(a, newCapacity);
+		b = Arrays.copyOf(b, newCapacity);
+		c = Arrays.copyOf(c, newCapacity);
+		d = Arrays.copyOf(d, newCapacity);
+		colorIndices = Arrays.copyOf(colorIndices, newCapacity);
+		left = Arrays.copyOf(left, newCapacity);
+		top = Arrays.copyOf(top, newCapacity);
+		right = Arrays.copyOf(right, newCapacity);
+		bottom = Arrays.copyOf(bottom, newCapacity);
+	}
+
+	private void checkMark(int mark) {
+		boolean isValid = mark >= 0 && mark < numberOfMarks;
+		if (!isValid) {
+			throw new IllegalStateException("There is no mark " + mark + ". The number of marks is " + numberOfMarks + ".");
+		}
+	}
+
+	/**
+	 * Checks the given color index against the color lookup table (if it has
+	 * already been set; else the color indices are checked by the next
+	 * render)
+	 */
+	private void checkColorIndex(int colorIndex) {
+		int numberOfColors = colorLookupTable == null ? Integer.MAX_VALUE : colorLookupTable.size();
+		boolean isValid = colorIndex >= 0 && colorIndex < numberOfColors;
+		if (!isValid) {
+			String message = "The color index " + colorIndex + " is not in the color lookup table of size "
+					+ numberOfColors + ".";
+			throw new IllegalStateException(message);
+		}
+	}
+
+	private static void checkLength(int expectedLength, double[] values) {
+		if (values.length != expectedLength) {
+			throwLengthMismatch(expectedLength, values.length);
+		}
+	}
+
+	private static void throwLengthMismatch(int expectedLength, int length) {
+		throw new IllegalStateException("Expected " + expectedLength + " values but got " + length + ".");
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Sets the colors of the marks; the color indices of the marks refer to
+	 * this table
+	 */
+	public CanvasMarkRenderer setColorLookupTable(ColorLookupTable colorLookupTable) {
+		this.colorLookupTable = colorLookupTable;
+		isUploadNeeded = true;
+		return this;
+	}
+
+	public ColorLookupTable getColorLookupTable() {
+		return colorLookupTable;
+	}
+
+	/**
+	 * Sets the line width of the line marks in pixels (default: 1)
+	 */
+	public CanvasMarkRenderer setLineWidth(double lineWidth) {
+		this.lineWidth = lineWidth;
+		for (int mark = 0; mark < numberOfMarks; mark++) {
+			updateBounds(mark);
+		}
+		isIndexValid = false;
+		isFullRedrawNeeded = true;
+		return this;
+	}
+
+	public double getLineWidth() {
+		return lineWidth;
+	}
+
+	public int getNumberOfMarks() {
+		return numberOfMarks;
+	}
+
+	/**
+	 * Returns the current color index of the given mark
+	 */
+	public int getColorIndex(int mark) {
+		checkMark(mark);
+		return colorIndices[mark];
+	}
+
+	/**
+	 * Returns the bounds of the given mark as x, y, width and height
+	 */
+	public double[] getBounds(int mark) {
+		checkMark(mark);
+		return new double[] { left[mark], top[mark], right[mark] - left[mark], bottom[mark] - top[mark] };
+	}
+
+	//#end region
+
+}
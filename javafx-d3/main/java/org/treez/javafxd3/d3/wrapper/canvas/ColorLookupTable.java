@@ -0,0 +1,119 @@
+package org.treez.javafxd3.d3.wrapper.canvas;
+
+import org.treez.javafxd3.d3.scales.Scale;
+
+/**
+ * A fixed number of colors that are sampled once from a color scale over a
+ * numeric domain. Values are mapped to color indices in Java, so that
+ * rendering large data sets does not need one scale call per value, see
+ * {@link CanvasMarkRenderer}.
+ */
+public class ColorLookupTable {
+
+	//#region ATTRIBUTES
+
+	private final String[] colors;
+
+	private final double min;
+
+	private final double max;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	/**
+	 * @param colors
+	 *            the colors; the first color corresponds to min and the last
+	 *            color to max
+	 * @param min
+	 * @param max
+	 */
+	public ColorLookupTable(String[] colors, double min, double max) {
+		if (colors.length == 0) {
+			throw new IllegalStateException("The color lookup table needs at least one color.");
+		}
+		this.colors = colors.clone();
+		this.min = min;
+		this.max = max;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Samples the given color scale at the given number of equidistant values
+	 * from min to max with a single call
+	 */
+	public static ColorLookupTable fromScale(Scale<?> colorScale, double min, double max, int size) {
+		if (size < 1) {
+			throw new IllegalStateException("The size of the color lookup table must be positive but is " + size + ".");
+		}
+		double[] values = new double[size];
+		for (int index = 0; index < size; index++) {
+			values[index] = size == 1 ? min : min + (max - min) * index / (size - 1);
+		}
+		String[] colors = colorScale.applyForStrings(values);
+		return new ColorLookupTable(colors, min, max);
+	}
+
+	/**
+	 * Returns the index of the color of the given value; values outside of
+	 * the domain are clamped and NaN is mapped to the first color
+	 */
+	public int indexOf(double value) {
+		int lastIndex = colors.length - 1;
+		double relativeValue = (value - min) / (max - min);
+		boolean isInvalid = Double.isNaN(relativeValue);
+		if (isInvalid || relativeValue <= 0) {
+			return 0;
+		}
+		if (relativeValue >= 1) {
+			return lastIndex;
+		}
+		return (int) Math.round(relativeValue * lastIndex);
+	}
+
+	/**
+	 * Returns the color indices of all given values, see
+	 * {@link #indexOf(double)}
+	 */
+	public int[] indicesOf(double[] values) {
+		int[] indices = new int[values.length];
+		for (int index = 0; index < values.length; index++) {
+			indices[index] = indexOf(values[index]);
+		}
+		return indices;
+	}
+
+	/**
+	 * Returns the color of the given value
+	 */
+	public String colorOf(double value) {
+		return colors[indexOf(value)];
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	public String[] getColors() {
+		return colors.clone();
+	}
+
+	public int size() {
+		return colors.length;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,346 @@
+package org.treez.javafxd3.d3.wrapper.canvas;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.treez.javafxd3.d3.arrays.TypedArrays;
+import org.treez.javafxd3.d3.core.ScriptTemplateCache;
+
+/**
+ * Records drawing commands for a {@link Context2d} in Java and replays them
+ * with a single call. Instead of one call per moveTo, lineTo, stroke, style
+ * change etc., the commands are appended as opcodes (byte buffer) and
+ * operands (double buffer) and styles are collected in a string table. On
+ * {@link #flush()}, the buffers are transferred as encoded typed arrays and a
+ * small JavaScript interpreter replays them on the context. The buffers are
+ * reused for the next frame, e.g.
+ *
+ * <pre>
+ * Context2dRecorder recorder = new Context2dRecorder(context);
+ * ...
+ * recorder.setStrokeStyle("#ff0000");
+ * recorder.drawPolyline(xy);
+ * recorder.flush();
+ * </pre>
+ *
+ * Long polylines should be drawn with {@link #drawPolyline(double[])}, which
+ * needs one opcode for the whole line.
+ */
+public class Context2dRecorder {
+
+	//#region ATTRIBUTES
+
+	private static final byte SAVE = 0;
+
+	private static final byte RESTORE = 1;
+
+	private static final byte TRANSLATE = 2;
+
+	private static final byte SCALE = 3;
+
+	private static final byte ROTATE = 4;
+
+	private static final byte BEGIN_PATH = 5;
+
+	private static final byte CLOSE_PATH = 6;
+
+	private static final byte MOVE_TO = 7;
+
+	private static final byte LINE_TO = 8;
+
+	private static final byte STROKE = 9;
+
+	private static final byte FILL = 10;
+
+	private static final byte FILL_RECT = 11;
+
+	private static final byte STROKE_RECT = 12;
+
+	private static final byte CLEAR_RECT = 13;
+
+	private static final byte LINE_WIDTH = 14;
+
+	private static final byte GLOBAL_ALPHA = 15;
+
+	private static final byte FILL_STYLE = 16;
+
+	private static final byte STROKE_STYLE = 17;
+
+	private static final byte GLOBAL_COMPOSITE_OPERATION = 18;
+
+	private static final byte POLYLINE = 19;
+
+	/**
+	 * Replays the recorded commands on the context (this) and returns the
+	 * number of replayed commands
+	 */
+	private static final String REPLAY_TEMPLATE = "function(encodedOpcodes, encodedOperands, packedStrings){" //
+			+ "  var decode = " + TypedArrays.DECODER_FUNCTION + ";" //
+			+ "  var opcodes = decode(encodedOpcodes, 'Uint8');" //
+			+ "  var v = decode(encodedOperands, 'Float64');" //
+			+ "  var strings = (" + TypedArrays.STRING_UNPACKER_FUNCTION + ")(packedStrings);" //
+			+ "  var context = this;" //
+			+ "  var p = 0;" //
+			+ "  for(var index = 0; index < opcodes.length; index++){" //
+			+ "    switch(opcodes[index]){" //
+			+ "      case " + SAVE + ": context.save(); break;" //
+			+ "      case " + RESTORE + ": context.restore(); break;" //
+			+ "      case " + TRANSLATE + ": context.translate(v[p], v[p + 1]); p += 2; break;" //
+			+ "      case " + SCALE + ": context.scale(v[p], v[p + 1]); p += 2; break;" //
+			+ "      case " + ROTATE + ": context.rotate(v[p++]); break;" //
+			+ "      case " + BEGIN_PATH + ": context.beginPath(); break;" //
+			+ "      case " + CLOSE_PATH + ": context.closePath(); break;" //
+			+ "      case " + MOVE_TO + ": context.moveTo(v[p], v[p + 1]); p += 2; break;" //
+			+ "      case " + LINE_TO + ": context.lineTo(v[p], v[p + 1]); p += 2; break;" //
+			+ "      case " + STROKE + ": context.stroke(); break;" //
+			+ "      case " + FILL + ": context.fill(); break;" //
+			+ "      case " + FILL_RECT + ": context.fillRect(v[p], v[p + 1], v[p + 2], v[p + 3]); p += 4; break;" //
+			+ "      case " + STROKE_RECT + ": context.strokeRect(v[p], v[p + 1], v[p + 2], v[p + 3]); p += 4; break;" //
+			+ "      case " + CLEAR_RECT + ": context.clearRect(v[p], v[p + 1], v[p + 2], v[p + 3]); p += 4; break;" //
+			+ "      case " + LINE_WIDTH + ": context.lineWidth = v[p++]; break;" //
+			+ "      case " + GLOBAL_ALPHA + ": context.globalAlpha = v[p++]; break;" //
+			+ "      case " + FILL_STYLE + ": context.fillStyle = strings[v[p++]]; break;" //
+			+ "      case " + STROKE_STYLE + ": context.strokeStyle = strings[v[p++]]; break;" //
+			+ "      case " + GLOBAL_COMPOSITE_OPERATION + ": context.globalCompositeOperation = strings[v[p++]]; break;" //
+			+ "      case " + POLYLINE + ":" //
+			+ "        var numberOfPoints = v[p++];" //
+			+ "        context.beginPath();" //
+			+ "        if(numberOfPoints > 0){" //
+			+ "          context.moveTo(v[p], v[p + 1]);" //
+			+ "          for(var point = 1; point < numberOfPoints; point++){" //
+			+ "            context.lineTo(v[p + 2 * point], v[p + 2 * point + 1]);" //
+			+ "          }" //
+			+ "        }" //
+			+ "        p += 2 * numberOfPoints;" //
+			+ "        context.stroke();" //
+			+ "        break;" //
+			+ "      default:" //
+			+ "        throw new Error('Unknown canvas opcode ' + opcodes[index]);" //
+			+ "    }" //
+			+ "  }" //
+			+ "  return opcodes.length;" //
+			+ "}";
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final Context2d context;
+
+	private byte[] opcodes = new byte[INITIAL_CAPACITY];
+
+	private int numberOfOpcodes = 0;
+
+	private double[] operands = new double[INITIAL_CAPACITY];
+
+	private int numberOfOperands = 0;
+
+	/**
+	 * The strings (styles) of the current frame and their indices
+	 */
+	private final List<String> strings = new ArrayList<>();
+
+	private final Map<String, Integer> stringIndices = new HashMap<>();
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public Context2dRecorder(Context2d context) {
+		this.context = context;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Replays the recorded commands on the context with a single call and
+	 * clears the buffers
+	 *
+	 * @return the number of replayed commands
+	 */
+	public int flush() {
+		int numberOfCommands = numberOfOpcodes;
+		if (numberOfCommands == 0) {
+			return 0;
+		}
+		String encodedOpcodes = TypedArrays.encode(opcodes, numberOfOpcodes);
+		String encodedOperands = TypedArrays.encode(operands, numberOfOperands);
+		String packedStrings = TypedArrays.packStrings(strings.toArray(new String[strings.size()]));
+		clear();
+		ScriptTemplateCache.forEngine(context.getJsEngine()).invoke(context.getJsObject(), REPLAY_TEMPLATE,
+				encodedOpcodes, encodedOperands, packedStrings);
+		return numberOfCommands;
+	}
+
+	/**
+	 * Discards the recorded commands
+	 */
+	public void clear() {
+		numberOfOpcodes = 0;
+		numberOfOperands = 0;
+		strings.clear();
+		stringIndices.clear();
+	}
+
+	public Context2dRecorder save() {
+		return add(SAVE);
+	}
+
+	public Context2dRecorder restore() {
+		return add(RESTORE);
+	}
+
+	public Context2dRecorder translate(double x, double y) {
+		return add(TRANSLATE, x, y);
+	}
+
+	public Context2dRecorder scale(double x, double y) {
+		return add(SCALE, x, y);
+	}
+
+	/**
+	 * @param angle
+	 *            the rotation angle in radians
+	 */
+	public Context2dRecorder rotate(double angle) {
+		return add(ROTATE, angle);
+	}
+
+	public Context2dRecorder beginPath() {
+		return add(BEGIN_PATH);
+	}
+
+	public Context2dRecorder closePath() {
+		return add(CLOSE_PATH);
+	}
+
+	public Context2dRecorder moveTo(double x, double y) {
+		return add(MOVE_TO, x, y);
+	}
+
+	public Context2dRecorder lineTo(double x, double y) {
+		return add(LINE_TO, x, y);
+	}
+
+	public Context2dRecorder stroke() {
+		return add(STROKE);
+	}
+
+	public Context2dRecorder fill() {
+		return add(FILL);
+	}
+
+	public Context2dRecorder fillRect(double x, double y, double width, double height) {
+		return add(FILL_RECT, x, y, width, height);
+	}
+
+	public Context2dRecorder strokeRect(double x, double y, double width, double height) {
+		return add(STROKE_RECT, x, y, width, height);
+	}
+
+	public Context2dRecorder clearRect(double x, double y, double width, double height) {
+		return add(CLEAR_RECT, x, y, width, height);
+	}
+
+	public Context2dRecorder setLineWidth(double value) {
+		return add(LINE_WIDTH, value);
+	}
+
+	public Context2dRecorder setGlobalAlpha(double value) {
+		return add(GLOBAL_ALPHA, value);
+	}
+
+	public Context2dRecorder setFillStyle(String value) {
+		return add(FILL_STYLE, indexOf(value));
+	}
+
+	public Context2dRecorder setStrokeStyle(String value) {
+		return add(STROKE_STYLE, indexOf(value));
+	}
+
+	public Context2dRecorder setGlobalCompositeOperation(String value) {
+		return add(GLOBAL_COMPOSITE_OPERATION, indexOf(value));
+	}
+
+	/**
+	 * Strokes a polyline with the current stroke style: begins a new path,
+	 * moves to the first point, draws lines to the other points and strokes
+	 * the path
+	 *
+	 * @param xy
+	 *            the coordinates of the points: x0, y0, x1, y1, ...
+	 */
+	public Context2dRecorder drawPolyline(double[] xy) {
+		return drawPolyline(xy, xy.length / 2);
+	}
+
+	/**
+	 * Strokes a polyline through the first points of the given coordinates,
+	 * see {@link #drawPolyline(double[])}
+	 *
+	 * @param xy
+	 *            the coordinates of the points: x0, y0, x1, y1, ...
+	 * @param numberOfPoints
+	 *            the number of points to use
+	 */
+	public Context2dRecorder drawPolyline(double[] xy, int numberOfPoints) {
+		int numberOfCoordinates = 2 * numberOfPoints;
+		addOpcode(POLYLINE);
+		ensureOperandCapacity(numberOfCoordinates + 1);
+		operands[numberOfOperands++] = numberOfPoints;
+		System.arraycopy(xy, 0, operands, numberOfOperands, numberOfCoordinates);
+		numberOfOperands += numberOfCoordinates;
+		return this;
+	}
+
+	private Context2dRecorder add(byte opcode, double... values) {
+		addOpcode(opcode);
+		ensureOperandCapacity(values.length);
+		for (double value : values) {
+			operands[numberOfOperands++] = value;
+		}
+		return this;
+	}
+
+	private void addOpcode(byte opcode) {
+		if (numberOfOpcodes == opcodes.length) {
+			opcodes = Arrays.copyOf(opcodes, 2 * opcodes.length);
+		}
+		opcodes[numberOfOpcodes++] = opcode;
+	}
+
+	private void ensureOperandCapacity(int numberOfAdditionalOperands) {
+		int requiredCapacity = numberOfOperands + numberOfAdditionalOperands;
+		if (requiredCapacity > operands.length) {
+			operands = Arrays.copyOf(operands, Math.max(requiredCapacity, 2 * operands.length));
+		}
+	}
+
+	private int indexOf(String value) {
+		Integer index = stringIndices.get(value);
+		if (index == null) {
+			index = strings.size();
+			strings.add(value);
+			stringIndices.put(value, index);
+		}
+		return index;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the number of commands that have been recorded since the last
+	 * flush
+	 */
+	public int getNumberOfCommands() {
+		return numberOfOpcodes;
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,213 @@
+package org.treez.javafxd3.d3.wrapper.canvas;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over a rectangular area that indexes items by their bounding
+ * boxes, e.g. for hit testing of the marks of a {@link CanvasMarkRenderer}.
+ * The grid is built in linear time and stores the item indices of all cells in
+ * a single array (cell start offsets and cell items), so that a build for
+ * hundreds of thousands of items does not create objects per item or cell.
+ * <p>
+ * Items whose bounding box lies completely outside of the area or has NaN
+ * coordinates are not indexed. The bounding box arrays are kept by reference
+ * and must be rebuilt after they have been changed.
+ */
+public class SpatialGrid {
+
+	//#region ATTRIBUTES
+
+	private final double width;
+
+	private final double height;
+
+	private final double cellSize;
+
+	private final int numberOfColumns;
+
+	private final int numberOfRows;
+
+	/**
+	 * The offsets of the cells in the cell items; the items of cell k are
+	 * stored from cellStarts[k] to cellStarts[k + 1]
+	 */
+	private final int[] cellStarts;
+
+	private int[] cellItems = new int[0];
+
+	private double[] left = new double[0];
+
+	private double[] top = new double[0];
+
+	private double[] right = new double[0];
+
+	private double[] bottom = new double[0];
+
+	private int numberOfItems = 0;
+
+	/**
+	 * The number of the query that found an item last; is used to avoid
+	 * duplicates of items that span several cells
+	 */
+	private int[] stamps = new int[0];
+
+	private int stamp = 0;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public SpatialGrid(double width, double height, double cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalStateException("The cell size must be positive but is " + cellSize + ".");
+		}
+		this.width = width;
+		this.height = height;
+		this.cellSize = cellSize;
+		numberOfColumns = Math.max(1, (int) Math.ceil(width / cellSize));
+		numberOfRows = Math.max(1, (int) Math.ceil(height / cellSize));
+		cellStarts = new int[numberOfColumns * numberOfRows + 1];
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Indexes the items with the given bounding boxes
+	 *
+	 * @param left
+	 * @param top
+	 * @param right
+	 * @param bottom
+	 * @param numberOfItems
+	 *            the number of items; the arrays might be larger
+	 */
+	public void build(double[] left, double[] top, double[] right, double[] bottom, int numberOfItems) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+		this.numberOfItems = numberOfItems;
+
+		Arrays.fill(cellStarts, 0);
+		int numberOfEntries = 0;
+		for (int item = 0; item < numberOfItems; item++) {
+			if (!isIndexed(item)) {
+				continue;
+			}
+			for (int row = row(top[item]); row <= row(bottom[item]); row++) {
+				for (int column = column(left[item]); column <= column(right[item]); column++) {
+					cellStarts[row * numberOfColumns + column + 1]++;
+					numberOfEntries++;
+				}
+			}
+		}
+		for (int cell = 1; cell < cellStarts.length; cell++) {
+			cellStarts[cell] += cellStarts[cell - 1];
+		}
+
+		if (cellItems.length < numberOfEntries) {
+			cellItems = new int[numberOfEntries];
+		}
+		int[] nextPositions = Arrays.copyOf(cellStarts, cellStarts.length - 1);
+		for (int item = 0; item < numberOfItems; item++) {
+			if (!isIndexed(item)) {
+				continue;
+			}
+			for (int row = row(top[item]); row <= row(bottom[item]); row++) {
+				for (int column = column(left[item]); column <= column(right[item]); column++) {
+					cellItems[nextPositions[row * numberOfColumns + column]++] = item;
+				}
+			}
+		}
+
+		if (stamps.length < numberOfItems) {
+			stamps = new int[numberOfItems];
+			stamp = 0;
+		}
+	}
+
+	/**
+	 * Returns the indices of the items whose bounding boxes intersect the
+	 * given rectangle (in ascending order)
+	 */
+	public int[] query(double x0, double y0, double x1, double y1) {
+		double minX = Math.min(x0, x1);
+		double maxX = Math.max(x0, x1);
+		double minY = Math.min(y0, y1);
+		double maxY = Math.max(y0, y1);
+		boolean isOutside = maxX < 0 || maxY < 0 || minX > width || minY > height;
+		if (isOutside || numberOfItems == 0) {
+			return new int[0];
+		}
+
+		nextStamp();
+		int[] result = new int[16];
+		int numberOfResults = 0;
+		for (int row = row(minY); row <= row(maxY); row++) {
+			for (int column = column(minX); column <= column(maxX); column++) {
+				int cell = row * numberOfColumns + column;
+				for (int position = cellStarts[cell]; position < cellStarts[cell + 1]; position++) {
+					int item = cellItems[position];
+					boolean isDuplicate = stamps[item] == stamp;
+					if (isDuplicate) {
+						continue;
+					}
+					stamps[item] = stamp;
+					boolean intersects = left[item] <= maxX && right[item] >= minX && top[item] <= maxY
+							&& bottom[item] >= minY;
+					if (!intersects) {
+						continue;
+					}
+					if (numberOfResults == result.length) {
+						result = Arrays.copyOf(result, 2 * result.length);
+					}
+					result[numberOfResults++] = item;
+				}
+			}
+		}
+		int[] items = Arrays.copyOf(result, numberOfResults);
+		Arrays.sort(items);
+		return items;
+	}
+
+	private boolean isIndexed(int item) {
+		boolean isOutside = right[item] < 0 || bottom[item] < 0 || left[item] > width || top[item] > height;
+		boolean isNaN = Double.isNaN(left[item] + top[item] + right[item] + bottom[item]);
+		return !isOutside && !isNaN;
+	}
+
+	private void nextStamp() {
+		stamp++;
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+	}
+
+	private int column(double x) {
+		int column = (int) Math.floor(x / cellSize);
+		return Math.max(0, Math.min(numberOfColumns - 1, column));
+	}
+
+	private int row(double y) {
+		int row = (int) Math.floor(y / cellSize);
+		return Math.max(0, Math.min(numberOfRows - 1, row));
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	public int getNumberOfItems() {
+		return numberOfItems;
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	//#end region
+
+}
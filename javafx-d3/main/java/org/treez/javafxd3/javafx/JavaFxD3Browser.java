@@ -19,7 +19,11 @@ import javafx.geometry.VPos;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.layout.Region;
+import org.treez.javafxd3.d3.core.AsyncJsEngine;
+import org.treez.javafxd3.d3.core.CallbackRegistry;
 import org.treez.javafxd3.d3.core.JsEngine;
+import org.treez.javafxd3.d3.core.ListenerRegistry;
+import org.treez.javafxd3.d3.core.ScriptTemplateCache;
 
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
@@ -43,6 +47,18 @@ public class JavaFxD3Browser extends Region {
 	 */
 	private WebEngine engine;
 
+	/**
+	 * Wraps the web engine. There is a single instance per browser so that
+	 * all wrappers share the same batch of recorded operations.
+	 */
+	private JavaFxJsEngine jsEngine;
+
+	/**
+	 * Executes operations that are submitted from other threads on the
+	 * JavaFx application thread
+	 */
+	private AsyncJsEngine asyncJsEngine;
+
 	/**
 	 * The d3 wrapper
 	 */
@@ -264,6 +280,20 @@ public class JavaFxD3Browser extends Region {
 		Platform.runLater(alertRunnable);
 	}
 
+	/**
+	 * Releases all event listeners and callbacks that have been passed to
+	 * JavaScript and unloads the html content. The browser must not be used
+	 * afterwards.
+	 */
+	public void dispose() {
+		if (jsEngine != null) {
+			ListenerRegistry.forEngine(jsEngine).releaseAll();
+			CallbackRegistry.forEngine(jsEngine).releaseAll();
+			ScriptTemplateCache.forEngine(jsEngine).clear();
+		}
+		engine.loadContent("");
+	}
+
 	/**
 	 * Creates the html content that will be initially loaded in the browser
 	 * before executing any JavaScript
@@ -359,7 +389,23 @@ public class JavaFxD3Browser extends Region {
 
 	
 	public JsEngine getJsEngine() {
-		return new JavaFxJsEngine(engine);
+		if (jsEngine == null) {
+			jsEngine = new JavaFxJsEngine(engine);
+		}
+		return jsEngine;
+	}
+
+	/**
+	 * Returns an engine facade that can be used from any thread. The submitted
+	 * operations are executed in order on the JavaFx application thread.
+	 */
+	public AsyncJsEngine getAsyncJsEngine() {
+		synchronized (this) {
+			if (asyncJsEngine == null) {
+				asyncJsEngine = new AsyncJsEngine(getJsEngine(), Platform::runLater, Platform::isFxApplicationThread);
+			}
+			return asyncJsEngine;
+		}
 	}
 
 	
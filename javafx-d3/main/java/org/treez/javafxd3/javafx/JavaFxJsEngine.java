@@ -1,6 +1,12 @@
 package org.treez.javafxd3.javafx;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 import org.treez.javafxd3.d3.core.JsEngine;
+import org.treez.javafxd3.metrics.BridgeMetrics;
+import org.treez.javafxd3.metrics.BridgeOperation;
 
 import javafx.scene.web.WebEngine;
 import netscape.javascript.JSObject;
@@ -11,12 +17,28 @@ public class JavaFxJsEngine implements JsEngine {
 
 	private WebEngine wrappedJsEngine;
 
+	/**
+	 * Collects the operations that are recorded in batch mode
+	 */
+	private JsCommandBuffer commandBuffer;
+
+	/**
+	 * Number of nested batches that have been started and not yet ended
+	 */
+	private int batchDepth = 0;
+
+	/**
+	 * The services that belong to this engine, by their class
+	 */
+	private Map<Class<?>, Object> services = new HashMap<>();
+
 	//#end region
 
 	//#region CONSTRUCTORS
 
 	public JavaFxJsEngine(WebEngine wrappedJsEngine) {
 		this.wrappedJsEngine = wrappedJsEngine;
+		this.commandBuffer = new JsCommandBuffer(wrappedJsEngine);
 	}
 
 	//#end region
@@ -25,8 +47,14 @@ public class JavaFxJsEngine implements JsEngine {
 
 	@Override
 	public Object executeScript(String script) {
-		Object result = wrappedJsEngine.executeScript(script);
-		return JavaFxJsObject.wrapIfIsJSObject(result);
+		long startTime = BridgeMetrics.start();
+		try {
+			flush();
+			Object result = wrappedJsEngine.executeScript(script);
+			return JavaFxJsObject.wrapIfIsJSObject(this, result);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.EXECUTE_SCRIPT, startTime);
+		}
 	}
 
 	@Override
@@ -35,11 +63,58 @@ public class JavaFxJsEngine implements JsEngine {
 		boolean isJSObject = argument instanceof JSObject;
 		if(isJSObject){
 			JSObject jsArgument = (JSObject) argument;
-			return new JavaFxJsObject(jsArgument);
+			return new JavaFxJsObject(this, jsArgument);
 		}
 		return argument;		
 	}
 
+	@Override
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	@Override
+	public void endBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("There is no batch to end.");
+		}
+		batchDepth--;
+		if (batchDepth == 0) {
+			flush();
+		}
+	}
+
+	@Override
+	public boolean isBatching() {
+		return batchDepth > 0;
+	}
+
+	@Override
+	public void flush() {
+		commandBuffer.flush();
+	}
+
+	@Override
+	public <S> S getService(Class<S> serviceClass, Function<JsEngine, S> factory) {
+		Object service = services.get(serviceClass);
+		if (service == null) {
+			service = factory.apply(this);
+			services.put(serviceClass, service);
+		}
+		return serviceClass.cast(service);
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the buffer that records the operations in batch mode
+	 */
+	public JsCommandBuffer getCommandBuffer() {
+		return commandBuffer;
+	}
+
 	//#end region
 
 }
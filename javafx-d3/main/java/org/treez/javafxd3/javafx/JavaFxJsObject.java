@@ -1,6 +1,8 @@
 package org.treez.javafxd3.javafx;
 
 import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.metrics.BridgeMetrics;
+import org.treez.javafxd3.metrics.BridgeOperation;
 import org.w3c.dom.Element;
 
 import netscape.javascript.JSObject;
@@ -10,6 +12,12 @@ public class JavaFxJsObject implements JsObject {
 	//#region ATTRIBUTES
 	
 	private JSObject wrappedJSObject;
+
+	/**
+	 * The engine this object belongs to. Might be null; then the operations
+	 * are never batched.
+	 */
+	private JavaFxJsEngine engine;
 	
 	//#end region
 	
@@ -18,66 +26,134 @@ public class JavaFxJsObject implements JsObject {
 	public JavaFxJsObject(JSObject wrappedJSObject){
 		this.wrappedJSObject = wrappedJSObject;
 	}	
+
+	public JavaFxJsObject(JavaFxJsEngine engine, JSObject wrappedJSObject){
+		this.engine = engine;
+		this.wrappedJSObject = wrappedJSObject;
+	}
 	
 	//#end region
 	
 	//#region METHODS
 	
 	public static Object wrapIfIsJSObject(Object result) {
+		return wrapIfIsJSObject(null, result);
+	}
+
+	public static Object wrapIfIsJSObject(JavaFxJsEngine engine, Object result) {
 		boolean isJSObject = result instanceof JSObject;
 		if(isJSObject){
-			return new JavaFxJsObject((JSObject) result);
+			return new JavaFxJsObject(engine, (JSObject) result);
 		}
 		return result;
 	}
 	
 	@Override
 	public Object call(String methodName, Object... args) {
-		
-		Object[] unwrappedArgs = new Object[args.length];
-		for(int index=0; index < args.length; index++){
-			Object arg = args[index];
-			Object unwrappedArg = unwrapIfIsJsObject(arg);
-			unwrappedArgs[index]= unwrappedArg;			
-		}		
-		
-		Object result = wrappedJSObject.call(methodName, unwrappedArgs);
-		return wrapIfIsJSObject(result);				
+		long startTime = BridgeMetrics.start();
+		try {
+			flushBatch();
+			Object[] unwrappedArgs = unwrapArguments(args);
+			Object result = wrappedJSObject.call(methodName, unwrappedArgs);
+			return wrapIfIsJSObject(engine, result);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.CALL, startTime);
+		}
 	}	
 
+	@Override
+	public void callWithoutResult(String methodName, Object... args) {
+		if (isBatching()) {
+			engine.getCommandBuffer().recordCall(wrappedJSObject, methodName, args);
+			return;
+		}
+		long startTime = BridgeMetrics.start();
+		try {
+			Object[] unwrappedArgs = unwrapArguments(args);
+			wrappedJSObject.call(methodName, unwrappedArgs);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.CALL, startTime);
+		}
+	}
+
 	@Override
 	public Object eval(String command) {
-		Object result = wrappedJSObject.eval(command);
-		return wrapIfIsJSObject(result);	
+		long startTime = BridgeMetrics.start();
+		try {
+			flushBatch();
+			Object result = wrappedJSObject.eval(command);
+			return wrapIfIsJSObject(engine, result);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.EVAL, startTime);
+		}
 	}
 
 	@Override
 	public Object getMember(String name) {
-		Object result = wrappedJSObject.getMember(name);		
-		return wrapIfIsJSObject(result);	
+		long startTime = BridgeMetrics.start();
+		try {
+			flushBatch();
+			Object result = wrappedJSObject.getMember(name);
+			return wrapIfIsJSObject(engine, result);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.GET_MEMBER, startTime);
+		}
 	}
 
 	@Override
 	public void setMember(String name, Object value) {
-		Object valueObj = unwrapIfIsJsObject(value);
-		wrappedJSObject.setMember(name, valueObj);		
+		if (isBatching()) {
+			engine.getCommandBuffer().recordSetMember(wrappedJSObject, name, value);
+			return;
+		}
+		long startTime = BridgeMetrics.start();
+		try {
+			Object valueObj = unwrapIfIsJsObject(value);
+			wrappedJSObject.setMember(name, valueObj);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.SET_MEMBER, startTime);
+		}
 	}	
 
 	@Override
 	public void removeMember(String name) {
-		wrappedJSObject.removeMember(name);			
+		if (isBatching()) {
+			engine.getCommandBuffer().recordRemoveMember(wrappedJSObject, name);
+			return;
+		}
+		long startTime = BridgeMetrics.start();
+		try {
+			wrappedJSObject.removeMember(name);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.REMOVE_MEMBER, startTime);
+		}
 	}
 
 	@Override
 	public Object getSlot(int index) {
-		Object result = wrappedJSObject.getSlot(index);
-		return wrapIfIsJSObject(result);
+		long startTime = BridgeMetrics.start();
+		try {
+			flushBatch();
+			Object result = wrappedJSObject.getSlot(index);
+			return wrapIfIsJSObject(engine, result);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.GET_SLOT, startTime);
+		}
 	}
 
 	@Override
 	public void setSlot(int index, Object value) {
-		Object valueObj = unwrapIfIsJsObject(value);
-		wrappedJSObject.setSlot(index, valueObj);		
+		if (isBatching()) {
+			engine.getCommandBuffer().recordSetSlot(wrappedJSObject, index, value);
+			return;
+		}
+		long startTime = BridgeMetrics.start();
+		try {
+			Object valueObj = unwrapIfIsJsObject(value);
+			wrappedJSObject.setSlot(index, valueObj);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.SET_SLOT, startTime);
+		}
 	}
 	
 	@Override
@@ -85,6 +161,30 @@ public class JavaFxJsObject implements JsObject {
 		return wrappedJSObject;
 	}	
 	
+	private boolean isBatching() {
+		return engine != null && engine.isBatching();
+	}
+
+	/**
+	 * Operations that return a value have to see the effects of all recorded
+	 * operations. Therefore the batch is flushed before they are executed.
+	 */
+	private void flushBatch() {
+		if (engine != null) {
+			engine.flush();
+		}
+	}
+
+	private Object[] unwrapArguments(Object... args) {
+		Object[] unwrappedArgs = new Object[args.length];
+		for(int index=0; index < args.length; index++){
+			Object arg = args[index];
+			Object unwrappedArg = unwrapIfIsJsObject(arg);
+			unwrappedArgs[index]= unwrappedArg;			
+		}
+		return unwrappedArgs;
+	}
+	
 	private Object unwrapIfIsJsObject(Object value) {
 		boolean isJsObject = value instanceof JsObject;
 		if(isJsObject){
@@ -115,6 +215,7 @@ public class JavaFxJsObject implements JsObject {
 	
 	@Override
 	public String toString(){
+		flushBatch();
 		return wrappedJSObject.toString();
 	}
 
@@ -0,0 +1,329 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.metrics.BridgeMetrics;
+import org.treez.javafxd3.metrics.BridgeOperation;
+
+import javafx.application.Platform;
+import javafx.scene.web.WebEngine;
+import netscape.javascript.JSObject;
+
+/**
+ * Records JavaScript operations that do not need a return value (calls of
+ * setters, setMember, removeMember, setSlot) and executes all of them at once
+ * when the buffer is flushed.
+ * <p>
+ * Primitive arguments are written as JavaScript literals into the recorded
+ * script. JavaScript objects and other Java objects can not be expressed as
+ * literals; they are passed as arguments of the flush (an executeScript that
+ * compiles the recorded commands and a single call of the compiled function)
+ * and the script addresses them by index.
+ * <p>
+ * The buffer is flushed when the outermost batch ends. Commands of a batch
+ * that is still open are flushed automatically with Platform.runLater, not at
+ * the end of the current pulse: the pulse listeners of the Scene are not
+ * available in JavaFx 8. The flush runs on the application thread like the
+ * pulses, so a pulse never sees part of a flush, and all commands that have
+ * been recorded in the same turn of the event loop are applied by the same
+ * flush. However, the flush might run after the next pulse, and a batch that
+ * stays open across several turns is applied in several flushes, which might
+ * be rendered in different frames. Updates that must be rendered together
+ * should be recorded in a single batch that is ended in the same turn.
+ */
+public class JsCommandBuffer {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * The buffer is flushed automatically if it contains more commands than
+	 * this to limit the size of the generated script
+	 */
+	private static final int MAX_NUMBER_OF_COMMANDS = 10000;
+
+	/**
+	 * The buffer is flushed automatically if the commands reference more
+	 * objects than this, because the references are passed as arguments of a
+	 * single call
+	 */
+	private static final int MAX_NUMBER_OF_REFERENCES = 4096;
+
+	private WebEngine webEngine;
+
+	private StringBuilder script = new StringBuilder();
+
+	private int numberOfCommands = 0;
+
+	/**
+	 * Maps the referenced objects to their index in the reference array
+	 */
+	private Map<Object, Integer> referenceIndices = new IdentityHashMap<>();
+
+	/**
+	 * The referenced objects in the order of their indices
+	 */
+	private List<Object> references = new ArrayList<>();
+
+	private boolean flushIsScheduled = false;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public JsCommandBuffer(WebEngine webEngine) {
+		this.webEngine = webEngine;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Records the invocation of the method with the given name on the given
+	 * target
+	 */
+	public void recordCall(JSObject target, String methodName, Object... args) {
+		String targetReference = createReference(target);
+		script.append(targetReference);
+		script.append("[");
+		script.append(createStringLiteral(methodName));
+		script.append("](");
+		for (int index = 0; index < args.length; index++) {
+			if (index > 0) {
+				script.append(",");
+			}
+			script.append(createExpression(args[index]));
+		}
+		script.append(");\n");
+		commandRecorded();
+	}
+
+	/**
+	 * Records the assignment of a named member
+	 */
+	public void recordSetMember(JSObject target, String name, Object value) {
+		String targetReference = createReference(target);
+		script.append(targetReference);
+		script.append("[");
+		script.append(createStringLiteral(name));
+		script.append("]=");
+		script.append(createExpression(value));
+		script.append(";\n");
+		commandRecorded();
+	}
+
+	/**
+	 * Records the removal of a named member
+	 */
+	public void recordRemoveMember(JSObject target, String name) {
+		String targetReference = createReference(target);
+		script.append("delete ");
+		script.append(targetReference);
+		script.append("[");
+		script.append(createStringLiteral(name));
+		script.append("];\n");
+		commandRecorded();
+	}
+
+	/**
+	 * Records the assignment of an indexed member
+	 */
+	public void recordSetSlot(JSObject target, int index, Object value) {
+		String targetReference = createReference(target);
+		script.append(targetReference);
+		script.append("[");
+		script.append(index);
+		script.append("]=");
+		script.append(createExpression(value));
+		script.append(";\n");
+		commandRecorded();
+	}
+
+	/**
+	 * Executes all recorded commands with a single executeScript (and a single
+	 * call that passes the referenced objects, if any) and clears the buffer
+	 */
+	public void flush() {
+		if (numberOfCommands == 0) {
+			return;
+		}
+
+		String commands = script.toString();
+		Object[] flushedReferences = references.toArray();
+		script.setLength(0);
+		references.clear();
+		referenceIndices.clear();
+		int flushedCommands = numberOfCommands;
+		numberOfCommands = 0;
+
+		long startTime = BridgeMetrics.start();
+		try {
+			boolean hasReferences = flushedReferences.length > 0;
+			if (hasReferences) {
+				// the references are bound to the arguments of the compiled
+				// function, so that nested flushes (e.g. from callbacks) do not
+				// interfere
+				JSObject function = (JSObject) webEngine.executeScript("(function(){\nvar r = arguments;\n" //
+						+ commands + "})");
+				Object[] callArguments = new Object[flushedReferences.length + 1];
+				System.arraycopy(flushedReferences, 0, callArguments, 1, flushedReferences.length);
+				function.call("call", callArguments);
+			} else {
+				webEngine.executeScript("(function(){\n" + commands + "})();");
+			}
+		} catch (Exception exception) {
+			String message = "Could not execute " + flushedCommands + " batched JavaScript commands";
+			throw new IllegalStateException(message, exception);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.FLUSH, startTime);
+		}
+	}
+
+	/**
+	 * Returns true if no commands have been recorded since the last flush
+	 */
+	public boolean isEmpty() {
+		return numberOfCommands == 0;
+	}
+
+	private void commandRecorded() {
+		numberOfCommands++;
+		boolean isFull = numberOfCommands >= MAX_NUMBER_OF_COMMANDS
+				|| references.size() >= MAX_NUMBER_OF_REFERENCES;
+		if (isFull) {
+			flush();
+			return;
+		}
+		scheduleFlush();
+	}
+
+	/**
+	 * Flushes the buffer in a later turn of the JavaFx event loop (with
+	 * Platform.runLater), in case nobody flushes it explicitly. This is not
+	 * aligned with the pulses, see the class comment.
+	 */
+	private void scheduleFlush() {
+		if (flushIsScheduled) {
+			return;
+		}
+		flushIsScheduled = true;
+		Platform.runLater(() -> {
+			flushIsScheduled = false;
+			flush();
+		});
+	}
+
+	/**
+	 * Returns a JavaScript expression for the given value: a literal for
+	 * simple types and a reference for all other objects
+	 */
+	private String createExpression(Object value) {
+		if (value == null) {
+			return "null";
+		}
+
+		boolean isString = value instanceof String;
+		if (isString) {
+			return createStringLiteral((String) value);
+		}
+
+		boolean isCharacter = value instanceof Character;
+		if (isCharacter) {
+			return createStringLiteral(value.toString());
+		}
+
+		boolean isBoolean = value instanceof Boolean;
+		if (isBoolean) {
+			return value.toString();
+		}
+
+		boolean isFloatingPoint = value instanceof Double || value instanceof Float;
+		if (isFloatingPoint) {
+			double doubleValue = ((Number) value).doubleValue();
+			return createNumberLiteral(doubleValue);
+		}
+
+		boolean isIntegral = value instanceof Integer || value instanceof Long || value instanceof Short
+				|| value instanceof Byte;
+		if (isIntegral) {
+			return value.toString();
+		}
+
+		boolean isJsObject = value instanceof JsObject;
+		if (isJsObject) {
+			JsObject jsObject = (JsObject) value;
+			return createReference(jsObject.unwrap());
+		}
+
+		return createReference(value);
+	}
+
+	private String createReference(Object object) {
+		Integer index = referenceIndices.get(object);
+		if (index == null) {
+			index = references.size();
+			references.add(object);
+			referenceIndices.put(object, index);
+		}
+		return "r[" + index + "]";
+	}
+
+	private static String createNumberLiteral(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		}
+		if (Double.isInfinite(value)) {
+			return value > 0 ? "Infinity" : "-Infinity";
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Creates a quoted JavaScript string literal
+	 */
+	public static String createStringLiteral(String value) {
+		StringBuilder builder = new StringBuilder(value.length() + 2);
+		builder.append('"');
+		for (int index = 0; index < value.length(); index++) {
+			char character = value.charAt(index);
+			switch (character) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			case '\u2028':
+				builder.append("\\u2028");
+				break;
+			case '\u2029':
+				builder.append("\\u2029");
+				break;
+			default:
+				if (character < 0x20) {
+					builder.append(String.format("\\u%04x", (int) character));
+				} else {
+					builder.append(character);
+				}
+			}
+		}
+		builder.append('"');
+		return builder.toString();
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,432 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.treez.javafxd3.d3.arrays.TypedArrays;
+import org.treez.javafxd3.d3.core.JsEngine;
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.d3.core.ScriptTemplateCache;
+import org.treez.javafxd3.d3.core.Selection;
+import org.treez.javafxd3.d3.wrapper.JavaScriptObject;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Keeps the child elements of a parent selection in sync with an
+ * ObservableList: one element with the given tag name per list item, in list
+ * order, with the (converted) item as datum.
+ * <p>
+ * The changes of the list (additions, removals, replacements, permutations
+ * and updates) are recorded as operations and translated to targeted
+ * operations on the affected elements. The first change schedules a flush
+ * (by default with Platform.runLater, which runs it in a later turn of the
+ * JavaFx event loop); all changes until then are flushed with a single call,
+ * so that the effort scales with the size of the changes and not with the
+ * size of the list. After a flush, the handlers are called with the affected
+ * elements:
+ * <ul>
+ * <li>enter: the new elements, with their data bound</li>
+ * <li>update: the existing elements whose datum has been replaced or
+ * updated</li>
+ * <li>exit: the elements of removed items, still attached to the parent;
+ * they are removed by the default exit handler</li>
+ * </ul>
+ * Example:
+ *
+ * <pre>
+ * ObservableListBinding&lt;Point&gt; binding = new ObservableListBinding&lt;&gt;(svg, "circle", points) //
+ * 		.onEnter((circles) -&gt; circles.attr("r", 3)) //
+ * 		.onUpdate((circles) -&gt; circles.attrExpression("cx", "function(d){ return d.x; }"));
+ * binding.bind();
+ * </pre>
+ *
+ * The binding is not thread-safe: the list must only be changed on the thread
+ * of the engine (the JavaFx application thread for a JavaFxJsEngine) and the
+ * scheduler must run the flushes on that thread, too.
+ */
+public class ObservableListBinding<T> implements ListChangeListener<T> {
+
+	//#region ATTRIBUTES
+
+	private static final int REMOVE = 0;
+
+	private static final int INSERT = 1;
+
+	private static final int SET = 2;
+
+	private static final int PERMUTE = 3;
+
+	/**
+	 * Creates the JavaScript state of the binding (this = parent selection)
+	 */
+	private static final String CREATE_STATE_TEMPLATE = "function(tagName){" //
+			+ "  return { parent: this.node(), tagName: tagName, nodes: [] };" //
+			+ "}";
+
+	/**
+	 * Applies the recorded operations to the elements and returns the
+	 * selections of the entered, updated and exited elements (null if empty)
+	 */
+	private static final String FLUSH_TEMPLATE = "function(state, encodedOperations){" //
+			+ "  var operations = (" + TypedArrays.DECODER_FUNCTION + ")(encodedOperations, 'Int32');" //
+			+ "  var data = (" + TypedArrays.ARRAY_ARGUMENTS_FUNCTION + ")(arguments, 2);" //
+			+ "  var dataIndex = 0;" //
+			+ "  var nodes = state.nodes;" //
+			+ "  var parent = state.parent;" //
+			+ "  var entered = [];" //
+			+ "  var updated = [];" //
+			+ "  var exited = [];" //
+			+ "  var nextSibling = function(position){" //
+			+ "    if(position < nodes.length){" //
+			+ "      return nodes[position];" //
+			+ "    }" //
+			+ "    return nodes.length > 0 ? nodes[nodes.length - 1].nextSibling : null;" //
+			+ "  };" //
+			+ "  var index = 0;" //
+			+ "  while(index < operations.length){" //
+			+ "    var type = operations[index++];" //
+			+ "    var from = operations[index++];" //
+			+ "    var count = operations[index++];" //
+			+ "    var offset;" //
+			+ "    var node;" //
+			+ "    switch(type){" //
+			+ "      case " + REMOVE + ":" //
+			+ "        var removedNodes = nodes.splice(from, count);" //
+			+ "        for(offset = 0; offset < removedNodes.length; offset++){" //
+			+ "          node = removedNodes[offset];" //
+			+ "          node.__javafxd3_removed__ = true;" //
+			+ "          if(node.__javafxd3_entered__){" //
+			+ "            parent.removeChild(node);" //
+			+ "          } else {" //
+			+ "            exited.push(node);" //
+			+ "          }" //
+			+ "        }" //
+			+ "        break;" //
+			+ "      case " + INSERT + ":" //
+			+ "        var reference = nextSibling(from);" //
+			+ "        var insertedNodes = new Array(count);" //
+			+ "        for(offset = 0; offset < count; offset++){" //
+			+ "          node = d3.select(parent).append(state.tagName).node();" //
+			+ "          parent.insertBefore(node, reference);" //
+			+ "          node.__data__ = data[dataIndex++];" //
+			+ "          node.__javafxd3_entered__ = true;" //
+			+ "          insertedNodes[offset] = node;" //
+			+ "          entered.push(node);" //
+			+ "        }" //
+			+ "        Array.prototype.splice.apply(nodes, [from, 0].concat(insertedNodes));" //
+			+ "        break;" //
+			+ "      case " + SET + ":" //
+			+ "        for(offset = 0; offset < count; offset++){" //
+			+ "          node = nodes[from + offset];" //
+			+ "          node.__data__ = data[dataIndex++];" //
+			+ "          if(!node.__javafxd3_entered__ && !node.__javafxd3_updated__){" //
+			+ "            node.__javafxd3_updated__ = true;" //
+			+ "            updated.push(node);" //
+			+ "          }" //
+			+ "        }" //
+			+ "        break;" //
+			+ "      case " + PERMUTE + ":" //
+			+ "        var permutedNodes = nodes.slice(from, from + count);" //
+			+ "        var permutedReference = nextSibling(from + count);" //
+			+ "        for(offset = 0; offset < count; offset++){" //
+			+ "          nodes[operations[index++]] = permutedNodes[offset];" //
+			+ "        }" //
+			+ "        for(offset = 0; offset < count; offset++){" //
+			+ "          parent.insertBefore(nodes[from + offset], permutedReference);" //
+			+ "        }" //
+			+ "        break;" //
+			+ "      default:" //
+			+ "        throw new Error('Unknown operation ' + type);" //
+			+ "    }" //
+			+ "  }" //
+			+ "  var createSelection = function(changedNodes, flag){" //
+			+ "    var remainingNodes = [];" //
+			+ "    changedNodes.forEach(function(changedNode){" //
+			+ "      var isRemaining = flag === '__javafxd3_removed__' || !changedNode.__javafxd3_removed__;" //
+			+ "      if(isRemaining){" //
+			+ "        remainingNodes.push(changedNode);" //
+			+ "      }" //
+			+ "    });" //
+			+ "    changedNodes.forEach(function(changedNode){" //
+			+ "      delete changedNode[flag];" //
+			+ "    });" //
+			+ "    return remainingNodes.length > 0 ? d3.selectAll(remainingNodes) : null;" //
+			+ "  };" //
+			+ "  var enteredSelection = createSelection(entered, '__javafxd3_entered__');" //
+			+ "  var updatedSelection = createSelection(updated, '__javafxd3_updated__');" //
+			+ "  var exitedSelection = createSelection(exited, '__javafxd3_removed__');" //
+			+ "  return [enteredSelection, updatedSelection, exitedSelection];" //
+			+ "}";
+
+	private final Selection parent;
+
+	private final String tagName;
+
+	private final ObservableList<T> list;
+
+	private final JsEngine engine;
+
+	/**
+	 * Converts the list items to the data of the elements
+	 */
+	private Function<T, Object> datumConverter = ObservableListBinding::toDatum;
+
+	private Consumer<Selection> enterHandler = (selection) -> {
+		//nothing to do
+	};
+
+	private Consumer<Selection> updateHandler = (selection) -> {
+		//nothing to do
+	};
+
+	private Consumer<Selection> exitHandler = Selection::remove;
+
+	/**
+	 * Executes the scheduled flushes
+	 */
+	private Executor scheduler = Platform::runLater;
+
+	/**
+	 * The JavaScript state of the binding; is created by bind()
+	 */
+	private JsObject state;
+
+	/**
+	 * The recorded operations as (type, from, count, permutation...) entries
+	 */
+	private List<Integer> operations = new ArrayList<>();
+
+	/**
+	 * The data of the recorded insert and set operations
+	 */
+	private List<Object> data = new ArrayList<>();
+
+	private boolean flushIsScheduled = false;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	/**
+	 * @param parent
+	 *            the selection of the parent element
+	 * @param tagName
+	 *            the tag name of the child elements, e.g. "circle"
+	 * @param list
+	 *            the list of the items
+	 */
+	public ObservableListBinding(Selection parent, String tagName, ObservableList<T> list) {
+		this.parent = Objects.requireNonNull(parent);
+		this.tagName = Objects.requireNonNull(tagName);
+		this.list = Objects.requireNonNull(list);
+		this.engine = parent.getJsEngine();
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Creates an element for each current list item and listens to the
+	 * changes of the list. The new elements are passed to the enter handler.
+	 */
+	public void bind() {
+		boolean isBound = state != null;
+		if (isBound) {
+			String message = "The list has already been bound.";
+			throw new IllegalStateException(message);
+		}
+		state = (JsObject) ScriptTemplateCache.forEngine(engine).invoke(parent.getJsObject(), CREATE_STATE_TEMPLATE,
+				tagName);
+		recordInsert(0, list);
+		flush();
+		list.addListener(this);
+	}
+
+	/**
+	 * Stops listening to the changes of the list. Recorded changes are
+	 * flushed. The elements are kept.
+	 */
+	public void unbind() {
+		list.removeListener(this);
+		flush();
+	}
+
+	@Override
+	public void onChanged(Change<? extends T> change) {
+		while (change.next()) {
+			int from = change.getFrom();
+			int to = change.getTo();
+			if (change.wasPermutated()) {
+				recordPermutation(change, from, to);
+			} else if (change.wasUpdated()) {
+				recordSet(from, change.getList().subList(from, to));
+			} else {
+				List<? extends T> addedItems = change.getAddedSubList();
+				int numberOfAddedItems = change.wasAdded() ? addedItems.size() : 0;
+				int numberOfRemovedItems = change.wasRemoved() ? change.getRemovedSize() : 0;
+				int numberOfReplacedItems = Math.min(numberOfAddedItems, numberOfRemovedItems);
+				if (numberOfReplacedItems > 0) {
+					recordSet(from, addedItems.subList(0, numberOfReplacedItems));
+				}
+				if (numberOfRemovedItems > numberOfReplacedItems) {
+					recordOperation(REMOVE, from + numberOfReplacedItems, numberOfRemovedItems - numberOfReplacedItems);
+				}
+				if (numberOfAddedItems > numberOfReplacedItems) {
+					recordInsert(from + numberOfReplacedItems,
+							addedItems.subList(numberOfReplacedItems, numberOfAddedItems));
+				}
+			}
+		}
+		scheduleFlush();
+	}
+
+	private void recordPermutation(Change<? extends T> change, int from, int to) {
+		recordOperation(PERMUTE, from, to - from);
+		for (int index = from; index < to; index++) {
+			operations.add(change.getPermutation(index));
+		}
+	}
+
+	private void recordInsert(int from, List<? extends T> items) {
+		recordOperation(INSERT, from, items.size());
+		recordData(items);
+	}
+
+	private void recordSet(int from, List<? extends T> items) {
+		recordOperation(SET, from, items.size());
+		recordData(items);
+	}
+
+	private void recordData(List<? extends T> items) {
+		for (T item : items) {
+			data.add(datumConverter.apply(item));
+		}
+	}
+
+	private void recordOperation(int type, int from, int count) {
+		operations.add(type);
+		operations.add(from);
+		operations.add(count);
+	}
+
+	/**
+	 * Flushes the recorded changes with the scheduler, e.g. in a later turn of
+	 * the JavaFx event loop
+	 */
+	private void scheduleFlush() {
+		if (flushIsScheduled) {
+			return;
+		}
+		flushIsScheduled = true;
+		scheduler.execute(() -> {
+			flushIsScheduled = false;
+			flush();
+		});
+	}
+
+	/**
+	 * Applies the recorded changes to the elements and calls the handlers.
+	 * Is called automatically by the flush that has been scheduled by the
+	 * first change since the last flush.
+	 */
+	public void flush() {
+		boolean isEmpty = operations.isEmpty();
+		if (isEmpty) {
+			return;
+		}
+
+		int[] encodedOperations = new int[operations.size()];
+		for (int index = 0; index < encodedOperations.length; index++) {
+			encodedOperations[index] = operations.get(index);
+		}
+
+		Object[] dataArguments = TypedArrays.toArrayArguments(engine, data.toArray());
+		Object[] args = new Object[dataArguments.length + 2];
+		args[0] = state;
+		args[1] = TypedArrays.encode(encodedOperations);
+		System.arraycopy(dataArguments, 0, args, 2, dataArguments.length);
+
+		operations = new ArrayList<>();
+		data = new ArrayList<>();
+
+		JsObject result = (JsObject) ScriptTemplateCache.forEngine(engine).invoke(parent.getJsObject(),
+				FLUSH_TEMPLATE, args);
+		handle(result.getSlot(0), enterHandler);
+		handle(result.getSlot(1), updateHandler);
+		handle(result.getSlot(2), exitHandler);
+	}
+
+	private void handle(Object selectionObject, Consumer<Selection> handler) {
+		boolean isSelection = selectionObject instanceof JsObject;
+		if (isSelection) {
+			handler.accept(new Selection(engine, (JsObject) selectionObject));
+		}
+	}
+
+	private static Object toDatum(Object item) {
+		boolean isJavaScriptObject = item instanceof JavaScriptObject;
+		if (isJavaScriptObject) {
+			return ((JavaScriptObject) item).getJsObject();
+		}
+		return item;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Sets the handler for the new elements
+	 */
+	public ObservableListBinding<T> onEnter(Consumer<Selection> enterHandler) {
+		this.enterHandler = Objects.requireNonNull(enterHandler);
+		return this;
+	}
+
+	/**
+	 * Sets the handler for the elements whose datum has been replaced
+	 */
+	public ObservableListBinding<T> onUpdate(Consumer<Selection> updateHandler) {
+		this.updateHandler = Objects.requireNonNull(updateHandler);
+		return this;
+	}
+
+	/**
+	 * Sets the handler for the elements of removed items. The default handler
+	 * removes the elements.
+	 */
+	public ObservableListBinding<T> onExit(Consumer<Selection> exitHandler) {
+		this.exitHandler = Objects.requireNonNull(exitHandler);
+		return this;
+	}
+
+	/**
+	 * Sets the function that converts the list items to the data of the
+	 * elements. By default, JavaScriptObjects are unwrapped and all other
+	 * items are passed as they are.
+	 */
+	public ObservableListBinding<T> setDatumConverter(Function<T, Object> datumConverter) {
+		this.datumConverter = Objects.requireNonNull(datumConverter);
+		return this;
+	}
+
+	/**
+	 * Sets the executor for the scheduled flushes; by default
+	 * Platform.runLater
+	 */
+	public ObservableListBinding<T> setScheduler(Executor scheduler) {
+		this.scheduler = Objects.requireNonNull(scheduler);
+		return this;
+	}
+
+	//#end region
+
+}
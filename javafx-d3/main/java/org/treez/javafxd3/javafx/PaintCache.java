@@ -0,0 +1,57 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.scene.paint.Paint;
+
+/**
+ * Caches the paints of the path renderers by color and opacity, so that the
+ * colors of many elements are only parsed once. The least recently used paints
+ * are evicted if the cache is full (e.g. if the opacities are animated).
+ */
+class PaintCache {
+
+	//#region ATTRIBUTES
+
+	private static final int MAX_NUMBER_OF_PAINTS = 1024;
+
+	private final Map<String, Paint> paints = new LinkedHashMap<String, Paint>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Paint> eldest) {
+			return size() > MAX_NUMBER_OF_PAINTS;
+		}
+	};
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Returns the paint for the given color and opacity or null for "none",
+	 * see {@link PathElement#createPaint(String, double)}
+	 */
+	Paint get(String color, double opacity) {
+		String paintKey = color + "|" + opacity;
+		boolean isCached = paints.containsKey(paintKey);
+		if (isCached) {
+			return paints.get(paintKey);
+		}
+		Paint paint = PathElement.createPaint(color, opacity);
+		paints.put(paintKey, paint);
+		return paint;
+	}
+
+	/**
+	 * Returns the number of cached paints
+	 */
+	int size() {
+		return paints.size();
+	}
+
+	//#end region
+
+}
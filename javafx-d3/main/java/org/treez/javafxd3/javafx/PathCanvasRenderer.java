@@ -0,0 +1,119 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.List;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.FillRule;
+
+/**
+ * Renders {@link PathElement}s on a single JavaFx Canvas node. In contrast to
+ * the {@link PathNodeRenderer}, the elements do not need one node each, which
+ * keeps the scene graph small for charts with many paths (e.g. symbols of a
+ * scatter plot). The canvas is reused and redrawn completely on each render.
+ * The style classes of the elements are ignored.
+ * <p>
+ * Rendering must be done on the JavaFx application thread if the canvas is
+ * part of a live scene graph.
+ */
+public class PathCanvasRenderer {
+
+	//#region ATTRIBUTES
+
+	private final Canvas canvas;
+
+	private final PaintCache paints = new PaintCache();
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public PathCanvasRenderer(double width, double height) {
+		canvas = new Canvas(width, height);
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Clears the canvas and draws the given elements in the given order
+	 *
+	 * @return the number of drawn elements; hidden, empty and unpainted
+	 *         elements are skipped
+	 */
+	public int render(List<PathElement> elements) {
+		GraphicsContext graphicsContext = canvas.getGraphicsContext2D();
+		graphicsContext.setTransform(1, 0, 0, 1, 0, 0);
+		graphicsContext.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		int numberOfDrawnElements = 0;
+		for (PathElement element : elements) {
+			boolean isEmpty = element.getPathData().isEmpty();
+			if (!element.isVisible() || isEmpty) {
+				continue;
+			}
+			boolean isDrawn = draw(graphicsContext, element);
+			if (isDrawn) {
+				numberOfDrawnElements++;
+			}
+		}
+		return numberOfDrawnElements;
+	}
+
+	/**
+	 * Draws the given element and returns false if it has neither fill nor
+	 * stroke
+	 */
+	private boolean draw(GraphicsContext graphicsContext, PathElement element) {
+		Paint fill = paints.get(element.getFill(), element.getFillOpacity());
+		Paint stroke = paints.get(element.getStroke(), element.getStrokeOpacity());
+		boolean isInvisible = fill == null && stroke == null;
+		if (isInvisible) {
+			return false;
+		}
+
+		graphicsContext.save();
+		graphicsContext.setGlobalAlpha(element.getOpacity());
+		if (element.isTransformed()) {
+			double[] matrix = element.getTransform();
+			graphicsContext.transform(matrix[0], matrix[1], matrix[2], matrix[3], matrix[4], matrix[5]);
+		}
+		graphicsContext.beginPath();
+		graphicsContext.appendSVGPath(element.getPathData());
+		if (fill != null) {
+			graphicsContext.setFillRule(element.isEvenOdd() ? FillRule.EVEN_ODD : FillRule.NON_ZERO);
+			graphicsContext.setFill(fill);
+			graphicsContext.fill();
+		}
+		if (stroke != null) {
+			graphicsContext.setStroke(stroke);
+			graphicsContext.setLineWidth(element.getStrokeWidth());
+			graphicsContext.stroke();
+		}
+		graphicsContext.restore();
+		return true;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the canvas that shows the elements
+	 */
+	public Canvas getNode() {
+		return canvas;
+	}
+
+	/**
+	 * Resizes the canvas; the elements must be rendered again
+	 */
+	public void setSize(double width, double height) {
+		canvas.setWidth(width);
+		canvas.setHeight(height);
+	}
+
+	//#end region
+
+}
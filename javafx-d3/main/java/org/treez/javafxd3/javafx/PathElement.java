@@ -0,0 +1,421 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.treez.javafxd3.d3.core.Selection;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+/**
+ * Describes an SVG path element (path data and presentation attributes) that
+ * is rendered with JavaFx nodes instead of a WebView, see
+ * {@link PathNodeRenderer} and {@link PathCanvasRenderer}. The path data is
+ * typically created with a PathDataGenerator (Line, Area, Arc, Symbol,
+ * Diagonal) of an engine that does not need WebKit, e.g. a NashornJsEngine:
+ *
+ * <pre>
+ * String[] paths = arc.generateEach(pieData);
+ * List&lt;PathElement&gt; slices = PathElement.fromPathData(paths);
+ * slices.get(0).attr("fill", "steelblue").attr("transform", "translate(100,100)");
+ * renderer.render(slices);
+ * </pre>
+ *
+ * The attributes are set with their SVG names, like the attributes of a
+ * selection. Supported attributes are d, fill, fill-opacity, fill-rule,
+ * stroke, stroke-opacity, stroke-width, opacity, transform (translate, scale,
+ * rotate, matrix), class, visibility and display. Colors are parsed like CSS
+ * colors; "none" disables the fill or stroke.
+ */
+public class PathElement {
+
+	//#region ATTRIBUTES
+
+	private static final Pattern TRANSFORM_PATTERN = Pattern.compile("(\\w+)\\s*\\(([^)]*)\\)");
+
+	private static final double[] IDENTITY = { 1, 0, 0, 1, 0, 0 };
+
+	private static final String NONE = "none";
+
+	/**
+	 * The attributes that are read by {@link #fromSelection(Selection)}
+	 * besides id and d
+	 */
+	private static final String[] ATTRIBUTES_TO_READ = { "fill", "fill-opacity", "fill-rule", "stroke",
+			"stroke-opacity", "stroke-width", "opacity", "transform", "class", "visibility", "display" };
+
+	private static final String[] NUMERIC_ATTRIBUTES = { "fill-opacity", "stroke-opacity", "stroke-width",
+			"opacity" };
+
+	/**
+	 * Identifies the element across updates, so that its node can be reused
+	 */
+	private final String key;
+
+	private String pathData = "";
+
+	private String fill = "black";
+
+	private double fillOpacity = 1;
+
+	private boolean isEvenOdd = false;
+
+	private String stroke = NONE;
+
+	private double strokeOpacity = 1;
+
+	private double strokeWidth = 1;
+
+	private double opacity = 1;
+
+	/**
+	 * The transformation as SVG matrix (a, b, c, d, e, f)
+	 */
+	private double[] transform = IDENTITY;
+
+	private String styleClass = null;
+
+	/**
+	 * Set by the attribute visibility
+	 */
+	private boolean isHidden = false;
+
+	/**
+	 * Set by the attribute display
+	 */
+	private boolean isDisplayed = true;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	/**
+	 * @param key
+	 *            identifies the element across updates
+	 */
+	public PathElement(String key) {
+		if (key == null) {
+			throw new IllegalStateException("The key of a path element must not be null.");
+		}
+		this.key = key;
+	}
+
+	/**
+	 * Copy constructor
+	 */
+	public PathElement(PathElement element) {
+		key = element.key;
+		pathData = element.pathData;
+		fill = element.fill;
+		fillOpacity = element.fillOpacity;
+		isEvenOdd = element.isEvenOdd;
+		stroke = element.stroke;
+		strokeOpacity = element.strokeOpacity;
+		strokeWidth = element.strokeWidth;
+		opacity = element.opacity;
+		transform = element.transform;
+		styleClass = element.styleClass;
+		isHidden = element.isHidden;
+		isDisplayed = element.isDisplayed;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Creates one element per path; the keys are the indices, prefixed with
+	 * "#" like the keys of {@link #fromSelection(Selection)}
+	 */
+	public static List<PathElement> fromPathData(String[] pathData) {
+		List<PathElement> elements = new ArrayList<>(pathData.length);
+		for (int index = 0; index < pathData.length; index++) {
+			elements.add(new PathElement(createIndexKey(index)).attr("d", pathData[index]));
+		}
+		return elements;
+	}
+
+	/**
+	 * Reads the path elements of the given selection (e.g. a chart that has
+	 * been created with a NashornJsEngine) with one bulk read per attribute.
+	 * The keys are the ids of the elements or, if they have no id, their
+	 * indices prefixed with "#" (which can not collide with ids like "1").
+	 * Styles that have been set with style(...) instead of attr(...)
+	 * are not read.
+	 */
+	public static List<PathElement> fromSelection(Selection paths) {
+		String[] ids = paths.attrValues("id");
+		String[] pathData = paths.attrValues("d");
+		String[][] attributes = new String[ATTRIBUTES_TO_READ.length][];
+		for (int index = 0; index < ATTRIBUTES_TO_READ.length; index++) {
+			attributes[index] = paths.attrValues(ATTRIBUTES_TO_READ[index]);
+		}
+
+		List<PathElement> elements = new ArrayList<>(pathData.length);
+		for (int elementIndex = 0; elementIndex < pathData.length; elementIndex++) {
+			String id = ids[elementIndex];
+			String key = id == null ? createIndexKey(elementIndex) : id;
+			PathElement element = new PathElement(key).attr("d", pathData[elementIndex]);
+			for (int index = 0; index < ATTRIBUTES_TO_READ.length; index++) {
+				String value = attributes[index][elementIndex];
+				if (value != null) {
+					element.attr(ATTRIBUTES_TO_READ[index], value);
+				}
+			}
+			elements.add(element);
+		}
+		return elements;
+	}
+
+	/**
+	 * Creates the key of an element without id
+	 */
+	private static String createIndexKey(int index) {
+		return "#" + index;
+	}
+
+	/**
+	 * Sets the attribute with the given SVG name
+	 */
+	public PathElement attr(String name, String value) {
+		switch (name) {
+		case "d":
+			pathData = value == null ? "" : value;
+			return this;
+		case "fill":
+			fill = value == null ? NONE : value.trim();
+			return this;
+		case "fill-rule":
+			isEvenOdd = "evenodd".equals(value);
+			return this;
+		case "stroke":
+			stroke = value == null ? NONE : value.trim();
+			return this;
+		case "transform":
+			transform = parseTransform(value);
+			return this;
+		case "class":
+			styleClass = value;
+			return this;
+		case "visibility":
+			isHidden = "hidden".equals(value) || "collapse".equals(value);
+			return this;
+		case "display":
+			isDisplayed = !NONE.equals(value);
+			return this;
+		default:
+			boolean isNumericAttribute = Arrays.asList(NUMERIC_ATTRIBUTES).contains(name);
+			if (!isNumericAttribute) {
+				throwUnsupportedAttribute(name);
+			}
+			return attr(name, parseNumber(name, value));
+		}
+	}
+
+	/**
+	 * Sets the numeric attribute with the given SVG name
+	 */
+	public PathElement attr(String name, double value) {
+		switch (name) {
+		case "fill-opacity":
+			fillOpacity = value;
+			return this;
+		case "stroke-opacity":
+			strokeOpacity = value;
+			return this;
+		case "stroke-width":
+			strokeWidth = value;
+			return this;
+		case "opacity":
+			opacity = value;
+			return this;
+		default:
+			throwUnsupportedAttribute(name);
+			return this;
+		}
+	}
+
+	private static void throwUnsupportedAttribute(String name) {
+		String message = "The attribute '" + name + "' is not supported by path elements.";
+		throw new IllegalStateException(message);
+	}
+
+	/**
+	 * Creates the paint for the given color and opacity or returns null for
+	 * "none"
+	 */
+	static Paint createPaint(String color, double opacity) {
+		if (NONE.equals(color)) {
+			return null;
+		}
+		try {
+			return Color.web(color, Math.max(0, Math.min(1, opacity)));
+		} catch (IllegalArgumentException exception) {
+			throw new IllegalStateException("Could not parse the color '" + color + "'.", exception);
+		}
+	}
+
+	private static double parseNumber(String name, String value) {
+		try {
+			String trimmedValue = value.trim();
+			boolean hasPixelUnit = trimmedValue.endsWith("px");
+			if (hasPixelUnit) {
+				trimmedValue = trimmedValue.substring(0, trimmedValue.length() - 2);
+			}
+			return Double.parseDouble(trimmedValue);
+		} catch (NumberFormatException | NullPointerException exception) {
+			String message = "Could not parse the value '" + value + "' of the attribute '" + name + "'.";
+			throw new IllegalStateException(message, exception);
+		}
+	}
+
+	/**
+	 * Parses an SVG transform list to a matrix (a, b, c, d, e, f)
+	 */
+	private static double[] parseTransform(String value) {
+		double[] matrix = IDENTITY;
+		if (value == null) {
+			return matrix;
+		}
+		Matcher matcher = TRANSFORM_PATTERN.matcher(value);
+		while (matcher.find()) {
+			String type = matcher.group(1);
+			String argumentString = matcher.group(2).trim();
+			double[] args = new double[0];
+			if (!argumentString.isEmpty()) {
+				String[] argumentStrings = argumentString.split("[\\s,]+");
+				args = new double[argumentStrings.length];
+				for (int index = 0; index < args.length; index++) {
+					args[index] = parseNumber("transform", argumentStrings[index]);
+				}
+			}
+			matrix = multiply(matrix, createTransform(type, args));
+		}
+		return matrix;
+	}
+
+	private static double[] createTransform(String type, double[] args) {
+		switch (type) {
+		case "translate":
+			checkNumberOfArguments(type, args, 1, 2);
+			return new double[] { 1, 0, 0, 1, args[0], args.length > 1 ? args[1] : 0 };
+		case "scale":
+			checkNumberOfArguments(type, args, 1, 2);
+			return new double[] { args[0], 0, 0, args.length > 1 ? args[1] : args[0], 0, 0 };
+		case "rotate":
+			checkNumberOfArguments(type, args, 1, 3);
+			double angle = Math.toRadians(args[0]);
+			double cos = Math.cos(angle);
+			double sin = Math.sin(angle);
+			double[] rotation = { cos, sin, -sin, cos, 0, 0 };
+			if (args.length < 3) {
+				return rotation;
+			}
+			double[] toCenter = { 1, 0, 0, 1, args[1], args[2] };
+			double[] fromCenter = { 1, 0, 0, 1, -args[1], -args[2] };
+			return multiply(multiply(toCenter, rotation), fromCenter);
+		case "matrix":
+			checkNumberOfArguments(type, args, 6, 6);
+			return args;
+		default:
+			throw new IllegalStateException("The transform '" + type + "' is not supported by path elements.");
+		}
+	}
+
+	private static void checkNumberOfArguments(String type, double[] args, int min, int max) {
+		boolean isValid = args.length >= min && args.length <= max;
+		if (!isValid) {
+			String message = "The transform '" + type + "' expects " + min + " to " + max + " arguments but got "
+					+ args.length + ".";
+			throw new IllegalStateException(message);
+		}
+	}
+
+	/**
+	 * Returns the matrix that first applies the second and then the first
+	 * transformation
+	 */
+	private static double[] multiply(double[] first, double[] second) {
+		return new double[] { //
+				first[0] * second[0] + first[2] * second[1], //
+				first[1] * second[0] + first[3] * second[1], //
+				first[0] * second[2] + first[2] * second[3], //
+				first[1] * second[2] + first[3] * second[3], //
+				first[0] * second[4] + first[2] * second[5] + first[4], //
+				first[1] * second[4] + first[3] * second[5] + first[5] };
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getPathData() {
+		return pathData;
+	}
+
+	public String getFill() {
+		return fill;
+	}
+
+	public double getFillOpacity() {
+		return fillOpacity;
+	}
+
+	public boolean isEvenOdd() {
+		return isEvenOdd;
+	}
+
+	public String getStroke() {
+		return stroke;
+	}
+
+	public double getStrokeOpacity() {
+		return strokeOpacity;
+	}
+
+	public double getStrokeWidth() {
+		return strokeWidth;
+	}
+
+	public double getOpacity() {
+		return opacity;
+	}
+
+	/**
+	 * Returns the transformation as SVG matrix (a, b, c, d, e, f)
+	 */
+	public double[] getTransform() {
+		return transform.clone();
+	}
+
+	/**
+	 * Returns true if the element has a transformation other than the
+	 * identity
+	 */
+	public boolean isTransformed() {
+		return !Arrays.equals(transform, IDENTITY);
+	}
+
+	public String getStyleClass() {
+		return styleClass;
+	}
+
+	/**
+	 * Returns false if the element is hidden by its visibility or by its
+	 * display
+	 */
+	public boolean isVisible() {
+		return !isHidden && isDisplayed;
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,260 @@
+package org.treez.javafxd3.javafx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.transform.Affine;
+
+/**
+ * Renders {@link PathElement}s as JavaFx SVGPath nodes, so that charts that do
+ * not need the DOM (and its interactivity) can be shown without a WebView:
+ *
+ * <pre>
+ * NashornJsEngine engine = new NashornJsEngine();
+ * Line line = engine.getD3().svg().line();
+ * PathNodeRenderer renderer = new PathNodeRenderer();
+ * pane.getChildren().add(renderer.getNode());
+ * ...
+ * renderer.render(PathElement.fromPathData(line.generateEach(series)));
+ * </pre>
+ *
+ * The nodes are joined with the elements by key, like the elements of a
+ * selection with a keyed data join: the node of an existing key is reused and
+ * only the properties that have changed are updated (e.g. the path content is
+ * only parsed again if the path data has changed). The nodes of removed keys
+ * are kept in a pool and reused for new keys. The children of the group are
+ * ordered like the elements.
+ * <p>
+ * Like all changes of a live scene graph, rendering must be done on the JavaFx
+ * application thread.
+ */
+public class PathNodeRenderer {
+
+	//#region ATTRIBUTES
+
+	private final Group group = new Group();
+
+	/**
+	 * The rendered nodes by key
+	 */
+	private Map<String, RenderedPath> renderedPaths = new HashMap<>();
+
+	/**
+	 * The pool of unused nodes does not grow beyond this, so that the nodes of
+	 * a large chart that has been cleared can be garbage collected
+	 */
+	private static final int MAX_NUMBER_OF_UNUSED_NODES = 256;
+
+	/**
+	 * Nodes of removed keys that can be reused
+	 */
+	private final Deque<SVGPath> unusedNodes = new ArrayDeque<>();
+
+	private final PaintCache paints = new PaintCache();
+
+	private int numberOfCreatedNodes = 0;
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Updates the nodes to show the given elements
+	 */
+	public void render(List<PathElement> elements) {
+		Set<String> keys = new HashSet<>(2 * elements.size());
+		for (PathElement element : elements) {
+			boolean isDuplicate = !keys.add(element.getKey());
+			if (isDuplicate) {
+				String message = "The key '" + element.getKey() + "' is used by more than one path element.";
+				throw new IllegalStateException(message);
+			}
+		}
+
+		Map<String, RenderedPath> previousPaths = renderedPaths;
+		for (RenderedPath removedPath : previousPaths.values()) {
+			boolean isRemoved = !keys.contains(removedPath.element.getKey());
+			boolean isPoolFull = unusedNodes.size() >= MAX_NUMBER_OF_UNUSED_NODES;
+			if (isRemoved && !isPoolFull) {
+				unusedNodes.push(removedPath.node);
+			}
+		}
+
+		Map<String, RenderedPath> currentPaths = new HashMap<>(2 * elements.size());
+		List<Node> children = new ArrayList<>(elements.size());
+		for (PathElement element : elements) {
+			RenderedPath renderedPath = previousPaths.get(element.getKey());
+			if (renderedPath == null) {
+				renderedPath = new RenderedPath(obtainNode());
+			}
+			update(renderedPath, element);
+			currentPaths.put(element.getKey(), renderedPath);
+			children.add(renderedPath.node);
+		}
+		renderedPaths = currentPaths;
+
+		boolean hasChangedChildren = !children.equals(group.getChildren());
+		if (hasChangedChildren) {
+			group.getChildren().setAll(children);
+		}
+	}
+
+	/**
+	 * Removes all nodes
+	 */
+	public void clear() {
+		render(new ArrayList<>());
+	}
+
+	/**
+	 * Returns the node of the element with the given key or null
+	 */
+	public SVGPath getNode(String key) {
+		RenderedPath renderedPath = renderedPaths.get(key);
+		if (renderedPath == null) {
+			return null;
+		}
+		return renderedPath.node;
+	}
+
+	private SVGPath obtainNode() {
+		SVGPath node = unusedNodes.poll();
+		if (node == null) {
+			node = new SVGPath();
+			numberOfCreatedNodes++;
+		}
+		return node;
+	}
+
+	/**
+	 * Applies the properties of the given element that differ from the
+	 * properties that have been applied before
+	 */
+	private void update(RenderedPath renderedPath, PathElement element) {
+		SVGPath node = renderedPath.node;
+		PathElement previous = renderedPath.element;
+		boolean isNew = previous == null;
+
+		if (isNew || !previous.getPathData().equals(element.getPathData())) {
+			node.setContent(element.getPathData());
+		}
+		if (isNew || previous.isEvenOdd() != element.isEvenOdd()) {
+			node.setFillRule(element.isEvenOdd() ? FillRule.EVEN_ODD : FillRule.NON_ZERO);
+		}
+		boolean hasChangedFill = isNew || !previous.getFill().equals(element.getFill())
+				|| previous.getFillOpacity() != element.getFillOpacity();
+		if (hasChangedFill) {
+			node.setFill(paints.get(element.getFill(), element.getFillOpacity()));
+		}
+		boolean hasChangedStroke = isNew || !previous.getStroke().equals(element.getStroke())
+				|| previous.getStrokeOpacity() != element.getStrokeOpacity();
+		if (hasChangedStroke) {
+			node.setStroke(paints.get(element.getStroke(), element.getStrokeOpacity()));
+		}
+		if (isNew || previous.getStrokeWidth() != element.getStrokeWidth()) {
+			node.setStrokeWidth(element.getStrokeWidth());
+		}
+		if (isNew || previous.getOpacity() != element.getOpacity()) {
+			node.setOpacity(element.getOpacity());
+		}
+		if (isNew || previous.isVisible() != element.isVisible()) {
+			node.setVisible(element.isVisible());
+		}
+		if (isNew || !Objects.equals(previous.getStyleClass(), element.getStyleClass())) {
+			updateStyleClass(node, element.getStyleClass());
+		}
+		if (isNew || !Arrays.equals(previous.getTransform(), element.getTransform())) {
+			updateTransform(node, element);
+		}
+
+		renderedPath.element = new PathElement(element);
+	}
+
+	private static void updateStyleClass(SVGPath node, String styleClass) {
+		if (styleClass == null) {
+			node.getStyleClass().clear();
+			return;
+		}
+		String trimmedStyleClass = styleClass.trim();
+		if (trimmedStyleClass.isEmpty()) {
+			node.getStyleClass().clear();
+		} else {
+			node.getStyleClass().setAll(trimmedStyleClass.split("\\s+"));
+		}
+	}
+
+	private static void updateTransform(SVGPath node, PathElement element) {
+		if (!element.isTransformed()) {
+			node.getTransforms().clear();
+			return;
+		}
+		double[] matrix = element.getTransform();
+		node.getTransforms().setAll(new Affine(matrix[0], matrix[2], matrix[4], matrix[1], matrix[3], matrix[5]));
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the group that contains the nodes
+	 */
+	public Group getNode() {
+		return group;
+	}
+
+	/**
+	 * Returns the number of rendered nodes
+	 */
+	public int getNumberOfNodes() {
+		return renderedPaths.size();
+	}
+
+	/**
+	 * Returns the number of nodes that have been created so far; nodes that
+	 * have been reused are only counted once
+	 */
+	public int getNumberOfCreatedNodes() {
+		return numberOfCreatedNodes;
+	}
+
+	/**
+	 * Returns the number of pooled nodes that can be reused by the next render
+	 */
+	public int getNumberOfUnusedNodes() {
+		return unusedNodes.size();
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * A node and the state of the element that has been applied to it
+	 */
+	private static class RenderedPath {
+
+		private final SVGPath node;
+
+		private PathElement element;
+
+		RenderedPath(SVGPath node) {
+			this.node = node;
+		}
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,529 @@
+package org.treez.javafxd3.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Counts and times the crossings between Java and JavaScript (calls, evals,
+ * member and slot accesses, executed scripts and batch flushes) of all
+ * JsEngines. The crossings are measured by the JsObject and JsEngine
+ * implementations, e.g.
+ *
+ * <pre>
+ * long startTime = BridgeMetrics.start();
+ * try {
+ * 	...
+ * } finally {
+ * 	BridgeMetrics.stop(BridgeOperation.CALL, startTime);
+ * }
+ * </pre>
+ *
+ * The metrics are disabled by default. Then a measurement only costs the
+ * read of a volatile flag. If enabled, the metrics provide
+ * <ul>
+ * <li>a latency histogram for each {@link BridgeOperation}</li>
+ * <li>the crossings of each call site, that is the wrapper class and method
+ * that issued the crossing (e.g. "Selection.attr"). Finding the call site
+ * needs a stack trace; it can be switched off with
+ * {@link #setAttributionEnabled(boolean)}.</li>
+ * <li>the totals of each render, see {@link #beginRender(String)}</li>
+ * <li>JFR events, if the runtime supports Java Flight Recorder</li>
+ * <li>a JMX MXBean, see {@link #registerMBean()}</li>
+ * </ul>
+ * Crossings that are nested (e.g. a JavaScript callback that calls back into
+ * JavaScript) are measured inclusively.
+ */
+public final class BridgeMetrics {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * The object name of the MXBean
+	 */
+	public static final String OBJECT_NAME = "org.treez.javafxd3:type=BridgeMetrics";
+
+	/**
+	 * The start time that is returned by {@link #start()} if the metrics are
+	 * disabled
+	 */
+	public static final long NOT_STARTED = Long.MIN_VALUE;
+
+	/**
+	 * The call site of crossings that have not been issued by a wrapper
+	 */
+	public static final String UNATTRIBUTED = "<unattributed>";
+
+	private static final int MAX_NUMBER_OF_RECENT_RENDERS = 100;
+
+	private static final int MAX_NUMBER_OF_CALL_SITES = 10000;
+
+	private static final int NUMBER_OF_TOP_CALL_SITES = 50;
+
+	/**
+	 * Packages whose classes do not issue crossings themselves but forward
+	 * them (e.g. the JsObject implementations)
+	 */
+	private static final String[] FORWARDING_PACKAGES = { //
+			"org.treez.javafxd3.metrics.", //
+			"org.treez.javafxd3.javafx.", //
+			"org.treez.javafxd3.nashorn.", //
+			"java.", //
+			"javax.", //
+			"sun.", //
+			"jdk.", //
+			"com.sun.", //
+			"netscape." };
+
+	/**
+	 * Wrapper infrastructure classes whose crossings are attributed to the
+	 * calling wrapper method
+	 */
+	private static final Set<String> FORWARDING_CLASSES = new HashSet<>(Arrays.asList( //
+			"org.treez.javafxd3.d3.wrapper.JavaScriptObject", //
+			"org.treez.javafxd3.d3.core.CallbackRegistry", //
+			"org.treez.javafxd3.d3.core.ListenerRegistry", //
+			"org.treez.javafxd3.d3.core.ScriptTemplateCache", //
+			"org.treez.javafxd3.d3.core.ConversionUtil", //
+			"org.treez.javafxd3.d3.arrays.TypedArrays"));
+
+	private static volatile boolean enabled = false;
+
+	private static volatile boolean attributionEnabled = true;
+
+	private static final LatencyHistogram[] HISTOGRAMS = createHistograms();
+
+	private static final Map<String, CallSiteStatistics> CALL_SITES = new ConcurrentHashMap<>();
+
+	private static final ThreadLocal<RenderScope> CURRENT_RENDER = new ThreadLocal<>();
+
+	private static final ArrayDeque<RenderScope> RECENT_RENDERS = new ArrayDeque<>();
+
+	/**
+	 * Emits the JFR events; null if JFR is not available or has not been
+	 * initialized yet
+	 */
+	private static volatile JfrBridgeEvents jfrEvents;
+
+	private static boolean jfrIsInitialized = false;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	private BridgeMetrics() {
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	private static LatencyHistogram[] createHistograms() {
+		BridgeOperation[] operations = BridgeOperation.values();
+		LatencyHistogram[] histograms = new LatencyHistogram[operations.length];
+		for (int index = 0; index < operations.length; index++) {
+			histograms[index] = new LatencyHistogram();
+		}
+		return histograms;
+	}
+
+	/**
+	 * Starts to collect metrics
+	 */
+	public static void enable() {
+		initializeJfr();
+		enabled = true;
+	}
+
+	/**
+	 * Stops to collect metrics. The collected metrics are kept.
+	 */
+	public static void disable() {
+		enabled = false;
+	}
+
+	private static synchronized void initializeJfr() {
+		if (jfrIsInitialized) {
+			return;
+		}
+		jfrIsInitialized = true;
+		jfrEvents = JfrBridgeEvents.create();
+	}
+
+	/**
+	 * Returns the start time of a crossing or {@link #NOT_STARTED} if the
+	 * metrics are disabled
+	 */
+	public static long start() {
+		if (!enabled) {
+			return NOT_STARTED;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the crossing that has been started at the given time. Does
+	 * nothing if the start time is {@link #NOT_STARTED}.
+	 */
+	public static void stop(BridgeOperation operation, long startTime) {
+		if (startTime == NOT_STARTED) {
+			return;
+		}
+		long durationNanos = System.nanoTime() - startTime;
+		record(operation, durationNanos);
+	}
+
+	private static void record(BridgeOperation operation, long durationNanos) {
+		HISTOGRAMS[operation.ordinal()].record(durationNanos);
+
+		String callSite = null;
+		if (attributionEnabled) {
+			callSite = findCallSite();
+			getOrCreateCallSiteStatistics(callSite).record(operation, durationNanos);
+		}
+
+		RenderScope render = CURRENT_RENDER.get();
+		if (render != null) {
+			render.record(operation, durationNanos);
+		}
+
+		JfrBridgeEvents events = jfrEvents;
+		if (events != null) {
+			events.emitCrossing(operation, callSite, durationNanos);
+		}
+	}
+
+	private static CallSiteStatistics getOrCreateCallSiteStatistics(String callSite) {
+		CallSiteStatistics statistics = CALL_SITES.get(callSite);
+		if (statistics != null) {
+			return statistics;
+		}
+		boolean isFull = CALL_SITES.size() >= MAX_NUMBER_OF_CALL_SITES;
+		if (isFull) {
+			callSite = UNATTRIBUTED;
+		}
+		return CALL_SITES.computeIfAbsent(callSite, CallSiteStatistics::new);
+	}
+
+	/**
+	 * Returns the simple class name and method name of the first stack frame
+	 * that does not belong to the bridge infrastructure, e.g.
+	 * "Selection.attr"
+	 */
+	static String findCallSite() {
+		StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+		for (StackTraceElement element : stackTrace) {
+			String className = getOuterClassName(element.getClassName());
+			boolean isForwarding = isForwardingClass(className);
+			if (!isForwarding) {
+				String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
+				return simpleClassName + "." + element.getMethodName();
+			}
+		}
+		return UNATTRIBUTED;
+	}
+
+	private static String getOuterClassName(String className) {
+		int innerClassIndex = className.indexOf('$');
+		if (innerClassIndex < 0) {
+			return className;
+		}
+		return className.substring(0, innerClassIndex);
+	}
+
+	private static boolean isForwardingClass(String className) {
+		if (FORWARDING_CLASSES.contains(className)) {
+			return true;
+		}
+		for (String packagePrefix : FORWARDING_PACKAGES) {
+			if (className.startsWith(packagePrefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Starts a render on the current thread. The crossings of the thread are
+	 * added to the returned scope until it is closed. If the metrics are
+	 * disabled, an inactive scope is returned.
+	 */
+	public static RenderScope beginRender(String name) {
+		if (!enabled) {
+			return RenderScope.INACTIVE;
+		}
+		RenderScope render = new RenderScope(name, CURRENT_RENDER.get());
+		CURRENT_RENDER.set(render);
+		return render;
+	}
+
+	static void renderClosed(RenderScope render) {
+		boolean isCurrentRender = CURRENT_RENDER.get() == render;
+		if (isCurrentRender) {
+			RenderScope parent = render.getParent();
+			if (parent == null) {
+				CURRENT_RENDER.remove();
+			} else {
+				CURRENT_RENDER.set(parent);
+			}
+		}
+
+		synchronized (RECENT_RENDERS) {
+			RECENT_RENDERS.addLast(render);
+			while (RECENT_RENDERS.size() > MAX_NUMBER_OF_RECENT_RENDERS) {
+				RECENT_RENDERS.removeFirst();
+			}
+		}
+
+		JfrBridgeEvents events = jfrEvents;
+		if (events != null && enabled) {
+			events.emitRender(render);
+		}
+	}
+
+	/**
+	 * Clears all collected metrics
+	 */
+	public static void reset() {
+		for (LatencyHistogram histogram : HISTOGRAMS) {
+			histogram.reset();
+		}
+		CALL_SITES.clear();
+		synchronized (RECENT_RENDERS) {
+			RECENT_RENDERS.clear();
+		}
+	}
+
+	/**
+	 * Registers the MXBean of the metrics at the platform MBean server (if it
+	 * has not been registered yet)
+	 */
+	public static synchronized void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(objectName)) {
+				StandardMBean mBean = new StandardMBean(new MXBean(), BridgeMetricsMXBean.class, true);
+				server.registerMBean(mBean, objectName);
+			}
+		} catch (JMException exception) {
+			throw new IllegalStateException("Could not register the bridge metrics MXBean", exception);
+		}
+	}
+
+	/**
+	 * Removes the MXBean from the platform MBean server
+	 */
+	public static synchronized void unregisterMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException exception) {
+			throw new IllegalStateException("Could not unregister the bridge metrics MXBean", exception);
+		}
+	}
+
+	/**
+	 * Returns a multi line report of the collected metrics, e.g. for logging
+	 */
+	public static String getSummary() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Java-JavaScript crossings: ") //
+				.append(getTotalCount()) //
+				.append(String.format(", %.3f ms", getTotalNanos() / 1e6)) //
+				.append('\n');
+		for (BridgeOperation operation : BridgeOperation.values()) {
+			LatencyHistogram histogram = getHistogram(operation);
+			if (histogram.getCount() > 0) {
+				builder.append(String.format("  %s: %d, mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us%n",
+						operation, histogram.getCount(), histogram.getMeanNanos() / 1e3,
+						histogram.getPercentileNanos(50) / 1e3, histogram.getPercentileNanos(99) / 1e3,
+						histogram.getMaxNanos() / 1e3));
+			}
+		}
+		List<CallSiteStatistics> callSites = getCallSiteStatistics();
+		int numberOfCallSites = Math.min(callSites.size(), NUMBER_OF_TOP_CALL_SITES);
+		for (int index = 0; index < numberOfCallSites; index++) {
+			builder.append("  ").append(callSites.get(index)).append('\n');
+		}
+		return builder.toString();
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static boolean isAttributionEnabled() {
+		return attributionEnabled;
+	}
+
+	/**
+	 * Enables or disables the attribution of the crossings to their call
+	 * sites. The attribution is enabled by default; it needs a stack trace for
+	 * each crossing.
+	 */
+	public static void setAttributionEnabled(boolean isAttributionEnabled) {
+		attributionEnabled = isAttributionEnabled;
+	}
+
+	public static LatencyHistogram getHistogram(BridgeOperation operation) {
+		return HISTOGRAMS[operation.ordinal()];
+	}
+
+	public static long getTotalCount() {
+		long totalCount = 0;
+		for (LatencyHistogram histogram : HISTOGRAMS) {
+			totalCount += histogram.getCount();
+		}
+		return totalCount;
+	}
+
+	public static long getTotalNanos() {
+		long totalNanos = 0;
+		for (LatencyHistogram histogram : HISTOGRAMS) {
+			totalNanos += histogram.getTotalNanos();
+		}
+		return totalNanos;
+	}
+
+	/**
+	 * Returns the statistics of the given call site (e.g. "Selection.attr");
+	 * null if no crossings have been attributed to it
+	 */
+	public static CallSiteStatistics getCallSiteStatistics(String callSite) {
+		return CALL_SITES.get(callSite);
+	}
+
+	/**
+	 * Returns the statistics of all call sites, ordered by their total
+	 * crossing time (descending)
+	 */
+	public static List<CallSiteStatistics> getCallSiteStatistics() {
+		List<CallSiteStatistics> callSites = new ArrayList<>(CALL_SITES.values());
+		callSites.sort(Comparator.comparingLong(CallSiteStatistics::getTotalNanos).reversed());
+		return callSites;
+	}
+
+	/**
+	 * Returns the most recently closed renders, oldest first
+	 */
+	public static List<RenderScope> getRecentRenders() {
+		synchronized (RECENT_RENDERS) {
+			return new ArrayList<>(RECENT_RENDERS);
+		}
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * Publishes the metrics through JMX
+	 */
+	private static class MXBean implements BridgeMetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return BridgeMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean isEnabled) {
+			if (isEnabled) {
+				enable();
+			} else {
+				disable();
+			}
+		}
+
+		@Override
+		public boolean isAttributionEnabled() {
+			return BridgeMetrics.isAttributionEnabled();
+		}
+
+		@Override
+		public void setAttributionEnabled(boolean isAttributionEnabled) {
+			BridgeMetrics.setAttributionEnabled(isAttributionEnabled);
+		}
+
+		@Override
+		public long getTotalCount() {
+			return BridgeMetrics.getTotalCount();
+		}
+
+		@Override
+		public long getTotalNanos() {
+			return BridgeMetrics.getTotalNanos();
+		}
+
+		@Override
+		public Map<String, Long> getCounts() {
+			Map<String, Long> counts = new LinkedHashMap<>();
+			for (BridgeOperation operation : BridgeOperation.values()) {
+				counts.put(operation.name(), getHistogram(operation).getCount());
+			}
+			return counts;
+		}
+
+		@Override
+		public Map<String, Double> getMeanNanos() {
+			Map<String, Double> meanNanos = new LinkedHashMap<>();
+			for (BridgeOperation operation : BridgeOperation.values()) {
+				meanNanos.put(operation.name(), getHistogram(operation).getMeanNanos());
+			}
+			return meanNanos;
+		}
+
+		@Override
+		public Map<String, Long> getP99Nanos() {
+			Map<String, Long> p99Nanos = new LinkedHashMap<>();
+			for (BridgeOperation operation : BridgeOperation.values()) {
+				p99Nanos.put(operation.name(), getHistogram(operation).getPercentileNanos(99));
+			}
+			return p99Nanos;
+		}
+
+		@Override
+		public String[] getTopCallSites() {
+			return getCallSiteStatistics().stream() //
+					.limit(NUMBER_OF_TOP_CALL_SITES) //
+					.map(CallSiteStatistics::toString) //
+					.toArray(String[]::new);
+		}
+
+		@Override
+		public String[] getRecentRenders() {
+			return BridgeMetrics.getRecentRenders().stream() //
+					.map(RenderScope::toString) //
+					.toArray(String[]::new);
+		}
+
+		@Override
+		public void reset() {
+			BridgeMetrics.reset();
+		}
+	}
+
+	//#end region
+
+}
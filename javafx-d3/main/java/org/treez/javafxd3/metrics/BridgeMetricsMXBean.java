@@ -0,0 +1,55 @@
+package org.treez.javafxd3.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link BridgeMetrics}; registered as
+ * "org.treez.javafxd3:type=BridgeMetrics" by
+ * {@link BridgeMetrics#registerMBean()}. All times are given in nanoseconds.
+ */
+public interface BridgeMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	boolean isAttributionEnabled();
+
+	void setAttributionEnabled(boolean attributionEnabled);
+
+	long getTotalCount();
+
+	long getTotalNanos();
+
+	/**
+	 * Returns the number of crossings by operation
+	 */
+	Map<String, Long> getCounts();
+
+	/**
+	 * Returns the mean latency by operation
+	 */
+	Map<String, Double> getMeanNanos();
+
+	/**
+	 * Returns the 99th percentile of the latency by operation
+	 */
+	Map<String, Long> getP99Nanos();
+
+	/**
+	 * Returns the call sites with the highest total crossing time, one line
+	 * per call site
+	 */
+	String[] getTopCallSites();
+
+	/**
+	 * Returns the most recent renders, one line per render
+	 */
+	String[] getRecentRenders();
+
+	/**
+	 * Clears all statistics
+	 */
+	void reset();
+
+}
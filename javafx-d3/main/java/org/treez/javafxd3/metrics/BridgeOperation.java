@@ -0,0 +1,37 @@
+package org.treez.javafxd3.metrics;
+
+/**
+ * The kinds of crossings between Java and JavaScript that are measured by
+ * {@link BridgeMetrics}
+ */
+public enum BridgeOperation {
+
+	//#region VALUES
+
+	CALL,
+
+	EVAL,
+
+	GET_MEMBER,
+
+	SET_MEMBER,
+
+	REMOVE_MEMBER,
+
+	GET_SLOT,
+
+	SET_SLOT,
+
+	/**
+	 * JsEngine.executeScript
+	 */
+	EXECUTE_SCRIPT,
+
+	/**
+	 * Execution of the operations that have been recorded during a batch
+	 */
+	FLUSH;
+
+	//#end region
+
+}
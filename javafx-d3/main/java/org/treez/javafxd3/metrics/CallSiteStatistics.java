@@ -0,0 +1,94 @@
+package org.treez.javafxd3.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The numbers and durations of the crossings that have been issued by a call
+ * site, e.g. "Selection.attr"
+ */
+public class CallSiteStatistics {
+
+	//#region ATTRIBUTES
+
+	private static final int NUMBER_OF_OPERATIONS = BridgeOperation.values().length;
+
+	private final String callSite;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_OPERATIONS);
+
+	private final AtomicLongArray nanos = new AtomicLongArray(NUMBER_OF_OPERATIONS);
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public CallSiteStatistics(String callSite) {
+		this.callSite = callSite;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	void record(BridgeOperation operation, long durationNanos) {
+		int index = operation.ordinal();
+		counts.incrementAndGet(index);
+		nanos.addAndGet(index, durationNanos);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(callSite) //
+				.append(": ") //
+				.append(getTotalCount()) //
+				.append(" crossings, ") //
+				.append(String.format("%.3f ms", getTotalNanos() / 1e6));
+		for (BridgeOperation operation : BridgeOperation.values()) {
+			long count = getCount(operation);
+			if (count > 0) {
+				builder.append(", ").append(operation).append('=').append(count);
+			}
+		}
+		return builder.toString();
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the call site as simple class name and method name, e.g.
+	 * "Selection.attr"
+	 */
+	public String getCallSite() {
+		return callSite;
+	}
+
+	public long getCount(BridgeOperation operation) {
+		return counts.get(operation.ordinal());
+	}
+
+	public long getNanos(BridgeOperation operation) {
+		return nanos.get(operation.ordinal());
+	}
+
+	public long getTotalCount() {
+		long totalCount = 0;
+		for (int index = 0; index < NUMBER_OF_OPERATIONS; index++) {
+			totalCount += counts.get(index);
+		}
+		return totalCount;
+	}
+
+	public long getTotalNanos() {
+		long totalNanos = 0;
+		for (int index = 0; index < NUMBER_OF_OPERATIONS; index++) {
+			totalNanos += nanos.get(index);
+		}
+		return totalNanos;
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,195 @@
+package org.treez.javafxd3.metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Emits the measured crossings and renders as Java Flight Recorder events.
+ * The JFR API (jdk.jfr) is only available on some Java 8 runtimes; therefore
+ * it is accessed by reflection and the event types are created dynamically
+ * with jdk.jfr.EventFactory. If the API is not available, no events are
+ * emitted.
+ * <p>
+ * The events are named "org.treez.javafxd3.BridgeCrossing" and
+ * "org.treez.javafxd3.Render" and belong to the category "JavaFx-D3".
+ */
+final class JfrBridgeEvents {
+
+	//#region ATTRIBUTES
+
+	private static final String CATEGORY = "JavaFx-D3";
+
+	private final EventFactoryHandle crossingEvents;
+
+	private final EventFactoryHandle renderEvents;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	private JfrBridgeEvents(EventFactoryHandle crossingEvents, EventFactoryHandle renderEvents) {
+		this.crossingEvents = crossingEvents;
+		this.renderEvents = renderEvents;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Creates the event types; returns null if JFR is not available
+	 */
+	static JfrBridgeEvents create() {
+		try {
+			JfrApi api = new JfrApi();
+
+			EventFactoryHandle crossingEvents = api.createEventFactory("org.treez.javafxd3.BridgeCrossing",
+					"Java-JavaScript Crossing", //
+					api.createField(String.class, "operation", "Operation"), //
+					api.createField(String.class, "callSite", "Call Site"), //
+					api.createTimespanField("crossingDuration", "Crossing Duration"));
+
+			EventFactoryHandle renderEvents = api.createEventFactory("org.treez.javafxd3.Render", "JavaFx-D3 Render", //
+					api.createField(String.class, "name", "Name"), //
+					api.createField(long.class, "crossings", "Crossings"), //
+					api.createTimespanField("crossingTime", "Time in Crossings"), //
+					api.createTimespanField("wallTime", "Wall Time"));
+
+			return new JfrBridgeEvents(crossingEvents, renderEvents);
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError exception) {
+			return null;
+		}
+	}
+
+	void emitCrossing(BridgeOperation operation, String callSite, long durationNanos) {
+		crossingEvents.commit(operation.name(), callSite, durationNanos);
+	}
+
+	void emitRender(RenderScope render) {
+		renderEvents.commit(render.getName(), render.getTotalCount(), render.getTotalNanos(), render.getWallNanos());
+	}
+
+	//#end region
+
+	//#region INNER CLASSES
+
+	/**
+	 * The reflective handles of the jdk.jfr API
+	 */
+	private static class JfrApi {
+
+		private final Class<?> annotationElementClass;
+
+		private final Constructor<?> annotationElementConstructor;
+
+		private final Constructor<?> valueDescriptorConstructor;
+
+		private final Method createMethod;
+
+		private final Method newEventMethod;
+
+		private final Method getEventTypeMethod;
+
+		private final Method isEnabledMethod;
+
+		private final Method setMethod;
+
+		private final Method commitMethod;
+
+		JfrApi() throws ReflectiveOperationException {
+			annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+			annotationElementConstructor = annotationElementClass.getConstructor(Class.class, Object.class);
+			Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+			valueDescriptorConstructor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+			Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+			createMethod = eventFactoryClass.getMethod("create", List.class, List.class);
+			newEventMethod = eventFactoryClass.getMethod("newEvent");
+			getEventTypeMethod = eventFactoryClass.getMethod("getEventType");
+			isEnabledMethod = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			setMethod = eventClass.getMethod("set", int.class, Object.class);
+			commitMethod = eventClass.getMethod("commit");
+		}
+
+		EventFactoryHandle createEventFactory(String name, String label, Object... fields)
+				throws ReflectiveOperationException {
+			List<Object> annotations = new ArrayList<>();
+			annotations.add(createAnnotation("jdk.jfr.Name", name));
+			annotations.add(createAnnotation("jdk.jfr.Label", label));
+			annotations.add(createAnnotation("jdk.jfr.Category", new String[] { CATEGORY }));
+			annotations.add(createAnnotation("jdk.jfr.StackTrace", false));
+			Object eventFactory = createMethod.invoke(null, annotations, Arrays.asList(fields));
+			Object eventType = getEventTypeMethod.invoke(eventFactory);
+			return new EventFactoryHandle(this, eventFactory, eventType);
+		}
+
+		Object createField(Class<?> type, String name, String label) throws ReflectiveOperationException {
+			List<Object> annotations = new ArrayList<>();
+			annotations.add(createAnnotation("jdk.jfr.Label", label));
+			return valueDescriptorConstructor.newInstance(type, name, annotations);
+		}
+
+		Object createTimespanField(String name, String label) throws ReflectiveOperationException {
+			List<Object> annotations = new ArrayList<>();
+			annotations.add(createAnnotation("jdk.jfr.Label", label));
+			annotations.add(createAnnotation("jdk.jfr.Timespan", "NANOSECONDS"));
+			return valueDescriptorConstructor.newInstance(long.class, name, annotations);
+		}
+
+		private Object createAnnotation(String annotationClassName, Object value) throws ReflectiveOperationException {
+			Class<? extends Annotation> annotationClass = Class.forName(annotationClassName)
+					.asSubclass(Annotation.class);
+			return annotationElementConstructor.newInstance(annotationClass, value);
+		}
+	}
+
+	/**
+	 * A dynamically created event type
+	 */
+	private static class EventFactoryHandle {
+
+		private final JfrApi api;
+
+		private final Object eventFactory;
+
+		private final Object eventType;
+
+		/**
+		 * Is set to false if the event could not be emitted, so that failing
+		 * reflective calls are not repeated for each crossing
+		 */
+		private volatile boolean isWorking = true;
+
+		EventFactoryHandle(JfrApi api, Object eventFactory, Object eventType) {
+			this.api = api;
+			this.eventFactory = eventFactory;
+			this.eventType = eventType;
+		}
+
+		void commit(Object... values) {
+			if (!isWorking) {
+				return;
+			}
+			try {
+				boolean isEnabled = (Boolean) api.isEnabledMethod.invoke(eventType);
+				if (!isEnabled) {
+					return;
+				}
+				Object event = api.newEventMethod.invoke(eventFactory);
+				for (int index = 0; index < values.length; index++) {
+					api.setMethod.invoke(event, index, values[index]);
+				}
+				api.commitMethod.invoke(event);
+			} catch (ReflectiveOperationException | RuntimeException exception) {
+				isWorking = false;
+			}
+		}
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,140 @@
+package org.treez.javafxd3.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of latencies in nanoseconds. The buckets grow
+ * exponentially: bucket k contains the latencies in [2^k, 2^(k+1)) ns, so
+ * that percentiles are accurate within a factor of two while recording only
+ * needs a few atomic increments.
+ */
+public class LatencyHistogram {
+
+	//#region ATTRIBUTES
+
+	/**
+	 * Number of buckets; the last bucket contains all latencies above 2^62 ns
+	 */
+	public static final int NUMBER_OF_BUCKETS = 63;
+
+	private final AtomicLongArray bucketCounts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	//#end region
+
+	//#region METHODS
+
+	/**
+	 * Records the given latency
+	 */
+	public void record(long nanos) {
+		long positiveNanos = Math.max(nanos, 0);
+		bucketCounts.incrementAndGet(getBucketIndex(positiveNanos));
+		count.incrementAndGet();
+		totalNanos.addAndGet(positiveNanos);
+
+		long currentMax = maxNanos.get();
+		while (positiveNanos > currentMax && !maxNanos.compareAndSet(currentMax, positiveNanos)) {
+			currentMax = maxNanos.get();
+		}
+	}
+
+	/**
+	 * Returns the index of the bucket that contains the given latency
+	 */
+	public static int getBucketIndex(long nanos) {
+		if (nanos <= 1) {
+			return 0;
+		}
+		int index = 63 - Long.numberOfLeadingZeros(nanos);
+		return Math.min(index, NUMBER_OF_BUCKETS - 1);
+	}
+
+	/**
+	 * Returns the upper bound of the latencies in the given bucket
+	 */
+	public static long getBucketUpperBound(int bucketIndex) {
+		if (bucketIndex >= NUMBER_OF_BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+		return (1L << (bucketIndex + 1)) - 1;
+	}
+
+	/**
+	 * Returns an estimate for the given percentile (0..100) in nanoseconds:
+	 * the upper bound of the bucket that contains the percentile, limited by
+	 * the maximum latency
+	 */
+	public long getPercentileNanos(double percentile) {
+		long numberOfValues = count.get();
+		if (numberOfValues == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100 * numberOfValues);
+		rank = Math.max(rank, 1);
+		long cumulativeCount = 0;
+		for (int bucketIndex = 0; bucketIndex < NUMBER_OF_BUCKETS; bucketIndex++) {
+			cumulativeCount += bucketCounts.get(bucketIndex);
+			if (cumulativeCount >= rank) {
+				return Math.min(getBucketUpperBound(bucketIndex), maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	/**
+	 * Clears the histogram
+	 */
+	public void reset() {
+		for (int bucketIndex = 0; bucketIndex < NUMBER_OF_BUCKETS; bucketIndex++) {
+			bucketCounts.set(bucketIndex, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public double getMeanNanos() {
+		long numberOfValues = count.get();
+		if (numberOfValues == 0) {
+			return 0;
+		}
+		return (double) totalNanos.get() / numberOfValues;
+	}
+
+	/**
+	 * Returns a copy of the bucket counts
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[NUMBER_OF_BUCKETS];
+		for (int bucketIndex = 0; bucketIndex < NUMBER_OF_BUCKETS; bucketIndex++) {
+			counts[bucketIndex] = bucketCounts.get(bucketIndex);
+		}
+		return counts;
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,151 @@
+package org.treez.javafxd3.metrics;
+
+/**
+ * Collects the totals of the crossings that are issued by the current thread
+ * while rendering, e.g.
+ *
+ * <pre>
+ * try (RenderScope render = BridgeMetrics.beginRender("update chart")) {
+ * 	...
+ * }
+ * </pre>
+ *
+ * Render scopes might be nested; crossings are counted by all open scopes of
+ * the thread. Closed scopes are kept by {@link BridgeMetrics} as recent
+ * renders.
+ */
+public class RenderScope implements AutoCloseable {
+
+	//#region ATTRIBUTES
+
+	private static final int NUMBER_OF_OPERATIONS = BridgeOperation.values().length;
+
+	/**
+	 * The scope that is returned if the metrics are disabled. It does not
+	 * count anything.
+	 */
+	static final RenderScope INACTIVE = new RenderScope("inactive", null);
+
+	private final String name;
+
+	/**
+	 * The enclosing scope of the same thread; might be null
+	 */
+	private final RenderScope parent;
+
+	private final long startTime;
+
+	private long wallNanos = 0;
+
+	private boolean isClosed = false;
+
+	private final long[] counts = new long[NUMBER_OF_OPERATIONS];
+
+	private final long[] nanos = new long[NUMBER_OF_OPERATIONS];
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	RenderScope(String name, RenderScope parent) {
+		this.name = name;
+		this.parent = parent;
+		this.startTime = System.nanoTime();
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	void record(BridgeOperation operation, long durationNanos) {
+		RenderScope scope = this;
+		while (scope != null) {
+			scope.counts[operation.ordinal()]++;
+			scope.nanos[operation.ordinal()] += durationNanos;
+			scope = scope.parent;
+		}
+	}
+
+	/**
+	 * Ends the render. Has no effect if the scope has already been closed.
+	 */
+	@Override
+	public void close() {
+		boolean isInactive = this == INACTIVE;
+		if (isInactive || isClosed) {
+			return;
+		}
+		isClosed = true;
+		wallNanos = System.nanoTime() - startTime;
+		BridgeMetrics.renderClosed(this);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(name) //
+				.append(": ") //
+				.append(getTotalCount()) //
+				.append(" crossings, ") //
+				.append(String.format("%.3f ms in crossings, %.3f ms wall time", getTotalNanos() / 1e6,
+						wallNanos / 1e6));
+		for (BridgeOperation operation : BridgeOperation.values()) {
+			long count = getCount(operation);
+			if (count > 0) {
+				builder.append(", ").append(operation).append('=').append(count);
+			}
+		}
+		return builder.toString();
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	public String getName() {
+		return name;
+	}
+
+	RenderScope getParent() {
+		return parent;
+	}
+
+	public boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * Returns the time between the begin and the end of the render (0 while
+	 * the scope is open)
+	 */
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	public long getCount(BridgeOperation operation) {
+		return counts[operation.ordinal()];
+	}
+
+	public long getNanos(BridgeOperation operation) {
+		return nanos[operation.ordinal()];
+	}
+
+	public long getTotalCount() {
+		long totalCount = 0;
+		for (long count : counts) {
+			totalCount += count;
+		}
+		return totalCount;
+	}
+
+	public long getTotalNanos() {
+		long totalNanos = 0;
+		for (long operationNanos : nanos) {
+			totalNanos += operationNanos;
+		}
+		return totalNanos;
+	}
+
+	//#end region
+
+}
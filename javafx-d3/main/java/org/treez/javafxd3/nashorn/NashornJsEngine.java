@@ -0,0 +1,313 @@
+package org.treez.javafxd3.nashorn;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.treez.javafxd3.d3.D3;
+import org.treez.javafxd3.d3.core.JsEngine;
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.metrics.BridgeMetrics;
+import org.treez.javafxd3.metrics.BridgeOperation;
+
+import jdk.nashorn.api.scripting.NashornException;
+import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
+import netscape.javascript.JSException;
+
+/**
+ * A JsEngine that runs d3 in the Nashorn JavaScript engine instead of a
+ * JavaFx WebView. It does neither need a display nor the JavaFx application
+ * thread and can be used to create SVG documents off-screen, e.g. for
+ * reports:
+ *
+ * <pre>
+ * NashornJsEngine engine = new NashornJsEngine();
+ * D3 d3 = engine.getD3();
+ * d3.select("#svg").append("circle").attr("r", 10);
+ * String svg = engine.getSvgString();
+ * </pre>
+ *
+ * The browser is replaced by a minimal DOM (see javafxd3-dom.js) that supports
+ * the features used by d3 selections, scales, axes and shapes. The content is
+ * the same as the initial content of the JavaFxD3Browser: a div with the id
+ * "root" that contains an svg element with the id "svg".
+ * <p>
+ * Each engine has its own JavaScript global scope. An engine must only be
+ * used by one thread at a time, but several engines can be used in parallel
+ * on different threads. Since loading d3 takes some time, engines should be
+ * reused (e.g. one engine per worker thread) and cleared with
+ * {@link #reset()}.
+ * <p>
+ * Timers (and therefore transitions) are not executed automatically; due
+ * timers are executed with {@link #runTimers()}.
+ */
+public class NashornJsEngine implements JsEngine {
+
+	//#region ATTRIBUTES
+
+	private static final NashornScriptEngineFactory ENGINE_FACTORY = new NashornScriptEngineFactory();
+
+	private static final String DOM_LIBRARY = "javafxd3-dom.js";
+
+	private static final String D3_LIBRARY = "d3.min.js";
+
+	private static final String CREATE_INITIAL_CONTENT_COMMAND = "(function(){" //
+			+ "  var body = document.body;" //
+			+ "  body.textContent = '';" //
+			+ "  var root = document.createElement('div');" //
+			+ "  root.setAttribute('id', 'root');" //
+			+ "  body.appendChild(root);" //
+			+ "  var svg = document.createElementNS(d3.ns.prefix.svg, 'svg');" //
+			+ "  svg.setAttribute('id', 'svg');" //
+			+ "  svg.setAttribute('class', 'svg');" //
+			+ "  root.appendChild(svg);" //
+			+ "  var dummyDiv = document.createElement('div');" //
+			+ "  dummyDiv.setAttribute('id', 'dummyDiv');" //
+			+ "  body.appendChild(dummyDiv);" //
+			+ "})()";
+
+	private ScriptEngine scriptEngine;
+
+	/**
+	 * Number of nested batches that have been started and not yet ended
+	 */
+	private int batchDepth = 0;
+
+	/**
+	 * The services that belong to this engine, by their class
+	 */
+	private Map<Class<?>, Object> services = new HashMap<>();
+
+	private D3 d3;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	/**
+	 * Creates a new engine and loads d3
+	 */
+	public NashornJsEngine() {
+		scriptEngine = ENGINE_FACTORY.getScriptEngine();
+		loadLibrary(DOM_LIBRARY);
+		loadLibrary(D3_LIBRARY);
+		executeScript(CREATE_INITIAL_CONTENT_COMMAND);
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	@Override
+	public Object executeScript(String script) {
+		long startTime = BridgeMetrics.start();
+		try {
+			Object result = scriptEngine.eval(script);
+			return toJava(result);
+		} catch (ScriptException exception) {
+			throw createJSException(exception);
+		} catch (NashornException exception) {
+			throw NashornJsObject.createJSException(exception);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.EXECUTE_SCRIPT, startTime);
+		}
+	}
+
+	@Override
+	public Object toJsObjectIfNotSimpleType(Object argument) {
+		return toJava(argument);
+	}
+
+	/**
+	 * Removes the content of the document and recreates the initial content
+	 */
+	public void reset() {
+		executeScript(CREATE_INITIAL_CONTENT_COMMAND);
+	}
+
+	/**
+	 * Returns the svg element with the id "svg" as XML string
+	 */
+	public String getSvgString() {
+		return toXmlString((JsObject) executeScript("document.getElementById('svg')"));
+	}
+
+	/**
+	 * Returns the given element as XML string
+	 */
+	public String toXmlString(JsObject element) {
+		JsObject global = (JsObject) executeScript("this");
+		return (String) global.call("javafxd3_serialize", element);
+	}
+
+	/**
+	 * Executes the timers that are due (e.g. of d3.timer and of transitions)
+	 * and returns the number of executed timers
+	 */
+	public int runTimers() {
+		Object numberOfTimers = executeScript("javafxd3_runTimers()");
+		return ((Number) numberOfTimers).intValue();
+	}
+
+	/**
+	 * Nashorn calls are plain method calls and do not need to be batched.
+	 * The nesting of batches is tracked anyway, so that the engine behaves
+	 * like the JavaFx engine.
+	 */
+	@Override
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	@Override
+	public void endBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("There is no batch to end.");
+		}
+		batchDepth--;
+	}
+
+	@Override
+	public boolean isBatching() {
+		return batchDepth > 0;
+	}
+
+	@Override
+	public void flush() {
+		//operations are never recorded
+	}
+
+	@Override
+	public <S> S getService(Class<S> serviceClass, Function<JsEngine, S> factory) {
+		Object service = services.get(serviceClass);
+		if (service == null) {
+			service = factory.apply(this);
+			services.put(serviceClass, service);
+		}
+		return serviceClass.cast(service);
+	}
+
+	/**
+	 * Converts a value that has been returned from JavaScript like the
+	 * JavaFx engine does: objects are wrapped as JsObject, undefined is
+	 * returned as the string "undefined" and numbers that are 32 bit integers
+	 * are returned as Integer.
+	 */
+	Object toJava(Object value) {
+
+		boolean isUndefined = ScriptObjectMirror.isUndefined(value);
+		if (isUndefined) {
+			return "undefined";
+		}
+
+		boolean isMirror = value instanceof ScriptObjectMirror;
+		if (isMirror) {
+			return new NashornJsObject(this, (ScriptObjectMirror) value);
+		}
+
+		boolean isNumber = value instanceof Number && !(value instanceof Integer);
+		if (isNumber) {
+			return toJavaNumber((Number) value);
+		}
+
+		boolean isCharSequence = value instanceof CharSequence && !(value instanceof String);
+		if (isCharSequence) {
+			return value.toString();
+		}
+
+		return value;
+	}
+
+	private static Number toJavaNumber(Number number) {
+		double doubleValue = number.doubleValue();
+		int intValue = (int) doubleValue;
+		boolean isInt32 = intValue == doubleValue && !(doubleValue == 0 && 1 / doubleValue < 0);
+		if (isInt32) {
+			return intValue;
+		}
+		return doubleValue;
+	}
+
+	Object unwrap(Object value) {
+		boolean isJsObject = value instanceof JsObject;
+		if (isJsObject) {
+			return ((JsObject) value).unwrap();
+		}
+		return value;
+	}
+
+	Object[] unwrapArguments(Object... args) {
+		Object[] unwrappedArgs = new Object[args.length];
+		for (int index = 0; index < args.length; index++) {
+			unwrappedArgs[index] = unwrap(args[index]);
+		}
+		return unwrappedArgs;
+	}
+
+	private void loadLibrary(String fileName) {
+		String script = readLibrary(fileName);
+		scriptEngine.getContext().setAttribute(ScriptEngine.FILENAME, fileName, ScriptContext.ENGINE_SCOPE);
+		try {
+			scriptEngine.eval(script);
+		} catch (ScriptException exception) {
+			String message = "Could not load JavaScript library '" + fileName + "'";
+			throw new IllegalStateException(message, exception);
+		} finally {
+			scriptEngine.getContext().removeAttribute(ScriptEngine.FILENAME, ScriptContext.ENGINE_SCOPE);
+		}
+	}
+
+	private String readLibrary(String fileName) {
+		InputStream inputStream = getClass().getClassLoader().getResourceAsStream(fileName);
+		if (inputStream == null) {
+			String message = "Could not find JavaScript library '" + fileName + "'";
+			throw new IllegalStateException(message);
+		}
+
+		StringBuilder libraryContents = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+			String line = reader.readLine();
+			while (line != null) {
+				libraryContents.append(line).append('\n');
+				line = reader.readLine();
+			}
+		} catch (IOException exception) {
+			String message = "Could not read JavaScript library '" + fileName + "'";
+			throw new IllegalStateException(message, exception);
+		}
+		return libraryContents.toString();
+	}
+
+	private static JSException createJSException(ScriptException exception) {
+		JSException jsException = new JSException(exception.getMessage());
+		jsException.initCause(exception);
+		return jsException;
+	}
+
+	//#end region
+
+	//#region ACCESSORS
+
+	/**
+	 * Returns the d3 wrapper of this engine
+	 */
+	public D3 getD3() {
+		if (d3 == null) {
+			d3 = new D3(this);
+		}
+		return d3;
+	}
+
+	//#end region
+
+}
@@ -0,0 +1,168 @@
+package org.treez.javafxd3.nashorn;
+
+import org.treez.javafxd3.d3.core.JsObject;
+import org.treez.javafxd3.metrics.BridgeMetrics;
+import org.treez.javafxd3.metrics.BridgeOperation;
+
+import jdk.nashorn.api.scripting.NashornException;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
+import netscape.javascript.JSException;
+
+/**
+ * Wraps a JavaScript object of the Nashorn engine
+ */
+public class NashornJsObject implements JsObject {
+
+	//#region ATTRIBUTES
+
+	private NashornJsEngine engine;
+
+	private ScriptObjectMirror wrappedMirror;
+
+	//#end region
+
+	//#region CONSTRUCTORS
+
+	public NashornJsObject(NashornJsEngine engine, ScriptObjectMirror wrappedMirror) {
+		this.engine = engine;
+		this.wrappedMirror = wrappedMirror;
+	}
+
+	//#end region
+
+	//#region METHODS
+
+	@Override
+	public Object call(String methodName, Object... args) {
+		long startTime = BridgeMetrics.start();
+		try {
+			Object result = wrappedMirror.callMember(methodName, engine.unwrapArguments(args));
+			return engine.toJava(result);
+		} catch (NashornException exception) {
+			throw createJSException(exception);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.CALL, startTime);
+		}
+	}
+
+	/**
+	 * Nashorn calls are plain method calls; therefore they are never recorded
+	 * and executed immediately.
+	 */
+	@Override
+	public void callWithoutResult(String methodName, Object... args) {
+		call(methodName, args);
+	}
+
+	@Override
+	public Object eval(String command) {
+		long startTime = BridgeMetrics.start();
+		try {
+			Object result = wrappedMirror.eval(command);
+			return engine.toJava(result);
+		} catch (NashornException exception) {
+			throw createJSException(exception);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.EVAL, startTime);
+		}
+	}
+
+	@Override
+	public Object getMember(String name) {
+		long startTime = BridgeMetrics.start();
+		try {
+			Object result = wrappedMirror.getMember(name);
+			return engine.toJava(result);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.GET_MEMBER, startTime);
+		}
+	}
+
+	@Override
+	public void setMember(String name, Object value) {
+		long startTime = BridgeMetrics.start();
+		try {
+			wrappedMirror.setMember(name, engine.unwrap(value));
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.SET_MEMBER, startTime);
+		}
+	}
+
+	@Override
+	public void removeMember(String name) {
+		long startTime = BridgeMetrics.start();
+		try {
+			wrappedMirror.removeMember(name);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.REMOVE_MEMBER, startTime);
+		}
+	}
+
+	@Override
+	public Object getSlot(int index) {
+		long startTime = BridgeMetrics.start();
+		try {
+			Object result = wrappedMirror.getSlot(index);
+			return engine.toJava(result);
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.GET_SLOT, startTime);
+		}
+	}
+
+	@Override
+	public void setSlot(int index, Object value) {
+		long startTime = BridgeMetrics.start();
+		try {
+			wrappedMirror.setSlot(index, engine.unwrap(value));
+		} finally {
+			BridgeMetrics.stop(BridgeOperation.SET_SLOT, startTime);
+		}
+	}
+
+	@Override
+	public Object unwrap() {
+		return wrappedMirror;
+	}
+
+	@Override
+	public boolean isElement() {
+		Object nodeType = getMember("nodeType");
+		return Integer.valueOf(1).equals(nodeType);
+	}
+
+	/**
+	 * Translates JavaScript errors to the exception that is thrown by the
+	 * JavaFx engine, so that callers can handle both engines in the same way
+	 */
+	static JSException createJSException(NashornException exception) {
+		JSException jsException = new JSException(exception.getMessage());
+		jsException.initCause(exception);
+		return jsException;
+	}
+
+	@Override
+	public int hashCode() {
+		return wrappedMirror.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object otherObject) {
+		if (otherObject == this) {
+			return true;
+		}
+		boolean isNashornJsObject = otherObject instanceof NashornJsObject;
+		if (!isNashornJsObject) {
+			return false;
+		}
+		NashornJsObject otherJsObject = (NashornJsObject) otherObject;
+		return wrappedMirror.equals(otherJsObject.unwrap());
+	}
+
+	@Override
+	public String toString() {
+		return wrappedMirror.toString();
+	}
+
+	//#end region
+
+}
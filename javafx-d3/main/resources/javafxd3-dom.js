@@ -0,0 +1,975 @@
+/*
+ * Minimal DOM for running d3 without a browser, e.g. in the Nashorn engine
+ * that is used by org.treez.javafxd3.nashorn.NashornJsEngine.
+ *
+ * Supports the parts of the DOM that are used by d3 selections, scales, axes,
+ * shapes and layouts: element trees with attributes, inline styles and event
+ * listeners, simple CSS selectors (type, #id, .class, [attribute] and
+ * [attribute=value], combined with descendant and child combinators) and the
+ * serialization of elements as XML. There is no layout; getBBox and
+ * getComputedTextLength only return rough estimates.
+ */
+(function(global) {
+
+	var SVG_NAMESPACE = 'http://www.w3.org/2000/svg';
+	var XHTML_NAMESPACE = 'http://www.w3.org/1999/xhtml';
+	var XLINK_NAMESPACE = 'http://www.w3.org/1999/xlink';
+
+	function defineGetter(prototype, name, getter, setter) {
+		var descriptor = {
+			get : getter,
+			configurable : true
+		};
+		if (setter) {
+			descriptor.set = setter;
+		}
+		Object.defineProperty(prototype, name, descriptor);
+	}
+
+	//#region NODE
+
+	function Node() {
+	}
+
+	Node.ELEMENT_NODE = 1;
+	Node.TEXT_NODE = 3;
+	Node.DOCUMENT_NODE = 9;
+
+	Node.prototype.insertBefore = function(child, referenceChild) {
+		if (child.parentNode) {
+			child.parentNode.removeChild(child);
+		}
+		var index = referenceChild ? this.childNodes.indexOf(referenceChild) : -1;
+		if (index < 0) {
+			this.childNodes.push(child);
+		} else {
+			this.childNodes.splice(index, 0, child);
+		}
+		child.parentNode = this;
+		return child;
+	};
+
+	Node.prototype.appendChild = function(child) {
+		return this.insertBefore(child, null);
+	};
+
+	Node.prototype.removeChild = function(child) {
+		var index = this.childNodes.indexOf(child);
+		if (index >= 0) {
+			this.childNodes.splice(index, 1);
+			child.parentNode = null;
+		}
+		return child;
+	};
+
+	Node.prototype.replaceChild = function(newChild, oldChild) {
+		this.insertBefore(newChild, oldChild);
+		return this.removeChild(oldChild);
+	};
+
+	Node.prototype.hasChildNodes = function() {
+		return this.childNodes.length > 0;
+	};
+
+	Node.prototype.contains = function(other) {
+		for (var node = other; node; node = node.parentNode) {
+			if (node === this) {
+				return true;
+			}
+		}
+		return false;
+	};
+
+	/**
+	 * Supports the flags DOCUMENT_POSITION_PRECEDING (2) and
+	 * DOCUMENT_POSITION_FOLLOWING (4), which are used by selection.order()
+	 */
+	Node.prototype.compareDocumentPosition = function(other) {
+		if (other === this) {
+			return 0;
+		}
+		var thisPath = pathToRoot(this);
+		var otherPath = pathToRoot(other);
+		if (thisPath[0] !== otherPath[0]) {
+			return 1;
+		}
+		var depth = 0;
+		while (depth < thisPath.length && depth < otherPath.length && thisPath[depth] === otherPath[depth]) {
+			depth++;
+		}
+		if (depth === thisPath.length) {
+			return 4 | 16;
+		}
+		if (depth === otherPath.length) {
+			return 2 | 8;
+		}
+		var children = thisPath[depth - 1].childNodes;
+		return children.indexOf(thisPath[depth]) < children.indexOf(otherPath[depth]) ? 4 : 2;
+	};
+
+	function pathToRoot(node) {
+		var path = [];
+		for (; node; node = node.parentNode) {
+			path.unshift(node);
+		}
+		return path;
+	}
+
+	function sibling(node, offset) {
+		var parent = node.parentNode;
+		if (!parent) {
+			return null;
+		}
+		var sibling = parent.childNodes[parent.childNodes.indexOf(node) + offset];
+		return sibling || null;
+	}
+
+	defineGetter(Node.prototype, 'firstChild', function() {
+		return this.childNodes[0] || null;
+	});
+
+	defineGetter(Node.prototype, 'lastChild', function() {
+		return this.childNodes[this.childNodes.length - 1] || null;
+	});
+
+	defineGetter(Node.prototype, 'nextSibling', function() {
+		return sibling(this, 1);
+	});
+
+	defineGetter(Node.prototype, 'previousSibling', function() {
+		return sibling(this, -1);
+	});
+
+	defineGetter(Node.prototype, 'children', function() {
+		return this.childNodes.filter(isElement);
+	});
+
+	defineGetter(Node.prototype, 'childElementCount', function() {
+		return this.children.length;
+	});
+
+	defineGetter(Node.prototype, 'firstElementChild', function() {
+		return this.children[0] || null;
+	});
+
+	defineGetter(Node.prototype, 'textContent', function() {
+		return this.childNodes.map(function(child) {
+			return child.textContent;
+		}).join('');
+	}, function(text) {
+		while (this.childNodes.length) {
+			this.removeChild(this.childNodes[0]);
+		}
+		if (text != null && text !== '') {
+			this.appendChild(this.ownerDocument.createTextNode(text));
+		}
+	});
+
+	function isElement(node) {
+		return node.nodeType === Node.ELEMENT_NODE;
+	}
+
+	//#end region
+
+	//#region TEXT
+
+	function Text(ownerDocument, data) {
+		this.ownerDocument = ownerDocument;
+		this.parentNode = null;
+		this.childNodes = [];
+		this.data = String(data);
+	}
+
+	Text.prototype = Object.create(Node.prototype);
+	Text.prototype.constructor = Text;
+	Text.prototype.nodeType = Node.TEXT_NODE;
+	Text.prototype.nodeName = '#text';
+
+	defineGetter(Text.prototype, 'textContent', function() {
+		return this.data;
+	}, function(text) {
+		this.data = String(text);
+	});
+
+	defineGetter(Text.prototype, 'nodeValue', function() {
+		return this.data;
+	}, function(text) {
+		this.data = String(text);
+	});
+
+	/**
+	 * Html source that is assigned with innerHTML. It is not parsed but
+	 * serialized as it is.
+	 */
+	function RawHtml(ownerDocument, html) {
+		Text.call(this, ownerDocument, html);
+	}
+
+	RawHtml.prototype = Object.create(Text.prototype);
+	RawHtml.prototype.constructor = RawHtml;
+
+	//#end region
+
+	//#region STYLE
+
+	function CSSStyleDeclaration() {
+		this._names = [];
+		this._values = {};
+		this._priorities = {};
+	}
+
+	CSSStyleDeclaration.prototype.setProperty = function(name, value, priority) {
+		if (value == null || value === '') {
+			this.removeProperty(name);
+			return;
+		}
+		if (!this._values.hasOwnProperty(name)) {
+			this._names.push(name);
+		}
+		this._values[name] = String(value);
+		this._priorities[name] = priority || '';
+	};
+
+	CSSStyleDeclaration.prototype.getPropertyValue = function(name) {
+		return this._values.hasOwnProperty(name) ? this._values[name] : '';
+	};
+
+	CSSStyleDeclaration.prototype.getPropertyPriority = function(name) {
+		return this._priorities.hasOwnProperty(name) ? this._priorities[name] : '';
+	};
+
+	CSSStyleDeclaration.prototype.removeProperty = function(name) {
+		var oldValue = this.getPropertyValue(name);
+		var index = this._names.indexOf(name);
+		if (index >= 0) {
+			this._names.splice(index, 1);
+			delete this._values[name];
+			delete this._priorities[name];
+		}
+		return oldValue;
+	};
+
+	defineGetter(CSSStyleDeclaration.prototype, 'length', function() {
+		return this._names.length;
+	});
+
+	defineGetter(CSSStyleDeclaration.prototype, 'cssText', function() {
+		var style = this;
+		return this._names.map(function(name) {
+			var priority = style._priorities[name];
+			return name + ': ' + style._values[name] + (priority ? ' !' + priority : '') + ';';
+		}).join(' ');
+	}, function(cssText) {
+		var style = this;
+		this._names.slice().forEach(function(name) {
+			style.removeProperty(name);
+		});
+		String(cssText == null ? '' : cssText).split(';').forEach(function(declaration) {
+			var separatorIndex = declaration.indexOf(':');
+			if (separatorIndex > 0) {
+				var name = declaration.substring(0, separatorIndex).trim();
+				var value = declaration.substring(separatorIndex + 1).trim();
+				var priority = '';
+				var importantIndex = value.indexOf('!important');
+				if (importantIndex >= 0) {
+					value = value.substring(0, importantIndex).trim();
+					priority = 'important';
+				}
+				style.setProperty(name, value, priority);
+			}
+		});
+	});
+
+	//#end region
+
+	//#region ELEMENT
+
+	function Element(ownerDocument, namespaceURI, qualifiedName) {
+		this.ownerDocument = ownerDocument;
+		this.namespaceURI = namespaceURI;
+		this.parentNode = null;
+		this.childNodes = [];
+		this._attributes = [];
+		this._listeners = {};
+		this.style = new CSSStyleDeclaration();
+		var separatorIndex = qualifiedName.indexOf(':');
+		this.prefix = separatorIndex < 0 ? null : qualifiedName.substring(0, separatorIndex);
+		this.localName = separatorIndex < 0 ? qualifiedName : qualifiedName.substring(separatorIndex + 1);
+		this.tagName = namespaceURI === XHTML_NAMESPACE ? qualifiedName.toUpperCase() : qualifiedName;
+	}
+
+	Element.prototype = Object.create(Node.prototype);
+	Element.prototype.constructor = Element;
+	Element.prototype.nodeType = Node.ELEMENT_NODE;
+
+	defineGetter(Element.prototype, 'nodeName', function() {
+		return this.tagName;
+	});
+
+	Element.prototype._findAttribute = function(namespaceURI, localName) {
+		var attributes = this._attributes;
+		for (var index = 0; index < attributes.length; index++) {
+			var attribute = attributes[index];
+			if (attribute.namespaceURI === namespaceURI && attribute.localName === localName) {
+				return attribute;
+			}
+		}
+		return null;
+	};
+
+	Element.prototype.setAttributeNS = function(namespaceURI, qualifiedName, value) {
+		var separatorIndex = qualifiedName.indexOf(':');
+		var localName = separatorIndex < 0 ? qualifiedName : qualifiedName.substring(separatorIndex + 1);
+		var isStyle = namespaceURI == null && localName === 'style';
+		if (isStyle) {
+			this.style.cssText = value;
+			return;
+		}
+		var attribute = this._findAttribute(namespaceURI || null, localName);
+		if (!attribute) {
+			attribute = {
+				namespaceURI : namespaceURI || null,
+				localName : localName,
+				name : qualifiedName
+			};
+			this._attributes.push(attribute);
+		}
+		attribute.value = String(value);
+	};
+
+	Element.prototype.getAttributeNS = function(namespaceURI, localName) {
+		var isStyle = namespaceURI == null && localName === 'style';
+		if (isStyle) {
+			return this.style.length ? this.style.cssText : null;
+		}
+		var attribute = this._findAttribute(namespaceURI || null, localName);
+		return attribute ? attribute.value : null;
+	};
+
+	Element.prototype.removeAttributeNS = function(namespaceURI, localName) {
+		var isStyle = namespaceURI == null && localName === 'style';
+		if (isStyle) {
+			this.style.cssText = '';
+			return;
+		}
+		var attribute = this._findAttribute(namespaceURI || null, localName);
+		if (attribute) {
+			this._attributes.splice(this._attributes.indexOf(attribute), 1);
+		}
+	};
+
+	Element.prototype.hasAttributeNS = function(namespaceURI, localName) {
+		return this.getAttributeNS(namespaceURI, localName) !== null;
+	};
+
+	Element.prototype.setAttribute = function(name, value) {
+		this.setAttributeNS(null, name, value);
+	};
+
+	Element.prototype.getAttribute = function(name) {
+		return this.getAttributeNS(null, name);
+	};
+
+	Element.prototype.removeAttribute = function(name) {
+		this.removeAttributeNS(null, name);
+	};
+
+	Element.prototype.hasAttribute = function(name) {
+		return this.hasAttributeNS(null, name);
+	};
+
+	defineGetter(Element.prototype, 'id', function() {
+		return this.getAttribute('id') || '';
+	}, function(id) {
+		this.setAttribute('id', id);
+	});
+
+	defineGetter(Element.prototype, 'className', function() {
+		return this.getAttribute('class') || '';
+	}, function(className) {
+		this.setAttribute('class', className);
+	});
+
+	defineGetter(Element.prototype, 'innerHTML', function() {
+		return this.childNodes.map(serialize).join('');
+	}, function(html) {
+		this.textContent = '';
+		if (html != null && html !== '') {
+			this.appendChild(new RawHtml(this.ownerDocument, html));
+		}
+	});
+
+	defineGetter(Element.prototype, 'outerHTML', function() {
+		return serialize(this);
+	});
+
+	defineGetter(Element.prototype, 'ownerSVGElement', function() {
+		for (var node = this.parentNode; node && node.nodeType === Node.ELEMENT_NODE; node = node.parentNode) {
+			if (node.namespaceURI === SVG_NAMESPACE && node.localName === 'svg') {
+				return node;
+			}
+		}
+		return null;
+	});
+
+	Element.prototype.querySelectorAll = function(selector) {
+		var groups = parseSelector(selector);
+		var result = [];
+		forEachDescendant(this, function(element) {
+			if (matchesGroups(element, groups)) {
+				result.push(element);
+			}
+		});
+		return result;
+	};
+
+	Element.prototype.querySelector = function(selector) {
+		return this.querySelectorAll(selector)[0] || null;
+	};
+
+	Element.prototype.matches = function(selector) {
+		return matchesGroups(this, parseSelector(selector));
+	};
+
+	Element.prototype.getElementsByTagName = function(tagName) {
+		return this.querySelectorAll(tagName);
+	};
+
+	Element.prototype.getElementsByClassName = function(className) {
+		return this.querySelectorAll('.' + className.trim().split(/\s+/).join('.'));
+	};
+
+	Element.prototype.addEventListener = function(type, listener, useCapture) {
+		var listeners = this._listeners[type] || (this._listeners[type] = []);
+		for (var index = 0; index < listeners.length; index++) {
+			if (listeners[index].listener === listener && listeners[index].useCapture === !!useCapture) {
+				return;
+			}
+		}
+		listeners.push({
+			listener : listener,
+			useCapture : !!useCapture
+		});
+	};
+
+	Element.prototype.removeEventListener = function(type, listener, useCapture) {
+		var listeners = this._listeners[type];
+		if (!listeners) {
+			return;
+		}
+		for (var index = 0; index < listeners.length; index++) {
+			if (listeners[index].listener === listener && listeners[index].useCapture === !!useCapture) {
+				listeners.splice(index, 1);
+				return;
+			}
+		}
+	};
+
+	Element.prototype.dispatchEvent = function(event) {
+		event.target = this;
+		for (var node = this; node && node._listeners && !event._stopped; node = node.parentNode) {
+			event.currentTarget = node;
+			var listeners = (node._listeners[event.type] || []).slice();
+			for (var index = 0; index < listeners.length; index++) {
+				var listener = listeners[index].listener;
+				if (typeof listener === 'function') {
+					listener.call(node, event);
+				} else {
+					listener.handleEvent(event);
+				}
+			}
+			if (!event.bubbles) {
+				break;
+			}
+		}
+		return !event.defaultPrevented;
+	};
+
+	/**
+	 * Estimates the bounding box from the geometry attributes. Text is
+	 * estimated with an average character width.
+	 */
+	Element.prototype.getBBox = function() {
+		var element = this;
+		function number(name) {
+			var value = parseFloat(element.getAttribute(name));
+			return isNaN(value) ? 0 : value;
+		}
+		switch (this.localName) {
+		case 'rect':
+		case 'image':
+		case 'use':
+			return createRect(number('x'), number('y'), number('width'), number('height'));
+		case 'circle':
+			return createRect(number('cx') - number('r'), number('cy') - number('r'), 2 * number('r'), 2 * number('r'));
+		case 'ellipse':
+			return createRect(number('cx') - number('rx'), number('cy') - number('ry'), 2 * number('rx'), 2 * number('ry'));
+		case 'line':
+			return createBounds([number('x1'), number('x2')], [number('y1'), number('y2')]);
+		case 'text':
+			var fontSize = estimateFontSize(this);
+			return createRect(number('x'), number('y') - fontSize, this.getComputedTextLength(), fontSize);
+		default:
+			var xs = [];
+			var ys = [];
+			this.children.forEach(function(child) {
+				if (child.getBBox) {
+					var box = child.getBBox();
+					if (box.width || box.height) {
+						xs.push(box.x, box.x + box.width);
+						ys.push(box.y, box.y + box.height);
+					}
+				}
+			});
+			return xs.length ? createBounds(xs, ys) : createRect(0, 0, 0, 0);
+		}
+	};
+
+	Element.prototype.getComputedTextLength = function() {
+		return this.textContent.length * estimateFontSize(this) * 0.6;
+	};
+
+	function estimateFontSize(element) {
+		for (var node = element; node && node.style; node = node.parentNode) {
+			var fontSize = parseFloat(node.style.getPropertyValue('font-size') || node.getAttribute('font-size'));
+			if (!isNaN(fontSize)) {
+				return fontSize;
+			}
+		}
+		return 10;
+	}
+
+	function createRect(x, y, width, height) {
+		return {
+			x : x,
+			y : y,
+			width : width,
+			height : height
+		};
+	}
+
+	function createBounds(xs, ys) {
+		var minX = Math.min.apply(null, xs);
+		var minY = Math.min.apply(null, ys);
+		return createRect(minX, minY, Math.max.apply(null, xs) - minX, Math.max.apply(null, ys) - minY);
+	}
+
+	function forEachDescendant(node, callback) {
+		var children = node.childNodes;
+		for (var index = 0; index < children.length; index++) {
+			var child = children[index];
+			if (child.nodeType === Node.ELEMENT_NODE) {
+				callback(child);
+				forEachDescendant(child, callback);
+			}
+		}
+	}
+
+	//#end region
+
+	//#region SELECTORS
+
+	var selectorCache = {};
+
+	/**
+	 * Parses a selector into groups (separated by commas). Each group is a
+	 * list of compound selectors, from right to left, with the combinator that
+	 * connects it to the next compound selector on the left.
+	 */
+	function parseSelector(selector) {
+		var groups = selectorCache[selector];
+		if (groups) {
+			return groups;
+		}
+		groups = String(selector).split(',').map(function(groupString) {
+			var tokens = groupString.trim().replace(/\s*>\s*/g, ' > ').split(/\s+/);
+			var group = [];
+			var combinator = ' ';
+			tokens.forEach(function(token) {
+				if (token === '>') {
+					combinator = '>';
+					return;
+				}
+				var compound = parseCompound(token);
+				compound.combinator = group.length ? combinator : null;
+				group.unshift(compound);
+				combinator = ' ';
+			});
+			return group;
+		});
+		selectorCache[selector] = groups;
+		return groups;
+	}
+
+	function parseCompound(token) {
+		var compound = {
+			tagName : null,
+			ids : [],
+			classes : [],
+			attributes : []
+		};
+		var pattern = /([#.]?)([\w-]+|\*)|\[\s*([\w:-]+)\s*(?:=\s*(?:"([^"]*)"|'([^']*)'|([^\]\s]*))\s*)?\]/g;
+		var match;
+		while ((match = pattern.exec(token)) !== null) {
+			if (match[3]) {
+				var value = match[4] !== undefined ? match[4] : match[5] !== undefined ? match[5] : match[6];
+				compound.attributes.push({
+					name : match[3],
+					value : value
+				});
+			} else if (match[1] === '#') {
+				compound.ids.push(match[2]);
+			} else if (match[1] === '.') {
+				compound.classes.push(match[2]);
+			} else if (match[2] !== '*') {
+				compound.tagName = match[2].toLowerCase();
+			}
+		}
+		return compound;
+	}
+
+	function matchesGroups(element, groups) {
+		for (var index = 0; index < groups.length; index++) {
+			if (matchesGroup(element, groups[index], 0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	function matchesGroup(element, group, compoundIndex) {
+		var compound = group[compoundIndex];
+		if (!matchesCompound(element, compound)) {
+			return false;
+		}
+		if (compoundIndex === group.length - 1) {
+			return true;
+		}
+		var parent = element.parentNode;
+		if (compound.combinator === '>') {
+			return isElement(parent) && matchesGroup(parent, group, compoundIndex + 1);
+		}
+		for (; parent && parent.nodeType === Node.ELEMENT_NODE; parent = parent.parentNode) {
+			if (matchesGroup(parent, group, compoundIndex + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	function matchesCompound(element, compound) {
+		if (compound.tagName && element.localName.toLowerCase() !== compound.tagName) {
+			return false;
+		}
+		var index;
+		for (index = 0; index < compound.ids.length; index++) {
+			if (element.getAttribute('id') !== compound.ids[index]) {
+				return false;
+			}
+		}
+		if (compound.classes.length) {
+			var classes = (element.getAttribute('class') || '').split(/\s+/);
+			for (index = 0; index < compound.classes.length; index++) {
+				if (classes.indexOf(compound.classes[index]) < 0) {
+					return false;
+				}
+			}
+		}
+		for (index = 0; index < compound.attributes.length; index++) {
+			var attribute = compound.attributes[index];
+			var value = element.getAttribute(attribute.name);
+			if (value === null || (attribute.value !== undefined && value !== attribute.value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//#end region
+
+	//#region SERIALIZATION
+
+	function escapeText(text) {
+		return String(text).replace(/&/g, '&amp;').replace(/</g, '&lt;').replace(/>/g, '&gt;');
+	}
+
+	function escapeAttribute(text) {
+		return escapeText(text).replace(/"/g, '&quot;');
+	}
+
+	function serialize(node, isRoot) {
+		if (node instanceof RawHtml) {
+			return node.data;
+		}
+		if (node.nodeType === Node.TEXT_NODE) {
+			return escapeText(node.data);
+		}
+		if (node.nodeType === Node.DOCUMENT_NODE) {
+			return serialize(node.documentElement, true);
+		}
+		var source = '<' + node.tagName.toLowerCase();
+		var namespaceDeclarations = isRoot ? collectNamespaceDeclarations(node) : [];
+		namespaceDeclarations.forEach(function(declaration) {
+			source += ' ' + declaration;
+		});
+		node._attributes.forEach(function(attribute) {
+			source += ' ' + attribute.name + '="' + escapeAttribute(attribute.value) + '"';
+		});
+		if (node.style.length) {
+			source += ' style="' + escapeAttribute(node.style.cssText) + '"';
+		}
+		if (!node.childNodes.length) {
+			return source + '/>';
+		}
+		source += '>';
+		node.childNodes.forEach(function(child) {
+			source += serialize(child, false);
+		});
+		return source + '</' + node.tagName.toLowerCase() + '>';
+	}
+
+	function collectNamespaceDeclarations(root) {
+		var declarations = [];
+		if (!root.hasAttribute('xmlns') && root.namespaceURI) {
+			declarations.push('xmlns="' + root.namespaceURI + '"');
+		}
+		var usesXlink = false;
+		function checkXlink(element) {
+			element._attributes.forEach(function(attribute) {
+				usesXlink = usesXlink || attribute.namespaceURI === XLINK_NAMESPACE;
+			});
+		}
+		checkXlink(root);
+		forEachDescendant(root, checkXlink);
+		if (usesXlink && !root.hasAttribute('xmlns:xlink')) {
+			declarations.push('xmlns:xlink="' + XLINK_NAMESPACE + '"');
+		}
+		return declarations;
+	}
+
+	function XMLSerializer() {
+	}
+
+	XMLSerializer.prototype.serializeToString = function(node) {
+		return serialize(node, true);
+	};
+
+	//#end region
+
+	//#region EVENTS
+
+	function Event(type, options) {
+		this.type = type;
+		this.bubbles = !!(options && options.bubbles);
+		this.cancelable = !!(options && options.cancelable);
+		this.defaultPrevented = false;
+		this._stopped = false;
+	}
+
+	Event.prototype.initEvent = function(type, bubbles, cancelable) {
+		this.type = type;
+		this.bubbles = !!bubbles;
+		this.cancelable = !!cancelable;
+	};
+
+	Event.prototype.initMouseEvent = function(type, bubbles, cancelable) {
+		this.initEvent(type, bubbles, cancelable);
+	};
+
+	Event.prototype.preventDefault = function() {
+		this.defaultPrevented = true;
+	};
+
+	Event.prototype.stopPropagation = function() {
+		this._stopped = true;
+	};
+
+	Event.prototype.stopImmediatePropagation = Event.prototype.stopPropagation;
+
+	//#end region
+
+	//#region DOCUMENT
+
+	function Document() {
+		this.ownerDocument = this;
+		this.parentNode = null;
+		this.childNodes = [];
+		this.defaultView = global;
+	}
+
+	Document.prototype = Object.create(Node.prototype);
+	Document.prototype.constructor = Document;
+	Document.prototype.nodeType = Node.DOCUMENT_NODE;
+	Document.prototype.nodeName = '#document';
+
+	Document.prototype.createElementNS = function(namespaceURI, qualifiedName) {
+		return new Element(this, namespaceURI, qualifiedName);
+	};
+
+	Document.prototype.createElement = function(tagName) {
+		return new Element(this, XHTML_NAMESPACE, tagName.toLowerCase());
+	};
+
+	Document.prototype.createTextNode = function(data) {
+		return new Text(this, data);
+	};
+
+	Document.prototype.createEvent = function() {
+		return new Event('');
+	};
+
+	Document.prototype.querySelectorAll = function(selector) {
+		var root = this.documentElement;
+		var result = root.querySelectorAll(selector);
+		return root.matches(selector) ? [ root ].concat(result) : result;
+	};
+
+	Document.prototype.querySelector = Element.prototype.querySelector;
+	Document.prototype.getElementsByTagName = Element.prototype.getElementsByTagName;
+	Document.prototype.getElementsByClassName = Element.prototype.getElementsByClassName;
+
+	Document.prototype.getElementById = function(id) {
+		return this.querySelector('#' + id);
+	};
+
+	Document.prototype.addEventListener = Element.prototype.addEventListener;
+	Document.prototype.removeEventListener = Element.prototype.removeEventListener;
+
+	defineGetter(Document.prototype, 'documentElement', function() {
+		return this.childNodes.filter(isElement)[0] || null;
+	});
+
+	defineGetter(Document.prototype, 'head', function() {
+		return this.documentElement.querySelector('head');
+	});
+
+	defineGetter(Document.prototype, 'body', function() {
+		return this.documentElement.querySelector('body');
+	});
+
+	function createDocument() {
+		var document = new Document();
+		document._listeners = {};
+		var html = document.createElement('html');
+		document.appendChild(html);
+		html.appendChild(document.createElement('head'));
+		html.appendChild(document.createElement('body'));
+		return document;
+	}
+
+	//#end region
+
+	//#region TIMERS
+
+	var tasks = [];
+	var nextTaskId = 1;
+
+	function addTask(callback, delay, interval) {
+		var task = {
+			id : nextTaskId++,
+			callback : callback,
+			due : Date.now() + (delay || 0),
+			interval : interval
+		};
+		tasks.push(task);
+		return task.id;
+	}
+
+	function removeTask(id) {
+		tasks = tasks.filter(function(task) {
+			return task.id !== id;
+		});
+	}
+
+	/**
+	 * Executes the timer tasks that are due and returns the number of
+	 * executed tasks. Tasks that are added while running are executed with
+	 * the next call.
+	 */
+	function runTimers() {
+		var now = Date.now();
+		var dueTasks = tasks.filter(function(task) {
+			return task.due <= now;
+		});
+		dueTasks.forEach(function(task) {
+			if (task.interval === undefined) {
+				removeTask(task.id);
+			} else {
+				task.due = now + task.interval;
+			}
+			task.callback();
+		});
+		return dueTasks.length;
+	}
+
+	//#end region
+
+	//#region BASE64
+
+	var BASE64_CHARACTERS = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+
+	function btoa(binary) {
+		var base64 = '';
+		for (var index = 0; index < binary.length; index += 3) {
+			var first = binary.charCodeAt(index);
+			var second = index + 1 < binary.length ? binary.charCodeAt(index + 1) : NaN;
+			var third = index + 2 < binary.length ? binary.charCodeAt(index + 2) : NaN;
+			var bits = (first << 16) | ((second || 0) << 8) | (third || 0);
+			base64 += BASE64_CHARACTERS.charAt((bits >> 18) & 63) + BASE64_CHARACTERS.charAt((bits >> 12) & 63);
+			base64 += isNaN(second) ? '=' : BASE64_CHARACTERS.charAt((bits >> 6) & 63);
+			base64 += isNaN(third) ? '=' : BASE64_CHARACTERS.charAt(bits & 63);
+		}
+		return base64;
+	}
+
+	function atob(base64) {
+		var cleaned = String(base64).replace(/[^A-Za-z0-9+/]/g, '');
+		var parts = [];
+		for (var index = 0; index < cleaned.length; index += 4) {
+			var bits = 0;
+			var numberOfCharacters = Math.min(4, cleaned.length - index);
+			for (var offset = 0; offset < 4; offset++) {
+				var value = offset < numberOfCharacters ? BASE64_CHARACTERS.indexOf(cleaned.charAt(index + offset)) : 0;
+				bits = (bits << 6) | value;
+			}
+			parts.push(String.fromCharCode((bits >> 16) & 255));
+			if (numberOfCharacters > 2) {
+				parts.push(String.fromCharCode((bits >> 8) & 255));
+			}
+			if (numberOfCharacters > 3) {
+				parts.push(String.fromCharCode(bits & 255));
+			}
+		}
+		return parts.join('');
+	}
+
+	//#end region
+
+	global.window = global;
+	global.self = global;
+	global.Node = Node;
+	global.Element = Element;
+	global.Text = Text;
+	global.CSSStyleDeclaration = CSSStyleDeclaration;
+	global.Event = Event;
+	global.XMLSerializer = XMLSerializer;
+	global.document = createDocument();
+	global.getComputedStyle = function(element) {
+		return element.style;
+	};
+	global.setTimeout = function(callback, delay) {
+		return addTask(callback, delay);
+	};
+	global.setInterval = function(callback, interval) {
+		return addTask(callback, interval, interval || 0);
+	};
+	global.clearTimeout = removeTask;
+	global.clearInterval = removeTask;
+	global.javafxd3_runTimers = runTimers;
+	global.javafxd3_serialize = function(node) {
+		return serialize(node, true);
+	};
+	global.btoa = btoa;
+	global.atob = atob;
+
+})(this);